@@ -5,9 +5,10 @@
 echo "🍮 Milk Pudding - 启动前端登录页面"
 echo "======================================"
 
-# 检查当前目录
+# 前端源文件只保存在网关的静态目录中
+cd "$(dirname "$0")/../pudding-gateway/src/main/resources/static" || exit 1
 if [ ! -f "login.html" ]; then
-    echo "❌ 错误: 请在包含 login.html 的目录中运行此脚本"
+    echo "❌ 错误: 未找到 login.html"
     exit 1
 fi
 
@@ -3,6 +3,7 @@ package com.milkpudding.api.client;
 import com.github.lianjiatech.retrofit.spring.boot.core.RetrofitClient;
 import com.github.lianjiatech.retrofit.spring.boot.log.Logging;
 import com.github.lianjiatech.retrofit.spring.boot.retry.Retry;
+import com.milkpudding.api.config.RetrofitConfig;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import retrofit2.http.*;
 
@@ -15,6 +16,7 @@ import java.util.Map;
  */
 @RetrofitClient(
     baseUrl = "${external.api.jsonplaceholder.url:https://jsonplaceholder.typicode.com}",
+    sourceOkHttpClient = RetrofitConfig.JSONPLACEHOLDER_HTTP_CLIENT,
     connectTimeoutMs = 5000,
     readTimeoutMs = 10000,
     writeTimeoutMs = 10000
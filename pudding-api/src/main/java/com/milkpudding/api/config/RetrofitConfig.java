@@ -1,18 +1,49 @@
 package com.milkpudding.api.config;
 
+import com.github.lianjiatech.retrofit.spring.boot.core.SourceOkHttpClientRegistrar;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Retrofit 相关配置
+ * Retrofit接口都是同步方法，OkHttp在调用方线程（虚拟线程模式下即请求的虚拟线程）上执行请求，
+ * 熔断、重试、限流注解同样在调用方线程上执行，不经过Resilience4j的线程池
  */
 @Configuration
 public class RetrofitConfig {
 
+    /**
+     * JsonPlaceholder客户端使用的OkHttpClient名称，见JsonPlaceholderRetrofitClient
+     */
+    public static final String JSONPLACEHOLDER_HTTP_CLIENT = "jsonplaceholder";
+
+    /**
+     * 适配虚拟线程的OkHttpClient
+     * 只使用HTTP/1.1：OkHttp的HTTP/2连接在synchronized方法中写帧，套接字写阻塞时会把虚拟线程固定在载体线程上；
+     * 异步调用（enqueue）的Dispatcher使用虚拟线程执行器，代替默认的平台线程池；
+     * 连接池保留更多空闲连接，大量虚拟线程并发调用同一主机时复用连接
+     */
+    @Bean
+    public SourceOkHttpClientRegistrar sourceOkHttpClientRegistrar() {
+        return registry -> registry.register(JSONPLACEHOLDER_HTTP_CLIENT, new OkHttpClient.Builder()
+                .protocols(List.of(Protocol.HTTP_1_1))
+                .dispatcher(new Dispatcher(Executors.newThreadPerTaskExecutor(
+                        Thread.ofVirtual().name("okhttp-", 0).factory())))
+                .connectionPool(new ConnectionPool(50, 5, TimeUnit.MINUTES))
+                .build());
+    }
+
     /**
      * 配置 JsonPlaceholder API 的熔断器
      */
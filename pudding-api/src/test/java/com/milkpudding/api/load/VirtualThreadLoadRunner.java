@@ -0,0 +1,325 @@
+package com.milkpudding.api.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 虚拟线程与平台线程的并发扩展对比压测
+ * 在相同固定堆（-Xms=-Xmx）下分别以平台线程和虚拟线程模式启动pudding-api，/api/external/posts/{id}
+ * 通过Feign调用本地固定延迟的桩服务，按递增并发数做闭环压测（每个客户端收到响应后立即发下一个请求）。
+ * 平台线程模式的吞吐在并发数超过Tomcat线程池（默认200）后不再增长，多出的请求在连接队列中排队，p99随并发线性上升；
+ * 虚拟线程模式的吞吐应随并发数近似线性增长（约 并发数 / 桩延迟），直到CPU或堆成为瓶颈。
+ * 输出每个并发档位的吞吐、p50/p99、错误数、峰值堆、存活线程数和虚拟线程固定次数。
+ * 运行：mvn -pl pudding-api package -DskipTests && mvn -pl pudding-api test-compile 后直接运行main方法，
+ * 参数通过系统属性调整：-Dload.heap=256m -Dload.delay=200 -Dload.duration=15 -Dload.concurrency=50,100,200,400,800,1600
+ */
+public class VirtualThreadLoadRunner {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String POST = "{\"userId\":1,\"id\":1,\"title\":\"sunt aut facere repellat provident\","
+        + "\"body\":\"quia et suscipit\\nsuscipit recusandae consequuntur expedita et cum\"}";
+
+    private final String heap = System.getProperty("load.heap", "256m");
+    private final long delayMillis = Long.getLong("load.delay", 200);
+    private final int durationSeconds = Integer.getInteger("load.duration", 15);
+    private final int[] concurrency = Arrays.stream(System.getProperty("load.concurrency", "50,100,200,400,800,1600")
+        .split(",")).mapToInt(level -> Integer.parseInt(level.trim())).toArray();
+    private final HttpClient client = HttpClient.newBuilder()
+        .executor(Executors.newVirtualThreadPerTaskExecutor())
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+
+    public static void main(String[] args) throws Exception {
+        new VirtualThreadLoadRunner().run();
+    }
+
+    private void run() throws Exception {
+        Path jar = findJar();
+        HttpServer upstream = startUpstream();
+        try {
+            int upstreamPort = upstream.getAddress().getPort();
+            System.out.printf("jar=%s heap=%s upstream delay=%dms duration=%ds%n",
+                jar.getFileName(), heap, delayMillis, durationSeconds);
+            List<String> report = new ArrayList<>();
+            for (boolean virtual : new boolean[]{false, true}) {
+                report.addAll(runMode(jar, upstreamPort, virtual));
+            }
+            System.out.println();
+            System.out.printf("%-9s %6s %10s %9s %9s %7s %10s %8s %7s%n",
+                "mode", "conc", "req/s", "p50(ms)", "p99(ms)", "errors", "heap(MB)", "threads", "pinned");
+            report.forEach(System.out::println);
+        } finally {
+            upstream.stop(0);
+        }
+    }
+
+    private List<String> runMode(Path jar, int upstreamPort, boolean virtual) throws Exception {
+        String mode = virtual ? "virtual" : "platform";
+        int port = freePort();
+        Path log = Files.createTempFile("pudding-api-" + mode + "-", ".log");
+        Process process = new ProcessBuilder(javaCommand(jar, port, upstreamPort, virtual))
+            .redirectErrorStream(true)
+            .redirectOutput(log.toFile())
+            .start();
+        List<String> rows = new ArrayList<>();
+        try {
+            String base = "http://localhost:" + port;
+            awaitHealthy(base, process, log);
+            // 预热：让JIT编译热点代码、连接池建立连接
+            drive(base, 50, 5);
+            for (int level : concurrency) {
+                PeakSampler sampler = new PeakSampler(base);
+                Thread samplerThread = Thread.ofVirtual().start(sampler);
+                Result result = drive(base, level, durationSeconds);
+                sampler.stop();
+                samplerThread.join();
+                String row = String.format("%-9s %6d %10.1f %9d %9d %7d %10.1f %8d %7s", mode, level,
+                    result.throughput(), result.percentile(0.50), result.percentile(0.99), result.errors.sum(),
+                    sampler.peakHeap.get() / (1024.0 * 1024.0), sampler.peakThreads.get(),
+                    virtual ? String.valueOf(pinned(base)) : "-");
+                System.out.println(row);
+                rows.add(row);
+            }
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+        return rows;
+    }
+
+    private List<String> javaCommand(Path jar, int port, int upstreamPort, boolean virtual) {
+        return List.of(
+            Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+            "-Xms" + heap, "-Xmx" + heap,
+            "-Dserver.port=" + port,
+            "-Dspring.threads.virtual.enabled=" + virtual,
+            "-Dspring.cloud.consul.enabled=false",
+            "-Dspring.cloud.consul.config.enabled=false",
+            "-Dexternal.api.jsonplaceholder.url=http://localhost:" + upstreamPort,
+            // 压测的是线程模型，不让限流和熔断参与
+            "-Dresilience4j.ratelimiter.instances.jsonplaceholder.limit-for-period=1000000",
+            "-Dresilience4j.circuitbreaker.instances.jsonplaceholder.minimum-number-of-calls=1000000",
+            "-Dmanagement.endpoints.web.exposure.include=health,metrics,virtualthreads",
+            "-Dlogging.level.root=WARN",
+            "-Dlogging.level.com.milkpudding=WARN",
+            "-jar", jar.toString());
+    }
+
+    /**
+     * 固定延迟的JsonPlaceholder桩服务，虚拟线程处理请求，自身不会成为瓶颈
+     */
+    private HttpServer startUpstream() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        byte[] body = POST.getBytes(StandardCharsets.UTF_8);
+        server.createContext("/", exchange -> {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        return server;
+    }
+
+    /**
+     * 闭环压测：concurrency个客户端各自串行发请求，持续seconds秒
+     */
+    private Result drive(String base, int concurrency, int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Result result = new Result(seconds);
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                int id = i % 100 + 1;
+                clients.execute(() -> {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/api/external/posts/" + id))
+                        .timeout(Duration.ofSeconds(30))
+                        .build();
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            result.record(System.nanoTime() - start, response.statusCode() == 200);
+                        } catch (IOException e) {
+                            result.record(System.nanoTime() - start, false);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    private void awaitHealthy(String base, Process process, Path log) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("pudding-api exited during startup, see " + log);
+            }
+            try {
+                HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(base + "/actuator/health"))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // 尚未开始监听
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("pudding-api did not become healthy within 120s, see " + log);
+    }
+
+    private JsonNode get(String base, String path) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(base + path))
+            .timeout(Duration.ofSeconds(10)).build(), HttpResponse.BodyHandlers.ofString());
+        return response.statusCode() == 200 ? MAPPER.readTree(response.body()) : null;
+    }
+
+    private double metric(String base, String path) {
+        try {
+            JsonNode metric = get(base, path);
+            return metric == null ? 0 : metric.path("measurements").path(0).path("value").asDouble();
+        } catch (IOException e) {
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    private long pinned(String base) throws IOException, InterruptedException {
+        JsonNode stats = get(base, "/actuator/virtualthreads");
+        return stats == null ? -1 : stats.path("pinned").asLong();
+    }
+
+    private static Path findJar() {
+        File[] jars = new File("pudding-api/target").listFiles((dir, name) -> name.startsWith("pudding-api-")
+            && name.endsWith(".jar") && !name.endsWith("-plain.jar"));
+        if (jars == null || jars.length == 0) {
+            jars = new File("target").listFiles((dir, name) -> name.startsWith("pudding-api-")
+                && name.endsWith(".jar") && !name.endsWith("-plain.jar"));
+        }
+        if (jars == null || jars.length == 0) {
+            throw new IllegalStateException("pudding-api jar not found, run mvn -pl pudding-api package -DskipTests first");
+        }
+        return jars[0].toPath().toAbsolutePath();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * 压测期间每200ms采样一次堆使用量和存活线程数，保留峰值
+     */
+    private final class PeakSampler implements Runnable {
+        private final String base;
+        private final AtomicBoolean running = new AtomicBoolean(true);
+        private final AtomicLong peakHeap = new AtomicLong();
+        private final AtomicLong peakThreads = new AtomicLong();
+
+        PeakSampler(String base) {
+            this.base = base;
+        }
+
+        @Override
+        public void run() {
+            while (running.get()) {
+                peakHeap.accumulateAndGet((long) metric(base, "/actuator/metrics/jvm.memory.used?tag=area:heap"), Math::max);
+                peakThreads.accumulateAndGet((long) metric(base, "/actuator/metrics/jvm.threads.live"), Math::max);
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        void stop() {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 单个并发档位的结果，延迟按毫秒分桶，避免保存每个请求的耗时
+     */
+    private static final class Result {
+        private static final int MAX_MILLIS = 60_000;
+
+        private final int seconds;
+        private final LongAdder[] buckets = new LongAdder[MAX_MILLIS + 1];
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        Result(int seconds) {
+            this.seconds = seconds;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos, boolean success) {
+            if (success) {
+                ok.increment();
+                buckets[(int) Math.min(MAX_MILLIS, TimeUnit.NANOSECONDS.toMillis(nanos))].increment();
+            } else {
+                errors.increment();
+            }
+        }
+
+        double throughput() {
+            return ok.sum() / (double) seconds;
+        }
+
+        long percentile(double percentile) {
+            long total = ok.sum();
+            long target = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i].sum();
+                if (seen >= target && total > 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
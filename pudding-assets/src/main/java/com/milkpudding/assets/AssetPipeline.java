@@ -0,0 +1,236 @@
+package com.milkpudding.assets;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 构建时的静态文件处理
+ * 由pudding-gateway在process-classes阶段通过exec-maven-plugin执行，本模块只在构建时使用，不打入网关运行包。
+ * 先清空输出目录再从源目录复制，按CSS和JS的内容哈希生成带指纹的文件名，把HTML中对这些文件的引用改为带指纹的文件名，
+ * 为文本文件生成最高压缩级别的brotli版本（同名.br），并生成清单文件。
+ * 每次都从源文件重新生成，内容变化后旧的带指纹文件不会残留在输出目录中。
+ * 带指纹的文件内容变化时文件名一定变化，网关的StaticAssetStore据此返回长期不可变缓存；原文件名保留。
+ * 文件内容按原样复制，不做压缩：手写的压缩无法正确处理嵌套模板字符串、正则表达式等语法，体积由brotli和gzip压缩。
+ * 当前平台没有brotli本地库时跳过brotli版本，运行时仍生成gzip版本
+ *
+ * 运行：main方法，参数为源目录和输出目录
+ */
+@Slf4j
+public final class AssetPipeline {
+
+    /**
+     * 清单文件名：原文件相对路径 -> 带指纹的相对路径，与StaticAssetStore.MANIFEST一致
+     */
+    public static final String MANIFEST = "asset-manifest.json";
+
+    private static final int HASH_LENGTH = 10;
+    private static final String BROTLI_SUFFIX = ".br";
+    // 生成brotli版本的文本文件扩展名，与StaticAssetStore运行时压缩的类型一致
+    private static final Set<String> COMPRESSIBLE = Set.of("html", "css", "js", "json", "svg", "txt", "xml");
+    private static final Pattern REFERENCE = Pattern.compile("(\\s(?:href|src)\\s*=\\s*[\"'])([^\"'?#]+)([^\"']*[\"'])");
+
+    private AssetPipeline() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: AssetPipeline <source-directory> <output-directory>");
+        }
+        Path source = Path.of(args[0]);
+        Path output = Path.of(args[1]);
+        if (!Files.isDirectory(source)) {
+            log.info("Static asset directory {} not found, skipped", source);
+            return;
+        }
+        Map<String, String> manifest = process(source, output);
+        log.info("Fingerprinted {} static assets into {}", manifest.size(), output);
+    }
+
+    /**
+     * 从源目录重新生成输出目录，返回清单；源目录不修改
+     */
+    public static Map<String, String> process(Path source, Path output) throws IOException {
+        clean(output);
+        List<Path> sources;
+        try (Stream<Path> stream = Files.walk(source)) {
+            sources = stream.filter(Files::isRegularFile).sorted().toList();
+        }
+        for (Path file : sources) {
+            Path target = output.resolve(relative(source, file));
+            Files.createDirectories(target.getParent());
+            Files.copy(file, target);
+        }
+        Map<String, String> manifest = fingerprint(output);
+        compressBrotli(output);
+        return manifest;
+    }
+
+    /**
+     * 处理输出目录中的文件：生成带指纹的文件并改写HTML引用，返回清单
+     */
+    private static Map<String, String> fingerprint(Path root) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(root)) {
+            files = stream.filter(Files::isRegularFile).sorted().toList();
+        }
+
+        Map<String, String> manifest = new TreeMap<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if ((!name.endsWith(".css") && !name.endsWith(".js")) || isFingerprinted(name)) {
+                continue;
+            }
+            Path hashed = file.resolveSibling(fingerprint(name, Files.readAllBytes(file)));
+            Files.copy(file, hashed);
+            manifest.put(relative(root, file), relative(root, hashed));
+        }
+
+        for (Path file : files) {
+            if (file.getFileName().toString().endsWith(".html")) {
+                String html = Files.readString(file, StandardCharsets.UTF_8);
+                String rewritten = rewriteReferences(html, relative(root, file.getParent()), manifest);
+                if (!rewritten.equals(html)) {
+                    Files.writeString(file, rewritten, StandardCharsets.UTF_8);
+                }
+            }
+        }
+
+        Files.writeString(root.resolve(MANIFEST), toJson(manifest), StandardCharsets.UTF_8);
+        return manifest;
+    }
+
+    /**
+     * 为文本文件生成同名.br文件，返回生成数量；brotli本地库不可用时返回0
+     */
+    static int compressBrotli(Path root) throws IOException {
+        if (!Brotli4jLoader.isAvailable()) {
+            log.warn("Brotli native library not available, .br variants skipped: {}",
+                Brotli4jLoader.getUnavailabilityCause().getMessage());
+            return 0;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(root)) {
+            files = stream.filter(Files::isRegularFile).filter(AssetPipeline::isCompressible).sorted().toList();
+        }
+        Encoder.Parameters parameters = new Encoder.Parameters().setQuality(11).setMode(Encoder.Mode.TEXT);
+        for (Path file : files) {
+            byte[] compressed = Encoder.compress(Files.readAllBytes(file), parameters);
+            Files.write(file.resolveSibling(file.getFileName() + BROTLI_SUFFIX), compressed);
+        }
+        return files.size();
+    }
+
+    private static boolean isCompressible(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && COMPRESSIBLE.contains(name.substring(dot + 1));
+    }
+
+    /**
+     * 删除上次构建生成的所有文件
+     */
+    private static void clean(Path output) throws IOException {
+        if (!Files.exists(output)) {
+            return;
+        }
+        List<Path> paths;
+        try (Stream<Path> stream = Files.walk(output)) {
+            paths = stream.sorted(Comparator.reverseOrder()).toList();
+        }
+        for (Path path : paths) {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * 带指纹的文件名：name.hash.ext，哈希为内容SHA-256的前10位十六进制
+     */
+    static String fingerprint(String name, byte[] content) {
+        int dot = name.lastIndexOf('.');
+        return name.substring(0, dot) + "." + hash(content) + name.substring(dot);
+    }
+
+    /**
+     * 文件名是否已带指纹，重复执行时跳过
+     */
+    static boolean isFingerprinted(String name) {
+        String[] parts = name.split("\\.");
+        return parts.length >= 3 && parts[parts.length - 2].length() == HASH_LENGTH
+            && parts[parts.length - 2].chars().allMatch(c -> Character.digit(c, 16) >= 0);
+    }
+
+    /**
+     * 把HTML中href、src引用的本地文件替换为带指纹的文件名，绝对地址和不在清单中的文件不变
+     *
+     * @param directory HTML文件所在目录相对静态目录的路径，根目录为空字符串
+     */
+    static String rewriteReferences(String html, String directory, Map<String, String> manifest) {
+        Matcher matcher = REFERENCE.matcher(html);
+        StringBuilder result = new StringBuilder(html.length());
+        while (matcher.find()) {
+            String reference = matcher.group(2);
+            String target = resolve(directory, reference);
+            String hashed = target != null ? manifest.get(target) : null;
+            String replacement = hashed == null ? matcher.group()
+                : matcher.group(1) + reference.substring(0, reference.lastIndexOf('/') + 1)
+                    + hashed.substring(hashed.lastIndexOf('/') + 1) + matcher.group(3);
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    /**
+     * 引用相对HTML所在目录解析为静态目录下的相对路径，外部地址返回null
+     */
+    private static String resolve(String directory, String reference) {
+        if (reference.contains(":") || reference.startsWith("//")) {
+            return null;
+        }
+        String path = reference.startsWith("/") ? reference.substring(1)
+            : (directory.isEmpty() ? "" : directory + "/") + reference;
+        Path normalized = Path.of(path).normalize();
+        return normalized.startsWith("..") ? null : normalized.toString().replace('\\', '/');
+    }
+
+    private static String relative(Path root, Path file) {
+        return root.relativize(file).toString().replace('\\', '/');
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return HexFormat.of().formatHex(digest).substring(0, HASH_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String toJson(Map<String, String> manifest) {
+        StringBuilder json = new StringBuilder("{\n");
+        manifest.forEach((source, hashed) -> {
+            if (json.length() > 2) {
+                json.append(",\n");
+            }
+            json.append("  \"").append(source).append("\": \"").append(hashed).append('"');
+        });
+        return json.append("\n}\n").toString();
+    }
+}
@@ -0,0 +1,140 @@
+package com.milkpudding.assets;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.decoder.Decoder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * AssetPipeline 测试类
+ */
+class AssetPipelineTest {
+
+    @Test
+    void testFingerprintChangesWithContent() {
+        // When
+        String first = AssetPipeline.fingerprint("styles.css", "a{}".getBytes(StandardCharsets.UTF_8));
+        String second = AssetPipeline.fingerprint("styles.css", "b{}".getBytes(StandardCharsets.UTF_8));
+
+        // Then
+        assertTrue(first.matches("styles\\.[0-9a-f]{10}\\.css"));
+        assertNotEquals(first, second);
+        assertTrue(AssetPipeline.isFingerprinted(first));
+        assertFalse(AssetPipeline.isFingerprinted("jquery.min.js"));
+    }
+
+    @Test
+    void testRewriteReferences() {
+        // Given
+        Map<String, String> manifest = Map.of("styles.css", "styles.0123456789.css",
+            "js/app.js", "js/app.abcdef0123.js");
+        String html = "<link rel=\"stylesheet\" href=\"styles.css\">\n"
+            + "<script src=\"js/app.js?v=1\"></script>\n"
+            + "<script src=\"https://cdn.example.com/styles.css\"></script>\n"
+            + "<a href=\"#\" onclick=\"window.location.href='styles.css'\">x</a>";
+
+        // When
+        String rewritten = AssetPipeline.rewriteReferences(html, "", manifest);
+
+        // Then 外部地址和脚本中的字符串不变
+        assertEquals("<link rel=\"stylesheet\" href=\"styles.0123456789.css\">\n"
+            + "<script src=\"js/app.abcdef0123.js?v=1\"></script>\n"
+            + "<script src=\"https://cdn.example.com/styles.css\"></script>\n"
+            + "<a href=\"#\" onclick=\"window.location.href='styles.css'\">x</a>", rewritten);
+    }
+
+    @Test
+    void testProcessWritesHashedFilesAndManifest() throws IOException {
+        // Given
+        Path source = Files.createTempDirectory("static");
+        Path output = Files.createTempDirectory("classes").resolve("static");
+        Files.writeString(source.resolve("styles.css"), "body {\n    margin: 0;\n}\n");
+        Files.writeString(source.resolve("login.html"), "<link href=\"styles.css\">");
+
+        // When 重复执行结果不变
+        Map<String, String> manifest = AssetPipeline.process(source, output);
+        Map<String, String> again = AssetPipeline.process(source, output);
+
+        // Then 源文件不修改
+        String hashed = manifest.get("styles.css");
+        assertEquals(manifest, again);
+        assertEquals("body {\n    margin: 0;\n}\n", Files.readString(output.resolve(hashed)));
+        assertEquals("<link href=\"" + hashed + "\">", Files.readString(output.resolve("login.html")));
+        assertTrue(Files.readString(output.resolve(AssetPipeline.MANIFEST)).contains("\"styles.css\": \"" + hashed + "\""));
+        assertEquals("body {\n    margin: 0;\n}\n", Files.readString(source.resolve("styles.css")));
+        assertEquals("<link href=\"styles.css\">", Files.readString(source.resolve("login.html")));
+    }
+
+    @Test
+    void testScriptsAreCopiedUnchanged() throws IOException {
+        // Given 嵌套模板字符串中的//和右括号后的正则表达式
+        Path source = Files.createTempDirectory("static");
+        Path output = Files.createTempDirectory("classes").resolve("static");
+        String js = "// 配置\nconst url = `${ok ? `https://x` : ''}`;\n"
+            + "if (a) /x  y/.test(s)\nconst half = total / 2;\n";
+        Files.writeString(source.resolve("script.js"), js);
+
+        // When
+        Map<String, String> manifest = AssetPipeline.process(source, output);
+
+        // Then
+        assertEquals(js, Files.readString(output.resolve("script.js")));
+        assertEquals(js, Files.readString(output.resolve(manifest.get("script.js"))));
+    }
+
+    @Test
+    void testChangedSourceLeavesNoStaleOutputs() throws IOException {
+        // Given
+        Path source = Files.createTempDirectory("static");
+        Path output = Files.createTempDirectory("classes").resolve("static");
+        Files.writeString(source.resolve("styles.css"), "a{}");
+        Files.writeString(source.resolve("old.js"), "var a = 1;");
+        String first = AssetPipeline.process(source, output).get("styles.css");
+
+        // When 修改和删除源文件后重新构建
+        Files.writeString(source.resolve("styles.css"), "b{}");
+        Files.delete(source.resolve("old.js"));
+        Map<String, String> manifest = AssetPipeline.process(source, output);
+
+        // Then 上次生成的文件被清理，清单只包含当前的文件
+        assertEquals(Set.of("styles.css"), manifest.keySet());
+        assertNotEquals(first, manifest.get("styles.css"));
+        assertFalse(Files.exists(output.resolve(first)));
+        assertFalse(Files.exists(output.resolve("old.js")));
+        try (Stream<Path> files = Files.list(output)) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().startsWith("old.")));
+        }
+    }
+
+    @Test
+    void testBrotliVariantsAreGeneratedForTextFiles() throws IOException {
+        assumeTrue(Brotli4jLoader.isAvailable(), "brotli native library not available");
+
+        // Given
+        Path source = Files.createTempDirectory("static");
+        Path output = Files.createTempDirectory("classes").resolve("static");
+        String css = "body {\n    margin: 0;\n}\n".repeat(50);
+        Files.writeString(source.resolve("styles.css"), css);
+        Files.write(source.resolve("logo.png"), new byte[] {1, 2, 3});
+
+        // When
+        Map<String, String> manifest = AssetPipeline.process(source, output);
+
+        // Then 原文件名和带指纹的文件都有.br版本，二进制文件没有
+        Path hashed = output.resolve(manifest.get("styles.css"));
+        byte[] brotli = Files.readAllBytes(hashed.resolveSibling(hashed.getFileName() + ".br"));
+        assertArrayEquals(Files.readAllBytes(hashed), Decoder.decompress(brotli).getDecompressedData());
+        assertTrue(Files.exists(output.resolve("styles.css.br")));
+        assertFalse(Files.exists(output.resolve("logo.png.br")));
+    }
+}
@@ -0,0 +1,23 @@
+package com.milkpudding.common.monitor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * 虚拟线程监控自动配置
+ * spring.threads.virtual.enabled=true 时装配固定监控；以aot-cds profile开启AOT运行时，该条件在构建时固定
+ */
+@AutoConfiguration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadMonitorAutoConfiguration {
+
+    @Bean
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            @Value("${app.virtual-threads.pinning.threshold:20}") long thresholdMillis,
+            @Value("${app.virtual-threads.pinning.max-sites:100}") int maxSites) {
+        return new VirtualThreadPinningMonitor(thresholdMillis, maxSites);
+    }
+}
@@ -0,0 +1,219 @@
+package com.milkpudding.common.monitor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 虚拟线程固定（pinning）监控
+ * 虚拟线程在synchronized块内或本地方法中阻塞时不能从载体线程卸载，载体线程被一起占住，
+ * 这类位置同时阻塞的请求多了，虚拟线程模式就退化为载体线程数大小的线程池。
+ * 通过JFR的jdk.VirtualThreadPinned事件在进程内统计阻塞时间超过阈值的固定，按发生位置聚合，
+ * 每个位置第一次出现时打印调用栈；统计通过 /actuator/virtualthreads 和 jvm.threads.virtual.pinned 指标查看。
+ * 由VirtualThreadMonitorAutoConfiguration在虚拟线程模式下装配
+ */
+@Slf4j
+@Endpoint(id = "virtualthreads")
+public class VirtualThreadPinningMonitor implements SmartLifecycle, MeterBinder {
+
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private static final String APPLICATION_PACKAGE = "com.milkpudding.";
+    private static final int STACK_DEPTH = 16;
+
+    private final Duration threshold;
+    private final int maxSites;
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+    private final LongAdder pinned = new LongAdder();
+    private final LongAdder pinnedNanos = new LongAdder();
+    // 位置数达到上限后新位置只计入总数
+    private final LongAdder untracked = new LongAdder();
+
+    private volatile RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(long thresholdMillis, int maxSites) {
+        this.threshold = Duration.ofMillis(thresholdMillis);
+        this.maxSites = maxSites;
+    }
+
+    @Override
+    public void start() {
+        try {
+            RecordingStream recording = new RecordingStream();
+            recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+            recording.onEvent(PINNED_EVENT, this::record);
+            recording.startAsync();
+            stream = recording;
+            log.info("Virtual thread pinning monitor started, threshold {}ms", threshold.toMillis());
+        } catch (RuntimeException e) {
+            // 部分运行环境不允许JFR，监控不可用不影响服务
+            log.warn("Virtual thread pinning monitor disabled, JFR unavailable: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void stop() {
+        RecordingStream recording = stream;
+        stream = null;
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return stream != null;
+    }
+
+    /**
+     * 固定统计，按次数从多到少排列位置
+     */
+    @ReadOperation
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("monitoring", isRunning());
+        stats.put("thresholdMillis", threshold.toMillis());
+        stats.put("pinned", pinned.sum());
+        stats.put("pinnedMillis", TimeUnit.NANOSECONDS.toMillis(pinnedNanos.sum()));
+        stats.put("untracked", untracked.sum());
+        List<Map<String, Object>> siteStats = new ArrayList<>();
+        sites.values().stream()
+            .sorted(Comparator.comparingLong(Site::count).reversed())
+            .forEach(site -> siteStats.add(site.toMap()));
+        stats.put("sites", siteStats);
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jvm.threads.virtual.pinned", pinned, LongAdder::sum)
+            .description("Virtual threads that blocked while pinned to their carrier for longer than the threshold")
+            .register(registry);
+        FunctionTimer.builder("jvm.threads.virtual.pinned.duration", this,
+                monitor -> monitor.pinned.sum(), monitor -> monitor.pinnedNanos.sum(), TimeUnit.NANOSECONDS)
+            .description("Time virtual threads spent blocked while pinned to their carrier")
+            .register(registry);
+    }
+
+    private void record(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        List<String> frames = new ArrayList<>();
+        if (stackTrace != null) {
+            for (RecordedFrame frame : stackTrace.getFrames()) {
+                if (frame.isJavaFrame()) {
+                    frames.add(frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + ":" + frame.getLineNumber());
+                }
+            }
+        }
+        record(event.getDuration(), frames);
+    }
+
+    /**
+     * 记录一次固定，位置取调用栈中第一个非JDK的帧，即在持有监视器时阻塞的应用或第三方库代码
+     */
+    void record(Duration duration, List<String> frames) {
+        long nanos = duration.toNanos();
+        pinned.increment();
+        pinnedNanos.add(nanos);
+
+        String key = site(frames);
+        Site site = sites.get(key);
+        if (site == null) {
+            if (sites.size() >= maxSites) {
+                untracked.increment();
+                return;
+            }
+            Site created = new Site(key, caller(frames), frames.subList(0, Math.min(STACK_DEPTH, frames.size())));
+            site = sites.putIfAbsent(key, created);
+            if (site == null) {
+                site = created;
+                log.warn("Virtual thread pinned for {}ms at {}, blocking while holding a monitor keeps the carrier thread busy:\n\tat {}",
+                    duration.toMillis(), key, String.join("\n\tat ", site.stack));
+            }
+        }
+        site.record(nanos);
+    }
+
+    private static String site(List<String> frames) {
+        for (String frame : frames) {
+            if (!isJdkFrame(frame)) {
+                return frame;
+            }
+        }
+        return frames.isEmpty() ? "unknown" : frames.get(0);
+    }
+
+    /**
+     * 调用栈中第一个本项目的帧，便于定位是哪个接口触发的
+     */
+    private static String caller(List<String> frames) {
+        for (String frame : frames) {
+            if (frame.startsWith(APPLICATION_PACKAGE)) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isJdkFrame(String frame) {
+        return frame.startsWith("java.") || frame.startsWith("jdk.") || frame.startsWith("sun.")
+            || frame.startsWith("javax.");
+    }
+
+    private static final class Site {
+        private final String location;
+        private final String caller;
+        private final List<String> stack;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        Site(String location, String caller, List<String> stack) {
+            this.location = location;
+            this.caller = caller;
+            this.stack = List.copyOf(stack);
+        }
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("location", location);
+            map.put("caller", caller);
+            map.put("count", count.sum());
+            map.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(totalNanos.sum()));
+            map.put("maxMillis", TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+            map.put("stack", stack);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.milkpudding.common.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 请求ID过滤器
+ * 从网关转发的X-Request-Id（或traceparent中的traceId）获取请求ID放入MDC，
+ * 使本服务的日志可以和网关日志按请求ID关联。
+ * 请求ID会写入日志和响应头，客户端传入的值超长或含有字母、数字和-_.:以外的字符时不采用；
+ * 没有可用的ID时按网关traceId的格式生成32位十六进制ID
+ */
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestIdFilter extends OncePerRequestFilter {
+
+    public static final String MDC_KEY = "requestId";
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+    private static final String TRACEPARENT_HEADER = "traceparent";
+
+    static final int MAX_LENGTH = 64;
+    private static final int TRACEPARENT_LENGTH = 55;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String requestId = resolveRequestId(request);
+        MDC.put(MDC_KEY, requestId);
+        if (!isAsyncDispatch(request)) {
+            response.setHeader(REQUEST_ID_HEADER, requestId);
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            MDC.remove(MDC_KEY);
+        }
+    }
+
+    /**
+     * 返回Mono的接口在异步派发时完成响应，异步派发同样需要设置MDC
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    static String resolveRequestId(HttpServletRequest request) {
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        if (isValidRequestId(requestId)) {
+            return requestId;
+        }
+        // traceparent格式：00-<traceId>-<spanId>-<flags>
+        String traceparent = request.getHeader(TRACEPARENT_HEADER);
+        if (traceparent != null && traceparent.length() == TRACEPARENT_LENGTH && isLowerHex(traceparent, 3, 35)) {
+            return traceparent.substring(3, 35);
+        }
+        return newRequestId();
+    }
+
+    static boolean isValidRequestId(String requestId) {
+        if (requestId == null || requestId.isEmpty() || requestId.length() > MAX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < requestId.length(); i++) {
+            char c = requestId.charAt(i);
+            boolean allowed = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '_' || c == '.' || c == ':';
+            if (!allowed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 生成128位随机ID，与网关生成的traceId格式相同
+     */
+    static String newRequestId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] id = new char[32];
+        putHex(id, 0, random.nextLong());
+        putHex(id, 16, random.nextLong());
+        return new String(id);
+    }
+
+    private static boolean isLowerHex(String value, int from, int to) {
+        boolean nonZero = false;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+            nonZero |= c != '0';
+        }
+        // 全0的traceId无效
+        return nonZero;
+    }
+
+    private static void putHex(char[] target, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            target[offset + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.milkpudding.common.monitor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * VirtualThreadPinningMonitor 测试类
+ */
+class VirtualThreadPinningMonitorTest {
+
+    private final Object lock = new Object();
+
+    private VirtualThreadPinningMonitor monitor;
+
+    @AfterEach
+    void tearDown() {
+        if (monitor != null) {
+            monitor.stop();
+        }
+    }
+
+    @Test
+    void testDetectsBlockingInsideSynchronized() throws Exception {
+        // Given
+        monitor = new VirtualThreadPinningMonitor(10, 100);
+        monitor.start();
+
+        // When 虚拟线程持有监视器时休眠
+        Thread.ofVirtual().start(() -> {
+            synchronized (lock) {
+                sleep(50);
+            }
+        }).join();
+
+        // Then JFR事件异步送达
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (pinned() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(1L, pinned());
+        Map<String, Object> site = sites().get(0);
+        assertTrue(site.get("location").toString().startsWith(VirtualThreadPinningMonitorTest.class.getName()));
+        assertTrue((Long) site.get("maxMillis") >= 40);
+    }
+
+    @Test
+    void testParkingOutsideSynchronizedIsNotReported() throws Exception {
+        // Given
+        monitor = new VirtualThreadPinningMonitor(10, 100);
+        monitor.start();
+
+        // When
+        Thread.ofVirtual().start(() -> sleep(50)).join();
+        Thread.sleep(2000);
+
+        // Then
+        assertEquals(0L, pinned());
+    }
+
+    @Test
+    void testAggregatesBySiteUpToLimit() {
+        // Given
+        monitor = new VirtualThreadPinningMonitor(20, 2);
+        List<String> okhttp = List.of("java.lang.VirtualThread.parkOnCarrierThread:675",
+            "okhttp3.internal.http2.Http2Writer.flush:120", "com.milkpudding.api.service.ExternalApiService.getPostWithFeign:31");
+
+        // When
+        monitor.record(Duration.ofMillis(30), okhttp);
+        monitor.record(Duration.ofMillis(90), okhttp);
+        monitor.record(Duration.ofMillis(25), List.of("org.example.Cache.load:10"));
+        monitor.record(Duration.ofMillis(25), List.of("org.example.Other.load:20"));
+
+        // Then 第三个位置超过上限，只计入总数
+        assertEquals(4L, pinned());
+        assertEquals(1L, monitor.getStats().get("untracked"));
+        Map<String, Object> top = sites().get(0);
+        assertEquals("okhttp3.internal.http2.Http2Writer.flush:120", top.get("location"));
+        assertEquals("com.milkpudding.api.service.ExternalApiService.getPostWithFeign:31", top.get("caller"));
+        assertEquals(2L, top.get("count"));
+        assertEquals(90L, top.get("maxMillis"));
+        assertEquals(120L, top.get("totalMillis"));
+    }
+
+    private long pinned() {
+        return (Long) monitor.getStats().get("pinned");
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> sites() {
+        return (List<Map<String, Object>>) monitor.getStats().get("sites");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
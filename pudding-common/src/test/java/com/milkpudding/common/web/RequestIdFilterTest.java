@@ -0,0 +1,99 @@
+package com.milkpudding.common.web;
+
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RequestIdFilter 测试类
+ */
+class RequestIdFilterTest {
+
+    private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+
+    private final RequestIdFilter filter = new RequestIdFilter();
+
+    @Test
+    void testForwardedRequestIdIsUsedInMdcAndResponse() throws Exception {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(RequestIdFilter.REQUEST_ID_HEADER, TRACE_ID);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> logged = new AtomicReference<>();
+
+        // When
+        filter.doFilter(request, response, new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest req, ServletResponse res) {
+                logged.set(MDC.get(RequestIdFilter.MDC_KEY));
+            }
+        });
+
+        // Then 请求结束后MDC被清理
+        assertEquals(TRACE_ID, logged.get());
+        assertEquals(TRACE_ID, response.getHeader(RequestIdFilter.REQUEST_ID_HEADER));
+        assertNull(MDC.get(RequestIdFilter.MDC_KEY));
+    }
+
+    @Test
+    void testInvalidRequestIdIsRegenerated() {
+        // Given 换行可以伪造日志行，超长值会撑大每一行日志
+        String[] invalid = {"", "abc\r\nFAKE LOG", "id with space", "<script>", "a".repeat(RequestIdFilter.MAX_LENGTH + 1)};
+
+        for (String value : invalid) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.addHeader(RequestIdFilter.REQUEST_ID_HEADER, value);
+
+            // When
+            String requestId = RequestIdFilter.resolveRequestId(request);
+
+            // Then
+            assertNotEquals(value, requestId);
+            assertTrue(requestId.matches("[0-9a-f]{32}"), requestId);
+        }
+    }
+
+    @Test
+    void testAcceptedCharacters() {
+        // When & Then
+        assertTrue(RequestIdFilter.isValidRequestId("req-1_2.3:4"));
+        assertTrue(RequestIdFilter.isValidRequestId("a".repeat(RequestIdFilter.MAX_LENGTH)));
+        assertFalse(RequestIdFilter.isValidRequestId(null));
+        assertFalse(RequestIdFilter.isValidRequestId("请求"));
+    }
+
+    @Test
+    void testTraceIdFromTraceparentIsUsedWhenRequestIdIsMissing() {
+        // Given
+        MockHttpServletRequest valid = new MockHttpServletRequest();
+        valid.addHeader("traceparent", "00-" + TRACE_ID + "-00f067aa0ba902b7-01");
+        MockHttpServletRequest malformed = new MockHttpServletRequest();
+        malformed.addHeader("traceparent", "00-" + TRACE_ID.toUpperCase() + "-00f067aa0ba902b7-01");
+        MockHttpServletRequest zero = new MockHttpServletRequest();
+        zero.addHeader("traceparent", "00-" + "0".repeat(32) + "-00f067aa0ba902b7-01");
+
+        // When & Then
+        assertEquals(TRACE_ID, RequestIdFilter.resolveRequestId(valid));
+        assertNotEquals(TRACE_ID.toUpperCase(), RequestIdFilter.resolveRequestId(malformed));
+        assertNotEquals("0".repeat(32), RequestIdFilter.resolveRequestId(zero));
+    }
+
+    @Test
+    void testGeneratedIdsMatchGatewayTraceIdFormat() {
+        // When
+        String first = RequestIdFilter.newRequestId();
+        String second = RequestIdFilter.newRequestId();
+
+        // Then
+        assertTrue(first.matches("[0-9a-f]{32}"), first);
+        assertNotEquals(first, second);
+    }
+}
@@ -0,0 +1,19 @@
+package com.milkpudding.gateway.accesslog;
+
+/**
+ * 访问日志记录
+ * 环形缓冲区中预先分配的槽位，生产者填充字段后发布，写入线程读取后槽位被复用
+ */
+final class AccessLogEntry {
+
+    long timestamp;             // 请求开始时间（毫秒）
+    String requestId;
+    String clientIp;
+    String method;
+    String path;
+    int status;
+    long durationMicros;
+
+    // 已发布的序号，写入线程据此判断槽位是否可读
+    volatile long sequence = -1;
+}
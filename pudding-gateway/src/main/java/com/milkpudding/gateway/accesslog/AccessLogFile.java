@@ -0,0 +1,124 @@
+package com.milkpudding.gateway.accesslog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 按大小滚动的访问日志文件，只由写入线程访问
+ * 默认通过FileChannel追加写入；开启内存映射时按固定大小的段映射文件并直接写入映射区，
+ * 文件关闭或滚动时截断到实际写入的长度。
+ * 滚动时access.log依次重命名为access.log.1、access.log.2...，超过保留数量的最旧文件被删除
+ */
+final class AccessLogFile implements AutoCloseable {
+
+    private static final long SEGMENT_BYTES = 8L * 1024 * 1024;
+    private static final long MIN_FILE_BYTES = 64 * 1024;
+
+    private final Path path;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final boolean memoryMapped;
+    private final long segmentBytes;
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private long size;
+
+    AccessLogFile(Path path, long maxFileBytes, int maxFiles, boolean memoryMapped) throws IOException {
+        this.path = path;
+        this.maxFileBytes = Math.max(MIN_FILE_BYTES, maxFileBytes);
+        this.maxFiles = Math.max(1, maxFiles);
+        this.memoryMapped = memoryMapped;
+        this.segmentBytes = Math.min(SEGMENT_BYTES, this.maxFileBytes);
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        open();
+    }
+
+    /**
+     * 写入一批记录，写完后buffer被清空
+     */
+    void write(ByteBuffer buffer) throws IOException {
+        if (size + buffer.remaining() > maxFileBytes && size > 0) {
+            roll();
+        }
+        if (memoryMapped) {
+            writeMapped(buffer);
+        } else {
+            while (buffer.hasRemaining()) {
+                size += channel.write(buffer);
+            }
+        }
+        buffer.clear();
+    }
+
+    long size() {
+        return size;
+    }
+
+    private void writeMapped(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (segment == null || !segment.hasRemaining()) {
+                segmentStart = size;
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, segmentStart, segmentBytes);
+            }
+            int length = Math.min(buffer.remaining(), segment.remaining());
+            int limit = buffer.limit();
+            buffer.limit(buffer.position() + length);
+            segment.put(buffer);
+            buffer.limit(limit);
+            size += length;
+        }
+    }
+
+    private void open() throws IOException {
+        if (memoryMapped) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } else {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        size = channel.size();
+        segment = null;
+    }
+
+    private void roll() throws IOException {
+        closeChannel();
+        Files.deleteIfExists(rolledPath(maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path source = rolledPath(i);
+            if (Files.exists(source)) {
+                Files.move(source, rolledPath(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(path, rolledPath(1), StandardCopyOption.REPLACE_EXISTING);
+        open();
+    }
+
+    private Path rolledPath(int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+
+    private void closeChannel() throws IOException {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+            // 去掉映射段末尾未写入的部分
+            channel.truncate(size);
+        }
+        channel.close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeChannel();
+    }
+}
@@ -0,0 +1,80 @@
+package com.milkpudding.gateway.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多生产者单消费者无锁环形缓冲区
+ * 生产者通过CAS申请序号，填充槽位后写入槽位序号完成发布；
+ * 写入线程按序号顺序消费，遇到尚未发布的槽位即停止。缓冲区满时申请失败，不会阻塞
+ */
+final class AccessLogRingBuffer {
+
+    private final AccessLogEntry[] entries;
+    private final int mask;
+
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+
+    AccessLogRingBuffer(int size) {
+        int capacity = Integer.highestOneBit(Math.max(2, size) - 1) << 1;
+        this.entries = new AccessLogEntry[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new AccessLogEntry();
+        }
+    }
+
+    /**
+     * 申请一个序号，缓冲区满时返回-1
+     */
+    long tryClaim() {
+        while (true) {
+            long current = claimed.get();
+            if (current - consumed >= entries.length) {
+                return -1;
+            }
+            if (claimed.compareAndSet(current, current + 1)) {
+                return current;
+            }
+        }
+    }
+
+    AccessLogEntry get(long sequence) {
+        return entries[(int) sequence & mask];
+    }
+
+    /**
+     * 发布已填充的槽位
+     */
+    void publish(long sequence) {
+        get(sequence).sequence = sequence;
+    }
+
+    /**
+     * 取出下一个已发布的槽位，没有时返回null；处理完后调用release
+     */
+    AccessLogEntry poll() {
+        long next = consumed;
+        AccessLogEntry entry = get(next);
+        return entry.sequence == next ? entry : null;
+    }
+
+    /**
+     * 释放当前槽位供生产者复用，只由写入线程调用
+     */
+    void release(AccessLogEntry entry) {
+        entry.requestId = null;
+        entry.clientIp = null;
+        entry.method = null;
+        entry.path = null;
+        consumed = consumed + 1;
+    }
+
+    int capacity() {
+        return entries.length;
+    }
+
+    int size() {
+        return (int) (claimed.get() - consumed);
+    }
+}
@@ -0,0 +1,207 @@
+package com.milkpudding.gateway.accesslog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 访问日志写入线程
+ * 从环形缓冲区批量取出记录，编码为单行JSON后整批写入文件。
+ * 生产者不负责唤醒写入线程，缓冲区为空时写入线程短暂休眠后再检查，事件循环线程上没有任何系统调用
+ */
+@Slf4j
+final class AccessLogWriter implements Runnable {
+
+    private static final int BATCH_BYTES = 256 * 1024;
+    private static final int MAX_RECORD_BYTES = 16 * 1024;
+    // 单个字段最多写入的字符数，转义后最长6字节，保证一条记录不超过MAX_RECORD_BYTES
+    private static final int MAX_STRING_CHARS = 512;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final DateTimeFormatter SECOND_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss").withZone(ZoneOffset.UTC);
+
+    private final AccessLogRingBuffer ring;
+    private final AccessLogFile file;
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_BYTES);
+
+    final LongAdder written = new LongAdder();
+    final LongAdder bytesWritten = new LongAdder();
+    final LongAdder batches = new LongAdder();
+    final LongAdder writeErrors = new LongAdder();
+
+    private volatile boolean running = true;
+    private boolean failing;
+
+    // 同一秒内的记录复用格式化好的时间前缀
+    private long cachedSecond = Long.MIN_VALUE;
+    private byte[] cachedSecondBytes;
+
+    AccessLogWriter(AccessLogRingBuffer ring, AccessLogFile file) {
+        this.ring = ring;
+        this.file = file;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                if (drain() == 0) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+            }
+            // 停止前写完缓冲区中剩余的记录
+            drain();
+        } finally {
+            try {
+                file.close();
+            } catch (IOException e) {
+                log.warn("Failed to close access log file: {}", e.getMessage());
+            }
+        }
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    /**
+     * 取出当前所有已发布的记录并写入文件，返回记录数
+     */
+    int drain() {
+        int count = 0;
+        AccessLogEntry entry;
+        while ((entry = ring.poll()) != null) {
+            if (batch.remaining() < MAX_RECORD_BYTES) {
+                flush();
+            }
+            encode(entry);
+            ring.release(entry);
+            count++;
+        }
+        if (batch.position() > 0) {
+            flush();
+        }
+        if (count > 0) {
+            written.add(count);
+        }
+        return count;
+    }
+
+    private void flush() {
+        batch.flip();
+        int length = batch.remaining();
+        try {
+            file.write(batch);
+            bytesWritten.add(length);
+            batches.increment();
+            if (failing) {
+                failing = false;
+                log.info("Access log writes recovered");
+            }
+        } catch (IOException e) {
+            writeErrors.increment();
+            if (!failing) {
+                failing = true;
+                log.warn("Failed to write access log, dropping batch: {}", e.getMessage());
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * 编码为一行JSON：{"ts":...,"id":...,"ip":...,"method":...,"path":...,"status":...,"us":...}
+     */
+    private void encode(AccessLogEntry entry) {
+        batch.put((byte) '{');
+        putField("ts");
+        putTimestamp(entry.timestamp);
+        batch.put((byte) ',');
+        putField("id");
+        putString(entry.requestId);
+        batch.put((byte) ',');
+        putField("ip");
+        putString(entry.clientIp);
+        batch.put((byte) ',');
+        putField("method");
+        putString(entry.method);
+        batch.put((byte) ',');
+        putField("path");
+        putString(entry.path);
+        batch.put((byte) ',');
+        putField("status");
+        putLong(entry.status);
+        batch.put((byte) ',');
+        putField("us");
+        putLong(entry.durationMicros);
+        batch.put((byte) '}').put((byte) '\n');
+    }
+
+    private void putField(String name) {
+        batch.put((byte) '"');
+        for (int i = 0; i < name.length(); i++) {
+            batch.put((byte) name.charAt(i));
+        }
+        batch.put((byte) '"').put((byte) ':');
+    }
+
+    private void putTimestamp(long millis) {
+        long second = Math.floorDiv(millis, 1000);
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedSecondBytes = SECOND_FORMAT.format(Instant.ofEpochSecond(second)).getBytes(StandardCharsets.US_ASCII);
+        }
+        int fraction = Math.floorMod(millis, 1000);
+        batch.put((byte) '"').put(cachedSecondBytes).put((byte) '.')
+            .put((byte) ('0' + fraction / 100))
+            .put((byte) ('0' + fraction / 10 % 10))
+            .put((byte) ('0' + fraction % 10))
+            .put((byte) 'Z').put((byte) '"');
+    }
+
+    private void putLong(long value) {
+        if (value < 0) {
+            batch.put((byte) '-');
+            value = -value;
+        }
+        if (value >= 10) {
+            putLong(value / 10);
+        }
+        batch.put((byte) ('0' + value % 10));
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            batch.put((byte) 'n').put((byte) 'u').put((byte) 'l').put((byte) 'l');
+            return;
+        }
+        batch.put((byte) '"');
+        int length = Math.min(value.length(), MAX_STRING_CHARS);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                batch.put((byte) '\\').put((byte) c);
+            } else if (c < 0x20) {
+                batch.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+                    .put((byte) Character.forDigit(c >> 4, 16))
+                    .put((byte) Character.forDigit(c & 0xF, 16));
+            } else if (c < 0x80) {
+                batch.put((byte) c);
+            } else {
+                // 非ASCII字符按UTF-8编码，代理对整体处理
+                int end = Character.isHighSurrogate(c) && i + 1 < length ? i + 2 : i + 1;
+                batch.put(value.substring(i, end).getBytes(StandardCharsets.UTF_8));
+                i = end - 1;
+            }
+        }
+        batch.put((byte) '"');
+    }
+}
@@ -0,0 +1,208 @@
+package com.milkpudding.gateway.accesslog;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 结构化访问日志
+ * 每个请求写入一条记录到无锁环形缓冲区，由后台线程批量写入滚动文件。
+ * 缓冲区满时按配置丢弃并计数，或以非阻塞方式延迟完成请求直到有空位（超时后仍丢弃），不会阻塞事件循环
+ */
+@Slf4j
+@Component
+public class AccessLogger implements MeterBinder {
+
+    private static final Duration BACKPRESSURE_PAUSE = Duration.ofMillis(1);
+
+    /**
+     * 缓冲区满时的处理方式
+     */
+    public enum OverflowPolicy {
+        DROP,           // 丢弃记录并计数
+        BACKPRESSURE    // 延迟完成请求等待空位
+    }
+
+    private final boolean enabled;
+    private final String file;
+    private final OverflowPolicy policy;
+    private final long backpressureTimeoutNanos;
+
+    private final AccessLogRingBuffer ring;
+    private final AccessLogWriter writer;
+    private final Thread writerThread;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder delayed = new LongAdder();
+
+    @Autowired
+    public AccessLogger(@Value("${app.access-log.enabled:false}") boolean enabled,
+                        @Value("${app.access-log.file:logs/access.log}") String file,
+                        @Value("${app.access-log.buffer-size:65536}") int bufferSize,
+                        @Value("${app.access-log.overflow-policy:DROP}") OverflowPolicy policy,
+                        @Value("${app.access-log.backpressure-timeout:100}") long backpressureTimeoutMillis,
+                        @Value("${app.access-log.max-file-size:104857600}") long maxFileBytes,
+                        @Value("${app.access-log.max-files:10}") int maxFiles,
+                        @Value("${app.access-log.memory-mapped:false}") boolean memoryMapped) {
+        this.enabled = enabled;
+        this.file = file;
+        this.policy = policy;
+        this.backpressureTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, backpressureTimeoutMillis));
+        if (!enabled) {
+            this.ring = null;
+            this.writer = null;
+            this.writerThread = null;
+            return;
+        }
+
+        this.ring = new AccessLogRingBuffer(bufferSize);
+        try {
+            this.writer = new AccessLogWriter(ring, new AccessLogFile(Path.of(file), maxFileBytes, maxFiles, memoryMapped));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open access log file: " + file, e);
+        }
+        this.writerThread = new Thread(writer, "access-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Access log enabled, file: {}, buffer: {}, overflow policy: {}, memory mapped: {}",
+            file, ring.capacity(), policy, memoryMapped);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录一个请求，缓冲区满时按配置丢弃或延迟完成
+     *
+     * @param timestamp      请求开始时间（毫秒）
+     * @param durationMicros 处理耗时（微秒）
+     */
+    public Mono<Void> record(long timestamp, String requestId, String clientIp, String method, String path,
+                          int status, long durationMicros) {
+        if (!enabled || offer(timestamp, requestId, clientIp, method, path, status, durationMicros)) {
+            return Mono.empty();
+        }
+        if (policy == OverflowPolicy.DROP || backpressureTimeoutNanos == 0) {
+            dropped.increment();
+            return Mono.empty();
+        }
+        delayed.increment();
+        long deadline = System.nanoTime() + backpressureTimeoutNanos;
+        return retry(deadline, timestamp, requestId, clientIp, method, path, status, durationMicros);
+    }
+
+    /**
+     * 定时器线程上稍后重试，不占用事件循环
+     */
+    private Mono<Void> retry(long deadline, long timestamp, String requestId, String clientIp, String method,
+                             String path, int status, long durationMicros) {
+        return Mono.delay(BACKPRESSURE_PAUSE).then(Mono.defer(() -> {
+            if (offer(timestamp, requestId, clientIp, method, path, status, durationMicros)) {
+                return Mono.empty();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                dropped.increment();
+                return Mono.empty();
+            }
+            return retry(deadline, timestamp, requestId, clientIp, method, path, status, durationMicros);
+        }));
+    }
+
+    private boolean offer(long timestamp, String requestId, String clientIp, String method, String path,
+                          int status, long durationMicros) {
+        long sequence = ring.tryClaim();
+        if (sequence < 0) {
+            return false;
+        }
+        AccessLogEntry entry = ring.get(sequence);
+        entry.timestamp = timestamp;
+        entry.requestId = requestId;
+        entry.clientIp = clientIp;
+        entry.method = method;
+        entry.path = path;
+        entry.status = status;
+        entry.durationMicros = durationMicros;
+        ring.publish(sequence);
+        return true;
+    }
+
+    public long getWritten() {
+        return enabled ? writer.written.sum() : 0;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public int getPending() {
+        return enabled ? ring.size() : 0;
+    }
+
+    /**
+     * 获取访问日志统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        stats.put("file", file);
+        stats.put("overflowPolicy", policy.name());
+        stats.put("bufferSize", ring.capacity());
+        stats.put("pending", ring.size());
+        stats.put("written", writer.written.sum());
+        stats.put("bytesWritten", writer.bytesWritten.sum());
+        stats.put("batches", writer.batches.sum());
+        stats.put("writeErrors", writer.writeErrors.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("delayed", delayed.sum());
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        FunctionCounter.builder("gateway.accesslog.written", this, AccessLogger::getWritten)
+            .description("Access log records written to file")
+            .register(registry);
+        FunctionCounter.builder("gateway.accesslog.dropped", this, AccessLogger::getDropped)
+            .description("Access log records dropped because the buffer was full")
+            .register(registry);
+        Gauge.builder("gateway.accesslog.pending", this, AccessLogger::getPending)
+            .description("Access log records waiting to be written")
+            .register(registry);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        writer.stop();
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
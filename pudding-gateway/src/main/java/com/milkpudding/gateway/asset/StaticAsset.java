@@ -0,0 +1,159 @@
+package com.milkpudding.gateway.asset;
+
+import com.milkpudding.gateway.util.DirectBody;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 启动时加载到内存的静态文件
+ * 原文和预压缩的gzip、brotli版本各保存一份只读直接内存（DirectBody），写出时只共享同一块内存；
+ * 每个版本有各自的强ETag（按原文内容哈希，压缩版本加后缀区分）
+ */
+public final class StaticAsset {
+
+    /**
+     * 响应体编码，按优先级从低到高排列
+     */
+    public enum Encoding {
+        IDENTITY(null, ""), GZIP("gzip", "-gz"), BR("br", "-br");
+
+        private final String token;
+        private final String etagSuffix;
+
+        Encoding(String token, String etagSuffix) {
+            this.token = token;
+            this.etagSuffix = etagSuffix;
+        }
+
+        /**
+         * Content-Encoding取值，原文为null
+         */
+        public String getToken() {
+            return token;
+        }
+    }
+
+    private static final Encoding[] PREFERENCE = {Encoding.BR, Encoding.GZIP};
+
+    private final String path;
+    private final String contentType;
+    private final String cacheControl;
+    private final Variant[] variants = new Variant[Encoding.values().length];
+
+    StaticAsset(String path, String contentType, String cacheControl, String etag, byte[] content) {
+        this.path = path;
+        this.contentType = contentType;
+        this.cacheControl = cacheControl;
+        this.variants[Encoding.IDENTITY.ordinal()] = new Variant(content, etag);
+    }
+
+    /**
+     * 添加压缩版本，ETag由原文ETag加编码后缀组成
+     */
+    void addVariant(Encoding encoding, byte[] content) {
+        String etag = getEtag(Encoding.IDENTITY);
+        String tagged = etag.substring(0, etag.length() - 1) + encoding.etagSuffix + "\"";
+        variants[encoding.ordinal()] = new Variant(content, tagged);
+    }
+
+    /**
+     * 按Accept-Encoding选择已有的压缩版本，优先brotli，其次gzip，q=0表示不接受
+     */
+    public Encoding negotiate(List<String> acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return Encoding.IDENTITY;
+        }
+        for (Encoding encoding : PREFERENCE) {
+            if (variants[encoding.ordinal()] != null && accepts(acceptEncoding, encoding.token)) {
+                return encoding;
+            }
+        }
+        return Encoding.IDENTITY;
+    }
+
+    /**
+     * 响应体视图；Netty环境下包装同一块内存，不复制数据
+     */
+    public DataBuffer body(Encoding encoding, DataBufferFactory factory) {
+        return variants[encoding.ordinal()].body.wrap(factory);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getCacheControl() {
+        return cacheControl;
+    }
+
+    public String getEtag(Encoding encoding) {
+        return variants[encoding.ordinal()].etag;
+    }
+
+    public int getLength(Encoding encoding) {
+        return variants[encoding.ordinal()].body.length();
+    }
+
+    public boolean hasVariant(Encoding encoding) {
+        return variants[encoding.ordinal()] != null;
+    }
+
+    /**
+     * 是否有多个编码版本，有时响应需要Vary: Accept-Encoding
+     */
+    public boolean isCompressed() {
+        return variants[Encoding.GZIP.ordinal()] != null || variants[Encoding.BR.ordinal()] != null;
+    }
+
+    private static boolean accepts(List<String> acceptEncoding, String token) {
+        double wildcard = -1;
+        for (String header : acceptEncoding) {
+            for (String part : header.split(",")) {
+                int semicolon = part.indexOf(';');
+                String name = (semicolon < 0 ? part : part.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+                double quality = semicolon < 0 ? 1 : quality(part.substring(semicolon + 1));
+                if (name.equals(token)) {
+                    return quality > 0;
+                }
+                if (name.equals("*")) {
+                    wildcard = quality;
+                }
+            }
+        }
+        return wildcard > 0;
+    }
+
+    private static double quality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            String value = parameter.trim();
+            if (value.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(value.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * 单个编码版本的内容
+     */
+    private static final class Variant {
+        private final DirectBody body;
+        private final String etag;
+
+        Variant(byte[] content, String etag) {
+            this.body = DirectBody.of(content);
+            this.etag = etag;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.milkpudding.gateway.asset;
+
+import cn.hutool.json.JSONUtil;
+import com.milkpudding.gateway.util.EtagUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 静态文件存储
+ * 启动时把静态目录下的所有文件读入内存，按路径索引，请求时不再访问classpath或jar。
+ * 文本类文件在加载时用最高压缩级别生成gzip版本；JDK没有brotli编码器，
+ * brotli版本只从构建时生成的同名.br文件加载，同名.gz文件存在时也优先使用。
+ * 有构建时pudding-assets模块的AssetPipeline生成的清单时，清单中带指纹的文件返回长期不可变缓存，HTML页面每次用ETag验证，
+ * 页面引用的CSS、JS在再次访问时不产生请求
+ */
+@Slf4j
+@Component
+public class StaticAssetStore {
+
+    /**
+     * 清单文件名：原文件相对路径 -> 带指纹的相对路径，由AssetPipeline在构建时生成
+     */
+    static final String MANIFEST = "asset-manifest.json";
+
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final String BROTLI_SUFFIX = ".br";
+    // 压缩后不小于原文的这个比例时不保留压缩版本
+    private static final double MIN_COMPRESSION_RATIO = 0.9;
+    private static final String NO_CACHE = "no-cache";
+
+    private final ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+    private final String location;
+    private final String cacheControl;
+    private final String immutableCacheControl;
+    private final int compressMinSize;
+    private final Set<String> excludes;
+
+    private volatile Map<String, StaticAsset> assets = Map.of();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder[] served = new LongAdder[StaticAsset.Encoding.values().length];
+
+    public StaticAssetStore(@Value("${app.static.location:classpath*:static/}") String location,
+                            @Value("${app.static.max-age:3600}") long maxAgeSeconds,
+                            @Value("${app.static.immutable-max-age:31536000}") long immutableMaxAgeSeconds,
+                            @Value("${app.static.compress-min-size:256}") int compressMinSize,
+                            @Value("${app.static.excludes:README.md}") List<String> excludes) {
+        this.location = location.endsWith("/") ? location : location + "/";
+        this.cacheControl = "public, max-age=" + maxAgeSeconds;
+        this.immutableCacheControl = "public, max-age=" + immutableMaxAgeSeconds + ", immutable";
+        this.compressMinSize = compressMinSize;
+        this.excludes = new HashSet<>(excludes);
+        for (int i = 0; i < served.length; i++) {
+            served[i] = new LongAdder();
+        }
+        load();
+    }
+
+    /**
+     * 按请求路径查找静态文件，不存在时返回null
+     */
+    public StaticAsset find(String path) {
+        return assets.get(path);
+    }
+
+    /**
+     * 记录一次请求的结果
+     */
+    public void recordHit(StaticAsset.Encoding encoding, boolean notModifiedResponse) {
+        hits.increment();
+        if (notModifiedResponse) {
+            notModified.increment();
+        } else {
+            served[encoding.ordinal()].increment();
+        }
+    }
+
+    public int size() {
+        return assets.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long[] bytes = new long[StaticAsset.Encoding.values().length];
+        for (StaticAsset asset : assets.values()) {
+            for (StaticAsset.Encoding encoding : StaticAsset.Encoding.values()) {
+                if (asset.hasVariant(encoding)) {
+                    bytes[encoding.ordinal()] += asset.getLength(encoding);
+                }
+            }
+        }
+        Map<String, Object> encodings = new HashMap<>();
+        for (StaticAsset.Encoding encoding : StaticAsset.Encoding.values()) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("bytes", bytes[encoding.ordinal()]);
+            item.put("served", served[encoding.ordinal()].sum());
+            encodings.put(encoding.name().toLowerCase(Locale.ROOT), item);
+        }
+        stats.put("assets", assets.size());
+        stats.put("encodings", encodings);
+        stats.put("hits", hits.sum());
+        stats.put("notModified", notModified.sum());
+        return stats;
+    }
+
+    /**
+     * 读取静态目录下的所有文件，整体替换索引
+     */
+    private void load() {
+        Map<String, byte[]> files = new HashMap<>();
+        try {
+            for (Resource root : resolver.getResources(location)) {
+                String rootUrl = root.getURL().toString();
+                for (Resource resource : resolver.getResources(rootUrl + "**")) {
+                    String url = resource.getURL().toString();
+                    if (!resource.isReadable() || url.endsWith("/") || !url.startsWith(rootUrl)) {
+                        continue;
+                    }
+                    // 多个classpath根目录有同名文件时，与ClassPathResource一样取第一个
+                    files.putIfAbsent("/" + url.substring(rootUrl.length()), read(resource));
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to load static assets from {}: {}", location, e.getMessage());
+            return;
+        }
+
+        byte[] manifest = files.remove("/" + MANIFEST);
+        Set<String> fingerprinted = manifest != null ? fingerprinted(manifest) : Set.of();
+
+        Map<String, StaticAsset> loaded = new HashMap<>();
+        files.forEach((path, content) -> {
+            if (path.endsWith(GZIP_SUFFIX) || path.endsWith(BROTLI_SUFFIX) || isExcluded(path)) {
+                return;
+            }
+            MediaType mediaType = mediaType(path);
+            String control = fingerprinted.contains(path) ? immutableCacheControl
+                // 引用带指纹文件的页面必须每次验证，否则会引用已不存在的旧文件
+                : manifest != null && isHtml(mediaType) ? NO_CACHE : cacheControl;
+            loaded.put(path, build(path, content, files.get(path + GZIP_SUFFIX), files.get(path + BROTLI_SUFFIX),
+                control));
+        });
+        this.assets = Map.copyOf(loaded);
+        log.info("Loaded {} static assets ({} fingerprinted) from {}", loaded.size(), fingerprinted.size(), location);
+    }
+
+    StaticAsset build(String path, byte[] content, byte[] gzip, byte[] brotli, String control) {
+        MediaType mediaType = mediaType(path);
+        StaticAsset asset = new StaticAsset(path, mediaType.toString(), control,
+            EtagUtil.of(content, content.length), content);
+
+        if (content.length >= compressMinSize && isText(mediaType)) {
+            byte[] gzipped = gzip != null ? gzip : gzip(content);
+            if (gzipped.length < content.length * MIN_COMPRESSION_RATIO) {
+                asset.addVariant(StaticAsset.Encoding.GZIP, gzipped);
+            }
+            if (brotli != null && brotli.length < content.length * MIN_COMPRESSION_RATIO) {
+                asset.addVariant(StaticAsset.Encoding.BR, brotli);
+            }
+        }
+        return asset;
+    }
+
+    /**
+     * 清单中带指纹的文件路径
+     */
+    private Set<String> fingerprinted(byte[] manifest) {
+        try {
+            Map<?, ?> entries = JSONUtil.toBean(new String(manifest, StandardCharsets.UTF_8), Map.class);
+            Set<String> paths = new HashSet<>();
+            for (Object hashed : entries.values()) {
+                paths.add("/" + hashed);
+            }
+            return paths;
+        } catch (RuntimeException e) {
+            log.warn("Ignoring invalid {}: {}", MANIFEST, e.getMessage());
+            return Set.of();
+        }
+    }
+
+    private static MediaType mediaType(String path) {
+        MediaType mediaType = MediaTypeFactory.getMediaType(path).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        if (isText(mediaType) && mediaType.getCharset() == null) {
+            mediaType = new MediaType(mediaType, StandardCharsets.UTF_8);
+        }
+        return mediaType;
+    }
+
+    private static boolean isHtml(MediaType mediaType) {
+        return "text".equals(mediaType.getType()) && "html".equals(mediaType.getSubtype());
+    }
+
+    private boolean isExcluded(String path) {
+        return excludes.contains(path.substring(path.lastIndexOf('/') + 1));
+    }
+
+    /**
+     * 文本类文件（包括SVG）按UTF-8返回并压缩，图片、字体等已压缩的格式不再压缩
+     */
+    private static boolean isText(MediaType mediaType) {
+        return "text".equals(mediaType.getType())
+            || mediaType.getSubtype().contains("javascript")
+            || mediaType.getSubtype().contains("json")
+            || mediaType.getSubtype().contains("xml");
+    }
+
+    private static byte[] read(Resource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
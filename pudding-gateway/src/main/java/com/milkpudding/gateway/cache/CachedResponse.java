@@ -0,0 +1,77 @@
+package com.milkpudding.gateway.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 缓存的响应
+ * 只保存需要回放的响应头，响应体为只读缓冲区（堆内或直接内存），写出时复制视图而不复制数据
+ */
+public final class CachedResponse {
+
+    private final int status;
+    private final String[][] headers;
+    private final ByteBuffer body;
+    private final String etag;
+    private final long createdMillis;
+    private final long expiresAtNanos;
+
+    public CachedResponse(int status, String[][] headers, ByteBuffer body, String etag,
+                          long createdMillis, long expiresAtNanos) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body.asReadOnlyBuffer();
+        this.etag = etag;
+        this.createdMillis = createdMillis;
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    /**
+     * 复制一份响应体在直接内存中的缓存，用于移入堆外层
+     */
+    CachedResponse toDirect() {
+        ByteBuffer direct = ByteBuffer.allocateDirect(body.remaining()).put(body.duplicate()).flip();
+        return new CachedResponse(status, headers, direct, etag, createdMillis, expiresAtNanos);
+    }
+
+    public boolean isExpired(long nowNanos) {
+        return nowNanos - expiresAtNanos >= 0;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * 响应头名称和值，调用方不可修改
+     */
+    public String[][] getHeaders() {
+        return headers;
+    }
+
+    /**
+     * 响应体的独立视图
+     */
+    public ByteBuffer body() {
+        return body.duplicate();
+    }
+
+    public int size() {
+        return body.remaining();
+    }
+
+    public boolean isDirect() {
+        return body.isDirect();
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    public long getExpiresAtNanos() {
+        return expiresAtNanos;
+    }
+}
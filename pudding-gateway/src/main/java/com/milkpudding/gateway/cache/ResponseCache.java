@@ -0,0 +1,448 @@
+package com.milkpudding.gateway.cache;
+
+import com.milkpudding.gateway.filter.AuthFilter;
+import com.milkpudding.gateway.util.BodyCollector;
+import com.milkpudding.gateway.util.EtagUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 网关响应缓存
+ * 保存可缓存的GET响应，遵循上游的Cache-Control，为响应生成ETag；
+ * 缓存key由路由、路径、查询参数和规范化的Accept组成，按用户缓存时再加上鉴权后的用户ID（即转发的X-User-Id）。
+ * 下游按Accept协商JSON或CBOR/Smile且不返回Vary: Accept，因此只缓存JSON响应
+ */
+@Component
+public class ResponseCache implements MeterBinder {
+
+    /**
+     * 未命中时登记待缓存的响应，由ResponseCaptureFilter在写出响应时读取
+     */
+    public static final String CAPTURE_ATTR = ResponseCache.class.getName() + ".capture";
+
+    // 回放的上游响应头，CORS等响应头由网关按请求生成
+    private static final List<String> REPLAYED_HEADERS = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LANGUAGE,
+        HttpHeaders.CACHE_CONTROL, HttpHeaders.LAST_MODIFIED);
+
+    // 不影响响应内容的Vary取值，其他取值的响应不缓存
+    private static final Set<String> IGNORED_VARY = Set.of("origin", "access-control-request-method",
+        "access-control-request-headers");
+
+    private final ResponseCacheStore store;
+    private final int maxBodySize;
+    private final Map<String, RouteStats> routes = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry registry;
+
+    public ResponseCache(@Value("${app.cache.max-size:67108864}") long maxSize,
+                         @Value("${app.cache.off-heap.enabled:false}") boolean offHeapEnabled,
+                         @Value("${app.cache.off-heap.max-size:268435456}") long maxOffHeapSize,
+                         @Value("${app.cache.max-body-size:1048576}") int maxBodySize) {
+        this.store = new ResponseCacheStore(maxSize, offHeapEnabled ? maxOffHeapSize : 0);
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * 生成缓存key，按用户缓存但请求没有经过鉴权时返回null，不使用缓存。
+     * 用户ID取AuthFilter验证token后记录的值，不信任客户端自带的X-User-Id请求头
+     */
+    public String key(String routeId, ServerWebExchange exchange, boolean perUser) {
+        ServerHttpRequest request = exchange.getRequest();
+        StringBuilder key = new StringBuilder(routeId).append(' ').append(request.getURI().getRawPath());
+        String query = request.getURI().getRawQuery();
+        if (query != null) {
+            key.append('?').append(query);
+        }
+        if (perUser) {
+            String userId = exchange.getAttribute(AuthFilter.USER_ID_ATTR);
+            if (userId == null || userId.isEmpty()) {
+                return null;
+            }
+            key.append(" user=").append(userId);
+        }
+        key.append(" accept=").append(normalizedAccept(request.getHeaders()));
+        return key.toString();
+    }
+
+    /**
+     * 去掉空白并转为小写的Accept，多个Accept请求头按顺序用逗号连接；没有Accept时与接受任意类型相同
+     */
+    static String normalizedAccept(HttpHeaders headers) {
+        List<String> values = headers.get(HttpHeaders.ACCEPT);
+        StringBuilder accept = new StringBuilder();
+        if (values != null) {
+            for (String value : values) {
+                if (!accept.isEmpty()) {
+                    accept.append(',');
+                }
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    if (!Character.isWhitespace(c)) {
+                        accept.append(Character.toLowerCase(c));
+                    }
+                }
+            }
+        }
+        return accept.isEmpty() ? MediaType.ALL_VALUE : accept.toString();
+    }
+
+    /**
+     * 查找缓存响应并记录命中或未命中
+     */
+    public CachedResponse get(String routeId, String key) {
+        CachedResponse cached = store.get(key);
+        RouteStats stats = routeStats(routeId);
+        if (cached != null) {
+            stats.hits.increment();
+        } else {
+            stats.misses.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * 写请求成功后删除该路由下该路径及其子路径的缓存，以及上一级集合路径的缓存，所有用户的条目一并删除。
+     * 返回删除的条目数
+     */
+    public int invalidate(String routeId, String rawPath) {
+        String path = rawPath.endsWith("/") ? rawPath.substring(0, rawPath.length() - 1) : rawPath;
+        String prefix = routeId + ' ' + path;
+        int slash = path.lastIndexOf('/');
+        String parent = slash > 0 ? routeId + ' ' + path.substring(0, slash) : null;
+        int removed = store.removeIf(key -> keyPathStartsWith(key, prefix, true)
+            || (parent != null && keyPathStartsWith(key, parent, false)));
+        if (removed > 0) {
+            routeStats(routeId).invalidations.add(removed);
+        }
+        return removed;
+    }
+
+    /**
+     * key中的路径等于给定路径，或在允许时位于其下；路径之后是查询串、用户ID或结尾
+     */
+    private static boolean keyPathStartsWith(String key, String prefix, boolean descendants) {
+        if (!key.startsWith(prefix)) {
+            return false;
+        }
+        if (key.length() == prefix.length()) {
+            return true;
+        }
+        char next = key.charAt(prefix.length());
+        return next == '?' || next == ' ' || (descendants && next == '/');
+    }
+
+    public void recordNotModified(String routeId) {
+        routeStats(routeId).notModified.increment();
+    }
+
+    public void recordServed(String routeId, int bytes) {
+        routeStats(routeId).servedBytes.add(bytes);
+    }
+
+    /**
+     * 根据上游响应决定是否缓存，可缓存时返回收集响应体的Collector，否则返回null
+     */
+    public Collector collector(Capture capture, HttpStatusCode status, HttpHeaders headers) {
+        long ttl = ttlSeconds(status, headers, capture);
+        if (ttl <= 0 || headers.getContentLength() > maxBodySize) {
+            return null;
+        }
+        return new Collector(capture, status.value(), replayedHeaders(headers), headers.getETag(), ttl);
+    }
+
+    /**
+     * 计算缓存时间（秒）：上游max-age或s-maxage与路由TTL取较小值；不可缓存时返回-1
+     */
+    static long ttlSeconds(HttpStatusCode status, HttpHeaders headers, Capture capture) {
+        if (status == null || status.value() != HttpStatus.OK.value()) {
+            return -1;
+        }
+        if (headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return -1;
+        }
+        // 二进制格式的响应只对请求它的客户端有意义，key中的Accept只是防止不同格式的请求互相命中
+        if (!isJson(headers)) {
+            return -1;
+        }
+        String encoding = headers.getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (encoding != null && !"identity".equalsIgnoreCase(encoding)) {
+            return -1;
+        }
+        for (String vary : headers.getVary()) {
+            if (!IGNORED_VARY.contains(vary.toLowerCase(Locale.ROOT))) {
+                return -1;
+            }
+        }
+
+        String cacheControl = headers.getCacheControl();
+        if (hasDirective(cacheControl, "no-store") || hasDirective(cacheControl, "no-cache")) {
+            return -1;
+        }
+        if (hasDirective(cacheControl, "private") && !capture.perUser()) {
+            return -1;
+        }
+        long upstream = directiveSeconds(cacheControl, "s-maxage");
+        if (upstream < 0) {
+            upstream = directiveSeconds(cacheControl, "max-age");
+        }
+        return upstream >= 0 ? Math.min(upstream, capture.ttlSeconds()) : capture.ttlSeconds();
+    }
+
+    private static boolean isJson(HttpHeaders headers) {
+        try {
+            MediaType contentType = headers.getContentType();
+            return contentType != null && MediaType.APPLICATION_JSON.equalsTypeAndSubtype(contentType);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 判断Cache-Control是否包含指令
+     */
+    public static boolean hasDirective(String cacheControl, String directive) {
+        return directiveIndex(cacheControl, directive) >= 0;
+    }
+
+    /**
+     * 取Cache-Control中指令的秒数，没有该指令或取值无效时返回-1
+     */
+    static long directiveSeconds(String cacheControl, String directive) {
+        int index = directiveIndex(cacheControl, directive);
+        if (index < 0) {
+            return -1;
+        }
+        int start = index + directive.length();
+        if (start >= cacheControl.length() || cacheControl.charAt(start) != '=') {
+            return -1;
+        }
+        int end = cacheControl.indexOf(',', start);
+        String value = cacheControl.substring(start + 1, end < 0 ? cacheControl.length() : end).trim();
+        if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int directiveIndex(String cacheControl, String directive) {
+        if (cacheControl == null) {
+            return -1;
+        }
+        int from = 0;
+        while (true) {
+            int index = indexOfIgnoreCase(cacheControl, directive, from);
+            if (index < 0) {
+                return -1;
+            }
+            int end = index + directive.length();
+            boolean startsToken = index == 0 || cacheControl.charAt(index - 1) == ',' || cacheControl.charAt(index - 1) == ' ';
+            boolean endsToken = end == cacheControl.length() || cacheControl.charAt(end) == ','
+                || cacheControl.charAt(end) == '=' || cacheControl.charAt(end) == ' ';
+            if (startsToken && endsToken) {
+                return index;
+            }
+            from = index + 1;
+        }
+    }
+
+    private static int indexOfIgnoreCase(String text, String part, int from) {
+        for (int i = from; i <= text.length() - part.length(); i++) {
+            if (text.regionMatches(true, i, part, 0, part.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String[][] replayedHeaders(HttpHeaders headers) {
+        List<String[]> replayed = new ArrayList<>(REPLAYED_HEADERS.size());
+        for (String name : REPLAYED_HEADERS) {
+            String value = headers.getFirst(name);
+            if (value != null) {
+                replayed.add(new String[] {name, value});
+            }
+        }
+        return replayed.toArray(new String[0][]);
+    }
+
+    void store(Collector collector, byte[] body) {
+        String etag = collector.upstreamEtag != null ? collector.upstreamEtag : EtagUtil.of(body, body.length);
+        CachedResponse response = new CachedResponse(collector.status, collector.headers,
+            ByteBuffer.wrap(body), etag, System.currentTimeMillis(),
+            System.nanoTime() + TimeUnit.SECONDS.toNanos(collector.ttlSeconds));
+        if (store.put(collector.capture.key(), response)) {
+            routeStats(collector.capture.routeId()).stores.increment();
+        }
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("entries", store.size());
+        stats.put("heapBytes", store.getHeapBytes());
+        stats.put("maxHeapBytes", store.getMaxHeapBytes());
+        stats.put("offHeapBytes", store.getOffHeapBytes());
+        stats.put("maxOffHeapBytes", store.getMaxOffHeapBytes());
+        stats.put("evictions", store.getEvictions());
+        stats.put("expirations", store.getExpirations());
+        stats.put("demotions", store.getDemotions());
+
+        Map<String, Object> routeStats = new HashMap<>();
+        routes.forEach((routeId, route) -> routeStats.put(routeId, route.toMap()));
+        stats.put("routes", routeStats);
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("gateway.cache.size", store, ResponseCacheStore::getHeapBytes)
+            .tag("tier", "heap")
+            .baseUnit("bytes")
+            .description("Bytes held by the response cache")
+            .register(registry);
+        Gauge.builder("gateway.cache.size", store, ResponseCacheStore::getOffHeapBytes)
+            .tag("tier", "off-heap")
+            .baseUnit("bytes")
+            .description("Bytes held by the response cache")
+            .register(registry);
+        Gauge.builder("gateway.cache.entries", store, ResponseCacheStore::size)
+            .description("Cached responses")
+            .register(registry);
+        FunctionCounter.builder("gateway.cache.evictions", store, ResponseCacheStore::getEvictions)
+            .description("Cached responses dropped because the cache was full")
+            .register(registry);
+        routes.forEach((routeId, stats) -> registerMeters(registry, routeId, stats));
+    }
+
+    RouteStats routeStats(String routeId) {
+        RouteStats stats = routes.get(routeId);
+        if (stats != null) {
+            return stats;
+        }
+        return routes.computeIfAbsent(routeId, key -> {
+            RouteStats created = new RouteStats();
+            MeterRegistry current = registry;
+            if (current != null) {
+                registerMeters(current, key, created);
+            }
+            return created;
+        });
+    }
+
+    private void registerMeters(MeterRegistry registry, String routeId, RouteStats stats) {
+        FunctionCounter.builder("gateway.cache.requests", stats, s -> s.hits.sum())
+            .tag("route", routeId)
+            .tag("result", "hit")
+            .description("Cacheable requests by lookup result")
+            .register(registry);
+        FunctionCounter.builder("gateway.cache.requests", stats, s -> s.misses.sum())
+            .tag("route", routeId)
+            .tag("result", "miss")
+            .description("Cacheable requests by lookup result")
+            .register(registry);
+        FunctionCounter.builder("gateway.cache.not.modified", stats, s -> s.notModified.sum())
+            .tag("route", routeId)
+            .description("Cache hits answered with 304 Not Modified")
+            .register(registry);
+        FunctionCounter.builder("gateway.cache.invalidations", stats, s -> s.invalidations.sum())
+            .tag("route", routeId)
+            .description("Cache entries removed after successful writes")
+            .register(registry);
+        FunctionCounter.builder("gateway.cache.served", stats, s -> s.servedBytes.sum())
+            .tag("route", routeId)
+            .baseUnit("bytes")
+            .description("Response body bytes served from the cache")
+            .register(registry);
+    }
+
+    /**
+     * 待缓存的请求
+     *
+     * @param perUser 缓存key包含用户ID，此时上游Cache-Control: private的响应也可以缓存
+     */
+    public record Capture(String routeId, String key, long ttlSeconds, boolean perUser) {
+    }
+
+    /**
+     * 在响应写出时复制响应体，超过大小上限后放弃缓存，不影响响应本身
+     */
+    public final class Collector {
+        private final Capture capture;
+        private final int status;
+        private final String[][] headers;
+        private final String upstreamEtag;
+        private final long ttlSeconds;
+        private final BodyCollector body = new BodyCollector(maxBodySize);
+
+        private Collector(Capture capture, int status, String[][] headers, String upstreamEtag, long ttlSeconds) {
+            this.capture = capture;
+            this.status = status;
+            this.headers = headers;
+            this.upstreamEtag = upstreamEtag;
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        public void append(DataBuffer buffer) {
+            body.append(buffer);
+        }
+
+        public void complete() {
+            if (!body.isAbandoned()) {
+                store(this, body.toByteArray());
+            }
+        }
+    }
+
+    static final class RouteStats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder notModified = new LongAdder();
+        private final LongAdder stores = new LongAdder();
+        private final LongAdder invalidations = new LongAdder();
+        private final LongAdder servedBytes = new LongAdder();
+
+        Map<String, Object> toMap() {
+            long hitCount = hits.sum();
+            long total = hitCount + misses.sum();
+            Map<String, Object> map = new HashMap<>();
+            map.put("hits", hitCount);
+            map.put("misses", misses.sum());
+            map.put("notModified", notModified.sum());
+            map.put("stores", stores.sum());
+            map.put("invalidations", invalidations.sum());
+            map.put("servedBytes", servedBytes.sum());
+            map.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+            return map;
+        }
+    }
+}
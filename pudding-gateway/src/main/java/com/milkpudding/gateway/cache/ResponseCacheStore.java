@@ -0,0 +1,281 @@
+package com.milkpudding.gateway.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * 按字节数限制大小的两层响应缓存
+ * 命中时只做一次无锁哈希查找并标记访问位；写入后超出上限时按CLOCK（二次机会）算法淘汰，
+ * 近期被访问过的条目跳过一轮。开启堆外层后，从堆内层淘汰的未过期条目把响应体复制到直接内存，
+ * 移入堆外层继续提供命中，堆外层超出上限时再真正丢弃。过期条目在访问或淘汰时移除
+ */
+public final class ResponseCacheStore {
+
+    /**
+     * 单个条目除key和响应体外的估算内存：哈希表节点、条目、响应头和缓冲区对象
+     */
+    public static final long ENTRY_OVERHEAD_BYTES = 512;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Tier heap;
+    private final Tier offHeap;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder demotions = new LongAdder();
+
+    /**
+     * @param maxHeapBytes    堆内层字节上限
+     * @param maxOffHeapBytes 堆外层字节上限，0表示不使用堆外层
+     */
+    public ResponseCacheStore(long maxHeapBytes, long maxOffHeapBytes) {
+        if (maxHeapBytes < 1) {
+            throw new IllegalArgumentException("maxHeapBytes must be positive: " + maxHeapBytes);
+        }
+        this.heap = new Tier(maxHeapBytes);
+        this.offHeap = maxOffHeapBytes > 0 ? new Tier(maxOffHeapBytes) : null;
+    }
+
+    /**
+     * 获取未过期的缓存响应
+     */
+    public CachedResponse get(String key) {
+        return get(key, System.nanoTime());
+    }
+
+    CachedResponse get(String key, long nowNanos) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        CachedResponse response = entry.response;
+        if (response == null) {
+            return null;
+        }
+        if (response.isExpired(nowNanos)) {
+            if (entries.remove(key, entry)) {
+                release(entry);
+                expirations.increment();
+            }
+            return null;
+        }
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return response;
+    }
+
+    /**
+     * 写入缓存响应，单个条目超过堆内层上限时不缓存，返回是否写入
+     */
+    public boolean put(String key, CachedResponse response) {
+        return put(key, response, System.nanoTime());
+    }
+
+    boolean put(String key, CachedResponse response, long nowNanos) {
+        long weight = ENTRY_OVERHEAD_BYTES + key.length() + response.size();
+        if (weight > heap.maxBytes) {
+            return false;
+        }
+
+        Entry entry = new Entry(key, response, heap, weight);
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            release(previous);
+        }
+        heap.add(entry);
+        evict(nowNanos);
+        return true;
+    }
+
+    /**
+     * 删除key满足条件的条目，返回删除的条目数
+     */
+    public int removeIf(Predicate<String> keyMatcher) {
+        int removed = 0;
+        for (Map.Entry<String, Entry> mapping : entries.entrySet()) {
+            if (keyMatcher.test(mapping.getKey()) && entries.remove(mapping.getKey(), mapping.getValue())) {
+                release(mapping.getValue());
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHeapBytes() {
+        return heap.bytes.get();
+    }
+
+    public long getOffHeapBytes() {
+        return offHeap != null ? offHeap.bytes.get() : 0;
+    }
+
+    public long getMaxHeapBytes() {
+        return heap.maxBytes;
+    }
+
+    public long getMaxOffHeapBytes() {
+        return offHeap != null ? offHeap.maxBytes : 0;
+    }
+
+    /**
+     * 因空间不足被丢弃的条目数
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    /**
+     * 从堆内层移入堆外层的条目数
+     */
+    public long getDemotions() {
+        return demotions.sum();
+    }
+
+    /**
+     * 同一时刻只有一个线程执行淘汰，其他线程写入后直接返回，总量可能短暂超出上限
+     */
+    private void evict(long nowNanos) {
+        if (!heap.overLimit() && (offHeap == null || !offHeap.overLimit()) && !heap.needsCompaction()) {
+            return;
+        }
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            evict(heap, nowNanos);
+            if (offHeap != null) {
+                evict(offHeap, nowNanos);
+                offHeap.compactIfNeeded();
+            }
+            heap.compactIfNeeded();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void evict(Tier tier, long nowNanos) {
+        // 每个条目最多被跳过一次，扫描两轮仍未降到上限时留给下一次写入
+        int budget = tier.queued.get() * 2 + 1;
+        while (tier.overLimit() && budget-- > 0) {
+            Entry entry = tier.clock.poll();
+            if (entry == null) {
+                break;
+            }
+            tier.queued.decrementAndGet();
+
+            CachedResponse response = entry.response;
+            if (response == null || entries.get(entry.key) != entry) {
+                continue;
+            }
+            boolean expired = response.isExpired(nowNanos);
+            if (entry.referenced && !expired) {
+                entry.referenced = false;
+                tier.offer(entry);
+                continue;
+            }
+
+            if (tier == heap && offHeap != null && !expired) {
+                Entry demoted = new Entry(entry.key, response.toDirect(), offHeap, entry.weight);
+                if (entries.replace(entry.key, entry, demoted)) {
+                    release(entry);
+                    offHeap.add(demoted);
+                    demotions.increment();
+                }
+                continue;
+            }
+
+            if (entries.remove(entry.key, entry)) {
+                release(entry);
+                if (expired) {
+                    expirations.increment();
+                } else {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * 条目离开哈希表后扣减所在层的字节数，并断开对响应的引用，留在CLOCK队列中的只是空壳
+     */
+    private void release(Entry entry) {
+        entry.tier.bytes.addAndGet(-entry.weight);
+        entry.tier.count.decrementAndGet();
+        entry.response = null;
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final Tier tier;
+        private final long weight;
+        private volatile CachedResponse response;
+        private volatile boolean referenced;
+
+        Entry(String key, CachedResponse response, Tier tier, long weight) {
+            this.key = key;
+            this.response = response;
+            this.tier = tier;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * 缓存层：字节数、条目数和CLOCK队列
+     */
+    private static final class Tier {
+        private final long maxBytes;
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final ConcurrentLinkedQueue<Entry> clock = new ConcurrentLinkedQueue<>();
+
+        Tier(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        void add(Entry entry) {
+            bytes.addAndGet(entry.weight);
+            count.incrementAndGet();
+            offer(entry);
+        }
+
+        void offer(Entry entry) {
+            clock.offer(entry);
+            queued.incrementAndGet();
+        }
+
+        boolean overLimit() {
+            return bytes.get() > maxBytes;
+        }
+
+        /**
+         * 被替换或过期的条目在队列中留下空壳，空壳明显多于有效条目时清理
+         */
+        boolean needsCompaction() {
+            return queued.get() > count.get() * 2 + 64;
+        }
+
+        void compactIfNeeded() {
+            if (needsCompaction()) {
+                clock.removeIf(entry -> entry.response == null);
+                queued.set(clock.size());
+            }
+        }
+    }
+}
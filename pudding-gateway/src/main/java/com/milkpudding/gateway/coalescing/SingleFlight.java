@@ -0,0 +1,309 @@
+package com.milkpudding.gateway.coalescing;
+
+import com.milkpudding.gateway.filter.AuthFilter;
+import com.milkpudding.gateway.util.BodyCollector;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 相同请求合并（single-flight）
+ * 同一时刻相同key的请求只有第一个（leader）转发到下游，其余请求（follower）等待leader的响应，
+ * leader的响应体写出时复制一份，写完后分发给所有follower。响应写完即从进行中的请求中移除，
+ * 之后到达的请求重新转发，不会拿到已完成请求的响应。
+ * 响应体超过大小上限、带Set-Cookie、leader失败或等待超时时，follower自行转发
+ */
+@Component
+public class SingleFlight implements MeterBinder {
+
+    /**
+     * leader请求的Flight，由ResponseCaptureFilter在写出响应时读取
+     */
+    public static final String FLIGHT_ATTR = SingleFlight.class.getName() + ".flight";
+
+    // 不分发给follower的响应头，各请求的追踪头由网关按请求生成
+    private static final Set<String> EXCLUDED_HEADERS = Set.of("content-length", "transfer-encoding", "connection",
+        "keep-alive", "set-cookie", "x-request-id", "traceparent");
+
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    private final Map<String, RouteStats> routes = new ConcurrentHashMap<>();
+    private final int maxBodySize;
+    private final Duration waitTime;
+
+    private volatile MeterRegistry registry;
+
+    public SingleFlight(@Value("${app.coalescing.max-body-size:1048576}") int maxBodySize,
+                        @Value("${app.coalescing.wait-time:5000}") long waitTimeMillis) {
+        this.maxBodySize = maxBodySize;
+        this.waitTime = Duration.ofMillis(waitTimeMillis);
+    }
+
+    /**
+     * 合并key：路由、路径、查询参数和鉴权身份，以及影响响应表示的Accept/Accept-Encoding
+     * 和决定返回200还是304的条件请求头；鉴权后使用用户ID，未经AuthFilter鉴权的请求使用原始的Authorization和Cookie
+     */
+    public String key(String routeId, ServerWebExchange exchange) {
+        ServerHttpRequest request = exchange.getRequest();
+        HttpHeaders headers = request.getHeaders();
+        StringBuilder key = new StringBuilder(routeId).append(' ').append(request.getURI().getRawPath());
+        String query = request.getURI().getRawQuery();
+        if (query != null) {
+            key.append('?').append(query);
+        }
+        String userId = exchange.getAttribute(AuthFilter.USER_ID_ATTR);
+        if (userId != null) {
+            key.append(" user=").append(userId);
+        } else {
+            appendHeader(key, headers, HttpHeaders.AUTHORIZATION);
+            appendHeader(key, headers, HttpHeaders.COOKIE);
+        }
+        appendHeader(key, headers, HttpHeaders.ACCEPT);
+        appendHeader(key, headers, HttpHeaders.ACCEPT_ENCODING);
+        appendHeader(key, headers, HttpHeaders.IF_NONE_MATCH);
+        appendHeader(key, headers, HttpHeaders.IF_MODIFIED_SINCE);
+        return key.toString();
+    }
+
+    private static void appendHeader(StringBuilder key, HttpHeaders headers, String name) {
+        List<String> values = headers.get(name);
+        if (values != null) {
+            key.append(' ').append(name).append('=').append(values);
+        }
+    }
+
+    /**
+     * 加入key对应的进行中请求；没有时创建新的Flight并返回，调用方成为leader
+     *
+     * @return leader时返回新建的Flight（isLeader为true），否则返回已有的Flight
+     */
+    public Flight join(String routeId, String key) {
+        Flight created = new Flight(routeId, key);
+        Flight existing = flights.putIfAbsent(key, created);
+        RouteStats stats = routeStats(routeId);
+        if (existing == null) {
+            stats.leaders.increment();
+            return created;
+        }
+        stats.followers.increment();
+        return existing.asFollower();
+    }
+
+    public Duration getWaitTime() {
+        return waitTime;
+    }
+
+    public int inFlight() {
+        return flights.size();
+    }
+
+    void recordFallback(String routeId) {
+        routeStats(routeId).fallbacks.increment();
+    }
+
+    /**
+     * 获取请求合并统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("inFlight", flights.size());
+        stats.put("maxBodySize", maxBodySize);
+        stats.put("waitTimeMillis", waitTime.toMillis());
+        Map<String, Object> routeStats = new HashMap<>();
+        routes.forEach((routeId, route) -> routeStats.put(routeId, route.toMap()));
+        stats.put("routes", routeStats);
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("gateway.coalescing.in.flight", this, SingleFlight::inFlight)
+            .description("Distinct requests currently forwarded with followers allowed to join")
+            .register(registry);
+        routes.forEach((routeId, stats) -> registerMeters(registry, routeId, stats));
+    }
+
+    private RouteStats routeStats(String routeId) {
+        RouteStats stats = routes.get(routeId);
+        if (stats != null) {
+            return stats;
+        }
+        return routes.computeIfAbsent(routeId, key -> {
+            RouteStats created = new RouteStats();
+            MeterRegistry current = registry;
+            if (current != null) {
+                registerMeters(current, key, created);
+            }
+            return created;
+        });
+    }
+
+    private void registerMeters(MeterRegistry registry, String routeId, RouteStats stats) {
+        FunctionCounter.builder("gateway.coalescing.requests", stats, s -> s.leaders.sum())
+            .tag("route", routeId)
+            .tag("role", "leader")
+            .description("Coalescable requests by role")
+            .register(registry);
+        FunctionCounter.builder("gateway.coalescing.requests", stats, s -> s.followers.sum())
+            .tag("route", routeId)
+            .tag("role", "follower")
+            .description("Coalescable requests by role")
+            .register(registry);
+        FunctionCounter.builder("gateway.coalescing.fallbacks", stats, s -> s.fallbacks.sum())
+            .tag("route", routeId)
+            .description("Followers that forwarded on their own because the shared response was unavailable")
+            .register(registry);
+    }
+
+    /**
+     * 分发给follower的响应
+     */
+    public record SharedResponse(int status, String[][] headers, byte[] body) {
+    }
+
+    /**
+     * 一个进行中的请求
+     */
+    public final class Flight {
+        private final String routeId;
+        private final String key;
+        private final boolean leader;
+        private final Sinks.One<SharedResponse> result;
+
+        private Flight(String routeId, String key) {
+            this(routeId, key, true, Sinks.one());
+        }
+
+        private Flight(String routeId, String key, boolean leader, Sinks.One<SharedResponse> result) {
+            this.routeId = routeId;
+            this.key = key;
+            this.leader = leader;
+            this.result = result;
+        }
+
+        private Flight asFollower() {
+            return new Flight(routeId, key, false, result);
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+        public String getRouteId() {
+            return routeId;
+        }
+
+        /**
+         * leader的响应；leader未能提供共享响应或超过等待时间时为空
+         */
+        public Mono<SharedResponse> result() {
+            return result.asMono().timeout(waitTime, Mono.empty());
+        }
+
+        public void recordFallback() {
+            SingleFlight.this.recordFallback(routeId);
+        }
+
+        /**
+         * 根据leader的响应头创建响应体收集器，响应不能共享时返回null
+         *
+         * @param upstreamHeaderNames 下游响应头名称，为null时分发所有响应头
+         */
+        public Recorder recorder(HttpStatusCode status, HttpHeaders headers, Collection<String> upstreamHeaderNames) {
+            if (status == null || headers.containsKey(HttpHeaders.SET_COOKIE)
+                || headers.getContentLength() > maxBodySize) {
+                return null;
+            }
+            List<String[]> shared = new ArrayList<>();
+            headers.forEach((name, values) -> {
+                if (EXCLUDED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                    return;
+                }
+                if (upstreamHeaderNames != null && !upstreamHeaderNames.contains(name)) {
+                    return;
+                }
+                for (String value : values) {
+                    shared.add(new String[] {name, value});
+                }
+            });
+            return new Recorder(this, status.value(), shared.toArray(new String[0][]));
+        }
+
+        /**
+         * leader的响应写完，先移出进行中的请求再分发，之后到达的请求不会拿到这个响应
+         */
+        void complete(SharedResponse response) {
+            flights.remove(key, this);
+            result.tryEmitValue(response);
+        }
+
+        /**
+         * leader结束，未分发响应时通知follower自行转发
+         */
+        public void finish() {
+            flights.remove(key, this);
+            result.tryEmitEmpty();
+        }
+    }
+
+    /**
+     * 在leader的响应写出时复制响应体，超过大小上限后放弃，follower自行转发
+     */
+    public final class Recorder {
+        private final Flight flight;
+        private final int status;
+        private final String[][] headers;
+        private final BodyCollector body = new BodyCollector(maxBodySize);
+
+        private Recorder(Flight flight, int status, String[][] headers) {
+            this.flight = flight;
+            this.status = status;
+            this.headers = headers;
+        }
+
+        public void append(DataBuffer buffer) {
+            body.append(buffer);
+        }
+
+        public void complete() {
+            if (!body.isAbandoned()) {
+                flight.complete(new SharedResponse(status, headers, body.toByteArray()));
+            }
+        }
+    }
+
+    static final class RouteStats {
+        private final LongAdder leaders = new LongAdder();
+        private final LongAdder followers = new LongAdder();
+        private final LongAdder fallbacks = new LongAdder();
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("leaders", leaders.sum());
+            map.put("followers", followers.sum());
+            map.put("fallbacks", fallbacks.sum());
+            return map;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.milkpudding.gateway.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JSON与二进制格式（CBOR、Smile）之间的转换
+ * 按解析事件逐个复制，不构建对象树，也不经过Java对象，转换开销只有一次解析和一次生成
+ */
+@Component
+public class BinaryCodec implements MeterBinder {
+
+    /**
+     * 网关与下游服务之间使用的二进制格式
+     */
+    public enum Format {
+        CBOR("application/cbor"),
+        SMILE("application/x-jackson-smile");
+
+        private final MediaType mediaType;
+
+        Format(String mediaType) {
+            this.mediaType = MediaType.parseMediaType(mediaType);
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+    }
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final JsonFactory CBOR = new CBORFactory();
+    private static final JsonFactory SMILE = new SmileFactory();
+
+    // 请求：客户端JSON -> 二进制；响应：下游二进制 -> JSON
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder jsonBytes = new LongAdder();
+    private final LongAdder binaryBytes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * 把客户端的JSON请求体转换为二进制格式，JSON无效时返回null，由调用方原样转发
+     */
+    public byte[] toBinary(byte[] json, Format format) {
+        byte[] binary = transcode(json, JSON, factory(format));
+        if (binary != null) {
+            requests.increment();
+            jsonBytes.add(json.length);
+            binaryBytes.add(binary.length);
+        }
+        return binary;
+    }
+
+    /**
+     * 把下游的二进制响应体转换为JSON，内容无效时返回null，由调用方原样返回
+     */
+    public byte[] toJson(byte[] binary, Format format) {
+        byte[] json = transcode(binary, factory(format), JSON);
+        if (json != null) {
+            responses.increment();
+            jsonBytes.add(json.length);
+            binaryBytes.add(binary.length);
+        }
+        return json;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("requests", requests.sum());
+        stats.put("responses", responses.sum());
+        stats.put("jsonBytes", jsonBytes.sum());
+        stats.put("binaryBytes", binaryBytes.sum());
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("gateway.codec.conversions", requests, LongAdder::sum)
+            .tag("direction", "request")
+            .description("Bodies converted between JSON and a binary format at the edge")
+            .register(registry);
+        FunctionCounter.builder("gateway.codec.conversions", responses, LongAdder::sum)
+            .tag("direction", "response")
+            .description("Bodies converted between JSON and a binary format at the edge")
+            .register(registry);
+        FunctionCounter.builder("gateway.codec.bytes", jsonBytes, LongAdder::sum)
+            .tag("format", "json")
+            .description("Body bytes seen on each side of the conversion")
+            .register(registry);
+        FunctionCounter.builder("gateway.codec.bytes", binaryBytes, LongAdder::sum)
+            .tag("format", "binary")
+            .description("Body bytes seen on each side of the conversion")
+            .register(registry);
+        FunctionCounter.builder("gateway.codec.failures", failures, LongAdder::sum)
+            .description("Bodies left unconverted because they could not be parsed")
+            .register(registry);
+    }
+
+    /**
+     * 解析格式名称，none或未知时返回null
+     */
+    public static Format parseFormat(String name) {
+        if (name == null) {
+            return null;
+        }
+        return switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "cbor" -> Format.CBOR;
+            case "smile" -> Format.SMILE;
+            default -> null;
+        };
+    }
+
+    private byte[] transcode(byte[] input, JsonFactory from, JsonFactory to) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(32, input.length));
+        try (JsonParser parser = from.createParser(input);
+             JsonGenerator generator = to.createGenerator(out)) {
+            while (parser.nextToken() != null) {
+                generator.copyCurrentEvent(parser);
+            }
+        } catch (IOException e) {
+            failures.increment();
+            return null;
+        }
+        return out.toByteArray();
+    }
+
+    private static JsonFactory factory(Format format) {
+        return format == Format.CBOR ? CBOR : SMILE;
+    }
+}
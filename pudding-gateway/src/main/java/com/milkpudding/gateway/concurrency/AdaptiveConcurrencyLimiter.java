@@ -0,0 +1,160 @@
+package com.milkpudding.gateway.concurrency;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 自适应并发限制（Gradient算法）
+ * 按固定时间窗口统计平均响应时间（短期RTT），并维护跨多个窗口的长期RTT。
+ * 短期RTT明显高于长期RTT说明下游开始排队，按两者之比缩小并发上限；
+ * 否则每个窗口增加约sqrt(limit)的余量。
+ * 只有实际并发接近上限时才调整，避免空闲时上限无限增长
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    private static final long DEFAULT_WINDOW_NANOS = 100_000_000L;
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final int LONG_WINDOW = 100;             // 长期RTT约覆盖100个窗口
+    private static final double RTT_TOLERANCE = 1.5;        // 短期RTT在长期RTT的1.5倍以内视为正常
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long windowNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final LongAdder rttSum = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final Map<Priority, LongAdder> rejections = new EnumMap<>(Priority.class);
+
+    private volatile double limit;
+    private volatile long windowStart;
+    private volatile double shortRtt;
+    private volatile double longRtt;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, DEFAULT_WINDOW_NANOS, System.nanoTime());
+    }
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long windowNanos, long nowNanos) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limits: min " + minLimit + ", max " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowNanos = windowNanos;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.windowStart = nowNanos;
+        for (Priority priority : Priority.values()) {
+            rejections.put(priority, new LongAdder());
+        }
+    }
+
+    /**
+     * 尝试占用一个并发名额，成功后必须调用release
+     */
+    public boolean tryAcquire(Priority priority) {
+        int allowed = Math.max(1, (int) (limit * priority.getShare()));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                rejections.get(priority).increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                if (current + 1 > maxInFlight.get()) {
+                    maxInFlight.accumulateAndGet(current + 1, Math::max);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放并发名额
+     *
+     * @param rttNanos 请求耗时
+     * @param sample   是否计入响应时间统计（客户端取消的请求不计入）
+     */
+    public void release(long rttNanos, boolean sample) {
+        release(rttNanos, sample, System.nanoTime());
+    }
+
+    void release(long rttNanos, boolean sample, long nowNanos) {
+        inFlight.decrementAndGet();
+        if (!sample) {
+            return;
+        }
+        rttSum.add(rttNanos);
+        samples.increment();
+        if (nowNanos - windowStart >= windowNanos && samples.sum() >= MIN_WINDOW_SAMPLES) {
+            update(nowNanos);
+        }
+    }
+
+    /**
+     * 结束一个统计窗口并调整并发上限
+     */
+    private synchronized void update(long nowNanos) {
+        if (nowNanos - windowStart < windowNanos) {
+            return;
+        }
+        long count = samples.sumThenReset();
+        long sum = rttSum.sumThenReset();
+        int peak = maxInFlight.getAndSet(inFlight.get());
+        windowStart = nowNanos;
+        if (count == 0) {
+            return;
+        }
+
+        double rtt = (double) sum / count;
+        shortRtt = rtt;
+        double longTerm = longRtt == 0 ? rtt : longRtt + (rtt - longRtt) / LONG_WINDOW;
+        // 下游长时间变快后，加速让长期RTT跟上，避免上限持续偏大
+        if (longTerm / rtt > 2) {
+            longTerm *= 0.95;
+        }
+        longRtt = longTerm;
+
+        double current = limit;
+        if (peak < current / 2) {
+            return;
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, RTT_TOLERANCE * longTerm / rtt));
+        double target = current * gradient + Math.sqrt(current);
+        double next = current * (1 - SMOOTHING) + target * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejections(Priority priority) {
+        return rejections.get(priority).sum();
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("limit", getLimit());
+        stats.put("inFlight", getInFlight());
+        stats.put("shortRttMillis", shortRtt / 1_000_000);
+        stats.put("longRttMillis", longRtt / 1_000_000);
+        Map<String, Long> rejected = new HashMap<>();
+        rejections.forEach((priority, count) -> rejected.put(priority.name(), count.sum()));
+        stats.put("rejections", rejected);
+        return stats;
+    }
+}
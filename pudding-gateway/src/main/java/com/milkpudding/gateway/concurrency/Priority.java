@@ -0,0 +1,33 @@
+package com.milkpudding.gateway.concurrency;
+
+/**
+ * 请求优先级
+ * 每个优先级最多使用并发上限的一定比例，上限随负载下降时低优先级请求先被拒绝
+ */
+public enum Priority {
+
+    /**
+     * 登录等关键请求，可以使用全部并发
+     */
+    CRITICAL(1.0),
+
+    /**
+     * 普通业务请求
+     */
+    NORMAL(0.9),
+
+    /**
+     * 批量或可延后的请求
+     */
+    BULK(0.7);
+
+    private final double share;
+
+    Priority(double share) {
+        this.share = share;
+    }
+
+    public double getShare() {
+        return share;
+    }
+}
@@ -1,18 +1,35 @@
 package com.milkpudding.gateway.config;
 
+import com.milkpudding.gateway.codec.BinaryCodec;
+import com.milkpudding.gateway.concurrency.Priority;
 import com.milkpudding.gateway.filter.AuthFilter;
+import com.milkpudding.gateway.filter.BinaryCodecFilter;
+import com.milkpudding.gateway.filter.CoalescingFilter;
+import com.milkpudding.gateway.filter.ConcurrencyLimitFilter;
+import com.milkpudding.gateway.filter.HedgingFilter;
 import com.milkpudding.gateway.filter.LoggingFilter;
 import com.milkpudding.gateway.filter.RateLimitFilter;
+import com.milkpudding.gateway.filter.ResponseCacheFilter;
+import com.milkpudding.gateway.ratelimit.RateLimitAlgorithm;
+import com.milkpudding.gateway.route.IndexedRoutePredicateHandlerMapping;
+import com.milkpudding.gateway.route.RouteIndex;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.http.HttpMethod;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.reactive.CorsWebFilter;
 import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
 
+import java.util.Set;
+
 /**
  * 网关配置类
  * 配置路由规则、过滤器和CORS
@@ -20,6 +37,19 @@ import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
 @Configuration
 public class GatewayConfig {
     
+    // 路由路径，同时写入路由元数据供路由索引使用
+    private static final String USER_PATH = "/api/v1/users/**";
+    private static final String AUTH_PATH = "/api/v1/auth/**";
+    private static final String ACTUATOR_PATH = "/actuator/**";
+    private static final String API_PATH = "/api/**";
+    
+    // 代码中定义的路由ID，Consul动态路由不能使用
+    public static final String USER_ROUTE_ID = "user-service";
+    public static final String AUTH_ROUTE_ID = "auth-service";
+    public static final String HEALTH_ROUTE_ID = "health-check";
+    public static final String API_ROUTE_ID = "api-service";
+    public static final Set<String> ROUTE_IDS = Set.of(USER_ROUTE_ID, AUTH_ROUTE_ID, HEALTH_ROUTE_ID, API_ROUTE_ID);
+    
     @Autowired
     private AuthFilter authFilter;
     
@@ -29,6 +59,26 @@ public class GatewayConfig {
     @Autowired
     private RateLimitFilter rateLimitFilter;
     
+    @Autowired
+    private ConcurrencyLimitFilter concurrencyLimitFilter;
+    
+    @Autowired
+    private ResponseCacheFilter responseCacheFilter;
+    
+    @Autowired
+    private CoalescingFilter coalescingFilter;
+    
+    @Autowired
+    private HedgingFilter hedgingFilter;
+    
+    @Autowired
+    private BinaryCodecFilter binaryCodecFilter;
+    
+    // 静态路由（都转发给pudding-user，包括/api/**）使用的二进制格式：cbor、smile，none为不转换；
+    // 动态路由在路由定义中为BinaryCodecFilter单独配置format
+    @Value("${app.binary-codec.format:none}")
+    private String binaryCodecFormat;
+    
     /**
      * 配置路由规则
      */
@@ -36,53 +86,82 @@ public class GatewayConfig {
     public RouteLocator customRouteLocator(RouteLocatorBuilder builder) {
         return builder.routes()
             // 用户服务路由
-            .route("user-service", r -> r
-                .path("/api/v1/users/**")
+            .route(USER_ROUTE_ID, r -> r
+                .path(USER_PATH)
                 .filters(f -> f
                     .filter(loggingFilter.apply(new LoggingFilter.Config()))
-                    .filter(rateLimitFilter.apply(createRateLimitConfig()))
+                    .filter(rateLimitFilter.apply(createRateLimitConfig(USER_ROUTE_ID)))
                     .filter(authFilter.apply(new AuthFilter.Config()))
+                    .filter(responseCacheFilter.apply(createResponseCacheConfig(USER_ROUTE_ID, 30)))
+                    .filter(coalescingFilter.apply(createCoalescingConfig(USER_ROUTE_ID)))
+                    .filter(concurrencyLimitFilter.apply(createConcurrencyConfig(Priority.NORMAL)))
+                    .filter(binaryCodecFilter.apply(createBinaryCodecConfig(USER_ROUTE_ID)))
+                    .filter(hedgingFilter.apply(createHedgingConfig(USER_ROUTE_ID)))
                     .stripPrefix(0)  // 不去除路径前缀
                 )
+                .metadata(RouteIndex.PATH_PATTERNS_METADATA, USER_PATH)
                 .uri("lb://pudding-user")
             )
             // 认证服务路由（不需要鉴权）
-            .route("auth-service", r -> r
-                .path("/api/v1/auth/**")
+            .route(AUTH_ROUTE_ID, r -> r
+                .path(AUTH_PATH)
                 .filters(f -> f
                     .filter(loggingFilter.apply(new LoggingFilter.Config()))
-                    .filter(rateLimitFilter.apply(createAuthRateLimitConfig()))
+                    .filter(rateLimitFilter.apply(createAuthRateLimitConfig(AUTH_ROUTE_ID)))
+                    .filter(concurrencyLimitFilter.apply(createConcurrencyConfig(Priority.CRITICAL)))
+                    .filter(binaryCodecFilter.apply(createBinaryCodecConfig(AUTH_ROUTE_ID)))
                     .stripPrefix(0)
                 )
+                .metadata(RouteIndex.PATH_PATTERNS_METADATA, AUTH_PATH)
                 .uri("lb://pudding-user")
             )
             // 健康检查路由（直接转发给用户服务）
-            .route("health-check", r -> r
-                .path("/actuator/**")
+            .route(HEALTH_ROUTE_ID, r -> r
+                .path(ACTUATOR_PATH)
                 .filters(f -> f
                     .filter(loggingFilter.apply(new LoggingFilter.Config()))
                 )
+                .metadata(RouteIndex.PATH_PATTERNS_METADATA, ACTUATOR_PATH)
                 .uri("lb://pudding-user")
             )
             // 其他API路由（默认需要鉴权）
-            .route("api-service", r -> r
-                .path("/api/**")
+            .route(API_ROUTE_ID, r -> r
+                .path(API_PATH)
                 .filters(f -> f
                     .filter(loggingFilter.apply(new LoggingFilter.Config()))
-                    .filter(rateLimitFilter.apply(createRateLimitConfig()))
+                    .filter(rateLimitFilter.apply(createRateLimitConfig(API_ROUTE_ID)))
                     .filter(authFilter.apply(new AuthFilter.Config()))
+                    .filter(concurrencyLimitFilter.apply(createConcurrencyConfig(Priority.BULK)))
+                    .filter(binaryCodecFilter.apply(createBinaryCodecConfig(API_ROUTE_ID)))
+                    .filter(hedgingFilter.apply(createHedgingConfig(API_ROUTE_ID)))
                     .stripPrefix(0)
                 )
+                .metadata(RouteIndex.PATH_PATTERNS_METADATA, API_PATH)
                 .uri("lb://pudding-user")
             )
             .build();
     }
     
+    /**
+     * 按路由索引查找路由，替代逐个计算所有路由断言的默认实现
+     */
+    @Bean
+    public IndexedRoutePredicateHandlerMapping routePredicateHandlerMapping(FilteringWebHandler webHandler,
+                                                                            RouteLocator routeLocator,
+                                                                            RouteDefinitionLocator routeDefinitionLocator,
+                                                                            GlobalCorsProperties globalCorsProperties,
+                                                                            Environment environment) {
+        return new IndexedRoutePredicateHandlerMapping(webHandler, routeLocator, routeDefinitionLocator,
+            globalCorsProperties, environment);
+    }
+    
     /**
      * 创建普通限流配置
      */
-    private RateLimitFilter.Config createRateLimitConfig() {
+    private RateLimitFilter.Config createRateLimitConfig(String routeId) {
         RateLimitFilter.Config config = new RateLimitFilter.Config();
+        config.setRouteId(routeId);
+        config.setAlgorithm(RateLimitAlgorithm.TOKEN_BUCKET);
         config.setCapacity(100);      // 桶容量100
         config.setRefillRate(10);     // 每秒补充10个令牌
         return config;
@@ -91,10 +170,61 @@ public class GatewayConfig {
     /**
      * 创建认证接口限流配置（更严格）
      */
-    private RateLimitFilter.Config createAuthRateLimitConfig() {
+    private RateLimitFilter.Config createAuthRateLimitConfig(String routeId) {
         RateLimitFilter.Config config = new RateLimitFilter.Config();
-        config.setCapacity(20);       // 桶容量20
-        config.setRefillRate(2);      // 每秒补充2个令牌
+        config.setRouteId(routeId);
+        config.setAlgorithm(RateLimitAlgorithm.GCRA);    // 请求均匀间隔，状态只占一个long
+        config.setCapacity(20);       // 允许突发20次
+        config.setRefillRate(2);      // 每秒2次
+        return config;
+    }
+    
+    /**
+     * 创建pudding-user并发限制配置，过载时按BULK、NORMAL、CRITICAL的顺序拒绝
+     */
+    private ConcurrencyLimitFilter.Config createConcurrencyConfig(Priority priority) {
+        ConcurrencyLimitFilter.Config config = new ConcurrencyLimitFilter.Config();
+        config.setService("pudding-user");
+        config.setPriority(priority);
+        return config;
+    }
+    
+    /**
+     * 创建响应缓存配置，缓存key包含用户ID，须放在鉴权过滤器之后
+     */
+    private ResponseCacheFilter.Config createResponseCacheConfig(String routeId, long ttl) {
+        ResponseCacheFilter.Config config = new ResponseCacheFilter.Config();
+        config.setRouteId(routeId);
+        config.setTtl(ttl);
+        config.setPerUser(true);
+        return config;
+    }
+    
+    /**
+     * 创建请求合并配置，合并key包含用户ID，须放在鉴权过滤器之后
+     */
+    private CoalescingFilter.Config createCoalescingConfig(String routeId) {
+        CoalescingFilter.Config config = new CoalescingFilter.Config();
+        config.setRouteId(routeId);
+        return config;
+    }
+    
+    /**
+     * 创建对冲和重试配置，过滤器自带顺序，在负载均衡选出实例之后执行
+     */
+    private HedgingFilter.Config createHedgingConfig(String routeId) {
+        HedgingFilter.Config config = new HedgingFilter.Config();
+        config.setRouteId(routeId);
+        return config;
+    }
+    
+    /**
+     * 创建边缘格式转换配置，未配置格式时过滤器不做处理
+     */
+    private BinaryCodecFilter.Config createBinaryCodecConfig(String routeId) {
+        BinaryCodecFilter.Config config = new BinaryCodecFilter.Config();
+        config.setRouteId(routeId);
+        config.setFormat(BinaryCodec.parseFormat(binaryCodecFormat));
         return config;
     }
     
@@ -0,0 +1,16 @@
+package com.milkpudding.gateway.config;
+
+import com.milkpudding.gateway.loadbalancer.PeakEwmaLoadBalancerConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClient;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 负载均衡配置
+ * pudding-user使用基于峰值EWMA的二选一负载均衡替代默认的轮询
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.loadbalancer.peak-ewma.enabled", havingValue = "true", matchIfMissing = true)
+@LoadBalancerClient(name = "pudding-user", configuration = PeakEwmaLoadBalancerConfiguration.class)
+public class LoadBalancerConfig {
+}
@@ -0,0 +1,29 @@
+package com.milkpudding.gateway.config;
+
+import com.milkpudding.gateway.asset.StaticAssetStore;
+import com.milkpudding.gateway.controller.StaticController;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * 静态文件路由配置
+ * 只匹配静态目录中存在的路径，其余请求照常交给网关路由；
+ * 函数式路由的优先级高于网关路由，静态文件不经过网关过滤器
+ */
+@Configuration
+public class StaticAssetConfig {
+
+    @Bean
+    public RouterFunction<ServerResponse> staticAssetRoutes(StaticAssetStore staticAssetStore,
+                                                            StaticController staticController) {
+        return RouterFunctions.route(request -> {
+            HttpMethod method = request.method();
+            return (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method))
+                && staticAssetStore.find(request.path()) != null;
+        }, staticController::serve);
+    }
+}
@@ -1,14 +1,36 @@
 package com.milkpudding.gateway.controller;
 
+import com.milkpudding.gateway.accesslog.AccessLogger;
+import com.milkpudding.gateway.asset.StaticAssetStore;
+import com.milkpudding.gateway.cache.ResponseCache;
+import com.milkpudding.gateway.coalescing.SingleFlight;
+import com.milkpudding.gateway.codec.BinaryCodec;
 import com.milkpudding.gateway.common.Result;
+import com.milkpudding.gateway.exception.ErrorAggregator;
+import com.milkpudding.gateway.filter.ConcurrencyLimitFilter;
+import com.milkpudding.gateway.filter.HedgingFilter;
+import com.milkpudding.gateway.filter.RateLimitFilter;
+import com.milkpudding.gateway.loadbalancer.InstanceLoadTracker;
+import com.milkpudding.gateway.loadbalancer.OutlierDetector;
+import com.milkpudding.gateway.metrics.LatencyMetrics;
+import com.milkpudding.gateway.route.ConsulRouteDefinitionLocator;
+import com.milkpudding.gateway.route.IndexedRoutePredicateHandlerMapping;
+import com.milkpudding.gateway.trace.TailSampler;
+import com.milkpudding.gateway.util.JwtClaims;
 import com.milkpudding.gateway.util.JwtUtil;
+import com.milkpudding.gateway.util.TokenCache;
+import com.milkpudding.gateway.util.TokenRevocationList;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,12 +45,69 @@ import java.util.stream.Collectors;
 @RequestMapping("/gateway")
 public class GatewayController {
     
+    static final String ADMIN_TOKEN_HEADER = "X-Admin-Token";
+    
+    // 管理接口凭证，为空时管理接口不可用
+    @Value("${app.gateway.admin-token:}")
+    private String adminToken;
+    
     @Autowired
     private RouteLocator routeLocator;
     
     @Autowired
     private JwtUtil jwtUtil;
     
+    @Autowired
+    private TokenCache tokenCache;
+    
+    @Autowired
+    private TokenRevocationList revocationList;
+    
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+    
+    @Autowired
+    private ConcurrencyLimitFilter concurrencyLimitFilter;
+
+    @Autowired
+    private AccessLogger accessLogger;
+
+    @Autowired
+    private TailSampler tailSampler;
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    @Autowired
+    private ErrorAggregator errorAggregator;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private HedgingFilter hedgingFilter;
+
+    @Autowired
+    private InstanceLoadTracker instanceLoadTracker;
+
+    @Autowired
+    private OutlierDetector outlierDetector;
+
+    @Autowired
+    private StaticAssetStore staticAssetStore;
+
+    @Autowired
+    private BinaryCodec binaryCodec;
+
+    @Autowired
+    private IndexedRoutePredicateHandlerMapping routeHandlerMapping;
+
+    @Autowired
+    private ConsulRouteDefinitionLocator consulRouteDefinitionLocator;
+    
     /**
      * 获取网关状态信息
      */
@@ -40,6 +119,21 @@ public class GatewayController {
             status.put("status", "running");
             status.put("timestamp", System.currentTimeMillis());
             status.put("version", "1.0.0");
+            status.put("tokenCache", tokenCache.getStats());
+            status.put("tokenRevocation", revocationList.getStats());
+            status.put("rateLimit", rateLimitFilter.getStats());
+            status.put("concurrency", concurrencyLimitFilter.getStats());
+            status.put("accessLog", accessLogger.getStats());
+            status.put("tailSampling", tailSampler.getStats());
+            status.put("responseCache", responseCache.getStats());
+            status.put("coalescing", singleFlight.getStats());
+            status.put("hedging", hedgingFilter.getStats());
+            status.put("loadBalancer", instanceLoadTracker.getStats());
+            status.put("outlierDetection", outlierDetector.getStats());
+            status.put("routeIndex", routeHandlerMapping.getStats());
+            status.put("dynamicRoutes", consulRouteDefinitionLocator.getStats());
+            status.put("staticAssets", staticAssetStore.getStats());
+            status.put("binaryCodec", binaryCodec.getStats());
             
             log.debug("Gateway status requested");
             return Result.success(status);
@@ -47,7 +141,23 @@ public class GatewayController {
     }
     
     /**
-     * 获取路由信息
+     * 获取各路由和下游实例最近一个统计区间的延迟百分位和吞吐
+     */
+    @GetMapping("/metrics")
+    public Mono<Result<Map<String, Object>>> getMetrics() {
+        return Mono.fromCallable(() -> Result.success(latencyMetrics.getMetrics()));
+    }
+    
+    /**
+     * 获取错误统计：按异常类型、路由汇总的次数和最近的错误信息
+     */
+    @GetMapping("/errors")
+    public Mono<Result<Map<String, Object>>> getErrors() {
+        return Mono.fromCallable(() -> Result.success(errorAggregator.getStats()));
+    }
+    
+    /**
+     * 获取路由信息，负载均衡路由包含当前的实例池和最近的摘除事件
      */
     @GetMapping("/routes")
     public Mono<Result<List<Map<String, Object>>>> getRoutes() {
@@ -100,6 +210,55 @@ public class GatewayController {
         });
     }
     
+    /**
+     * 吊销JWT Token
+     * 可按token、jti吊销单个token，或按subject吊销该用户已签发的所有token。
+     * 需要在X-Admin-Token请求头中携带管理员凭证，未配置凭证时不允许吊销
+     */
+    @PostMapping("/token/revoke")
+    public Mono<Result<Map<String, Object>>> revokeToken(
+            @RequestHeader(value = ADMIN_TOKEN_HEADER, required = false) String adminToken,
+            @RequestBody RevokeTokenRequest request) {
+        if (!isAdmin(adminToken)) {
+            log.warn("Token revocation rejected: missing or invalid admin credential");
+            return Mono.just(Result.error(403, "Forbidden"));
+        }
+        return Mono.fromCallable(() -> {
+            String tokenId = request.getTokenId();
+            long expiresAt = 0;
+            if (tokenId == null && request.getToken() != null) {
+                JwtClaims claims = jwtUtil.verifyToken(request.getToken());
+                if (claims == null || claims.getTokenId() == null) {
+                    return Result.<Map<String, Object>>error(400, "Token is invalid or has no jti");
+                }
+                tokenId = claims.getTokenId();
+                expiresAt = claims.getExpiresAt();
+            }
+            
+            if (tokenId == null && request.getSubject() == null) {
+                return Result.<Map<String, Object>>error(400, "One of token, tokenId or subject is required");
+            }
+            
+            if (tokenId != null) {
+                revocationList.revokeToken(tokenId, expiresAt);
+            }
+            if (request.getSubject() != null) {
+                revocationList.revokeSubject(request.getSubject());
+            }
+            return Result.success(revocationList.getStats());
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+    
+    /**
+     * 管理员凭证按常量时间比较，避免通过响应时间逐字节猜测
+     */
+    private boolean isAdmin(String token) {
+        if (adminToken == null || adminToken.isEmpty() || token == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(adminToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+    
     /**
      * 将Route转换为Map
      */
@@ -112,6 +271,11 @@ public class GatewayController {
             .map(filter -> filter.toString())
             .collect(Collectors.toList()));
         routeMap.put("order", route.getOrder());
+        if ("lb".equals(route.getUri().getScheme())) {
+            String serviceId = route.getUri().getHost();
+            routeMap.put("pool", outlierDetector.getPool(serviceId));
+            routeMap.put("ejectionEvents", outlierDetector.getEvents(serviceId));
+        }
         return routeMap;
     }
     
@@ -147,4 +311,22 @@ public class GatewayController {
         public String getToken() { return token; }
         public void setToken(String token) { this.token = token; }
     }
+    
+    /**
+     * 吊销Token请求
+     */
+    public static class RevokeTokenRequest {
+        private String token;
+        private String tokenId;
+        private String subject;
+        
+        public String getToken() { return token; }
+        public void setToken(String token) { this.token = token; }
+        
+        public String getTokenId() { return tokenId; }
+        public void setTokenId(String tokenId) { this.tokenId = tokenId; }
+        
+        public String getSubject() { return subject; }
+        public void setSubject(String subject) { this.subject = subject; }
+    }
 }
@@ -1,23 +1,28 @@
 package com.milkpudding.gateway.controller;
 
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.Resource;
+import com.milkpudding.gateway.asset.StaticAsset;
+import com.milkpudding.gateway.asset.StaticAssetStore;
+import com.milkpudding.gateway.util.EtagUtil;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
-
-import java.io.IOException;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
 
 /**
  * 静态文件服务控制器
- * 提供前端页面和静态资源访问
+ * 提供前端页面和静态资源访问，静态目录下的文件由StaticAssetConfig统一路由到serve，
+ * 新增文件不需要新增映射方法
  */
 @Controller
 public class StaticController {
-    
+
+    @Autowired
+    private StaticAssetStore staticAssetStore;
+
     /**
      * 首页重定向到登录页面
      */
@@ -25,52 +30,40 @@ public class StaticController {
     public String index() {
         return "redirect:/login.html";
     }
-    
-    /**
-     * 登录页面
-     */
-    @GetMapping("/login.html")
-    public ResponseEntity<Resource> loginPage() throws IOException {
-        return serveStaticFile("static/login.html", MediaType.TEXT_HTML);
-    }
-    
-    /**
-     * 注册页面
-     */
-    @GetMapping("/register.html")
-    public ResponseEntity<Resource> registerPage() throws IOException {
-        return serveStaticFile("static/register.html", MediaType.TEXT_HTML);
-    }
-    
-    /**
-     * CSS 样式文件
-     */
-    @GetMapping("/styles.css")
-    public ResponseEntity<Resource> styles() throws IOException {
-        return serveStaticFile("static/styles.css", MediaType.valueOf("text/css"));
-    }
-    
-    /**
-     * JavaScript 文件
-     */
-    @GetMapping("/script.js")
-    public ResponseEntity<Resource> script() throws IOException {
-        return serveStaticFile("static/script.js", MediaType.valueOf("application/javascript"));
-    }
-    
+
     /**
      * 通用静态文件服务方法
+     * 按Accept-Encoding返回预压缩的版本，If-None-Match与ETag一致时返回304，响应体直接共享内存中的内容
      */
-    private ResponseEntity<Resource> serveStaticFile(String path, MediaType mediaType) throws IOException {
-        Resource resource = new ClassPathResource(path);
-        
-        if (!resource.exists()) {
-            return ResponseEntity.notFound().build();
+    public Mono<ServerResponse> serve(ServerRequest request) {
+        StaticAsset asset = staticAssetStore.find(request.path());
+        if (asset == null) {
+            return ServerResponse.notFound().build();
+        }
+
+        HttpHeaders requestHeaders = request.headers().asHttpHeaders();
+        StaticAsset.Encoding encoding = asset.negotiate(requestHeaders.get(HttpHeaders.ACCEPT_ENCODING));
+        String etag = asset.getEtag(encoding);
+        boolean notModified = EtagUtil.matches(requestHeaders.get(HttpHeaders.IF_NONE_MATCH), etag);
+        staticAssetStore.recordHit(encoding, notModified);
+
+        HttpStatus status = notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK;
+        ServerResponse.BodyBuilder builder = ServerResponse.status(status)
+            .header(HttpHeaders.ETAG, etag)
+            .header(HttpHeaders.CACHE_CONTROL, asset.getCacheControl());
+        if (asset.isCompressed()) {
+            builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (notModified) {
+            return builder.build();
+        }
+
+        if (encoding.getToken() != null) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, encoding.getToken());
         }
-        
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_TYPE, mediaType.toString())
-                .header(HttpHeaders.CACHE_CONTROL, "public, max-age=3600") // 1小时缓存
-                .body(resource);
+        return builder
+            .header(HttpHeaders.CONTENT_TYPE, asset.getContentType())
+            .contentLength(asset.getLength(encoding))
+            .body((message, context) -> message.writeWith(Mono.just(asset.body(encoding, message.bufferFactory()))));
     }
 }
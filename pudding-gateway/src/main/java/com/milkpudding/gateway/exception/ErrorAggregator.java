@@ -0,0 +1,217 @@
+package com.milkpudding.gateway.exception;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 网关错误聚合
+ * 按异常类型和路由组成的签名统计错误次数，同一签名在一个间隔内只输出一次完整堆栈，
+ * 其余只计数；后台定期输出一行汇总。下游故障时避免大量相同堆栈占满磁盘
+ */
+@Slf4j
+@Component
+public class ErrorAggregator implements MeterBinder {
+
+    private static final String UNKNOWN_ROUTE = "none";
+    private static final String OTHER = "other";
+
+    private final Map<String, Signature> signatures = new ConcurrentHashMap<>();
+    private final LongAdder total = new LongAdder();
+
+    private final long traceIntervalNanos;
+    private final int maxSignatures;
+    private final ScheduledExecutorService reporter;
+
+    // 只由汇总线程使用
+    private final Map<Signature, Long> reported = new HashMap<>();
+
+    private volatile MeterRegistry registry;
+
+    public ErrorAggregator(@Value("${app.errors.trace-interval:60}") long traceIntervalSeconds,
+                           @Value("${app.errors.summary-interval:60}") long summaryIntervalSeconds,
+                           @Value("${app.errors.max-signatures:500}") int maxSignatures) {
+        this.traceIntervalNanos = TimeUnit.SECONDS.toNanos(Math.max(0, traceIntervalSeconds));
+        this.maxSignatures = Math.max(1, maxSignatures);
+        this.reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "error-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, summaryIntervalSeconds);
+        this.reporter.scheduleAtFixedRate(this::logSummary, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 记录一次错误
+     *
+     * @param routeId 路由ID，未匹配路由时为null
+     * @return 是否需要输出完整堆栈（该签名在当前间隔内第一次出现）
+     */
+    public boolean record(String routeId, Throwable error) {
+        return record(routeId, error, System.nanoTime());
+    }
+
+    boolean record(String routeId, Throwable error, long nowNanos) {
+        total.increment();
+        Signature signature = getSignature(error.getClass().getName(), routeId != null ? routeId : UNKNOWN_ROUTE);
+        signature.count.increment();
+        signature.lastMessage = error.getMessage();
+        signature.lastSeenMillis = System.currentTimeMillis();
+
+        long last = signature.lastTraceNanos.get();
+        if (last != Long.MIN_VALUE && nowNanos - last < traceIntervalNanos) {
+            signature.suppressed.increment();
+            return false;
+        }
+        if (!signature.lastTraceNanos.compareAndSet(last, nowNanos)) {
+            signature.suppressed.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 同一签名在上次输出堆栈后被省略的次数，输出后清零
+     */
+    public long drainSuppressed(String routeId, Throwable error) {
+        Signature signature = signatures.get(key(error.getClass().getName(), routeId != null ? routeId : UNKNOWN_ROUTE));
+        return signature != null ? signature.suppressed.sumThenReset() : 0;
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * 获取错误统计：总数、按异常类型、按路由，以及各签名的明细
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Long> byType = new HashMap<>();
+        Map<String, Long> byRoute = new HashMap<>();
+        List<Map<String, Object>> details = new ArrayList<>();
+        signatures.values().forEach(signature -> {
+            long count = signature.count.sum();
+            byType.merge(signature.type, count, Long::sum);
+            byRoute.merge(signature.route, count, Long::sum);
+            Map<String, Object> detail = new HashMap<>();
+            detail.put("type", signature.type);
+            detail.put("route", signature.route);
+            detail.put("count", count);
+            detail.put("lastMessage", signature.lastMessage);
+            detail.put("lastSeen", signature.lastSeenMillis);
+            details.add(detail);
+        });
+        details.sort((a, b) -> Long.compare((Long) b.get("count"), (Long) a.get("count")));
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("total", total.sum());
+        stats.put("byType", byType);
+        stats.put("byRoute", byRoute);
+        stats.put("signatures", details);
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        signatures.values().forEach(signature -> registerMeter(registry, signature));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reporter.shutdownNow();
+    }
+
+    private Signature getSignature(String type, String route) {
+        String key = key(type, route);
+        Signature signature = signatures.get(key);
+        if (signature != null) {
+            return signature;
+        }
+        // 签名数达到上限后新签名合并到other，避免异常类型或路由过多时无限增长
+        if (signatures.size() >= maxSignatures) {
+            type = OTHER;
+            route = OTHER;
+            key = key(type, route);
+        }
+        String signatureType = type;
+        String signatureRoute = route;
+        return signatures.computeIfAbsent(key, k -> {
+            Signature created = new Signature(signatureType, signatureRoute);
+            MeterRegistry current = registry;
+            if (current != null) {
+                registerMeter(current, created);
+            }
+            return created;
+        });
+    }
+
+    private static String key(String type, String route) {
+        return type + '|' + route;
+    }
+
+    private void registerMeter(MeterRegistry registry, Signature signature) {
+        FunctionCounter.builder("gateway.errors", signature, s -> s.count.sum())
+            .tag("type", signature.type)
+            .tag("route", signature.route)
+            .description("Errors handled by the gateway exception handler")
+            .register(registry);
+    }
+
+    /**
+     * 输出上一个汇总间隔内的错误汇总，没有新错误时不输出
+     */
+    void logSummary() {
+        try {
+            long intervalTotal = 0;
+            Map<String, Long> byType = new HashMap<>();
+            Map<String, Long> byRoute = new HashMap<>();
+            for (Signature signature : signatures.values()) {
+                long count = signature.count.sum();
+                Long previous = reported.put(signature, count);
+                long delta = count - (previous != null ? previous : 0);
+                if (delta > 0) {
+                    intervalTotal += delta;
+                    byType.merge(signature.type, delta, Long::sum);
+                    byRoute.merge(signature.route, delta, Long::sum);
+                }
+            }
+            if (intervalTotal > 0) {
+                log.warn("Gateway errors since last summary: {}, by type: {}, by route: {}", intervalTotal, byType, byRoute);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to summarize gateway errors: {}", e.getMessage());
+        }
+    }
+
+    private static final class Signature {
+        final String type;
+        final String route;
+        final LongAdder count = new LongAdder();
+        final LongAdder suppressed = new LongAdder();
+        final AtomicLong lastTraceNanos = new AtomicLong(Long.MIN_VALUE);
+        volatile String lastMessage;
+        volatile long lastSeenMillis;
+
+        Signature(String type, String route) {
+            this.type = type;
+            this.route = route;
+        }
+    }
+}
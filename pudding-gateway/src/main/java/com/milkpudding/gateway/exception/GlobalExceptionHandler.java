@@ -2,7 +2,10 @@ package com.milkpudding.gateway.exception;
 
 import com.milkpudding.gateway.util.ResponseUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.web.reactive.error.ErrorWebExceptionHandler;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.cloud.gateway.support.NotFoundException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpResponse;
@@ -16,33 +19,42 @@ import java.util.concurrent.TimeoutException;
 
 /**
  * 全局异常处理器
- * 处理网关层面的异常并返回统一的错误响应
+ * 处理网关层面的异常并返回统一的错误响应；
+ * 相同异常类型和路由的堆栈在一个间隔内只输出一次，其余只计数
  */
 @Slf4j
 @Component
 public class GlobalExceptionHandler implements ErrorWebExceptionHandler {
     
+    @Autowired
+    private ErrorAggregator errorAggregator;
+    
     @Override
     public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
         ServerHttpResponse response = exchange.getResponse();
-        String path = exchange.getRequest().getURI().getPath();
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        String routeId = route != null ? route.getId() : null;
         
         // 记录异常信息
-        log.error("Gateway error occurred on path: {} - {}", path, ex.getMessage(), ex);
+        if (errorAggregator.record(routeId, ex)) {
+            long suppressed = errorAggregator.drainSuppressed(routeId, ex);
+            log.error("Gateway error occurred on route: {}, path: {} - {} ({} similar errors suppressed since last trace)",
+                routeId, exchange.getRequest().getURI().getPath(), ex.getMessage(), suppressed, ex);
+        } else if (log.isDebugEnabled()) {
+            log.debug("Gateway error occurred on route: {}, path: {} - {}",
+                routeId, exchange.getRequest().getURI().getPath(), ex.toString());
+        }
         
         // 根据异常类型返回不同的错误响应
         if (ex instanceof NotFoundException) {
             // 服务未找到
-            return ResponseUtil.writeErrorResponse(response, HttpStatus.SERVICE_UNAVAILABLE, 
-                "Service temporarily unavailable");
+            return ResponseUtil.writeDownstreamUnavailableResponse(response);
         } else if (ex instanceof ConnectException) {
             // 连接异常
-            return ResponseUtil.writeErrorResponse(response, HttpStatus.BAD_GATEWAY, 
-                "Unable to connect to downstream service");
+            return ResponseUtil.writeBadGatewayResponse(response);
         } else if (ex instanceof TimeoutException) {
             // 超时异常
-            return ResponseUtil.writeErrorResponse(response, HttpStatus.GATEWAY_TIMEOUT, 
-                "Gateway timeout");
+            return ResponseUtil.writeGatewayTimeoutResponse(response);
         } else if (ex instanceof ResponseStatusException) {
             // 响应状态异常
             ResponseStatusException rse = (ResponseStatusException) ex;
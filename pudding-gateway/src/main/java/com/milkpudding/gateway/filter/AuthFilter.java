@@ -1,17 +1,27 @@
 package com.milkpudding.gateway.filter;
 
+import com.milkpudding.gateway.util.JwtClaims;
 import com.milkpudding.gateway.util.JwtUtil;
+import com.milkpudding.gateway.util.PathPrefixMatcher;
 import com.milkpudding.gateway.util.ResponseUtil;
+import com.milkpudding.gateway.util.TokenCache;
+import com.milkpudding.gateway.util.TokenRevocationList;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 /**
  * JWT认证过滤器
@@ -21,11 +31,28 @@ import java.util.Map;
 @Component
 public class AuthFilter extends AbstractGatewayFilterFactory<AuthFilter.Config> {
     
+    /**
+     * 鉴权通过后记录用户ID的exchange属性，不受客户端请求头影响
+     */
+    public static final String USER_ID_ATTR = AuthFilter.class.getName() + ".userId";
+    
     @Autowired
     private JwtUtil jwtUtil;
     
-    // 不需要鉴权的路径
-    private static final List<String> SKIP_AUTH_PATHS = Arrays.asList(
+    @Autowired
+    private TokenCache tokenCache;
+    
+    @Autowired
+    private TokenRevocationList revocationList;
+    
+    @Autowired
+    private Environment environment;
+    
+    // 配置中心的免鉴权路径配置项
+    private static final String SKIP_AUTH_PATHS_PROPERTY = "app.auth.skip-paths";
+    
+    // 默认不需要鉴权的路径（配置中心未配置时使用）
+    private static final List<String> DEFAULT_SKIP_AUTH_PATHS = Arrays.asList(
         "/",
         "/actuator/health",
         "/api/v1/auth/login",
@@ -38,18 +65,39 @@ public class AuthFilter extends AbstractGatewayFilterFactory<AuthFilter.Config>
         "/gateway/routes"
     );
     
+    // 编译后的免鉴权路径，配置刷新时整体替换
+    private volatile PathPrefixMatcher skipAuthMatcher = PathPrefixMatcher.compile(DEFAULT_SKIP_AUTH_PATHS);
+    
     public AuthFilter() {
         super(Config.class);
     }
     
+    @PostConstruct
+    public void init() {
+        reloadSkipAuthPaths();
+    }
+    
+    /**
+     * 配置中心刷新后重新编译免鉴权路径
+     */
+    @EventListener
+    public void onEnvironmentChange(EnvironmentChangeEvent event) {
+        if (event.getKeys().stream().anyMatch(key -> key.startsWith(SKIP_AUTH_PATHS_PROPERTY))) {
+            reloadSkipAuthPaths();
+        }
+    }
+    
     @Override
     public GatewayFilter apply(Config config) {
+        // 路由级免鉴权路径在路由构建时编译一次
+        PathPrefixMatcher routeSkipMatcher = PathPrefixMatcher.compile(config.getSkipPaths());
+        
         return (exchange, chain) -> {
             ServerHttpRequest request = exchange.getRequest();
             String path = request.getURI().getPath();
             
             // 跳过不需要鉴权的路径
-            if (shouldSkipAuth(path)) {
+            if (skipAuthMatcher.matches(path) || routeSkipMatcher.matches(path)) {
                 return chain.filter(exchange);
             }
             
@@ -64,16 +112,26 @@ public class AuthFilter extends AbstractGatewayFilterFactory<AuthFilter.Config>
             // 提取token
             String token = authHeader.substring(7);
             
-            // 验证token
-            Map<String, Object> payload = jwtUtil.parseToken(token);
-            if (payload == null) {
-                log.warn("Invalid JWT token for path: {}", path);
+            // 验证token，优先使用已验证token缓存
+            JwtClaims claims = tokenCache.get(token);
+            if (claims == null) {
+                claims = jwtUtil.verifyToken(token);
+                if (claims == null) {
+                    log.warn("Invalid JWT token for path: {}", path);
+                    return ResponseUtil.writeUnauthorizedResponse(exchange.getResponse());
+                }
+                tokenCache.put(token, claims);
+            }
+            
+            // 检查token是否已被吊销
+            if (revocationList.isRevoked(claims)) {
+                log.warn("Revoked JWT token for path: {}", path);
                 return ResponseUtil.writeUnauthorizedResponse(exchange.getResponse());
             }
             
             // 将用户信息添加到请求头中，传递给下游服务
-            String userId = (String) payload.get("sub");
-            String username = (String) payload.get("username");
+            String userId = claims.getSubject();
+            String username = claims.getUsername();
             
             ServerHttpRequest modifiedRequest = request.mutate()
                     .header("X-User-Id", userId)
@@ -81,23 +139,32 @@ public class AuthFilter extends AbstractGatewayFilterFactory<AuthFilter.Config>
                     .build();
             
             log.info("Authentication successful for user: {} ({}), path: {}", username, userId, path);
+            if (userId != null) {
+                exchange.getAttributes().put(USER_ID_ATTR, userId);
+            }
             
             return chain.filter(exchange.mutate().request(modifiedRequest).build());
         };
     }
     
     /**
-     * 判断是否需要跳过鉴权
+     * 从配置加载免鉴权路径并编译，未配置时使用默认列表
      */
-    private boolean shouldSkipAuth(String path) {
-        return SKIP_AUTH_PATHS.stream().anyMatch(skipPath -> 
-            path.equals(skipPath) || path.startsWith(skipPath + "/"));
+    private void reloadSkipAuthPaths() {
+        List<String> paths = Binder.get(environment)
+            .bind(SKIP_AUTH_PATHS_PROPERTY, Bindable.listOf(String.class))
+            .orElse(DEFAULT_SKIP_AUTH_PATHS);
+        skipAuthMatcher = PathPrefixMatcher.compile(paths);
+        log.info("Loaded {} skip-auth paths", skipAuthMatcher.size());
     }
     
     public static class Config {
         // 配置参数，如需要可以添加
         private boolean enabled = true;
         
+        // 路由级免鉴权路径，在全局配置之外追加
+        private List<String> skipPaths = new ArrayList<>();
+        
         public boolean isEnabled() {
             return enabled;
         }
@@ -105,5 +172,13 @@ public class AuthFilter extends AbstractGatewayFilterFactory<AuthFilter.Config>
         public void setEnabled(boolean enabled) {
             this.enabled = enabled;
         }
+        
+        public List<String> getSkipPaths() {
+            return skipPaths;
+        }
+        
+        public void setSkipPaths(List<String> skipPaths) {
+            this.skipPaths = skipPaths;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.milkpudding.gateway.filter;
+
+import com.milkpudding.gateway.codec.BinaryCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 边缘格式转换过滤器
+ * 客户端仍使用JSON，网关与下游服务之间使用CBOR或Smile：JSON请求体转换为二进制格式后转发，
+ * 转发时Accept优先二进制格式，并在exchange属性中记录格式，由BinaryCodecResponseFilter把下游返回的二进制格式转换回JSON。
+ * 默认关闭，路由配置了格式才生效；客户端自己请求二进制格式或不接受JSON时不做处理
+ */
+@Slf4j
+@Component
+public class BinaryCodecFilter extends AbstractGatewayFilterFactory<BinaryCodecFilter.Config> {
+
+    /**
+     * 网关与下游之间使用的格式，由BinaryCodecResponseFilter在写出响应时读取
+     */
+    public static final String FORMAT_ATTR = BinaryCodecFilter.class.getName() + ".format";
+
+    @Autowired
+    private BinaryCodec binaryCodec;
+
+    public BinaryCodecFilter() {
+        super(Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        BinaryCodec.Format format = config.getFormat();
+
+        return (exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            if (format == null || !acceptsJson(request.getHeaders().getAccept(), format)) {
+                return chain.filter(exchange);
+            }
+
+            // 下游不支持二进制格式时仍可返回JSON，响应按原样写出
+            ServerHttpRequest upstream = request.mutate()
+                .headers(headers -> headers.set(HttpHeaders.ACCEPT,
+                    format.getMediaType() + ", " + MediaType.APPLICATION_JSON_VALUE + ";q=0.5"))
+                .build();
+            exchange.getAttributes().put(FORMAT_ATTR, format);
+            ServerWebExchange converted = exchange.mutate()
+                .request(upstream)
+                .build();
+
+            MediaType contentType = request.getHeaders().getContentType();
+            if (contentType == null || !MediaType.APPLICATION_JSON.isCompatibleWith(contentType)
+                || !hasBody(request.getHeaders())) {
+                return chain.filter(converted);
+            }
+            return DataBufferUtils.join(request.getBody())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(body -> {
+                    if (body.isEmpty()) {
+                        return chain.filter(converted);
+                    }
+                    byte[] json = read(body.get());
+                    byte[] binary = binaryCodec.toBinary(json, format);
+                    if (binary == null) {
+                        log.debug("Request body is not valid JSON, forwarded unchanged: {}", request.getURI().getPath());
+                    }
+                    return chain.filter(converted.mutate()
+                        .request(new BodyRequest(converted.getRequest(), binary != null ? binary : json,
+                            binary != null ? format.getMediaType() : contentType,
+                            exchange.getResponse().bufferFactory()))
+                        .build());
+                });
+        };
+    }
+
+    /**
+     * 客户端接受JSON且没有直接请求二进制格式；没有Accept视为接受任意格式
+     */
+    private static boolean acceptsJson(List<MediaType> accept, BinaryCodec.Format format) {
+        if (accept.isEmpty()) {
+            return true;
+        }
+        boolean json = false;
+        for (MediaType mediaType : accept) {
+            if (mediaType.getType().equals(format.getMediaType().getType())
+                && mediaType.getSubtype().equals(format.getMediaType().getSubtype())) {
+                return false;
+            }
+            json |= mediaType.includes(MediaType.APPLICATION_JSON);
+        }
+        return json;
+    }
+
+    private static boolean hasBody(HttpHeaders headers) {
+        return headers.getContentLength() > 0 || headers.containsKey(HttpHeaders.TRANSFER_ENCODING);
+    }
+
+    static byte[] read(DataBuffer buffer) {
+        try {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            return bytes;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    /**
+     * 替换了请求体的请求，请求体已在内存中，可以重复订阅
+     */
+    private static final class BodyRequest extends ServerHttpRequestDecorator {
+        private final byte[] body;
+        private final DataBufferFactory bufferFactory;
+        private final HttpHeaders headers;
+
+        BodyRequest(ServerHttpRequest delegate, byte[] body, MediaType contentType, DataBufferFactory bufferFactory) {
+            super(delegate);
+            this.body = body;
+            this.bufferFactory = bufferFactory;
+            this.headers = new HttpHeaders();
+            this.headers.putAll(delegate.getHeaders());
+            this.headers.remove(HttpHeaders.TRANSFER_ENCODING);
+            this.headers.setContentType(contentType);
+            this.headers.setContentLength(body.length);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public Flux<DataBuffer> getBody() {
+            return Flux.defer(() -> Flux.just(bufferFactory.wrap(body)));
+        }
+    }
+
+    public static class Config implements HasRouteId {
+        private String routeId;                 // 路由ID
+        private BinaryCodec.Format format;      // 网关与下游之间的格式，为空时不转换
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        public BinaryCodec.Format getFormat() {
+            return format;
+        }
+
+        public void setFormat(BinaryCodec.Format format) {
+            this.format = format;
+        }
+    }
+}
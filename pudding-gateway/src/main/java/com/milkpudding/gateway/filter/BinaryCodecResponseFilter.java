@@ -0,0 +1,71 @@
+package com.milkpudding.gateway.filter;
+
+import com.milkpudding.gateway.codec.BinaryCodec;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+
+/**
+ * 边缘格式转换的响应端
+ * 上游响应由NettyWriteResponseFilter写出，路由过滤器包装的响应它看不到，因此在这里包装响应；
+ * BinaryCodecFilter为请求记录了格式且下游返回该格式时，整体读入并转换为JSON再写出，内容无法解析时按原样写出。
+ * 排在ResponseCaptureFilter之后包装，写出时先转换再经过缓存和请求合并的写入端，缓存和合并共享的都是JSON
+ */
+@Component
+public class BinaryCodecResponseFilter implements GlobalFilter, Ordered {
+
+    @Autowired
+    private BinaryCodec binaryCodec;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpResponseDecorator response = new ServerHttpResponseDecorator(exchange.getResponse()) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                // 路由过滤器在本过滤器之后执行，写出时才能确定格式
+                BinaryCodec.Format format = exchange.getAttribute(BinaryCodecFilter.FORMAT_ATTR);
+                MediaType contentType = getHeaders().getContentType();
+                if (format == null || contentType == null || !format.getMediaType().isCompatibleWith(contentType)) {
+                    return super.writeWith(body);
+                }
+                return DataBufferUtils.join(body)
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .flatMap(joined -> {
+                        if (joined.isEmpty()) {
+                            return super.writeWith(Flux.empty());
+                        }
+                        byte[] binary = BinaryCodecFilter.read(joined.get());
+                        byte[] json = binaryCodec.toJson(binary, format);
+                        if (json == null) {
+                            return super.writeWith(Mono.just(bufferFactory().wrap(binary)));
+                        }
+                        getHeaders().remove(HttpHeaders.TRANSFER_ENCODING);
+                        getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                        getHeaders().setContentLength(json.length);
+                        return super.writeWith(Mono.just(bufferFactory().wrap(json)));
+                    });
+            }
+        };
+        return chain.filter(exchange.mutate().response(response).build());
+    }
+
+    @Override
+    public int getOrder() {
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+    }
+}
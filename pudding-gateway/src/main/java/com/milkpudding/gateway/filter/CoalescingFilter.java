@@ -0,0 +1,106 @@
+package com.milkpudding.gateway.filter;
+
+import com.milkpudding.gateway.cache.ResponseCache;
+import com.milkpudding.gateway.coalescing.SingleFlight;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+
+/**
+ * 相同请求合并过滤器
+ * 同一路由、路径、查询参数和鉴权身份的GET请求在转发中时，后到的请求不再转发，
+ * 等待第一个请求的响应写完后直接复用；只合并进行中的请求，不保存已完成的响应。
+ * 需放在AuthFilter之后，合并key使用鉴权后的用户ID
+ */
+@Slf4j
+@Component
+public class CoalescingFilter extends AbstractGatewayFilterFactory<CoalescingFilter.Config> {
+
+    public static final String COALESCED_HEADER = "X-Coalesced";
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    public CoalescingFilter() {
+        super(Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId();
+
+        return (exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            // 分段请求的响应只对当前请求有效
+            if (request.getMethod() != HttpMethod.GET || request.getHeaders().containsKey(HttpHeaders.RANGE)) {
+                return chain.filter(exchange);
+            }
+
+            SingleFlight.Flight flight = singleFlight.join(routeId, singleFlight.key(routeId, exchange));
+            if (flight.isLeader()) {
+                exchange.getAttributes().put(SingleFlight.FLIGHT_ATTR, flight);
+                return chain.filter(exchange)
+                    .doFinally(signal -> flight.finish());
+            }
+
+            return flight.result()
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(shared -> shared.isPresent()
+                    ? writeShared(exchange, shared.get())
+                    : fallback(exchange, chain, flight));
+        };
+    }
+
+    private Mono<Void> writeShared(ServerWebExchange exchange, SingleFlight.SharedResponse shared) {
+        // 复用的响应不再写入响应缓存，leader已写入
+        exchange.getAttributes().remove(ResponseCache.CAPTURE_ATTR);
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        for (String[] header : shared.headers()) {
+            headers.add(header[0], header[1]);
+        }
+        headers.setContentLength(shared.body().length);
+        headers.set(COALESCED_HEADER, "true");
+        response.setStatusCode(HttpStatusCode.valueOf(shared.status()));
+        if (log.isDebugEnabled()) {
+            log.debug("Coalesced request served from in-flight response: {}", exchange.getRequest().getURI().getPath());
+        }
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(shared.body())));
+    }
+
+    /**
+     * leader的响应不能共享或等待超时，自行转发
+     */
+    private Mono<Void> fallback(ServerWebExchange exchange, GatewayFilterChain chain, SingleFlight.Flight flight) {
+        flight.recordFallback();
+        return chain.filter(exchange);
+    }
+
+    public static class Config implements HasRouteId {
+        private String routeId;             // 路由ID，用于合并key和统计
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.milkpudding.gateway.filter;
+
+import com.milkpudding.gateway.concurrency.AdaptiveConcurrencyLimiter;
+import com.milkpudding.gateway.concurrency.Priority;
+import com.milkpudding.gateway.util.ResponseUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.SignalType;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 自适应并发限制过滤器
+ * 按下游服务限制同时转发中的请求数，上限根据观察到的响应时间自动调整；
+ * 超出当前优先级可用名额的请求直接返回503，不在网关内排队
+ */
+@Slf4j
+@Component
+public class ConcurrencyLimitFilter extends AbstractGatewayFilterFactory<ConcurrencyLimitFilter.Config> implements MeterBinder {
+
+    // 下游服务 -> 并发限制
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private volatile MeterRegistry registry;
+
+    public ConcurrencyLimitFilter(@Value("${app.concurrency.initial-limit:50}") int initialLimit,
+                                  @Value("${app.concurrency.min-limit:10}") int minLimit,
+                                  @Value("${app.concurrency.max-limit:1000}") int maxLimit) {
+        super(Config.class);
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        AdaptiveConcurrencyLimiter limiter = getLimiter(config.getService());
+        Priority priority = config.getPriority();
+
+        return (exchange, chain) -> {
+            if (!limiter.tryAcquire(priority)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Concurrency limit {} reached for service: {}, rejecting {} request: {}",
+                        limiter.getLimit(), config.getService(), priority, exchange.getRequest().getURI().getPath());
+                }
+                exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+                return ResponseUtil.writeServiceUnavailableResponse(exchange.getResponse());
+            }
+
+            long startTime = System.nanoTime();
+            return chain.filter(exchange)
+                .doFinally(signal -> limiter.release(System.nanoTime() - startTime, signal != SignalType.CANCEL));
+        };
+    }
+
+    /**
+     * 获取各下游服务的并发限制统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        limiters.forEach((service, limiter) -> stats.put(service, limiter.getStats()));
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        limiters.forEach((service, limiter) -> registerMeters(registry, service, limiter));
+    }
+
+    private AdaptiveConcurrencyLimiter getLimiter(String service) {
+        return limiters.computeIfAbsent(service, key -> {
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit);
+            MeterRegistry current = registry;
+            if (current != null) {
+                registerMeters(current, key, limiter);
+            }
+            return limiter;
+        });
+    }
+
+    private void registerMeters(MeterRegistry registry, String service, AdaptiveConcurrencyLimiter limiter) {
+        Gauge.builder("gateway.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+            .tag("service", service)
+            .description("Current adaptive concurrency limit")
+            .register(registry);
+        Gauge.builder("gateway.concurrency.in.flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+            .tag("service", service)
+            .description("Requests currently forwarded to the service")
+            .register(registry);
+        for (Priority priority : Priority.values()) {
+            FunctionCounter.builder("gateway.concurrency.rejections", limiter, l -> l.getRejections(priority))
+                .tag("service", service)
+                .tag("priority", priority.name())
+                .description("Requests rejected because the concurrency limit was reached")
+                .register(registry);
+        }
+    }
+
+    public static class Config {
+        private String service = "default";             // 下游服务，同一服务的路由共用并发限制
+        private Priority priority = Priority.NORMAL;    // 请求优先级
+
+        public String getService() {
+            return service;
+        }
+
+        public void setService(String service) {
+            this.service = service;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public void setPriority(Priority priority) {
+            this.priority = priority;
+        }
+    }
+}
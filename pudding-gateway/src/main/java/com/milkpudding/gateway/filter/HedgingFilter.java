@@ -0,0 +1,595 @@
+package com.milkpudding.gateway.filter;
+
+import com.milkpudding.gateway.hedging.RetryBudget;
+import com.milkpudding.gateway.loadbalancer.InstanceLoadTracker;
+import com.milkpudding.gateway.loadbalancer.OutlierDetector;
+import com.milkpudding.gateway.loadbalancer.PeakEwmaLoadBalancer;
+import com.milkpudding.gateway.metrics.LatencyMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerUriTools;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.netty.Connection;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对冲请求和重试过滤器
+ * 幂等请求转发后超过路由最近统计区间上游耗时的p95仍未收到响应头时，向另一个下游实例发送相同的请求，
+ * 先收到响应头的一方胜出，另一方被取消；转发失败（连接失败、响应超时）时换一个实例重试。
+ * 对冲和重试共用全局预算，额外请求不超过原始请求的固定比例，下游故障时不会放大流量。
+ * 过滤器排在负载均衡之后执行，首次转发使用负载均衡选出的实例；每次尝试使用独立的exchange属性和响应头，
+ * 胜出一方的属性和响应头复制回原exchange，再由NettyWriteResponseFilter写出响应体
+ */
+@Slf4j
+@Component
+public class HedgingFilter extends AbstractGatewayFilterFactory<HedgingFilter.Config> implements MeterBinder {
+
+    /**
+     * 排在ReactiveLoadBalancerClientFilter之后，此时请求地址已解析为具体实例
+     */
+    public static final int HEDGING_FILTER_ORDER = ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1;
+
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS = Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS);
+
+    private final RetryBudget budget;
+    private final Map<String, RouteStats> routes = new ConcurrentHashMap<>();
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    @Autowired
+    private LoadBalancerClientFactory loadBalancerClientFactory;
+
+    @Autowired
+    private InstanceLoadTracker loadTracker;
+
+    @Autowired
+    private OutlierDetector outlierDetector;
+
+    private volatile MeterRegistry registry;
+
+    public HedgingFilter(@Value("${app.hedging.budget.ratio:0.1}") double ratio,
+                         @Value("${app.hedging.budget.min-per-second:5}") int minPerSecond,
+                         @Value("${app.hedging.budget.window:10}") int windowSeconds) {
+        super(Config.class);
+        this.budget = new RetryBudget(ratio, minPerSecond, windowSeconds);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId();
+        RouteStats stats = routeStats(routeId);
+
+        GatewayFilter filter = (exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            // 请求体不能重复读取，只对冲没有请求体的幂等请求
+            if (!IDEMPOTENT_METHODS.contains(request.getMethod()) || hasBody(request.getHeaders())) {
+                return chain.filter(exchange);
+            }
+            URI url = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+            Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+            if (url == null || route == null || !"lb".equals(route.getUri().getScheme())
+                || ServerWebExchangeUtils.isAlreadyRouted(exchange)) {
+                return chain.filter(exchange);
+            }
+
+            budget.recordRequest();
+            // 等待时间取上游耗时的p95，不含缓存命中和合并等待；路由还没有上游统计时不对冲，只在失败时重试
+            long p95Nanos = latencyMetrics.getUpstreamP95Nanos(routeId);
+            Duration hedgeDelay = config.isHedge() && p95Nanos > 0
+                ? Duration.ofNanos(Math.max(p95Nanos, config.getMinHedgeDelay() * 1_000_000L))
+                : null;
+            return new HedgedCall(exchange, chain, route.getUri().getHost(), url, config, hedgeDelay, stats).run();
+        };
+        return new OrderedGatewayFilter(filter, HEDGING_FILTER_ORDER);
+    }
+
+    /**
+     * 获取对冲和重试统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("budget", budget.getStats());
+        Map<String, Object> routeStats = new HashMap<>();
+        routes.forEach((routeId, route) -> routeStats.put(routeId, route.toMap()));
+        stats.put("routes", routeStats);
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        FunctionCounter.builder("gateway.hedging.budget.rejected", budget, RetryBudget::getRejected)
+            .description("Hedges and retries skipped because the global budget was exhausted")
+            .register(registry);
+        routes.forEach((routeId, stats) -> registerMeters(registry, routeId, stats));
+    }
+
+    private static boolean hasBody(HttpHeaders headers) {
+        return headers.getContentLength() > 0 || headers.containsKey(HttpHeaders.TRANSFER_ENCODING);
+    }
+
+    /**
+     * 从负载均衡的实例列表中按二选一选择一个未尝试过且未被摘除的实例，返回替换了实例地址的请求地址
+     */
+    private Mono<URI> chooseInstance(String serviceId, URI url, Set<String> tried) {
+        ServiceInstanceListSupplier supplier = loadBalancerClientFactory
+            .getLazyProvider(serviceId, ServiceInstanceListSupplier.class)
+            .getIfAvailable();
+        if (supplier == null) {
+            return Mono.empty();
+        }
+        return supplier.get().next().flatMap(instances -> {
+            List<ServiceInstance> candidates = new ArrayList<>(instances.size());
+            for (ServiceInstance instance : outlierDetector.available(serviceId, instances)) {
+                if (!tried.contains(InstanceLoadTracker.key(instance.getHost(), instance.getPort()))) {
+                    candidates.add(instance);
+                }
+            }
+            if (candidates.isEmpty()) {
+                return Mono.empty();
+            }
+            long now = System.nanoTime();
+            int index = PeakEwmaLoadBalancer.pick(candidates.size(), i -> loadTracker.get(
+                InstanceLoadTracker.key(candidates.get(i).getHost(), candidates.get(i).getPort())).cost(now),
+                ThreadLocalRandom.current());
+            ServiceInstance instance = candidates.get(index);
+            return Mono.just(LoadBalancerUriTools.reconstructURI(instance, url));
+        });
+    }
+
+    private RouteStats routeStats(String routeId) {
+        RouteStats stats = routes.get(routeId);
+        if (stats != null) {
+            return stats;
+        }
+        return routes.computeIfAbsent(routeId, key -> {
+            RouteStats created = new RouteStats();
+            MeterRegistry current = registry;
+            if (current != null) {
+                registerMeters(current, key, created);
+            }
+            return created;
+        });
+    }
+
+    private void registerMeters(MeterRegistry registry, String routeId, RouteStats stats) {
+        FunctionCounter.builder("gateway.hedging.requests", stats, s -> s.hedges.sum())
+            .tag("route", routeId)
+            .tag("kind", "hedge")
+            .description("Extra upstream requests sent by hedging and retries")
+            .register(registry);
+        FunctionCounter.builder("gateway.hedging.requests", stats, s -> s.retries.sum())
+            .tag("route", routeId)
+            .tag("kind", "retry")
+            .description("Extra upstream requests sent by hedging and retries")
+            .register(registry);
+        FunctionCounter.builder("gateway.hedging.wins", stats, s -> s.hedgeWins.sum())
+            .tag("route", routeId)
+            .description("Requests answered by the hedged request instead of the original one")
+            .register(registry);
+    }
+
+    private enum Kind {
+        PRIMARY, HEDGE, RETRY
+    }
+
+    /**
+     * 一个客户端请求的所有转发尝试
+     * 状态由各尝试的回调线程和对冲定时器并发修改，统一在本对象上加锁；
+     * 通知下游和取消其他尝试放在锁外执行
+     */
+    private final class HedgedCall {
+        private final ServerWebExchange exchange;
+        private final GatewayFilterChain chain;
+        private final String serviceId;
+        private final URI url;
+        private final Config config;
+        private final Duration hedgeDelay;
+        private final RouteStats stats;
+
+        private final List<Attempt> attempts = new ArrayList<>();
+        private final Set<String> tried = new HashSet<>();
+        private MonoSink<Attempt> sink;
+        private Disposable timer;
+        private int launched;       // 已发出和正在选择实例的尝试数
+        private int running;        // 已发出、尚未结束的尝试数
+        private int pending;        // 正在选择实例的尝试数
+        private boolean done;
+        private Throwable lastError;
+
+        HedgedCall(ServerWebExchange exchange, GatewayFilterChain chain, String serviceId, URI url,
+                   Config config, Duration hedgeDelay, RouteStats stats) {
+            this.exchange = exchange;
+            this.chain = chain;
+            this.serviceId = serviceId;
+            this.url = url;
+            this.config = config;
+            this.hedgeDelay = hedgeDelay;
+            this.stats = stats;
+        }
+
+        Mono<Void> run() {
+            return Mono.<Attempt>create(sink -> {
+                synchronized (this) {
+                    this.sink = sink;
+                    launched++;
+                    start(url, Kind.PRIMARY);
+                }
+                sink.onCancel(this::cancel);
+                if (hedgeDelay != null && config.getMaxAttempts() > 1) {
+                    Disposable scheduled = Mono.delay(hedgeDelay).subscribe(tick -> extra(Kind.HEDGE));
+                    synchronized (this) {
+                        if (done) {
+                            scheduled.dispose();
+                        } else {
+                            timer = scheduled;
+                        }
+                    }
+                }
+            }).doOnNext(this::promote).then();
+        }
+
+        /**
+         * 发出一次尝试，调用时持有锁
+         */
+        private void start(URI target, Kind kind) {
+            Attempt attempt = new Attempt(exchange, target, kind);
+            attempts.add(attempt);
+            tried.add(InstanceLoadTracker.key(target.getHost(), target.getPort()));
+            running++;
+            attempt.subscription = chain.filter(attempt.exchange)
+                .subscribe(null, error -> failed(attempt, error), () -> succeeded(attempt));
+        }
+
+        private void succeeded(Attempt winner) {
+            long now = System.nanoTime();
+            long elapsed = now - winner.startNanos;
+            boolean record;
+            List<Attempt> losers;
+            List<Attempt> unfinished = new ArrayList<>();
+            synchronized (this) {
+                running--;
+                // 胜出之后才完成的尝试同样计入上游耗时，已按取消时的耗时计入的不再重复
+                record = !winner.ended;
+                winner.ended = true;
+                if (done) {
+                    losers = List.of(winner);
+                    winner = null;
+                } else {
+                    done = true;
+                    losers = new ArrayList<>(attempts);
+                    losers.remove(winner);
+                    for (Attempt loser : losers) {
+                        if (!loser.ended) {
+                            loser.ended = true;
+                            unfinished.add(loser);
+                        }
+                    }
+                    disposeTimer();
+                }
+            }
+            // 收到响应头即完成
+            if (record) {
+                latencyMetrics.recordUpstream(config.getRouteId(), elapsed);
+            }
+            // 被取消的尝试实际耗时不短于已经过的时间，按已过时间计入；只计入完成的尝试时，
+            // 慢的一方总被对冲取消，p95会逐渐降到对冲等待下限
+            for (Attempt loser : unfinished) {
+                latencyMetrics.recordUpstream(config.getRouteId(), now - loser.startNanos);
+            }
+            losers.forEach(Attempt::cancel);
+            if (winner != null) {
+                if (winner.kind == Kind.HEDGE) {
+                    stats.hedgeWins.increment();
+                }
+                sink.success(winner);
+            }
+        }
+
+        private void failed(Attempt attempt, Throwable error) {
+            boolean retry;
+            synchronized (this) {
+                running--;
+                attempt.ended = true;
+                lastError = error;
+                if (done) {
+                    return;
+                }
+                retry = config.isRetry() && launched < config.getMaxAttempts();
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Upstream attempt to {} failed for route {}: {}", attempt.url.getRawAuthority(),
+                    config.getRouteId(), error.getMessage());
+            }
+            if (retry) {
+                extra(Kind.RETRY);
+            } else {
+                failIfIdle();
+            }
+        }
+
+        /**
+         * 对冲定时器到期或转发失败时，向另一个实例发送额外请求
+         */
+        private void extra(Kind kind) {
+            Set<String> exclude = null;
+            synchronized (this) {
+                if (!done && launched < config.getMaxAttempts() && (kind == Kind.RETRY || running > 0)) {
+                    launched++;
+                    pending++;
+                    exclude = new HashSet<>(tried);
+                }
+            }
+            if (exclude == null) {
+                failIfIdle();
+                return;
+            }
+            chooseInstance(serviceId, url, exclude)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .subscribe(target -> selected(kind, target.orElse(null)), error -> selected(kind, null));
+        }
+
+        private void selected(Kind kind, URI target) {
+            synchronized (this) {
+                pending--;
+                if (done) {
+                    return;
+                }
+                // 没有其他实例或预算用完时放弃这次额外请求
+                if (target != null && budget.tryAcquire()) {
+                    (kind == Kind.HEDGE ? stats.hedges : stats.retries).increment();
+                    if (log.isDebugEnabled()) {
+                        log.debug("Sending {} for route {} to {}", kind, config.getRouteId(), target.getRawAuthority());
+                    }
+                    start(target, kind);
+                    return;
+                }
+                if (target != null) {
+                    stats.budgetRejected.increment();
+                }
+            }
+            failIfIdle();
+        }
+
+        /**
+         * 所有尝试都失败且没有正在选择实例的尝试时，以最后一次失败结束请求
+         */
+        private void failIfIdle() {
+            Throwable error;
+            synchronized (this) {
+                if (done || running > 0 || pending > 0) {
+                    return;
+                }
+                done = true;
+                disposeTimer();
+                error = lastError;
+            }
+            sink.error(error);
+        }
+
+        private void cancel() {
+            List<Attempt> cancelled;
+            synchronized (this) {
+                done = true;
+                disposeTimer();
+                cancelled = new ArrayList<>(attempts);
+            }
+            cancelled.forEach(Attempt::cancel);
+        }
+
+        private void disposeTimer() {
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+        }
+
+        /**
+         * 胜出尝试的下游连接、响应头名称等属性和响应状态、响应头复制回原exchange；
+         * 与NettyRoutingFilter一样按名称覆盖响应头，网关已设置的同名响应头不会重复
+         */
+        private void promote(Attempt winner) {
+            exchange.getAttributes().putAll(winner.attributes);
+            ServerHttpResponse response = exchange.getResponse();
+            HttpStatusCode status = winner.response.getStatusCode();
+            if (status != null) {
+                response.setStatusCode(status);
+            }
+            response.getHeaders().putAll(winner.response.getHeaders());
+        }
+    }
+
+    /**
+     * 一次转发尝试，使用独立的属性和响应头，避免多个尝试互相覆盖
+     */
+    private static final class Attempt {
+        private final URI url;
+        private final Kind kind;
+        private final Map<String, Object> attributes;
+        private final AttemptResponse response;
+        private final ServerWebExchange exchange;
+        private final long startNanos = System.nanoTime();
+        private Disposable subscription;
+        private boolean ended;      // 已完成、失败或已按取消计入耗时，由HedgedCall的锁保护
+
+        Attempt(ServerWebExchange original, URI url, Kind kind) {
+            this.url = url;
+            this.kind = kind;
+            this.attributes = new ConcurrentHashMap<>(original.getAttributes());
+            this.attributes.put(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR, url);
+            this.response = new AttemptResponse(original.getResponse());
+            this.exchange = new AttemptExchange(original, attributes, response);
+        }
+
+        /**
+         * 取消尝试并关闭已建立的下游连接
+         */
+        void cancel() {
+            if (subscription != null) {
+                subscription.dispose();
+            }
+            Connection connection = (Connection) attributes.get(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR);
+            if (connection != null) {
+                connection.dispose();
+            }
+        }
+    }
+
+    /**
+     * 尝试各自的响应状态和响应头，胜出后才复制到真正的响应
+     */
+    private static final class AttemptResponse extends ServerHttpResponseDecorator {
+        private final HttpHeaders headers = new HttpHeaders();
+        private volatile HttpStatusCode status;
+
+        AttemptResponse(ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public boolean setStatusCode(HttpStatusCode status) {
+            this.status = status;
+            return true;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return status;
+        }
+    }
+
+    /**
+     * 使用尝试自己的属性和响应的exchange
+     */
+    private static final class AttemptExchange extends ServerWebExchangeDecorator {
+        private final Map<String, Object> attributes;
+        private final ServerHttpResponse response;
+
+        AttemptExchange(ServerWebExchange delegate, Map<String, Object> attributes, ServerHttpResponse response) {
+            super(delegate);
+            this.attributes = attributes;
+            this.response = response;
+        }
+
+        @Override
+        public ServerHttpResponse getResponse() {
+            return response;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+    }
+
+    static final class RouteStats {
+        private final LongAdder hedges = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder hedgeWins = new LongAdder();
+        private final LongAdder budgetRejected = new LongAdder();
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("hedges", hedges.sum());
+            map.put("retries", retries.sum());
+            map.put("hedgeWins", hedgeWins.sum());
+            map.put("budgetRejected", budgetRejected.sum());
+            return map;
+        }
+    }
+
+    public static class Config implements HasRouteId {
+        private String routeId;             // 路由ID，用于读取延迟统计和统计
+        private boolean hedge = true;       // 是否在超过p95后发送对冲请求
+        private boolean retry = true;       // 是否在转发失败后重试
+        private int maxAttempts = 2;        // 每个请求最多发出的转发次数（含首次）
+        private long minHedgeDelay = 10;    // 对冲等待时间下限（毫秒），p95更短时以此为准
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        public boolean isHedge() {
+            return hedge;
+        }
+
+        public void setHedge(boolean hedge) {
+            this.hedge = hedge;
+        }
+
+        public boolean isRetry() {
+            return retry;
+        }
+
+        public void setRetry(boolean retry) {
+            this.retry = retry;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getMinHedgeDelay() {
+            return minHedgeDelay;
+        }
+
+        public void setMinHedgeDelay(long minHedgeDelay) {
+            this.minHedgeDelay = minHedgeDelay;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.milkpudding.gateway.filter;
+
+import com.milkpudding.gateway.metrics.LatencyMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.URI;
+
+/**
+ * 延迟统计过滤器
+ * 在追踪过滤器之后、其他过滤器之前开始计时，请求完成后按路由和实际转发的下游实例记录耗时。
+ * 客户端取消的请求不计入
+ */
+@Component
+public class LatencyFilter implements GlobalFilter, Ordered {
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        long startTime = System.nanoTime();
+        return chain.filter(exchange).doFinally(signal -> {
+            if (signal != SignalType.CANCEL) {
+                latencyMetrics.record(getRouteId(exchange), getInstance(exchange), System.nanoTime() - startTime);
+            }
+        });
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+
+    private static String getRouteId(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route != null ? route.getId() : null;
+    }
+
+    /**
+     * 负载均衡后的下游地址；请求在转发前被拒绝或负载均衡失败时为null
+     */
+    private static String getInstance(ServerWebExchange exchange) {
+        URI url = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+        if (url == null || url.getScheme() == null || !url.getScheme().startsWith("http")) {
+            return null;
+        }
+        return url.getRawAuthority();
+    }
+}
@@ -0,0 +1,67 @@
+package com.milkpudding.gateway.filter;
+
+import com.milkpudding.gateway.loadbalancer.InstanceLoadTracker;
+import com.milkpudding.gateway.loadbalancer.OutlierDetector;
+import com.milkpudding.gateway.loadbalancer.PeakEwma;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.URI;
+
+/**
+ * 下游实例负载统计过滤器
+ * 排在负载均衡和对冲过滤器之后，每次实际转发（包括对冲和重试）都计入所选实例的进行中请求数，
+ * 收到响应头或失败时记录延迟，供PeakEwmaLoadBalancer选择实例；
+ * 同时把状态码或失败交给OutlierDetector，判断实例是否需要摘除
+ */
+@Component
+public class LoadTrackingFilter implements GlobalFilter, Ordered {
+
+    @Autowired
+    private InstanceLoadTracker tracker;
+
+    @Autowired
+    private OutlierDetector outlierDetector;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        URI url = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (url == null || route == null || !"lb".equals(route.getUri().getScheme())
+            || url.getScheme() == null || !url.getScheme().startsWith("http")) {
+            return chain.filter(exchange);
+        }
+
+        String instance = InstanceLoadTracker.key(url.getHost(), url.getPort());
+        String serviceId = route.getUri().getHost();
+        PeakEwma load = tracker.get(instance);
+        load.start();
+        long startTime = System.nanoTime();
+        return chain.filter(exchange).doFinally(signal -> {
+            long now = System.nanoTime();
+            if (signal == SignalType.CANCEL) {
+                // 取消不代表实例异常，不计入被动健康检查
+                load.cancel(now - startTime, now);
+                return;
+            }
+            load.complete(now - startTime, now);
+            HttpStatusCode status = exchange.getResponse().getStatusCode();
+            int code = signal == SignalType.ON_ERROR || status == null ? 0 : status.value();
+            outlierDetector.record(serviceId, instance, code, now - startTime);
+        });
+    }
+
+    @Override
+    public int getOrder() {
+        return HedgingFilter.HEDGING_FILTER_ORDER + 1;
+    }
+}
@@ -1,21 +1,47 @@
 package com.milkpudding.gateway.filter;
 
+import com.milkpudding.gateway.accesslog.AccessLogger;
+import com.milkpudding.gateway.trace.TailSampler;
+import com.milkpudding.gateway.trace.TraceContext;
+import com.milkpudding.gateway.util.RequestUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * 日志过滤器
- * 记录请求和响应信息
+ * 记录请求和响应信息；开启访问日志时每个请求只异步写入一条结构化记录。
+ * 请求完成后由尾部采样决定是否额外输出完整明细（慢请求、失败请求）
  */
 @Slf4j
 @Component
 public class LoggingFilter extends AbstractGatewayFilterFactory<LoggingFilter.Config> {
     
+    // 明细日志中需要隐藏的请求头
+    private static final Set<String> SENSITIVE_HEADERS = Set.of("authorization", "cookie", "set-cookie");
+    
+    @Autowired
+    private AccessLogger accessLogger;
+    
+    @Autowired
+    private TailSampler tailSampler;
+    
     public LoggingFilter() {
         super(Config.class);
     }
@@ -24,74 +50,114 @@ public class LoggingFilter extends AbstractGatewayFilterFactory<LoggingFilter.Co
     public GatewayFilter apply(Config config) {
         return (exchange, chain) -> {
             ServerHttpRequest request = exchange.getRequest();
-            ServerHttpResponse response = exchange.getResponse();
-            
-            long startTime = System.currentTimeMillis();
-            String requestId = generateRequestId();
             
-            // 记录请求信息
-            log.info("Request [{}] - {} {} from {}", 
-                requestId,
-                request.getMethod(), 
-                request.getURI(), 
-                getClientIp(request));
+            long timestamp = System.currentTimeMillis();
+            long startTime = System.nanoTime();
+            String requestId = getRequestId(exchange);
+            String uri = null;
             
-            // 记录请求头（如果启用详细日志）
-            if (config.isDetailedLogging()) {
-                request.getHeaders().forEach((name, values) ->
-                    log.debug("Request [{}] Header - {}: {}", requestId, name, values));
+            // 未开启访问日志时记录请求信息
+            if (!accessLogger.isEnabled()) {
+                uri = request.getURI().toString();
+                log.info("Request [{}] - {} {} from {}", 
+                    requestId,
+                    request.getMethod(), 
+                    uri, 
+                    RequestUtil.getClientIp(request));
             }
             
-            return chain.filter(exchange).then(
-                Mono.fromRunnable(() -> {
-                    long duration = System.currentTimeMillis() - startTime;
-                    
-                    // 记录响应信息
-                    log.info("Response [{}] - {} {} completed in {}ms with status {}", 
-                        requestId,
-                        request.getMethod(), 
-                        request.getURI(), 
-                        duration,
-                        response.getStatusCode());
-                    
-                    // 记录响应头（如果启用详细日志）
-                    if (config.isDetailedLogging()) {
-                        response.getHeaders().forEach((name, values) ->
-                            log.debug("Response [{}] Header - {}: {}", requestId, name, values));
-                    }
-                })
-            );
+            String loggedUri = uri;
+            return chain.filter(exchange)
+                .then(Mono.defer(() -> complete(exchange, config, requestId, loggedUri, timestamp, startTime, null)))
+                .onErrorResume(error -> complete(exchange, config, requestId, loggedUri, timestamp, startTime, error)
+                    .then(Mono.error(error)));
         };
     }
     
     /**
-     * 生成请求ID
+     * 请求完成：尾部采样并记录响应信息
      */
-    private String generateRequestId() {
-        return String.valueOf(System.currentTimeMillis() % 1000000);
+    private Mono<Void> complete(ServerWebExchange exchange, Config config, String requestId, String uri,
+                                long timestamp, long startTime, Throwable error) {
+        ServerHttpRequest request = exchange.getRequest();
+        ServerHttpResponse response = exchange.getResponse();
+        long durationNanos = System.nanoTime() - startTime;
+        HttpStatusCode statusCode = response.getStatusCode();
+        int status = statusCode != null ? statusCode.value() : 0;
+        
+        TailSampler.Reason reason = tailSampler.sample(status, durationNanos, error != null);
+        if (reason != null) {
+            logDetail(exchange, config, requestId, reason, status, durationNanos, error);
+        }
+        
+        if (!accessLogger.isEnabled()) {
+            // 记录响应信息
+            log.info("Response [{}] - {} {} completed in {}ms with status {}", 
+                requestId,
+                request.getMethod(), 
+                uri, 
+                durationNanos / 1_000_000,
+                statusCode);
+            return Mono.empty();
+        }
+        return accessLogger.record(timestamp, requestId, RequestUtil.getClientIp(request), request.getMethod().name(),
+            request.getPath().value(), status, durationNanos / 1000);
     }
     
     /**
-     * 获取客户端IP地址
+     * 输出被采样请求的完整明细
      */
-    private String getClientIp(ServerHttpRequest request) {
-        String xForwardedFor = request.getHeaders().getFirst("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
+    private void logDetail(ServerWebExchange exchange, Config config, String requestId, TailSampler.Reason reason,
+                           int status, long durationNanos, Throwable error) {
+        ServerHttpRequest request = exchange.getRequest();
+        TraceContext context = TraceContext.from(exchange);
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        URI upstream = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
         
-        String xRealIp = request.getHeaders().getFirst("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
+        StringBuilder detail = new StringBuilder(256)
+            .append("Trace [").append(requestId).append("] ").append(reason)
+            .append(" - ").append(request.getMethod()).append(' ').append(request.getURI())
+            .append(" -> ").append(upstream)
+            .append(", status: ").append(status)
+            .append(", duration: ").append(durationNanos / 1000 / 1000.0).append("ms")
+            .append(", route: ").append(route != null ? route.getId() : null)
+            .append(", client: ").append(RequestUtil.getClientIp(request));
+        if (context != null && context.getParentSpanId() != null) {
+            detail.append(", parent span: ").append(context.getParentSpanId());
+        }
+        if (config.isDetailedLogging()) {
+            detail.append(", request headers: ").append(maskHeaders(request.getHeaders()))
+                .append(", response headers: ").append(maskHeaders(exchange.getResponse().getHeaders()));
+        }
+        if (error != null) {
+            detail.append(", error: ").append(error);
         }
         
-        return request.getRemoteAddress() != null ? 
-            request.getRemoteAddress().getAddress().getHostAddress() : "unknown";
+        if (reason == TailSampler.Reason.ERROR) {
+            log.warn(detail.toString());
+        } else {
+            log.info(detail.toString());
+        }
+    }
+    
+    private static Map<String, List<String>> maskHeaders(HttpHeaders headers) {
+        Map<String, List<String>> masked = new LinkedHashMap<>();
+        headers.forEach((name, values) ->
+            masked.put(name, SENSITIVE_HEADERS.contains(name.toLowerCase()) ? List.of("***") : values));
+        return masked;
+    }
+    
+    /**
+     * 获取请求ID，由TraceFilter生成；没有经过TraceFilter时开始新的trace
+     */
+    private String getRequestId(ServerWebExchange exchange) {
+        String requestId = TraceContext.requestId(exchange);
+        return requestId != null ? requestId : TraceContext.fromTraceparent(null).getTraceId();
     }
     
     public static class Config {
         private boolean enabled = true;
-        private boolean detailedLogging = false;
+        private boolean detailedLogging = false;    // 采样明细中包含请求头和响应头
         
         public boolean isEnabled() {
             return enabled;
@@ -109,4 +175,4 @@ public class LoggingFilter extends AbstractGatewayFilterFactory<LoggingFilter.Co
             this.detailedLogging = detailedLogging;
         }
     }
-}
\ No newline at end of file
+}
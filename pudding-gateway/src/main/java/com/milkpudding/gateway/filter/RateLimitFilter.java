@@ -1,119 +1,270 @@
 package com.milkpudding.gateway.filter;
 
+import com.milkpudding.gateway.ratelimit.BucketStore;
+import com.milkpudding.gateway.ratelimit.ClusterRateLimitSync;
+import com.milkpudding.gateway.ratelimit.RateLimitAlgorithm;
+import com.milkpudding.gateway.ratelimit.RateLimitPolicy;
+import com.milkpudding.gateway.ratelimit.RateLimiter;
+import com.milkpudding.gateway.util.RequestUtil;
 import com.milkpudding.gateway.util.ResponseUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Component;
 
-import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
 
 /**
  * 限流过滤器
- * 基于令牌桶算法实现简单限流
+ * 按客户端IP限流，算法（令牌桶、GCRA、滑动窗口）由路由配置选择，
+ * 每个路由配置使用独立的有界限流状态存储；开启集群模式时各副本的消耗在后台定期汇总。
+ * 放行和拒绝时都返回RateLimit-Limit/RateLimit-Remaining，拒绝时附带Retry-After
  */
 @Slf4j
 @Component
-public class RateLimitFilter extends AbstractGatewayFilterFactory<RateLimitFilter.Config> {
+public class RateLimitFilter extends AbstractGatewayFilterFactory<RateLimitFilter.Config> implements MeterBinder {
     
-    // 存储每个IP的限流信息
-    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private static final String RATE_LIMIT_LIMIT = "RateLimit-Limit";
+    private static final String RATE_LIMIT_REMAINING = "RateLimit-Remaining";
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
     
-    public RateLimitFilter() {
+    // 每个路由过滤器对应的限流状态，路由被移除后随过滤器一起回收
+    private final Map<GatewayFilter, RouteLimit> routes = Collections.synchronizedMap(new WeakHashMap<>());
+    
+    private final int maxBuckets;
+    private final long idleTimeoutNanos;
+    private final ClusterRateLimitSync clusterSync;
+    private final ScheduledExecutorService sweeper;
+    
+    public RateLimitFilter(@Value("${app.rate-limit.max-buckets:100000}") int maxBuckets,
+                           @Value("${app.rate-limit.idle-timeout:600}") long idleTimeoutSeconds,
+                           @Value("${app.rate-limit.sweep-interval:30}") long sweepIntervalSeconds,
+                           ClusterRateLimitSync clusterSync) {
         super(Config.class);
+        this.maxBuckets = Math.max(1, maxBuckets);
+        this.idleTimeoutNanos = TimeUnit.SECONDS.toNanos(Math.max(0, idleTimeoutSeconds));
+        this.clusterSync = clusterSync;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rate-limit-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, sweepIntervalSeconds);
+        this.sweeper.scheduleWithFixedDelay(this::removeIdleBuckets, interval, interval, TimeUnit.SECONDS);
+        if (clusterSync.isEnabled()) {
+            long syncInterval = clusterSync.getSyncIntervalMillis();
+            this.sweeper.scheduleWithFixedDelay(this::syncCluster, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        }
     }
     
     @Override
     public GatewayFilter apply(Config config) {
-        return (exchange, chain) -> {
+        RateLimitPolicy policy = config.getAlgorithm().createPolicy(config.getCapacity(), config.getRefillRate());
+        BucketStore<RateLimiter> store = createStore(policy);
+        String limit = Long.toString(policy.getLimit());
+        
+        GatewayFilter filter = (exchange, chain) -> {
             ServerHttpRequest request = exchange.getRequest();
-            String clientIp = getClientIp(request);
+            String clientIp = RequestUtil.getClientIp(request);
             
-            // 获取或创建令牌桶
-            TokenBucket bucket = buckets.get(clientIp);
-            if (bucket == null) {
-                bucket = new TokenBucket(config.getCapacity(), config.getRefillRate());
-                buckets.put(clientIp, bucket);
-            }
+            // 获取或创建限流状态，存储已满时新IP可能按哈希共用溢出状态
+            RateLimiter limiter = store.get(clientIp);
+            
+            // 一次原子操作同时得到是否放行、剩余次数和等待时间
+            long result = limiter.tryAcquire();
+            HttpHeaders headers = exchange.getResponse().getHeaders();
+            headers.set(RATE_LIMIT_LIMIT, limit);
+            headers.set(RATE_LIMIT_REMAINING, Long.toString(RateLimiter.remaining(result)));
             
-            // 检查是否允许请求
-            if (!bucket.tryConsume()) {
+            if (!RateLimiter.isAllowed(result)) {
+                headers.set(HttpHeaders.RETRY_AFTER, Long.toString(toRetryAfterSeconds(RateLimiter.retryAfterNanos(result))));
                 log.warn("Rate limit exceeded for IP: {} on path: {}", clientIp, request.getURI().getPath());
                 return ResponseUtil.writeRateLimitResponse(exchange.getResponse());
             }
             
-            log.debug("Request allowed for IP: {}, remaining tokens: {}", clientIp, bucket.getTokens());
+            if (log.isDebugEnabled()) {
+                log.debug("Request allowed for IP: {}, remaining: {}", clientIp, RateLimiter.remaining(result));
+            }
             return chain.filter(exchange);
         };
+        routes.put(filter, new RouteLimit(getRouteKey(config), policy, store));
+        return filter;
     }
     
     /**
-     * 获取客户端IP地址
+     * 获取限流状态存储统计信息
      */
-    private String getClientIp(ServerHttpRequest request) {
-        String xForwardedFor = request.getHeaders().getFirst("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
-        
-        String xRealIp = request.getHeaders().getFirst("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("stores", snapshotStores().size());
+        stats.put("buckets", sum(BucketStore::size));
+        stats.put("maxBucketsPerStore", maxBuckets);
+        stats.put("idleTimeoutSeconds", TimeUnit.NANOSECONDS.toSeconds(idleTimeoutNanos));
+        stats.put("idleEvictions", sum(BucketStore::getIdleEvictions));
+        stats.put("capacityEvictions", sum(BucketStore::getCapacityEvictions));
+        stats.put("rejections", sum(BucketStore::getRejections));
+        stats.put("estimatedMemoryBytes", sum(BucketStore::estimatedMemoryBytes));
+        stats.put("cluster", clusterSync.getStats());
+        return stats;
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("gateway.ratelimit.buckets", this, filter -> filter.sum(BucketStore::size))
+            .description("Rate limit buckets currently stored")
+            .register(registry);
+        Gauge.builder("gateway.ratelimit.buckets.memory", this, filter -> filter.sum(BucketStore::estimatedMemoryBytes))
+            .baseUnit("bytes")
+            .description("Estimated memory used by rate limit buckets")
+            .register(registry);
+        FunctionCounter.builder("gateway.ratelimit.buckets.evictions", this, filter -> filter.sum(BucketStore::getIdleEvictions))
+            .tag("cause", "idle")
+            .description("Rate limit buckets evicted from the store")
+            .register(registry);
+        FunctionCounter.builder("gateway.ratelimit.buckets.evictions", this, filter -> filter.sum(BucketStore::getCapacityEvictions))
+            .tag("cause", "size")
+            .description("Rate limit buckets evicted from the store")
+            .register(registry);
+        FunctionCounter.builder("gateway.ratelimit.buckets.rejections", this, filter -> filter.sum(BucketStore::getRejections))
+            .description("New clients served by the overflow buckets because the store was full")
+            .register(registry);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+    
+    /**
+     * 创建限流状态存储；空闲时间不小于状态恢复满额所需时间，清理掉的都是满额状态。
+     * 溢出状态只在本地生效，不参与集群同步；选淘汰候选在清理线程上执行
+     */
+    private BucketStore<RateLimiter> createStore(RateLimitPolicy policy) {
+        long idleNanos = Math.max(idleTimeoutNanos, policy.getNanosToFill());
+        return new BucketStore<>(ip -> clusterSync.wrap(policy.newLimiter()), policy::newLimiter, maxBuckets, idleNanos,
+            policy.getEstimatedBytes() + clusterSync.getEstimatedOverheadBytes(), sweeper);
+    }
+    
+    /**
+     * 集群共享计数的路由标识，未设置路由ID时按算法和参数区分
+     */
+    private static String getRouteKey(Config config) {
+        if (config.getRouteId() != null) {
+            return config.getRouteId();
         }
-        
-        return request.getRemoteAddress() != null ? 
-            request.getRemoteAddress().getAddress().getHostAddress() : "unknown";
+        return config.getAlgorithm() + "-" + config.getCapacity() + "-" + config.getRefillRate();
     }
     
     /**
-     * 令牌桶实现
+     * Retry-After以秒为单位，向上取整
      */
-    private static class TokenBucket {
-        private final long capacity;        // 桶容量
-        private final long refillRate;      // 每秒补充令牌数
-        private long tokens;                // 当前令牌数
-        private long lastRefillTime;        // 上次补充时间
-        
-        public TokenBucket(long capacity, long refillRate) {
-            this.capacity = capacity;
-            this.refillRate = refillRate;
-            this.tokens = capacity;
-            this.lastRefillTime = Instant.now().getEpochSecond();
+    private static long toRetryAfterSeconds(long nanos) {
+        return Math.max(1, nanos / NANOS_PER_SECOND + (nanos % NANOS_PER_SECOND == 0 ? 0 : 1));
+    }
+    
+    private void removeIdleBuckets() {
+        try {
+            int removed = 0;
+            for (BucketStore<RateLimiter> store : snapshotStores()) {
+                removed += store.removeIdle();
+            }
+            if (removed > 0 && log.isDebugEnabled()) {
+                log.debug("Removed {} idle rate limit buckets", removed);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to remove idle rate limit buckets: {}", e.getMessage());
         }
-        
-        public synchronized boolean tryConsume() {
-            refill();
-            if (tokens > 0) {
-                tokens--;
-                return true;
+    }
+    
+    private void syncCluster() {
+        for (RouteLimit route : snapshotRoutes()) {
+            try {
+                clusterSync.sync(route.key, route.store, route.policy);
+            } catch (RuntimeException e) {
+                log.warn("Failed to sync rate limits for route {}: {}", route.key, e.getMessage());
             }
-            return false;
         }
-        
-        public synchronized long getTokens() {
-            refill();
-            return tokens;
+    }
+    
+    private List<RouteLimit> snapshotRoutes() {
+        synchronized (routes) {
+            return new ArrayList<>(routes.values());
+        }
+    }
+    
+    private List<BucketStore<RateLimiter>> snapshotStores() {
+        List<BucketStore<RateLimiter>> stores = new ArrayList<>();
+        for (RouteLimit route : snapshotRoutes()) {
+            stores.add(route.store);
+        }
+        return stores;
+    }
+    
+    private long sum(ToLongFunction<BucketStore<RateLimiter>> metric) {
+        long total = 0;
+        for (BucketStore<RateLimiter> store : snapshotStores()) {
+            total += metric.applyAsLong(store);
         }
+        return total;
+    }
+    
+    /**
+     * 单个路由的限流策略和状态存储
+     */
+    private static final class RouteLimit {
+        final String key;
+        final RateLimitPolicy policy;
+        final BucketStore<RateLimiter> store;
         
-        private void refill() {
-            long now = Instant.now().getEpochSecond();
-            long timeElapsed = now - lastRefillTime;
-            
-            if (timeElapsed > 0) {
-                long tokensToAdd = timeElapsed * refillRate;
-                tokens = Math.min(capacity, tokens + tokensToAdd);
-                lastRefillTime = now;
-            }
+        RouteLimit(String key, RateLimitPolicy policy, BucketStore<RateLimiter> store) {
+            this.key = key;
+            this.policy = policy;
+            this.store = store;
         }
     }
     
-    public static class Config {
+    public static class Config implements HasRouteId {
+        private String routeId;           // 路由ID，集群模式下用于区分共享计数
+        private RateLimitAlgorithm algorithm = RateLimitAlgorithm.TOKEN_BUCKET;    // 限流算法，默认令牌桶
         private long capacity = 100;      // 桶容量，默认100
         private long refillRate = 10;     // 每秒补充令牌数，默认10
         
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+        
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+        
+        public RateLimitAlgorithm getAlgorithm() {
+            return algorithm;
+        }
+        
+        public void setAlgorithm(RateLimitAlgorithm algorithm) {
+            this.algorithm = algorithm;
+        }
+        
         public long getCapacity() {
             return capacity;
         }
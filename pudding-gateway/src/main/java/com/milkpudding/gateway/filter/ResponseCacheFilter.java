@@ -0,0 +1,158 @@
+package com.milkpudding.gateway.filter;
+
+import com.milkpudding.gateway.cache.CachedResponse;
+import com.milkpudding.gateway.cache.ResponseCache;
+import com.milkpudding.gateway.util.EtagUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+/**
+ * 响应缓存过滤器
+ * 命中时直接由网关返回缓存的响应，请求带If-None-Match且ETag一致时返回304；
+ * 未命中时登记待缓存的请求，由ResponseCaptureFilter在写出上游响应时保存，并按是否缓存标记MISS或BYPASS。
+ * POST、PUT、PATCH、DELETE成功（2xx）时在响应写出前删除该路由下相应路径的缓存。
+ * 按用户缓存的路由需放在AuthFilter之后，缓存key使用鉴权后的用户ID
+ */
+@Slf4j
+@Component
+public class ResponseCacheFilter extends AbstractGatewayFilterFactory<ResponseCacheFilter.Config> {
+
+    public static final String CACHE_STATUS_HEADER = "X-Cache";
+
+    private static final Set<HttpMethod> UNSAFE_METHODS = Set.of(HttpMethod.POST, HttpMethod.PUT,
+        HttpMethod.PATCH, HttpMethod.DELETE);
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    public ResponseCacheFilter() {
+        super(Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId();
+
+        return (exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            if (UNSAFE_METHODS.contains(request.getMethod())) {
+                exchange.getResponse().beforeCommit(() -> {
+                    invalidate(exchange, routeId);
+                    return Mono.empty();
+                });
+                return chain.filter(exchange);
+            }
+            if (request.getMethod() != HttpMethod.GET) {
+                return chain.filter(exchange);
+            }
+            String requestCacheControl = request.getHeaders().getCacheControl();
+            if (ResponseCache.hasDirective(requestCacheControl, "no-store")) {
+                return chain.filter(exchange);
+            }
+            String key = responseCache.key(routeId, exchange, config.isPerUser());
+            if (key == null) {
+                return chain.filter(exchange);
+            }
+
+            // 请求要求no-cache时不使用缓存的响应，但仍用新的响应更新缓存
+            if (!ResponseCache.hasDirective(requestCacheControl, "no-cache")) {
+                CachedResponse cached = responseCache.get(routeId, key);
+                if (cached != null) {
+                    return writeCached(exchange, routeId, cached);
+                }
+            }
+
+            exchange.getAttributes().put(ResponseCache.CAPTURE_ATTR,
+                new ResponseCache.Capture(routeId, key, config.getTtl(), config.isPerUser()));
+            return chain.filter(exchange);
+        };
+    }
+
+    private void invalidate(ServerWebExchange exchange, String routeId) {
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        if (status == null || !status.is2xxSuccessful()) {
+            return;
+        }
+        String path = exchange.getRequest().getURI().getRawPath();
+        int removed = responseCache.invalidate(routeId, path);
+        if (removed > 0 && log.isDebugEnabled()) {
+            log.debug("Invalidated {} cached responses for route {}: {}", removed, routeId, path);
+        }
+    }
+
+    private Mono<Void> writeCached(ServerWebExchange exchange, String routeId, CachedResponse cached) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.set(HttpHeaders.ETAG, cached.getEtag());
+        headers.set(HttpHeaders.AGE, String.valueOf((System.currentTimeMillis() - cached.getCreatedMillis()) / 1000));
+        headers.set(CACHE_STATUS_HEADER, "HIT");
+
+        if (EtagUtil.matches(exchange.getRequest().getHeaders().get(HttpHeaders.IF_NONE_MATCH), cached.getEtag())) {
+            responseCache.recordNotModified(routeId);
+            for (String[] header : cached.getHeaders()) {
+                if (HttpHeaders.CACHE_CONTROL.equals(header[0]) || HttpHeaders.LAST_MODIFIED.equals(header[0])) {
+                    headers.set(header[0], header[1]);
+                }
+            }
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+
+        for (String[] header : cached.getHeaders()) {
+            headers.set(header[0], header[1]);
+        }
+        headers.setContentLength(cached.size());
+        response.setStatusCode(HttpStatusCode.valueOf(cached.getStatus()));
+        responseCache.recordServed(routeId, cached.size());
+        if (log.isDebugEnabled()) {
+            log.debug("Response cache hit for route {}: {}", routeId, exchange.getRequest().getURI().getPath());
+        }
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    public static class Config implements HasRouteId {
+        private String routeId;             // 路由ID，用于缓存key和统计
+        private long ttl = 60;              // 缓存时间（秒），上游max-age更短时以上游为准
+        private boolean perUser = true;     // 缓存key是否包含鉴权后的用户ID
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        public long getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(long ttl) {
+            this.ttl = ttl;
+        }
+
+        public boolean isPerUser() {
+            return perUser;
+        }
+
+        public void setPerUser(boolean perUser) {
+            this.perUser = perUser;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.milkpudding.gateway.filter;
+
+import com.milkpudding.gateway.cache.ResponseCache;
+import com.milkpudding.gateway.coalescing.SingleFlight;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+/**
+ * 响应缓存和请求合并的写入端
+ * 上游响应由NettyWriteResponseFilter写出，只有排在它之前包装的响应才能看到响应体，
+ * 因此这里为GET请求包装响应；ResponseCacheFilter未命中时登记了待缓存请求的，
+ * 在响应体写出的同时复制一份，写完后保存到缓存；CoalescingFilter的leader请求
+ * 同样复制一份，写完后分发给等待的请求。响应本身不等待也不额外缓冲。
+ * 排在BinaryCodecResponseFilter之前包装，复制的是转换回JSON之后的响应体
+ */
+@Component
+public class ResponseCaptureFilter implements GlobalFilter, Ordered {
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (exchange.getRequest().getMethod() != HttpMethod.GET) {
+            return chain.filter(exchange);
+        }
+
+        ServerHttpResponseDecorator response = new ServerHttpResponseDecorator(exchange.getResponse()) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                ResponseCache.Collector collector = collector(exchange, this);
+                SingleFlight.Recorder recorder = recorder(exchange, this);
+                if (collector == null && recorder == null) {
+                    return super.writeWith(body);
+                }
+                return super.writeWith(Flux.from(body)
+                    .doOnNext(buffer -> {
+                        if (collector != null) {
+                            collector.append(buffer);
+                        }
+                        if (recorder != null) {
+                            recorder.append(buffer);
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        if (collector != null) {
+                            collector.complete();
+                        }
+                        if (recorder != null) {
+                            recorder.complete();
+                        }
+                    }));
+            }
+        };
+        return chain.filter(exchange.mutate().response(response).build());
+    }
+
+    private ResponseCache.Collector collector(ServerWebExchange exchange, ServerHttpResponseDecorator response) {
+        ResponseCache.Capture capture = exchange.getAttribute(ResponseCache.CAPTURE_ATTR);
+        if (capture == null) {
+            return null;
+        }
+        ResponseCache.Collector collector = responseCache.collector(capture, response.getStatusCode(), response.getHeaders());
+        // 上游响应不可缓存时标记BYPASS，只有会被保存的响应标记MISS
+        response.getHeaders().set(ResponseCacheFilter.CACHE_STATUS_HEADER, collector != null ? "MISS" : "BYPASS");
+        return collector;
+    }
+
+    /**
+     * 只分发上游返回的响应头，网关为当前请求添加的响应头由等待的请求自己生成
+     */
+    private SingleFlight.Recorder recorder(ServerWebExchange exchange, ServerHttpResponseDecorator response) {
+        SingleFlight.Flight flight = exchange.getAttribute(SingleFlight.FLIGHT_ATTR);
+        if (flight == null) {
+            return null;
+        }
+        Set<String> upstreamHeaderNames = exchange.getAttribute(ServerWebExchangeUtils.CLIENT_RESPONSE_HEADER_NAMES);
+        return flight.recorder(response.getStatusCode(), response.getHeaders(), upstreamHeaderNames);
+    }
+
+    @Override
+    public int getOrder() {
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 2;
+    }
+}
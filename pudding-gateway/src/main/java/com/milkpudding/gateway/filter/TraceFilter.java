@@ -0,0 +1,42 @@
+package com.milkpudding.gateway.filter;
+
+import com.milkpudding.gateway.trace.TraceContext;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * 请求追踪过滤器
+ * 在所有过滤器之前为请求建立追踪上下文并保存到exchange属性，
+ * 转发到下游时带上traceparent和X-Request-Id，响应中返回X-Request-Id便于客户端反馈问题
+ */
+@Component
+public class TraceFilter implements GlobalFilter, Ordered {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        TraceContext context = TraceContext.fromTraceparent(
+            request.getHeaders().getFirst(TraceContext.TRACEPARENT_HEADER));
+        exchange.getAttributes().put(TraceContext.ATTRIBUTE, context);
+        exchange.getResponse().getHeaders().set(TraceContext.REQUEST_ID_HEADER, context.getTraceId());
+
+        // 客户端传入的X-Request-Id不可信，统一替换为traceId
+        ServerHttpRequest forwarded = request.mutate()
+            .headers(headers -> {
+                headers.set(TraceContext.TRACEPARENT_HEADER, context.toTraceparent());
+                headers.set(TraceContext.REQUEST_ID_HEADER, context.getTraceId());
+            })
+            .build();
+        return chain.filter(exchange.mutate().request(forwarded).build());
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,132 @@
+package com.milkpudding.gateway.hedging;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对冲和重试的全局预算
+ * 按秒分槽统计最近一个窗口内的原始请求数和额外请求数（对冲、重试），
+ * 额外请求不超过原始请求的固定比例，请求很少时保留每秒少量的最低额度。
+ * 下游故障时重试只会消耗预算，不会把流量放大到比例以上。
+ * 槽位切换时并发写入的少量计数可能丢失，预算是近似值
+ */
+public final class RetryBudget {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    // 所有预算共用的时间原点，保证秒数非负
+    private static final long ORIGIN = System.nanoTime();
+
+    private final double ratio;
+    private final int minPerSecond;
+    private final int windowSeconds;
+
+    private final AtomicLongArray seconds;
+    private final AtomicLongArray requests;
+    private final AtomicLongArray extras;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param ratio         额外请求占原始请求的比例上限，如0.1
+     * @param minPerSecond  请求很少时每秒至少允许的额外请求数
+     * @param windowSeconds 统计窗口（秒）
+     */
+    public RetryBudget(double ratio, int minPerSecond, int windowSeconds) {
+        if (ratio < 0) {
+            throw new IllegalArgumentException("ratio must not be negative: " + ratio);
+        }
+        if (minPerSecond < 0) {
+            throw new IllegalArgumentException("minPerSecond must not be negative: " + minPerSecond);
+        }
+        if (windowSeconds < 1) {
+            throw new IllegalArgumentException("windowSeconds must be positive: " + windowSeconds);
+        }
+        this.ratio = ratio;
+        this.minPerSecond = minPerSecond;
+        this.windowSeconds = windowSeconds;
+        this.seconds = new AtomicLongArray(windowSeconds);
+        this.requests = new AtomicLongArray(windowSeconds);
+        this.extras = new AtomicLongArray(windowSeconds);
+        for (int i = 0; i < windowSeconds; i++) {
+            seconds.set(i, -windowSeconds);
+        }
+    }
+
+    /**
+     * 记录一个原始请求
+     */
+    public void recordRequest() {
+        recordRequest(System.nanoTime());
+    }
+
+    void recordRequest(long nowNanos) {
+        requests.incrementAndGet(slot(second(nowNanos)));
+    }
+
+    /**
+     * 申请一个额外请求的额度
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    boolean tryAcquire(long nowNanos) {
+        long second = second(nowNanos);
+        int current = slot(second);
+        long requestCount = 0;
+        long extraCount = 0;
+        for (int i = 0; i < windowSeconds; i++) {
+            if (second - seconds.get(i) < windowSeconds) {
+                requestCount += requests.get(i);
+                extraCount += extras.get(i);
+            }
+        }
+        double allowed = Math.max((double) minPerSecond * windowSeconds, requestCount * ratio);
+        if (extraCount + 1 > allowed) {
+            rejected.increment();
+            return false;
+        }
+        extras.incrementAndGet(current);
+        acquired.increment();
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("ratio", ratio);
+        stats.put("minPerSecond", minPerSecond);
+        stats.put("windowSeconds", windowSeconds);
+        stats.put("acquired", acquired.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    public long getAcquired() {
+        return acquired.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    private static long second(long nowNanos) {
+        return (nowNanos - ORIGIN) / NANOS_PER_SECOND;
+    }
+
+    /**
+     * 当前秒对应的槽位，槽位仍是上一轮的数据时先清零
+     */
+    private int slot(long second) {
+        int index = (int) Math.floorMod(second, (long) windowSeconds);
+        long previous = seconds.get(index);
+        if (previous != second && seconds.compareAndSet(index, previous, second)) {
+            requests.set(index, 0);
+            extras.set(index, 0);
+        }
+        return index;
+    }
+}
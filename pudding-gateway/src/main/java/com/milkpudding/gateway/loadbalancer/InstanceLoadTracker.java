@@ -0,0 +1,61 @@
+package com.milkpudding.gateway.loadbalancer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 各下游实例的负载统计
+ * LoadTrackingFilter在每次转发时更新，PeakEwmaLoadBalancer在选择实例时读取
+ */
+@Component
+public class InstanceLoadTracker {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final Map<String, PeakEwma> loads = new ConcurrentHashMap<>();
+    private final long decayNanos;
+    private final long initialNanos;
+
+    public InstanceLoadTracker(@Value("${app.loadbalancer.decay-time:10}") long decaySeconds,
+                               @Value("${app.loadbalancer.initial-latency:50}") long initialMillis) {
+        this.decayNanos = Math.max(1, decaySeconds) * 1_000_000_000L;
+        this.initialNanos = Math.max(0, initialMillis) * 1_000_000L;
+    }
+
+    /**
+     * 实例标识，与请求地址的host:port一致
+     */
+    public static String key(String host, int port) {
+        return host + ":" + port;
+    }
+
+    /**
+     * 获取实例的负载统计，已有时不加锁也不分配
+     */
+    public PeakEwma get(String instance) {
+        PeakEwma load = loads.get(instance);
+        if (load != null) {
+            return load;
+        }
+        return loads.computeIfAbsent(instance, key -> new PeakEwma(decayNanos, initialNanos));
+    }
+
+    /**
+     * 获取各实例的延迟和进行中请求数
+     */
+    public Map<String, Object> getStats() {
+        long now = System.nanoTime();
+        Map<String, Object> stats = new HashMap<>();
+        loads.forEach((instance, load) -> {
+            Map<String, Object> item = new HashMap<>();
+            item.put("ewmaMillis", load.getEwmaNanos(now) / NANOS_PER_MILLI);
+            item.put("inFlight", load.getInFlight());
+            stats.put(instance, item);
+        });
+        return stats;
+    }
+}
@@ -0,0 +1,414 @@
+package com.milkpudding.gateway.loadbalancer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 被动健康检查：摘除异常的下游实例
+ * 根据实际转发的结果判断实例是否异常，不等待Consul健康检查：
+ * 连续返回5xx、连续连接失败，或区间平均延迟明显高于同服务其他实例时，将实例移出负载均衡候选，
+ * 摘除时长按摘除次数指数增长，不超过上限；同一服务被摘除的实例比例不超过上限，避免全部摘除。
+ * 摘除到期后实例自动回到候选中，长时间正常后摘除次数清零
+ */
+@Slf4j
+@Component
+public class OutlierDetector implements MeterBinder {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final int MIN_LATENCY_POOL = 3;      // 同服务至少这么多实例有足够请求时才比较延迟
+
+    /**
+     * 摘除原因
+     */
+    public enum Reason {
+        CONSECUTIVE_5XX, CONSECUTIVE_FAILURES, LATENCY
+    }
+
+    /**
+     * 事件类型：摘除、摘除到期恢复、因摘除比例达到上限而未摘除
+     */
+    public enum Action {
+        EJECTED, RETURNED, SKIPPED
+    }
+
+    /**
+     * 摘除事件
+     */
+    public record Event(long timestamp, String service, String instance, Action action, Reason reason,
+                        long durationMillis) {
+    }
+
+    private final Map<String, InstanceHealth> instances = new ConcurrentHashMap<>();
+    // 服务 -> 负载均衡最近一次使用的实例列表
+    private final Map<String, List<ServiceInstance>> pools = new ConcurrentHashMap<>();
+    private final ArrayDeque<Event> events = new ArrayDeque<>();
+    private final AtomicInteger ejectedCount = new AtomicInteger();
+    private final LongAdder[] ejections = new LongAdder[Reason.values().length];
+    private final LongAdder skipped = new LongAdder();
+    private final InstanceLoadTracker loadTracker;
+
+    private final boolean enabled;
+    private final int consecutive5xx;
+    private final int consecutiveFailures;
+    private final double latencyFactor;
+    private final long latencyMinNanos;
+    private final int latencyMinRequests;
+    private final long baseEjectionNanos;
+    private final long maxEjectionNanos;
+    private final int maxEjectionPercent;
+    private final int maxEvents;
+    private final ScheduledExecutorService sweeper;
+
+    public OutlierDetector(InstanceLoadTracker loadTracker,
+                           @Value("${app.loadbalancer.outlier.enabled:true}") boolean enabled,
+                           @Value("${app.loadbalancer.outlier.consecutive-5xx:5}") int consecutive5xx,
+                           @Value("${app.loadbalancer.outlier.consecutive-failures:3}") int consecutiveFailures,
+                           @Value("${app.loadbalancer.outlier.latency-factor:3.0}") double latencyFactor,
+                           @Value("${app.loadbalancer.outlier.latency-min:100}") long latencyMinMillis,
+                           @Value("${app.loadbalancer.outlier.latency-min-requests:20}") int latencyMinRequests,
+                           @Value("${app.loadbalancer.outlier.base-ejection-time:10}") long baseEjectionSeconds,
+                           @Value("${app.loadbalancer.outlier.max-ejection-time:300}") long maxEjectionSeconds,
+                           @Value("${app.loadbalancer.outlier.max-ejection-percent:50}") int maxEjectionPercent,
+                           @Value("${app.loadbalancer.outlier.interval:5}") long intervalSeconds,
+                           @Value("${app.loadbalancer.outlier.max-events:100}") int maxEvents) {
+        this.loadTracker = loadTracker;
+        this.enabled = enabled;
+        this.consecutive5xx = Math.max(1, consecutive5xx);
+        this.consecutiveFailures = Math.max(1, consecutiveFailures);
+        this.latencyFactor = latencyFactor;
+        this.latencyMinNanos = latencyMinMillis * 1_000_000L;
+        this.latencyMinRequests = latencyMinRequests;
+        this.baseEjectionNanos = Math.max(1, baseEjectionSeconds) * 1_000_000_000L;
+        this.maxEjectionNanos = Math.max(baseEjectionSeconds, maxEjectionSeconds) * 1_000_000_000L;
+        this.maxEjectionPercent = Math.max(0, Math.min(100, maxEjectionPercent));
+        this.maxEvents = Math.max(1, maxEvents);
+        for (int i = 0; i < ejections.length; i++) {
+            ejections[i] = new LongAdder();
+        }
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outlier-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, intervalSeconds);
+        if (enabled) {
+            this.sweeper.scheduleAtFixedRate(this::sweep, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 过滤掉正在被摘除的实例；全部被摘除时返回原列表
+     */
+    public List<ServiceInstance> available(String service, List<ServiceInstance> candidates) {
+        return available(service, candidates, System.nanoTime());
+    }
+
+    List<ServiceInstance> available(String service, List<ServiceInstance> candidates, long nowNanos) {
+        if (pools.get(service) != candidates) {
+            pools.put(service, candidates);
+        }
+        if (ejectedCount.get() == 0) {
+            return candidates;
+        }
+        List<ServiceInstance> healthy = new ArrayList<>(candidates.size());
+        for (ServiceInstance candidate : candidates) {
+            InstanceHealth health = instances.get(key(candidate));
+            if (health == null || !health.isEjected(nowNanos)) {
+                healthy.add(candidate);
+            }
+        }
+        return healthy.isEmpty() ? candidates : healthy;
+    }
+
+    /**
+     * 记录一次转发的结果
+     *
+     * @param status      下游响应状态码，转发失败（连接失败、响应超时）时为0
+     * @param latencyNanos 收到响应头或失败的耗时
+     */
+    public void record(String service, String instance, int status, long latencyNanos) {
+        record(service, instance, status, latencyNanos, System.nanoTime());
+    }
+
+    void record(String service, String instance, int status, long latencyNanos, long nowNanos) {
+        if (!enabled) {
+            return;
+        }
+        InstanceHealth health = health(service, instance);
+        health.requests.increment();
+        health.latency.add(latencyNanos);
+        if (status == 0) {
+            if (health.failures.incrementAndGet() >= consecutiveFailures) {
+                eject(health, Reason.CONSECUTIVE_FAILURES, nowNanos);
+            }
+        } else if (status >= 500) {
+            health.failures.set(0);
+            if (health.errors.incrementAndGet() >= consecutive5xx) {
+                eject(health, Reason.CONSECUTIVE_5XX, nowNanos);
+            }
+        } else {
+            // 多数请求成功，只在计数非零时写入
+            if (health.errors.get() != 0) {
+                health.errors.set(0);
+            }
+            if (health.failures.get() != 0) {
+                health.failures.set(0);
+            }
+        }
+    }
+
+    /**
+     * 实例是否正在被摘除
+     */
+    public boolean isEjected(String instance) {
+        InstanceHealth health = instances.get(instance);
+        return health != null && health.isEjected(System.nanoTime());
+    }
+
+    /**
+     * 服务当前的实例池：负载均衡最近一次使用的实例及其状态
+     */
+    public List<Map<String, Object>> getPool(String service) {
+        List<ServiceInstance> pool = pools.get(service);
+        if (pool == null) {
+            return List.of();
+        }
+        long now = System.nanoTime();
+        List<Map<String, Object>> members = new ArrayList<>(pool.size());
+        for (ServiceInstance instance : pool) {
+            String key = key(instance);
+            InstanceHealth health = instances.get(key);
+            PeakEwma load = loadTracker.get(key);
+            Map<String, Object> member = new HashMap<>();
+            member.put("instance", key);
+            member.put("instanceId", instance.getInstanceId());
+            member.put("ejected", health != null && health.isEjected(now));
+            member.put("ejections", health != null ? health.ejections : 0);
+            if (health != null && health.isEjected(now)) {
+                member.put("ejectedForMillis", (health.ejectedUntil - now) / 1_000_000);
+            }
+            member.put("ewmaMillis", load.getEwmaNanos(now) / NANOS_PER_MILLI);
+            member.put("inFlight", load.getInFlight());
+            members.add(member);
+        }
+        return members;
+    }
+
+    /**
+     * 服务最近的摘除事件，新事件在前
+     */
+    public List<Event> getEvents(String service) {
+        List<Event> result = new ArrayList<>();
+        synchronized (events) {
+            events.descendingIterator().forEachRemaining(event -> {
+                if (event.service().equals(service)) {
+                    result.add(event);
+                }
+            });
+        }
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ejected", ejectedCount.get());
+        Map<String, Object> byReason = new HashMap<>();
+        for (Reason reason : Reason.values()) {
+            byReason.put(reason.name(), ejections[reason.ordinal()].sum());
+        }
+        stats.put("ejections", byReason);
+        stats.put("skipped", skipped.sum());
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Reason reason : Reason.values()) {
+            FunctionCounter.builder("gateway.outlier.ejections", ejections[reason.ordinal()], LongAdder::sum)
+                .tag("reason", reason.name().toLowerCase())
+                .description("Upstream instances ejected from load balancing")
+                .register(registry);
+        }
+        FunctionCounter.builder("gateway.outlier.skipped", skipped, LongAdder::sum)
+            .description("Ejections skipped because the maximum ejection percentage was reached")
+            .register(registry);
+        Gauge.builder("gateway.outlier.ejected", ejectedCount, AtomicInteger::get)
+            .description("Upstream instances currently ejected")
+            .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    private InstanceHealth health(String service, String instance) {
+        InstanceHealth health = instances.get(instance);
+        if (health != null) {
+            return health;
+        }
+        return instances.computeIfAbsent(instance, key -> new InstanceHealth(service, key));
+    }
+
+    /**
+     * 摘除实例；已被摘除或摘除后超过比例上限时不摘除。摘除很少发生，统一加锁
+     */
+    private synchronized void eject(InstanceHealth health, Reason reason, long nowNanos) {
+        if (health.isEjected(nowNanos)) {
+            return;
+        }
+        health.errors.set(0);
+        health.failures.set(0);
+
+        List<ServiceInstance> pool = pools.get(health.service);
+        int poolSize = pool != null ? pool.size() : 0;
+        int ejectedInService = 0;
+        for (InstanceHealth other : instances.values()) {
+            if (other.service.equals(health.service) && other.isEjected(nowNanos)) {
+                ejectedInService++;
+            }
+        }
+        if ((ejectedInService + 1) * 100 > poolSize * maxEjectionPercent) {
+            skipped.increment();
+            addEvent(new Event(System.currentTimeMillis(), health.service, health.instance, Action.SKIPPED, reason, 0));
+            return;
+        }
+
+        health.ejections++;
+        int shift = Math.min(health.ejections - 1, 30);
+        long duration = Math.min(maxEjectionNanos, baseEjectionNanos << shift);
+        if (duration <= 0) {
+            duration = maxEjectionNanos;
+        }
+        // 上次摘除已到期但还没被定期检查恢复时仍在计数中，不重复计数
+        if (health.ejectedUntil == 0) {
+            ejectedCount.incrementAndGet();
+        }
+        health.ejectedAt = nowNanos;
+        health.ejectedUntil = nowNanos + duration;
+        ejections[reason.ordinal()].increment();
+        addEvent(new Event(System.currentTimeMillis(), health.service, health.instance, Action.EJECTED, reason,
+            duration / 1_000_000));
+        log.warn("Ejected upstream instance {} of {} for {}s: {}", health.instance, health.service,
+            duration / 1_000_000_000L, reason);
+    }
+
+    private void sweep() {
+        try {
+            sweep(System.nanoTime());
+        } catch (RuntimeException e) {
+            log.warn("Failed to run outlier detection: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 定期执行：恢复到期的实例，清零长时间正常的实例的摘除次数，按延迟摘除离群实例
+     */
+    synchronized void sweep(long nowNanos) {
+        for (InstanceHealth health : instances.values()) {
+            if (health.ejectedUntil != 0 && !health.isEjected(nowNanos)) {
+                health.ejectedUntil = 0;
+                ejectedCount.decrementAndGet();
+                addEvent(new Event(System.currentTimeMillis(), health.service, health.instance, Action.RETURNED,
+                    null, 0));
+                log.info("Returned upstream instance {} of {} to load balancing", health.instance, health.service);
+            } else if (health.ejectedUntil == 0 && health.ejections > 0
+                && nowNanos - health.ejectedAt > maxEjectionNanos * 2) {
+                health.ejections = 0;
+            }
+        }
+        pools.forEach((service, pool) -> ejectSlowInstances(service, pool, nowNanos));
+        for (InstanceHealth health : instances.values()) {
+            health.requests.reset();
+            health.latency.reset();
+        }
+    }
+
+    /**
+     * 区间平均延迟超过同服务中位数的固定倍数且超过最低阈值的实例被摘除，只比较本区间有足够请求的实例。
+     * 不使用负载均衡的峰值EWMA，单次停顿不会导致摘除
+     */
+    private void ejectSlowInstances(String service, List<ServiceInstance> pool, long nowNanos) {
+        List<InstanceHealth> sampled = new ArrayList<>();
+        List<Double> latencies = new ArrayList<>();
+        for (ServiceInstance instance : pool) {
+            InstanceHealth health = instances.get(key(instance));
+            long requests = health != null ? health.requests.sum() : 0;
+            if (requests >= latencyMinRequests && !health.isEjected(nowNanos)) {
+                sampled.add(health);
+                latencies.add(health.latency.sum() / (double) requests);
+            }
+        }
+        if (sampled.size() < MIN_LATENCY_POOL) {
+            return;
+        }
+        double[] sorted = latencies.stream().mapToDouble(Double::doubleValue).toArray();
+        Arrays.sort(sorted);
+        double median = sorted[sorted.length / 2];
+        double threshold = Math.max(latencyMinNanos, median * latencyFactor);
+        for (int i = 0; i < sampled.size(); i++) {
+            if (latencies.get(i) > threshold) {
+                eject(sampled.get(i), Reason.LATENCY, nowNanos);
+            }
+        }
+    }
+
+    private void addEvent(Event event) {
+        synchronized (events) {
+            if (events.size() >= maxEvents) {
+                events.pollFirst();
+            }
+            events.addLast(event);
+        }
+    }
+
+    private static String key(ServiceInstance instance) {
+        return InstanceLoadTracker.key(instance.getHost(), instance.getPort());
+    }
+
+    /**
+     * 单个实例的健康状态，请求线程只更新计数器
+     */
+    static final class InstanceHealth {
+        private final String service;
+        private final String instance;
+        private final AtomicInteger errors = new AtomicInteger();        // 连续5xx
+        private final AtomicInteger failures = new AtomicInteger();      // 连续连接失败
+        private final LongAdder requests = new LongAdder();              // 本区间请求数
+        private final LongAdder latency = new LongAdder();               // 本区间延迟总和
+        private volatile long ejectedUntil;                              // 0表示未摘除
+        private volatile long ejectedAt;
+        private volatile int ejections;                                  // 决定下次摘除时长
+
+        InstanceHealth(String service, String instance) {
+            this.service = service;
+            this.instance = instance;
+        }
+
+        boolean isEjected(long nowNanos) {
+            long until = ejectedUntil;
+            return until != 0 && nowNanos - until < 0;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.milkpudding.gateway.loadbalancer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个下游实例的负载：峰值EWMA延迟和进行中的请求数
+ * 新的延迟高于当前值时直接取新值（峰值），慢下来的实例立即被发现；低于当前值时按经过时间指数衰减靠近。
+ * 读取时当前值同样按空闲时间向0衰减，暂时没有流量的慢实例会逐渐重新被选中，恢复后回到正常。
+ * 延迟和更新时间打包在一个long中通过CAS更新：高32位为float延迟（纳秒），低32位为时间（以2^20纳秒为单位），
+ * 进行中的请求数单独计数，都不加锁
+ */
+public final class PeakEwma {
+
+    private static final int TIME_SHIFT = 20;               // 时间单位 2^20 ns，约1毫秒
+    private static final long TIME_MASK = 0xFFFFFFFFL;
+
+    // 所有实例共用的时间原点，保证相对时间非负
+    private static final long ORIGIN = System.nanoTime();
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(PeakEwma.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final double decayUnits;        // 衰减时间常数（时间单位数）
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile long state;
+
+    /**
+     * @param decayNanos   衰减时间常数，经过这段时间旧值的权重降到1/e
+     * @param initialNanos 没有观测值时的初始延迟，新实例不会因为延迟为0而被大量选中
+     */
+    public PeakEwma(long decayNanos, long initialNanos) {
+        this(decayNanos, initialNanos, System.nanoTime());
+    }
+
+    public PeakEwma(long decayNanos, long initialNanos, long nowNanos) {
+        if (decayNanos < 1) {
+            throw new IllegalArgumentException("decayNanos must be positive: " + decayNanos);
+        }
+        this.decayUnits = Math.max(1, decayNanos >> TIME_SHIFT);
+        this.state = pack((float) initialNanos, units(nowNanos));
+    }
+
+    /**
+     * 请求转发到该实例
+     */
+    public void start() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * 请求完成（收到响应头或失败），记录延迟
+     */
+    public void complete(long rttNanos) {
+        complete(rttNanos, System.nanoTime());
+    }
+
+    public void complete(long rttNanos, long nowNanos) {
+        inFlight.decrementAndGet();
+        observe(rttNanos, nowNanos, false);
+    }
+
+    /**
+     * 请求被取消（对冲请求落败或客户端断开），已等待的时间只是延迟的下限，只在高于当前值时记录
+     */
+    public void cancel(long elapsedNanos, long nowNanos) {
+        inFlight.decrementAndGet();
+        observe(elapsedNanos, nowNanos, true);
+    }
+
+    /**
+     * 负载代价：当前延迟乘以加上本次请求后的进行中请求数
+     */
+    public double cost(long nowNanos) {
+        return getEwmaNanos(nowNanos) * (inFlight.get() + 1);
+    }
+
+    /**
+     * 按空闲时间衰减后的延迟（纳秒）
+     */
+    public double getEwmaNanos(long nowNanos) {
+        long current = state;
+        return ewma(current) * weight(elapsedUnits(current, units(nowNanos)));
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void observe(long rttNanos, long nowNanos, boolean lowerBound) {
+        long now = units(nowNanos);
+        while (true) {
+            long current = state;
+            double previous = ewma(current);
+            double next;
+            if (rttNanos > previous) {
+                next = rttNanos;
+            } else if (lowerBound) {
+                return;
+            } else {
+                double weight = weight(elapsedUnits(current, now));
+                next = previous * weight + rttNanos * (1 - weight);
+            }
+            if (STATE.compareAndSet(this, current, pack((float) next, now))) {
+                return;
+            }
+        }
+    }
+
+    private double weight(long elapsedUnits) {
+        return elapsedUnits <= 0 ? 1 : Math.exp(-elapsedUnits / decayUnits);
+    }
+
+    /**
+     * 经过的时间单位数；其他线程已写入更新的时间时视为没有经过时间
+     */
+    private static long elapsedUnits(long state, long now) {
+        int elapsed = (int) (now - (state & TIME_MASK));
+        return Math.max(0, elapsed);
+    }
+
+    private static long units(long nowNanos) {
+        return ((nowNanos - ORIGIN) >>> TIME_SHIFT) & TIME_MASK;
+    }
+
+    private static double ewma(long state) {
+        return Float.intBitsToFloat((int) (state >>> 32));
+    }
+
+    private static long pack(float ewma, long units) {
+        return ((long) Float.floatToRawIntBits(ewma) << 32) | (units & TIME_MASK);
+    }
+}
@@ -0,0 +1,77 @@
+package com.milkpudding.gateway.loadbalancer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntToDoubleFunction;
+import java.util.random.RandomGenerator;
+
+/**
+ * 基于峰值EWMA的二选一负载均衡
+ * 随机取两个实例，选择延迟乘以进行中请求数较小的一个；
+ * 只比较两个实例，不需要全局排序或加锁，同时避免所有请求涌向同一个"最快"实例。
+ * 被OutlierDetector摘除的实例不参与选择
+ */
+public class PeakEwmaLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    private final ObjectProvider<ServiceInstanceListSupplier> supplierProvider;
+    private final String serviceId;
+    private final InstanceLoadTracker tracker;
+    private final OutlierDetector outlierDetector;
+
+    public PeakEwmaLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> supplierProvider, String serviceId,
+                                InstanceLoadTracker tracker, OutlierDetector outlierDetector) {
+        this.supplierProvider = supplierProvider;
+        this.serviceId = serviceId;
+        this.tracker = tracker;
+        this.outlierDetector = outlierDetector;
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = supplierProvider.getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map(this::choose);
+    }
+
+    private Response<ServiceInstance> choose(List<ServiceInstance> discovered) {
+        if (discovered.isEmpty()) {
+            return new EmptyResponse();
+        }
+        List<ServiceInstance> instances = outlierDetector.available(serviceId, discovered);
+        long now = System.nanoTime();
+        int index = pick(instances.size(), i -> {
+            ServiceInstance instance = instances.get(i);
+            return tracker.get(InstanceLoadTracker.key(instance.getHost(), instance.getPort())).cost(now);
+        }, ThreadLocalRandom.current());
+        return new DefaultResponse(instances.get(index));
+    }
+
+    /**
+     * 随机取两个不同的下标，返回代价较小的一个，代价相同时取第一个
+     */
+    public static int pick(int size, IntToDoubleFunction cost, RandomGenerator random) {
+        if (size == 1) {
+            return 0;
+        }
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        return cost.applyAsDouble(second) < cost.applyAsDouble(first) ? second : first;
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+}
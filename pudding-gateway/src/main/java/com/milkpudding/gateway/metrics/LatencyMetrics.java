@@ -0,0 +1,212 @@
+package com.milkpudding.gateway.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 路由和下游实例的延迟统计
+ * 每个请求的耗时记录到所属路由和实际转发的下游实例的直方图中，
+ * 后台线程按固定区间计算p50/p90/p99/p999和每秒请求数，通过/gateway/metrics和Micrometer暴露。
+ * 路由的上游耗时单独统计：只包含实际转发到下游、从发出请求到收到响应头的时间，
+ * 不含缓存命中、合并等待和网关自身的处理，供对冲请求确定等待时间
+ */
+@Slf4j
+@Component
+public class LatencyMetrics implements MeterBinder {
+
+    private static final String[] QUANTILE_TAGS = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final Map<String, LatencyRecorder> routes = new ConcurrentHashMap<>();
+    private final Map<String, LatencyRecorder> instances = new ConcurrentHashMap<>();
+    private final Map<String, LatencyRecorder> upstreams = new ConcurrentHashMap<>();
+    private final LongAdder rejectedSeries = new LongAdder();
+
+    private final int maxSeries;
+    private final int idleIntervals;
+    private final long intervalSeconds;
+    private final ScheduledExecutorService roller;
+
+    // 只由统计线程使用
+    private final long[] scratch = new long[LatencyHistogram.BUCKETS];
+    private long lastRollNanos = System.nanoTime();
+
+    private volatile MeterRegistry registry;
+
+    public LatencyMetrics(@Value("${app.metrics.latency.interval:10}") long intervalSeconds,
+                          @Value("${app.metrics.latency.max-series:1000}") int maxSeries,
+                          @Value("${app.metrics.latency.idle-timeout:600}") long idleTimeoutSeconds) {
+        this.intervalSeconds = Math.max(1, intervalSeconds);
+        this.maxSeries = Math.max(1, maxSeries);
+        this.idleIntervals = (int) Math.max(1, idleTimeoutSeconds / this.intervalSeconds);
+        this.roller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "latency-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.roller.scheduleAtFixedRate(this::roll, this.intervalSeconds, this.intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 记录一次请求耗时
+     *
+     * @param routeId  路由ID，未匹配路由时为null
+     * @param instance 下游实例（host:port），未转发时为null
+     * @param nanos    耗时（纳秒）
+     */
+    public void record(String routeId, String instance, long nanos) {
+        if (routeId != null) {
+            LatencyRecorder recorder = getRecorder(routes, "route", routeId);
+            if (recorder != null) {
+                recorder.record(nanos);
+            }
+        }
+        if (instance != null) {
+            LatencyRecorder recorder = getRecorder(instances, "instance", instance);
+            if (recorder != null) {
+                recorder.record(nanos);
+            }
+        }
+    }
+
+    /**
+     * 记录一次转发到下游的耗时（发出请求到收到响应头）
+     */
+    public void recordUpstream(String routeId, long nanos) {
+        LatencyRecorder recorder = getRecorder(upstreams, "route.upstream", routeId);
+        if (recorder != null) {
+            recorder.record(nanos);
+        }
+    }
+
+    /**
+     * 路由最近一个统计区间上游耗时的p95（纳秒），没有统计数据时为0
+     */
+    public long getUpstreamP95Nanos(String routeId) {
+        LatencyRecorder recorder = upstreams.get(routeId);
+        return recorder != null ? recorder.getP95Nanos() : 0;
+    }
+
+    /**
+     * 获取最近一个统计区间的延迟指标
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("intervalSeconds", intervalSeconds);
+        metrics.put("routes", toStats(routes));
+        metrics.put("instances", toStats(instances));
+        metrics.put("upstreams", toStats(upstreams));
+        metrics.put("rejectedSeries", rejectedSeries.sum());
+        return metrics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        routes.forEach((route, recorder) -> registerMeters(registry, "route", route, recorder));
+        instances.forEach((instance, recorder) -> registerMeters(registry, "instance", instance, recorder));
+        upstreams.forEach((route, recorder) -> registerMeters(registry, "route.upstream", route, recorder));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        roller.shutdownNow();
+    }
+
+    /**
+     * 获取统计对象，已有统计对象时不加锁也不分配；统计数达到上限时返回null
+     */
+    private LatencyRecorder getRecorder(Map<String, LatencyRecorder> recorders, String type, String key) {
+        LatencyRecorder recorder = recorders.get(key);
+        if (recorder != null) {
+            return recorder;
+        }
+        if (routes.size() + instances.size() + upstreams.size() >= maxSeries) {
+            rejectedSeries.increment();
+            return null;
+        }
+        return recorders.computeIfAbsent(key, k -> {
+            LatencyRecorder created = new LatencyRecorder();
+            MeterRegistry current = registry;
+            if (current != null) {
+                registerMeters(current, type, k, created);
+            }
+            return created;
+        });
+    }
+
+    private void roll() {
+        try {
+            long now = System.nanoTime();
+            long elapsed = now - lastRollNanos;
+            lastRollNanos = now;
+            roll(routes, "route", elapsed);
+            roll(instances, "instance", elapsed);
+            roll(upstreams, "route.upstream", elapsed);
+        } catch (RuntimeException e) {
+            log.warn("Failed to roll latency metrics: {}", e.getMessage());
+        }
+    }
+
+    private void roll(Map<String, LatencyRecorder> recorders, String type, long elapsed) {
+        recorders.forEach((key, recorder) -> {
+            recorder.roll(scratch, elapsed);
+            // 长时间没有请求的统计（下线的实例、删除的路由）被移除
+            if (recorder.getIdleIntervals() >= idleIntervals && recorders.remove(key, recorder)) {
+                MeterRegistry current = registry;
+                if (current != null) {
+                    recorder.meters.forEach(current::remove);
+                }
+                log.debug("Removed idle latency metrics for {}: {}", type, key);
+            }
+        });
+    }
+
+    private void registerMeters(MeterRegistry registry, String type, String key, LatencyRecorder recorder) {
+        String prefix = "gateway." + type;
+        // 路由的上游耗时（route.upstream）同样按route打标签
+        int dot = type.indexOf('.');
+        String tag = dot > 0 ? type.substring(0, dot) : type;
+        List<Meter> meters = new ArrayList<>();
+        for (int i = 0; i < LatencyRecorder.percentileCount(); i++) {
+            int index = i;
+            meters.add(Gauge.builder(prefix + ".latency", recorder, r -> r.getPercentileMillis(index) / 1000)
+                .tag(tag, key)
+                .tag("quantile", QUANTILE_TAGS[i])
+                .baseUnit("seconds")
+                .description("Request latency percentile over the last interval")
+                .register(registry));
+        }
+        meters.add(Gauge.builder(prefix + ".rps", recorder, LatencyRecorder::getRps)
+            .tag(tag, key)
+            .description("Requests per second over the last interval")
+            .register(registry));
+        meters.add(FunctionCounter.builder(prefix + ".requests", recorder, LatencyRecorder::getTotal)
+            .tag(tag, key)
+            .description("Requests completed")
+            .register(registry));
+        recorder.meters = meters;
+    }
+
+    private static Map<String, Object> toStats(Map<String, LatencyRecorder> recorders) {
+        Map<String, Object> stats = new HashMap<>();
+        recorders.forEach((key, recorder) -> stats.put(key, recorder.getStats()));
+        return stats;
+    }
+}
@@ -0,0 +1,115 @@
+package com.milkpudding.gateway.metrics;
+
+import io.micrometer.core.instrument.Meter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个路由或下游实例的延迟统计
+ * 请求线程只写累计直方图；统计线程定期对比上一次快照，得到最近一个区间的百分位和吞吐
+ */
+final class LatencyRecorder {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    // 对冲请求的触发延迟，只在统计信息中展示，不注册为Micrometer指标
+    private static final double HEDGE_PERCENTILE = 95;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder total = new LongAdder();
+    private final long[] previous = new long[LatencyHistogram.BUCKETS];
+
+    // 最近一个区间的统计结果，由统计线程写入
+    private volatile long[] intervalNanos = new long[PERCENTILES.length];
+    private volatile long intervalMax;
+    private volatile long intervalP95;
+    private volatile double rps;
+    private int idleIntervals;
+
+    // 注册到Micrometer的指标，统计被移除时一并注销
+    volatile List<Meter> meters = List.of();
+
+    void record(long nanos) {
+        histogram.record(nanos);
+        total.increment();
+    }
+
+    /**
+     * 结束一个统计区间，只由统计线程调用
+     *
+     * @param scratch 长度为桶数的临时数组
+     */
+    void roll(long[] scratch, long intervalNanosElapsed) {
+        long count = 0;
+        int highest = -1;
+        for (int i = 0; i < scratch.length; i++) {
+            long current = histogram.count(i);
+            long delta = current - previous[i];
+            previous[i] = current;
+            scratch[i] = delta;
+            if (delta > 0) {
+                count += delta;
+                highest = i;
+            }
+        }
+        long[] values = new long[PERCENTILES.length];
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            values[i] = LatencyHistogram.valueAtPercentile(scratch, count, PERCENTILES[i]);
+        }
+        intervalNanos = values;
+        intervalP95 = LatencyHistogram.valueAtPercentile(scratch, count, HEDGE_PERCENTILE);
+        intervalMax = highest < 0 ? 0 : LatencyHistogram.highestValue(highest);
+        rps = intervalNanosElapsed > 0 ? count * 1_000_000_000.0 / intervalNanosElapsed : 0;
+        idleIntervals = count == 0 ? idleIntervals + 1 : 0;
+    }
+
+    long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * 连续没有请求的区间数
+     */
+    int getIdleIntervals() {
+        return idleIntervals;
+    }
+
+    double getRps() {
+        return rps;
+    }
+
+    /**
+     * 最近区间的百分位值（毫秒），index对应PERCENTILES
+     */
+    double getPercentileMillis(int index) {
+        return intervalNanos[index] / NANOS_PER_MILLI;
+    }
+
+    /**
+     * 最近区间的p95（纳秒），没有请求时为0
+     */
+    long getP95Nanos() {
+        return intervalP95;
+    }
+
+    static int percentileCount() {
+        return PERCENTILES.length;
+    }
+
+    Map<String, Object> getStats() {
+        long[] values = intervalNanos;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("p50", values[0] / NANOS_PER_MILLI);
+        stats.put("p90", values[1] / NANOS_PER_MILLI);
+        stats.put("p95", intervalP95 / NANOS_PER_MILLI);
+        stats.put("p99", values[2] / NANOS_PER_MILLI);
+        stats.put("p999", values[3] / NANOS_PER_MILLI);
+        stats.put("max", intervalMax / NANOS_PER_MILLI);
+        stats.put("rps", rps);
+        stats.put("total", total.sum());
+        return stats;
+    }
+}
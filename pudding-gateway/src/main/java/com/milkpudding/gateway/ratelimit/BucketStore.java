@@ -0,0 +1,347 @@
+package com.milkpudding.gateway.ratelimit;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 有界限流状态存储
+ * 命中时只做一次无锁哈希查找；新key通过CAS占用名额后插入，条目数严格不超过上限，请求线程上不加锁。
+ * 超过空闲时间的条目被清理，空闲时间不小于状态从空到满所需的时间，
+ * 因此被清理的令牌桶一定已经补满，重新创建后行为不变。
+ * 存储已满时从预先选出的一批近似LRU候选中取淘汰对象，新key的访问频率（TinyLFU）高于候选时才替换；
+ * 选候选需要遍历所有条目，由维护线程执行，候选用完时请求线程只提交一次刷新任务。
+ * 未被准入的新key按哈希分到一组溢出状态，避免大量一次性key（如伪造的IP）把热点key挤出，
+ * 某个客户端耗尽溢出状态的限额也只影响同一分片的少数客户端
+ */
+public final class BucketStore<V> {
+
+    /**
+     * 单个条目除状态对象外的估算内存：ConcurrentHashMap节点、Entry和IPv4字符串key
+     */
+    public static final long ENTRY_OVERHEAD_BYTES = 112;
+
+    // 访问时间的更新粒度，避免每次命中都写共享字段；访问频率按同样的粒度采样
+    private static final long TOUCH_GRANULARITY_NANOS = 1_000_000L;
+
+    // 新key与同一个候选竞争时的重试次数，超过后使用溢出状态
+    private static final int ADMIT_ATTEMPTS = 4;
+
+    private final ConcurrentHashMap<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final Function<String, V> factory;
+    private final V[] overflow;
+    private final int maxSize;
+    private final long idleNanos;
+    private final long valueBytes;
+    private final long entryBytes;
+    private final int victimSampleSize;
+    private final FrequencySketch sketch;
+    private final Executor maintenance;
+    private final AtomicBoolean refillScheduled = new AtomicBoolean();
+
+    private final LongAdder idleEvictions = new LongAdder();
+    private final LongAdder capacityEvictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    private volatile Victims<V> victims = new Victims<>(0);
+
+    /**
+     * @param factory          为新key创建状态
+     * @param overflowFactory  创建未被准入的新key使用的溢出状态
+     * @param maxSize          条目数上限
+     * @param idleNanos        条目空闲多久后可以清理，调用方应保证此时状态已恢复初始值
+     * @param valueBytes       单个状态对象的估算内存
+     * @param maintenance      执行选淘汰候选等需要遍历所有条目的任务
+     */
+    @SuppressWarnings("unchecked")
+    public BucketStore(Function<String, V> factory, Supplier<V> overflowFactory, int maxSize, long idleNanos,
+                       long valueBytes, Executor maintenance) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        // 访问时间最多滞后一个更新粒度
+        this.idleNanos = idleNanos > Long.MAX_VALUE - TOUCH_GRANULARITY_NANOS ? Long.MAX_VALUE
+            : Math.max(idleNanos, 0) + TOUCH_GRANULARITY_NANOS;
+        this.valueBytes = valueBytes;
+        this.entryBytes = ENTRY_OVERHEAD_BYTES + valueBytes;
+        this.victimSampleSize = Math.max(16, Math.min(1024, maxSize / 16));
+        this.sketch = new FrequencySketch(maxSize);
+        this.maintenance = maintenance;
+        this.overflow = (V[]) new Object[Integer.highestOneBit(Math.max(16, Math.min(1024, maxSize / 64)))];
+        for (int i = 0; i < overflow.length; i++) {
+            overflow[i] = overflowFactory.get();
+        }
+    }
+
+    /**
+     * 获取key对应的状态，不存在时创建
+     */
+    public V get(String key) {
+        return get(key, System.nanoTime());
+    }
+
+    V get(String key, long nowNanos) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            if (entry.touch(nowNanos)) {
+                sketch.increment(key);
+            }
+            return entry.value;
+        }
+        sketch.increment(key);
+        return admit(key, nowNanos);
+    }
+
+    /**
+     * 清理所有空闲条目，返回清理数量
+     */
+    public int removeIdle() {
+        return removeIdle(System.nanoTime());
+    }
+
+    int removeIdle(long nowNanos) {
+        int removed = 0;
+        for (Entry<V> entry : entries.values()) {
+            if (entry.isIdle(nowNanos, idleNanos) && remove(entry)) {
+                removed++;
+            }
+        }
+        idleEvictions.add(removed);
+        return removed;
+    }
+
+    /**
+     * 遍历所有条目（弱一致）
+     */
+    public void forEach(BiConsumer<String, V> action) {
+        for (Entry<V> entry : entries.values()) {
+            action.accept(entry.key, entry.value);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getIdleEvictions() {
+        return idleEvictions.sum();
+    }
+
+    public long getCapacityEvictions() {
+        return capacityEvictions.sum();
+    }
+
+    /**
+     * 存储已满且频率不足、使用溢出状态的次数
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * 估算占用内存（字节）
+     */
+    public long estimatedMemoryBytes() {
+        return entries.size() * entryBytes + overflow.length * valueBytes + sketch.sizeInBytes();
+    }
+
+    private V admit(String key, long nowNanos) {
+        for (int attempt = 0; attempt < ADMIT_ATTEMPTS; attempt++) {
+            if (reserve()) {
+                return insert(key, nowNanos);
+            }
+            Victims<V> current = victims;
+            int index = current.cursor.get();
+            if (index >= current.size) {
+                scheduleRefill(nowNanos);
+                // 维护任务可能已在当前线程完成
+                if (victims == current) {
+                    break;
+                }
+                continue;
+            }
+            Entry<V> victim = current.entries[index];
+            // 入选后被访问过或已被移除的候选跳过
+            if (victim.lastAccess != current.stamps[index] || entries.get(victim.key) != victim) {
+                current.cursor.compareAndSet(index, index + 1);
+                continue;
+            }
+            boolean idle = victim.isIdle(nowNanos, idleNanos);
+            if (!idle && sketch.frequency(key) <= sketch.frequency(victim.key)) {
+                // 候选仍留在原位，供下一个新key比较
+                break;
+            }
+            if (!current.cursor.compareAndSet(index, index + 1)) {
+                continue;
+            }
+            // 淘汰候选后名额直接转给新key
+            if (entries.remove(victim.key, victim)) {
+                (idle ? idleEvictions : capacityEvictions).increment();
+                return insert(key, nowNanos);
+            }
+        }
+
+        // 其他线程可能已插入同一个key
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            return entry.value;
+        }
+        rejections.increment();
+        return overflow[spread(key.hashCode()) & (overflow.length - 1)];
+    }
+
+    /**
+     * 在已占用的名额内插入条目
+     */
+    private V insert(String key, long nowNanos) {
+        Entry<V> created = new Entry<>(key, factory.apply(key), nowNanos);
+        Entry<V> existing = entries.putIfAbsent(key, created);
+        if (existing != null) {
+            count.decrementAndGet();
+            return existing.value;
+        }
+        return created.value;
+    }
+
+    private boolean reserve() {
+        for (;;) {
+            int current = count.get();
+            if (current >= maxSize) {
+                return false;
+            }
+            if (count.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean remove(Entry<V> entry) {
+        if (entries.remove(entry.key, entry)) {
+            count.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private void scheduleRefill(long nowNanos) {
+        if (refillScheduled.compareAndSet(false, true)) {
+            try {
+                maintenance.execute(() -> refill(nowNanos));
+            } catch (RejectedExecutionException e) {
+                refillScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * 在维护线程上清理空闲条目并选出下一批淘汰候选
+     */
+    private void refill(long nowNanos) {
+        try {
+            if (removeIdle(nowNanos) == 0) {
+                victims = sampleVictims();
+            } else {
+                // 清理出了名额，候选留到再次写满时再选
+                victims = new Victims<>(0);
+            }
+        } finally {
+            refillScheduled.set(false);
+        }
+    }
+
+    /**
+     * 选出访问时间最旧的一批条目作为淘汰候选
+     */
+    private Victims<V> sampleVictims() {
+        // 按快照的访问时间比较，避免排序过程中访问时间被并发修改
+        PriorityQueue<Candidate<V>> oldest = new PriorityQueue<>(victimSampleSize + 1,
+            Comparator.comparingLong((Candidate<V> candidate) -> candidate.stamp).reversed());
+        for (Entry<V> entry : entries.values()) {
+            oldest.offer(new Candidate<>(entry, entry.lastAccess));
+            if (oldest.size() > victimSampleSize) {
+                oldest.poll();
+            }
+        }
+
+        Victims<V> sampled = new Victims<>(oldest.size());
+        for (int i = sampled.size - 1; i >= 0; i--) {
+            Candidate<V> candidate = oldest.poll();
+            sampled.entries[i] = candidate.entry;
+            sampled.stamps[i] = candidate.stamp;
+        }
+        return sampled;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * 一批淘汰候选，按访问时间从旧到新；发布后只移动游标
+     */
+    private static final class Victims<V> {
+        final Entry<V>[] entries;
+        final long[] stamps;
+        final int size;
+        final AtomicInteger cursor = new AtomicInteger();
+
+        @SuppressWarnings("unchecked")
+        Victims(int size) {
+            this.entries = new Entry[size];
+            this.stamps = new long[size];
+            this.size = size;
+        }
+    }
+
+    private static final class Candidate<V> {
+        final Entry<V> entry;
+        final long stamp;
+
+        Candidate(Entry<V> entry, long stamp) {
+            this.entry = entry;
+            this.stamp = stamp;
+        }
+    }
+
+    private static final class Entry<V> {
+        final String key;
+        final V value;
+        volatile long lastAccess;
+
+        Entry(String key, V value, long nowNanos) {
+            this.key = key;
+            this.value = value;
+            this.lastAccess = nowNanos;
+        }
+
+        /**
+         * 距上次更新超过粒度时更新访问时间，返回是否更新
+         */
+        boolean touch(long nowNanos) {
+            if (nowNanos - lastAccess >= TOUCH_GRANULARITY_NANOS) {
+                lastAccess = nowNanos;
+                return true;
+            }
+            return false;
+        }
+
+        boolean isIdle(long nowNanos, long idleNanos) {
+            return nowNanos - lastAccess >= idleNanos;
+        }
+    }
+}
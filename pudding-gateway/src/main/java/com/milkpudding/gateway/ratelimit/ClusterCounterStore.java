@@ -0,0 +1,21 @@
+package com.milkpudding.gateway.ratelimit;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 集群共享计数存储
+ * 各网关副本批量累加自己的消耗次数，并读回累加后的集群总数
+ */
+public interface ClusterCounterStore {
+
+    /**
+     * 批量累加计数，返回每个key累加后的值；每次累加都会把key的过期时间重置为ttlMillis
+     */
+    Map<String, Long> incrementAll(Map<String, Long> deltas, long ttlMillis) throws IOException;
+
+    /**
+     * 存储类型，用于状态展示
+     */
+    String getType();
+}
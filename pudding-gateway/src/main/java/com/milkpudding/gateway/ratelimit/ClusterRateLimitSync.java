@@ -0,0 +1,189 @@
+package com.milkpudding.gateway.ratelimit;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 集群限流同步
+ * 多个网关副本各自按本地状态做放行判断，后台定期把各key的本地放行次数批量累加到共享存储，
+ * 并把其他副本同期的消耗记入本地状态，使整个集群的放行总量接近配置的限额。
+ * 请求链路不访问网络，共享存储不可用时退化为单副本限流
+ */
+@Slf4j
+@Component
+public class ClusterRateLimitSync {
+
+    // 单个集群限流状态在本地状态之外的估算内存：对象头12 + 引用4 + 4个long
+    private static final long WRAPPER_BYTES = 48;
+    private static final long MAX_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final boolean enabled;
+    private final ClusterCounterStore store;
+    private final String keyPrefix;
+    private final long syncIntervalMillis;
+
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder syncedKeys = new LongAdder();
+    private final LongAdder remoteCharged = new LongAdder();
+    private volatile boolean failing;
+
+    @Autowired
+    public ClusterRateLimitSync(@Value("${app.rate-limit.cluster.enabled:false}") boolean enabled,
+                                @Value("${app.rate-limit.cluster.store:memory}") String storeType,
+                                @Value("${app.rate-limit.cluster.redis.host:localhost}") String redisHost,
+                                @Value("${app.rate-limit.cluster.redis.port:6379}") int redisPort,
+                                @Value("${app.rate-limit.cluster.redis.password:}") String redisPassword,
+                                @Value("${app.rate-limit.cluster.redis.timeout:200}") int redisTimeoutMillis,
+                                @Value("${app.rate-limit.cluster.key-prefix:pudding:ratelimit:}") String keyPrefix,
+                                @Value("${app.rate-limit.cluster.sync-interval:100}") long syncIntervalMillis) {
+        this(enabled, createStore(storeType, redisHost, redisPort, redisPassword, redisTimeoutMillis),
+            keyPrefix, syncIntervalMillis);
+    }
+
+    ClusterRateLimitSync(boolean enabled, ClusterCounterStore store, String keyPrefix, long syncIntervalMillis) {
+        this.enabled = enabled;
+        this.store = store;
+        this.keyPrefix = keyPrefix;
+        this.syncIntervalMillis = Math.max(10, syncIntervalMillis);
+        if (enabled) {
+            log.info("Cluster rate limiting enabled, store: {}, sync interval: {}ms", store.getType(), this.syncIntervalMillis);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getSyncIntervalMillis() {
+        return syncIntervalMillis;
+    }
+
+    /**
+     * 集群模式下包装本地限流状态，否则原样返回
+     */
+    public RateLimiter wrap(RateLimiter local) {
+        return enabled ? new ClusterRateLimiter(local) : local;
+    }
+
+    /**
+     * 单个限流状态额外占用的估算内存
+     */
+    public long getEstimatedOverheadBytes() {
+        return enabled ? WRAPPER_BYTES : 0;
+    }
+
+    /**
+     * 同步一个路由的所有限流状态
+     */
+    public void sync(String route, BucketStore<RateLimiter> limiters, RateLimitPolicy policy) {
+        sync(route, limiters, policy, System.nanoTime());
+    }
+
+    void sync(String route, BucketStore<RateLimiter> limiters, RateLimitPolicy policy, long nowNanos) {
+        if (!enabled) {
+            return;
+        }
+
+        String prefix = keyPrefix + route + ":";
+        Map<String, Long> deltas = new HashMap<>();
+        List<String> keys = new ArrayList<>();
+        List<ClusterRateLimiter> pending = new ArrayList<>();
+        limiters.forEach((clientKey, limiter) -> {
+            if (!(limiter instanceof ClusterRateLimiter cluster)) {
+                return;
+            }
+            long delta = cluster.drainPending();
+            // 本地没有新消耗且其他副本近期也没有消耗的key不需要同步
+            if (delta > 0 || cluster.isRemoteActive(nowNanos)) {
+                String key = prefix + clientKey;
+                deltas.put(key, delta);
+                keys.add(key);
+                pending.add(cluster);
+            }
+        });
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        long nanosToFill = policy.getNanosToFill();
+        long freshNanos = Math.max(nanosToFill, TimeUnit.MILLISECONDS.toNanos(2 * syncIntervalMillis));
+        long ttlMillis = Math.min(MAX_TTL_MILLIS, Math.max(1000, 2 * TimeUnit.NANOSECONDS.toMillis(freshNanos)));
+
+        Map<String, Long> totals;
+        try {
+            totals = store.incrementAll(deltas, ttlMillis);
+        } catch (IOException | RuntimeException e) {
+            // 放回本地次数，下次同步时重试
+            for (int i = 0; i < keys.size(); i++) {
+                pending.get(i).restorePending(deltas.get(keys.get(i)));
+            }
+            failures.increment();
+            if (!failing) {
+                failing = true;
+                log.warn("Cluster rate limit sync failed, falling back to local limits: {}", e.getMessage());
+            }
+            return;
+        }
+        if (failing) {
+            failing = false;
+            log.info("Cluster rate limit sync recovered");
+        }
+
+        long maxCharge = 2 * policy.getLimit();
+        long charged = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            Long total = totals.get(keys.get(i));
+            if (total != null) {
+                charged += pending.get(i).reconcile(total, deltas.get(keys.get(i)), nowNanos, freshNanos, maxCharge);
+            }
+        }
+        syncs.increment();
+        syncedKeys.add(keys.size());
+        remoteCharged.add(charged);
+    }
+
+    /**
+     * 获取集群同步统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("store", store.getType());
+        stats.put("syncIntervalMillis", syncIntervalMillis);
+        stats.put("syncs", syncs.sum());
+        stats.put("failures", failures.sum());
+        stats.put("syncedKeys", syncedKeys.sum());
+        stats.put("remoteCharged", remoteCharged.sum());
+        stats.put("healthy", !failing);
+        return stats;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (store instanceof RedisClusterCounterStore redis) {
+            redis.close();
+        }
+    }
+
+    private static ClusterCounterStore createStore(String type, String host, int port, String password, int timeoutMillis) {
+        if ("redis".equalsIgnoreCase(type)) {
+            return new RedisClusterCounterStore(host, port, password, timeoutMillis);
+        }
+        if (!"memory".equalsIgnoreCase(type)) {
+            throw new IllegalArgumentException("Unknown cluster rate limit store: " + type);
+        }
+        return new InMemoryClusterCounterStore();
+    }
+}
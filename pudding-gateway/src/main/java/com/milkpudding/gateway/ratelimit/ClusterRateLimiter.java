@@ -0,0 +1,99 @@
+package com.milkpudding.gateway.ratelimit;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * 集群模式下的限流状态
+ * 放行判断只使用本地状态；本地放行次数累计在pending中，由后台同步写入共享存储，
+ * 同时把其他副本的消耗记入本地状态。
+ * 副本首次同步某个key时只记录基线，不记入此前其他副本的消耗，
+ * 避免给刚换到本副本的正常客户端记入过时的消耗，代价是每个副本最多多放行一次突发量
+ */
+final class ClusterRateLimiter implements RateLimiter {
+
+    private static final VarHandle PENDING;
+
+    static {
+        try {
+            PENDING = MethodHandles.lookup().findVarHandle(ClusterRateLimiter.class, "pending", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final RateLimiter local;
+
+    // 尚未同步的本地放行次数
+    private volatile long pending;
+
+    // 以下字段只由同步线程访问
+    private long lastTotal = -1;
+    private long lastSyncNanos;
+    private long remoteActiveUntilNanos;
+
+    ClusterRateLimiter(RateLimiter local) {
+        this.local = local;
+    }
+
+    @Override
+    public long tryAcquire(long nowNanos) {
+        long result = local.tryAcquire(nowNanos);
+        if (result >= 0) {
+            PENDING.getAndAdd(this, 1L);
+        }
+        return result;
+    }
+
+    @Override
+    public void charge(long permits, long nowNanos) {
+        local.charge(permits, nowNanos);
+    }
+
+    /**
+     * 取出待同步的本地次数
+     */
+    long drainPending() {
+        return (long) PENDING.getAndSet(this, 0L);
+    }
+
+    /**
+     * 同步失败时放回待同步次数
+     */
+    void restorePending(long delta) {
+        PENDING.getAndAdd(this, delta);
+    }
+
+    /**
+     * 最近有其他副本消耗时，即使本地没有请求也继续同步
+     */
+    boolean isRemoteActive(long nowNanos) {
+        return nowNanos - remoteActiveUntilNanos < 0;
+    }
+
+    /**
+     * 根据共享存储返回的总数，把其他副本自上次同步以来的消耗记入本地状态
+     *
+     * @param total       累加本次delta后的集群总数
+     * @param delta       本次写入的本地次数
+     * @param freshNanos  超过该时间未同步时，差值中的消耗已经过时，不再记入
+     * @param maxCharge   单次最多记入的次数
+     * @return 记入的次数
+     */
+    long reconcile(long total, long delta, long nowNanos, long freshNanos, long maxCharge) {
+        long previous = lastTotal;
+        boolean fresh = previous >= 0 && nowNanos - lastSyncNanos <= freshNanos;
+        lastTotal = total;
+        lastSyncNanos = nowNanos;
+
+        // 首次同步、同步间隔过久或共享计数已过期重建时只建立基线
+        long remote = total - previous - delta;
+        if (!fresh || remote <= 0) {
+            return 0;
+        }
+        long charged = Math.min(remote, maxCharge);
+        local.charge(charged, nowNanos);
+        remoteActiveUntilNanos = nowNanos + freshNanos;
+        return charged;
+    }
+}
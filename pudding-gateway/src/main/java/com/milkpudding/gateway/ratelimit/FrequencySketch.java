@@ -0,0 +1,82 @@
+package com.milkpudding.gateway.ratelimit;
+
+import com.milkpudding.gateway.util.HashUtil;
+
+/**
+ * 访问频率估计（4位Count-Min Sketch）
+ * 每个key对应4个4位计数器，取最小值作为频率估计，计数器饱和于15。
+ * 累计增加次数达到计数器总数的10倍时所有计数器减半，使旧的热点逐渐冷却。
+ * 计数器的读写不加锁，并发下偶尔丢失一次增加不影响估计
+ */
+final class FrequencySketch {
+
+    private static final int MAX_COUNT = 15;
+    private static final int DEPTH = 4;
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;     // 每个long存放16个4位计数器
+    private final int counterMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maxSize) {
+        int counters = Math.max(64, Integer.highestOneBit(Math.max(1, maxSize) - 1) << 2);
+        this.table = new long[counters >>> 4];
+        this.counterMask = counters - 1;
+        this.sampleSize = counters * 10;
+    }
+
+    /**
+     * 记录一次访问
+     */
+    void increment(String key) {
+        long hash = HashUtil.mix64(key.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = (h1 + i * h2) & counterMask;
+            int slot = index >>> 4;
+            int shift = (index & 15) << 2;
+            long word = table[slot];
+            if (((word >>> shift) & 0xF) < MAX_COUNT) {
+                table[slot] = word + (1L << shift);
+                added = true;
+            }
+        }
+        // 已饱和的热点key不再写共享数组
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * 估计访问频率（0-15）
+     */
+    int frequency(String key) {
+        long hash = HashUtil.mix64(key.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = (h1 + i * h2) & counterMask;
+            int count = (int) ((table[index >>> 4] >>> ((index & 15) << 2)) & 0xF);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    long sizeInBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    /**
+     * 所有计数器减半
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = sampleSize >>> 1;
+    }
+}
@@ -0,0 +1,51 @@
+package com.milkpudding.gateway.ratelimit;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内共享计数存储
+ * 用于单实例部署和测试，多个限流同步器共用同一个实例即可模拟多副本
+ */
+public class InMemoryClusterCounterStore implements ClusterCounterStore {
+
+    private static final long PURGE_INTERVAL_MILLIS = 1000;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private volatile long lastPurge;
+
+    @Override
+    public Map<String, Long> incrementAll(Map<String, Long> deltas, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttlMillis;
+        Map<String, Long> totals = new HashMap<>(deltas.size() * 2);
+        deltas.forEach((key, delta) -> {
+            Counter counter = counters.compute(key, (k, existing) -> {
+                long base = existing == null || existing.expiresAt <= now ? 0 : existing.value;
+                return new Counter(base + delta, expiresAt);
+            });
+            totals.put(key, counter.value);
+        });
+        if (now - lastPurge >= PURGE_INTERVAL_MILLIS) {
+            lastPurge = now;
+            counters.values().removeIf(counter -> counter.expiresAt <= now);
+        }
+        return totals;
+    }
+
+    @Override
+    public String getType() {
+        return "memory";
+    }
+
+    private static final class Counter {
+        final long value;
+        final long expiresAt;
+
+        Counter(long value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
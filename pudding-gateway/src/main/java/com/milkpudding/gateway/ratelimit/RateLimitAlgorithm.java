@@ -0,0 +1,30 @@
+package com.milkpudding.gateway.ratelimit;
+
+/**
+ * 限流算法
+ */
+public enum RateLimitAlgorithm {
+
+    /**
+     * 令牌桶：容量为capacity，每秒补充refillRate个令牌
+     */
+    TOKEN_BUCKET,
+
+    /**
+     * 通用信元速率算法：与令牌桶等价，但每个key只保存一个理论到达时间
+     */
+    GCRA,
+
+    /**
+     * 滑动窗口计数：窗口长度为capacity/refillRate秒，窗口内最多capacity次
+     */
+    SLIDING_WINDOW;
+
+    public RateLimitPolicy createPolicy(long capacity, long refillRate) {
+        return switch (this) {
+            case TOKEN_BUCKET -> new TokenBucket.Policy(capacity, refillRate);
+            case GCRA -> new GcraRateLimiter.Policy(capacity, refillRate);
+            case SLIDING_WINDOW -> new SlidingWindowRateLimiter.Policy(capacity, refillRate);
+        };
+    }
+}
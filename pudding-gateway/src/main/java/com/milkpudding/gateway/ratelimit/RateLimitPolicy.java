@@ -0,0 +1,27 @@
+package com.milkpudding.gateway.ratelimit;
+
+/**
+ * 限流策略，同一路由的所有key共享，负责创建每个key的限流状态
+ */
+public interface RateLimitPolicy {
+
+    /**
+     * 创建新key的限流状态，初始可用次数为满额
+     */
+    RateLimiter newLimiter();
+
+    /**
+     * 满额可用次数
+     */
+    long getLimit();
+
+    /**
+     * 状态从耗尽恢复到满额所需的纳秒数，空闲超过该时间的状态可以丢弃后重新创建
+     */
+    long getNanosToFill();
+
+    /**
+     * 单个限流状态的估算内存（字节）
+     */
+    long getEstimatedBytes();
+}
@@ -0,0 +1,42 @@
+package com.milkpudding.gateway.ratelimit;
+
+/**
+ * 单个key的限流状态
+ * tryAcquire的结果编码在一个long中，避免每次请求分配结果对象：
+ * 大于等于0表示放行，值为剩余可用次数；小于0表示拒绝，绝对值为需要等待的纳秒数
+ */
+public interface RateLimiter {
+
+    /**
+     * 以指定时间（System.nanoTime）尝试获取一次许可
+     */
+    long tryAcquire(long nowNanos);
+
+    default long tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * 记入在别处（如其他网关副本）已消耗的次数，不做放行判断；
+     * 超出可用次数的部分记为欠额，之后的请求要等欠额还清
+     */
+    void charge(long permits, long nowNanos);
+
+    static boolean isAllowed(long result) {
+        return result >= 0;
+    }
+
+    /**
+     * 放行后剩余可用次数，拒绝时为0
+     */
+    static long remaining(long result) {
+        return Math.max(0, result);
+    }
+
+    /**
+     * 被拒绝时需要等待的纳秒数，放行时为0
+     */
+    static long retryAfterNanos(long result) {
+        return result < 0 ? -result : 0;
+    }
+}
@@ -0,0 +1,161 @@
+package com.milkpudding.gateway.ratelimit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Redis协议共享计数存储
+ * 直接使用RESP协议，每次同步把所有INCRBY/PEXPIRE命令流水线发送后一次读回，
+ * 只在后台同步线程中调用，连接异常时关闭并在下次同步时重连
+ */
+public class RedisClusterCounterStore implements ClusterCounterStore {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final String host;
+    private final int port;
+    private final String password;
+    private final int timeoutMillis;
+
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+
+    public RedisClusterCounterStore(String host, int port, String password, int timeoutMillis) {
+        this.host = host;
+        this.port = port;
+        this.password = password;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public synchronized Map<String, Long> incrementAll(Map<String, Long> deltas, long ttlMillis) throws IOException {
+        Map<String, Long> totals = new HashMap<>(deltas.size() * 2);
+        if (deltas.isEmpty()) {
+            return totals;
+        }
+        connect();
+        try {
+            String ttl = Long.toString(ttlMillis);
+            for (Map.Entry<String, Long> entry : deltas.entrySet()) {
+                writeCommand("INCRBY", entry.getKey(), Long.toString(entry.getValue()));
+                writeCommand("PEXPIRE", entry.getKey(), ttl);
+            }
+            out.flush();
+            for (String key : deltas.keySet()) {
+                totals.put(key, readInteger());
+                readInteger();
+            }
+            return totals;
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String getType() {
+        return "redis";
+    }
+
+    public synchronized void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 连接已不可用
+            }
+            socket = null;
+            in = null;
+            out = null;
+        }
+    }
+
+    private void connect() throws IOException {
+        if (socket != null) {
+            return;
+        }
+        Socket newSocket = new Socket();
+        try {
+            newSocket.connect(new InetSocketAddress(host, port), timeoutMillis);
+            newSocket.setSoTimeout(timeoutMillis);
+            newSocket.setTcpNoDelay(true);
+            socket = newSocket;
+            in = new BufferedInputStream(newSocket.getInputStream());
+            out = new BufferedOutputStream(newSocket.getOutputStream());
+            if (password != null && !password.isEmpty()) {
+                writeCommand("AUTH", password);
+                out.flush();
+                readLine();
+            }
+        } catch (IOException e) {
+            close();
+            newSocket.close();
+            throw e;
+        }
+    }
+
+    private void writeCommand(String... args) throws IOException {
+        out.write('*');
+        out.write(Integer.toString(args.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+        for (String arg : args) {
+            byte[] bytes = arg.getBytes(StandardCharsets.UTF_8);
+            out.write('$');
+            out.write(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+            out.write(bytes);
+            out.write(CRLF);
+        }
+    }
+
+    private long readInteger() throws IOException {
+        String line = readLine();
+        if (line.charAt(0) != ':') {
+            throw new IOException("Unexpected Redis reply: " + line);
+        }
+        try {
+            return Long.parseLong(line.substring(1));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid Redis integer reply: " + line, e);
+        }
+    }
+
+    /**
+     * 读取一行单行回复，错误回复转为异常
+     */
+    private String readLine() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(32);
+        int previous = -1;
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Redis connection closed");
+            }
+            if (previous == '\r' && b == '\n') {
+                break;
+            }
+            if (previous >= 0) {
+                buffer.write(previous);
+            }
+            previous = b;
+        }
+        String line = buffer.toString(StandardCharsets.UTF_8);
+        if (line.isEmpty()) {
+            throw new IOException("Empty Redis reply");
+        }
+        if (line.charAt(0) == '-') {
+            throw new IOException("Redis error: " + line.substring(1));
+        }
+        return line;
+    }
+}
@@ -0,0 +1,175 @@
+package com.milkpudding.gateway.ratelimit;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * 滑动窗口计数限流
+ * 保存上一窗口和当前窗口的计数，按当前窗口已过去的比例对上一窗口计数加权，
+ * 估算最近一个窗口长度内的请求数。
+ * 两个计数和窗口编号打包在一个long中，通过CAS更新：
+ * 高20位为上一窗口计数，中间20位为当前窗口计数，低24位为窗口编号
+ */
+public final class SlidingWindowRateLimiter implements RateLimiter {
+
+    private static final int COUNT_BITS = 20;
+    private static final int WINDOW_BITS = 64 - 2 * COUNT_BITS;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long WINDOW_MASK = (1L << WINDOW_BITS) - 1;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    // 所有状态共用的时间原点
+    private static final long ORIGIN = System.nanoTime();
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(SlidingWindowRateLimiter.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Policy policy;
+
+    private volatile long state;
+
+    SlidingWindowRateLimiter(Policy policy, long nowNanos) {
+        this.policy = policy;
+        // 两个计数为0，窗口编号取当前窗口；编号为0时，运行超过半个编号周期后当前窗口会被当作比状态更早
+        this.state = window(nowNanos, policy.windowNanos);
+    }
+
+    @Override
+    public long tryAcquire(long nowNanos) {
+        long windowNanos = policy.windowNanos;
+        long limit = policy.limit;
+        long relative = nowNanos - ORIGIN;
+        long nowWindow = Math.floorDiv(relative, windowNanos);
+        long nowElapsed = relative - nowWindow * windowNanos;
+
+        while (true) {
+            long current = state;
+            long window = nowWindow & WINDOW_MASK;
+            long elapsed = nowElapsed;
+            long stateWindow = current & WINDOW_MASK;
+            if (((window - stateWindow) & WINDOW_MASK) > WINDOW_MASK / 2) {
+                // 其他线程已进入下一个窗口，本线程的时间略早，按新窗口起点计算
+                window = stateWindow;
+                elapsed = 0;
+            }
+            long rolled = roll(current, window);
+            long previous = rolled >>> (COUNT_BITS + WINDOW_BITS);
+            long count = (rolled >>> WINDOW_BITS) & COUNT_MASK;
+
+            double weight = (double) (windowNanos - elapsed) / windowNanos;
+            double estimate = previous * weight + count;
+            if (estimate + 1 > limit) {
+                return -retryAfter(previous, count, elapsed);
+            }
+            if (STATE.compareAndSet(this, current, rolled + (1L << WINDOW_BITS))) {
+                return (long) (limit - estimate - 1);
+            }
+        }
+    }
+
+    @Override
+    public void charge(long permits, long nowNanos) {
+        long window = window(nowNanos, policy.windowNanos);
+        while (true) {
+            long current = state;
+            long stateWindow = current & WINDOW_MASK;
+            long rolled = ((window - stateWindow) & WINDOW_MASK) > WINDOW_MASK / 2 ? current : roll(current, window);
+            long count = (rolled >>> WINDOW_BITS) & COUNT_MASK;
+            long charged = Math.min(COUNT_MASK, count + Math.max(0, permits));
+            long next = (rolled & ~(COUNT_MASK << WINDOW_BITS)) | (charged << WINDOW_BITS);
+            if (next == current || STATE.compareAndSet(this, current, next)) {
+                return;
+            }
+        }
+    }
+
+    private static long window(long nowNanos, long windowNanos) {
+        return Math.floorDiv(nowNanos - ORIGIN, windowNanos) & WINDOW_MASK;
+    }
+
+    /**
+     * 把状态推进到指定窗口：相邻窗口时当前计数变为上一窗口计数，相隔更久时清零
+     */
+    private static long roll(long current, long window) {
+        long previous = current >>> (COUNT_BITS + WINDOW_BITS);
+        long count = (current >>> WINDOW_BITS) & COUNT_MASK;
+        long diff = (window - (current & WINDOW_MASK)) & WINDOW_MASK;
+        if (diff == 1) {
+            previous = count;
+            count = 0;
+        } else if (diff != 0) {
+            previous = 0;
+            count = 0;
+        }
+        return (previous << (COUNT_BITS + WINDOW_BITS)) | (count << WINDOW_BITS) | window;
+    }
+
+    /**
+     * 计算估算值降到可以放行所需的纳秒数
+     */
+    private long retryAfter(long previous, long count, long elapsed) {
+        long windowNanos = policy.windowNanos;
+        long limit = policy.limit;
+
+        // 当前窗口内随着上一窗口权重下降可以放行
+        if (previous > 0 && count + 1 <= limit) {
+            double needed = (windowNanos - elapsed) - (double) (limit - count - 1) * windowNanos / previous;
+            if (needed < windowNanos - elapsed) {
+                return Math.max(1, (long) Math.ceil(needed));
+            }
+        }
+
+        // 进入下一个窗口后，当前窗口计数成为上一窗口计数
+        double offset = count == 0 ? 0 : windowNanos - (double) (limit - 1) * windowNanos / count;
+        return Math.max(1, windowNanos - elapsed + (long) Math.ceil(Math.max(0, offset)));
+    }
+
+    /**
+     * 滑动窗口策略：窗口长度为capacity/refillRate秒，长期速率与同参数的令牌桶一致
+     */
+    public static final class Policy implements RateLimitPolicy {
+
+        private final long limit;
+        private final long windowNanos;
+
+        public Policy(long capacity, long refillRate) {
+            if (capacity < 1 || capacity > COUNT_MASK) {
+                throw new IllegalArgumentException("capacity must be between 1 and " + COUNT_MASK + ": " + capacity);
+            }
+            if (refillRate < 1) {
+                throw new IllegalArgumentException("refillRate must be positive: " + refillRate);
+            }
+            this.limit = capacity;
+            this.windowNanos = Math.max(1, capacity * NANOS_PER_SECOND / refillRate);
+        }
+
+        @Override
+        public RateLimiter newLimiter() {
+            return new SlidingWindowRateLimiter(this, System.nanoTime());
+        }
+
+        @Override
+        public long getLimit() {
+            return limit;
+        }
+
+        @Override
+        public long getNanosToFill() {
+            // 两个窗口之后计数全部失效
+            return 2 * windowNanos;
+        }
+
+        @Override
+        public long getEstimatedBytes() {
+            // 对象头12 + 引用4 + long 8
+            return 24;
+        }
+    }
+}
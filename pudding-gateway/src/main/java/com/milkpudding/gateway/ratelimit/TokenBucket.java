@@ -0,0 +1,261 @@
+package com.milkpudding.gateway.ratelimit;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * 无锁令牌桶
+ * 令牌数和上次补充时间打包在一个long中，通过CAS更新：
+ * 高20位为令牌数，低44位为时间（以16纳秒为单位，约78小时回绕一次）。
+ * 按纳秒时钟连续补充令牌，只把已兑换成整令牌的时间（向上取整）从时间戳中扣除，
+ * 零头留到下次补充，不会多发令牌
+ */
+public final class TokenBucket implements RateLimiter {
+
+    private static final int TOKEN_BITS = 20;
+    private static final int TIME_BITS = 64 - TOKEN_BITS;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final int TIME_SHIFT = 4;                // 时间单位 2^4 ns
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    // 其他线程已写入更新的时间时，本线程读到的时间会略早于状态中的时间，
+    // 落在回绕前这个窗口（约17秒）内的差值视为时钟先后问题而不是经过了很久
+    private static final long STALE_WINDOW = 1L << 30;
+
+    /**
+     * 令牌桶最大容量
+     */
+    public static final long MAX_CAPACITY = (1L << TOKEN_BITS) - 1;
+
+    // 所有令牌桶共用的时间原点，保证相对时间非负
+    private static final long ORIGIN = System.nanoTime();
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(TokenBucket.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long capacity;        // 桶容量
+    private final long refillRate;      // 每秒补充令牌数
+    private final long unitsToFill;     // 从空桶补满所需的时间单位数
+
+    private volatile long state;
+
+    public TokenBucket(long capacity, long refillRate) {
+        this(capacity, refillRate, System.nanoTime());
+    }
+
+    TokenBucket(long capacity, long refillRate, long nowNanos) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity must be between 1 and " + MAX_CAPACITY + ": " + capacity);
+        }
+        if (refillRate < 0) {
+            throw new IllegalArgumentException("refillRate must not be negative: " + refillRate);
+        }
+        this.capacity = capacity;
+        this.refillRate = refillRate;
+        this.unitsToFill = refillRate == 0 ? Long.MAX_VALUE
+            : (capacity * NANOS_PER_SECOND + (refillRate << TIME_SHIFT) - 1) / (refillRate << TIME_SHIFT);
+        this.state = pack(capacity, toUnits(nowNanos));
+    }
+
+    /**
+     * 尝试消费一个令牌
+     */
+    public boolean tryConsume() {
+        return tryConsume(System.nanoTime());
+    }
+
+    /**
+     * 以指定时间尝试消费一个令牌
+     */
+    public boolean tryConsume(long nowNanos) {
+        return RateLimiter.isAllowed(tryAcquire(nowNanos));
+    }
+
+    /**
+     * 尝试消费一个令牌，返回剩余令牌数，令牌不足时返回负的等待纳秒数
+     */
+    @Override
+    public long tryAcquire(long nowNanos) {
+        long now = toUnits(nowNanos);
+        while (true) {
+            long current = state;
+            long next = refill(current, now);
+            long tokens = next >>> TIME_BITS;
+            if (tokens == 0) {
+                return -Math.max(1, waitNanos(next, now));
+            }
+            if (STATE.compareAndSet(this, current, next - (1L << TIME_BITS))) {
+                return tokens - 1;
+            }
+        }
+    }
+
+    /**
+     * 扣除在别处消耗的令牌，令牌不足时把时间戳推到将来作为欠额（最多约8秒），
+     * 时间戳到达之前不补充令牌
+     */
+    @Override
+    public void charge(long permits, long nowNanos) {
+        if (permits <= 0) {
+            return;
+        }
+        long now = toUnits(nowNanos);
+        long unitsPerToken = refillRate == 0 ? STALE_WINDOW
+            : (NANOS_PER_SECOND + (refillRate << TIME_SHIFT) - 1) / (refillRate << TIME_SHIFT);
+        while (true) {
+            long current = state;
+            long next = refill(current, now);
+            long tokens = next >>> TIME_BITS;
+            long last = next & TIME_MASK;
+            long debt = permits - tokens;
+            if (debt <= 0) {
+                next -= permits << TIME_BITS;
+            } else {
+                long ahead = (last - now) & TIME_MASK;
+                if (ahead > STALE_WINDOW) {
+                    ahead = 0;
+                }
+                long maxDebtUnits = STALE_WINDOW / 2;
+                long units = Math.min(maxDebtUnits, ahead + (debt >= maxDebtUnits / unitsPerToken ? maxDebtUnits : debt * unitsPerToken));
+                next = pack(0, (now + units) & TIME_MASK);
+            }
+            if (next == current || STATE.compareAndSet(this, current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 当前可用令牌数（只读，不修改状态）
+     */
+    public long getTokens() {
+        return getTokens(System.nanoTime());
+    }
+
+    public long getTokens(long nowNanos) {
+        return refill(state, toUnits(nowNanos)) >>> TIME_BITS;
+    }
+
+    /**
+     * 距离下一个令牌可用的纳秒数，有令牌时为0
+     */
+    public long nanosToNextToken(long nowNanos) {
+        long now = toUnits(nowNanos);
+        long refilled = refill(state, now);
+        if ((refilled >>> TIME_BITS) > 0) {
+            return 0;
+        }
+        return waitNanos(refilled, now);
+    }
+
+    /**
+     * 从空桶补满所需的纳秒数，不补充时为Long.MAX_VALUE
+     */
+    public long getNanosToFill() {
+        return unitsToFill == Long.MAX_VALUE ? Long.MAX_VALUE : unitsToFill << TIME_SHIFT;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public long getRefillRate() {
+        return refillRate;
+    }
+
+    /**
+     * 按经过的时间补充令牌，返回新状态
+     */
+    private long refill(long current, long now) {
+        long tokens = current >>> TIME_BITS;
+        long last = current & TIME_MASK;
+        long elapsed = (now - last) & TIME_MASK;
+
+        if (elapsed > TIME_MASK - STALE_WINDOW) {
+            return current;
+        }
+        if (tokens >= capacity || elapsed >= unitsToFill) {
+            return pack(capacity, now);
+        }
+
+        // elapsed < unitsToFill，乘积不会溢出
+        long added = elapsed * (refillRate << TIME_SHIFT) / NANOS_PER_SECOND;
+        if (added == 0) {
+            return current;
+        }
+        tokens += added;
+        if (tokens >= capacity) {
+            return pack(capacity, now);
+        }
+        long consumed = (added * NANOS_PER_SECOND + (refillRate << TIME_SHIFT) - 1) / (refillRate << TIME_SHIFT);
+        return pack(tokens, (last + consumed) & TIME_MASK);
+    }
+
+    /**
+     * 令牌耗尽的状态距离补充出下一个令牌的纳秒数
+     */
+    private long waitNanos(long refilled, long now) {
+        if (refillRate == 0) {
+            return Long.MAX_VALUE;
+        }
+        long elapsed = (now - (refilled & TIME_MASK)) & TIME_MASK;
+        long unitsPerToken = (NANOS_PER_SECOND + (refillRate << TIME_SHIFT) - 1) / (refillRate << TIME_SHIFT);
+        if (elapsed > TIME_MASK - STALE_WINDOW) {
+            // 时间戳在将来（欠额），先等到该时间
+            return (TIME_MASK + 1 - elapsed + unitsPerToken) << TIME_SHIFT;
+        }
+        return Math.max(0, unitsPerToken - elapsed) << TIME_SHIFT;
+    }
+
+    private static long toUnits(long nanos) {
+        return ((nanos - ORIGIN) >>> TIME_SHIFT) & TIME_MASK;
+    }
+
+    private static long pack(long tokens, long time) {
+        return (tokens << TIME_BITS) | time;
+    }
+
+    /**
+     * 令牌桶策略，每个key一个独立的令牌桶
+     */
+    public static final class Policy implements RateLimitPolicy {
+
+        private final long capacity;
+        private final long refillRate;
+        private final long nanosToFill;
+
+        public Policy(long capacity, long refillRate) {
+            this.capacity = capacity;
+            this.refillRate = refillRate;
+            // 同时校验参数
+            this.nanosToFill = new TokenBucket(capacity, refillRate).getNanosToFill();
+        }
+
+        @Override
+        public RateLimiter newLimiter() {
+            return new TokenBucket(capacity, refillRate);
+        }
+
+        @Override
+        public long getLimit() {
+            return capacity;
+        }
+
+        @Override
+        public long getNanosToFill() {
+            return nanosToFill;
+        }
+
+        @Override
+        public long getEstimatedBytes() {
+            // 对象头12 + 4个long
+            return 48;
+        }
+    }
+}
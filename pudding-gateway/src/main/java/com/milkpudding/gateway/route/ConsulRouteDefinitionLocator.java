@@ -0,0 +1,228 @@
+package com.milkpudding.gateway.route;
+
+import com.ecwid.consul.v1.ConsulClient;
+import com.ecwid.consul.v1.QueryParams;
+import com.ecwid.consul.v1.Response;
+import com.ecwid.consul.v1.kv.model.GetValue;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.milkpudding.gateway.config.GatewayConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.stereotype.Component;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import reactor.core.publisher.Flux;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 从Consul KV加载的动态路由
+ * 后台线程对路由键做阻塞查询，内容变化后解析并校验整张路由表，校验通过才原子替换并触发网关刷新路由；
+ * 解析或校验失败时保留当前路由表；路由键被删除或内容为空时也保留，清空路由需写入空的路由列表。
+ * 路由表格式与spring.cloud.gateway.routes相同，可写YAML或JSON
+ */
+@Slf4j
+@Component
+public class ConsulRouteDefinitionLocator implements RouteDefinitionLocator, ApplicationEventPublisherAware {
+
+    private static final TypeReference<List<RouteDefinition>> DEFINITIONS_TYPE = new TypeReference<>() {
+    };
+
+    private final ObjectProvider<ConsulClient> consulClient;
+    private final RouteDefinitionValidator validator;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final boolean enabled;
+    private final String key;
+    private final long waitTime;
+    private final long retryInterval;
+    private final String aclToken;
+
+    private volatile List<RouteDefinition> routes = List.of();
+    private volatile ApplicationEventPublisher publisher;
+    private volatile boolean running;
+    private Thread watcher;
+
+    // 最近一次读到的内容，相同内容不重复解析
+    private String lastContent;
+    private volatile long version;
+    private volatile long lastUpdateTime;
+    private volatile String lastError;
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    public ConsulRouteDefinitionLocator(ObjectProvider<ConsulClient> consulClient,
+                                        List<RoutePredicateFactory<?>> predicateFactories,
+                                        List<GatewayFilterFactory<?>> filterFactories,
+                                        ConfigurationService configurationService,
+                                        @Value("${app.routes.consul.enabled:true}") boolean enabled,
+                                        @Value("${app.routes.consul.key:config/pudding-gateway/routes}") String key,
+                                        @Value("${app.routes.consul.wait-time:55}") long waitTime,
+                                        @Value("${app.routes.consul.retry-interval:5}") long retryInterval,
+                                        @Value("${spring.cloud.consul.config.acl-token:}") String aclToken) {
+        this.consulClient = consulClient;
+        this.validator = new RouteDefinitionValidator(predicateFactories, filterFactories,
+            configurationService, GatewayConfig.ROUTE_IDS);
+        this.enabled = enabled;
+        this.key = key;
+        this.waitTime = waitTime;
+        this.retryInterval = retryInterval;
+        this.aclToken = aclToken == null || aclToken.isBlank() ? null : aclToken;
+    }
+
+    @PostConstruct
+    public void start() {
+        ConsulClient client = consulClient.getIfAvailable();
+        if (!enabled || client == null) {
+            log.info("Consul route watching disabled");
+            return;
+        }
+        running = true;
+        watcher = new Thread(() -> watch(client), "route-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+    }
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @Override
+    public Flux<RouteDefinition> getRouteDefinitions() {
+        return Flux.fromIterable(routes);
+    }
+
+    /**
+     * 获取动态路由统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", running);
+        stats.put("key", key);
+        stats.put("routes", routes.size());
+        stats.put("version", version);
+        stats.put("lastUpdateTime", lastUpdateTime);
+        stats.put("updates", updates.get());
+        stats.put("rejections", rejections.get());
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    /**
+     * 解析并校验路由表，通过后替换当前路由表，返回是否生效
+     */
+    boolean update(String content) {
+        if (content == null || content.isBlank()) {
+            // 路由键被误删或清空时不应让所有动态路由失效；尚无路由时（例如未创建路由键）无需处理
+            if (routes.isEmpty()) {
+                return false;
+            }
+            return reject("Route key " + key + " is missing or empty");
+        }
+
+        List<RouteDefinition> definitions;
+        try {
+            definitions = parse(content);
+        } catch (Exception e) {
+            return reject("Invalid route table: " + e.getMessage());
+        }
+
+        List<String> errors = validator.validate(definitions);
+        if (!errors.isEmpty()) {
+            return reject("Invalid route table: " + String.join("; ", errors));
+        }
+
+        routes = List.copyOf(definitions);
+        lastError = null;
+        lastUpdateTime = System.currentTimeMillis();
+        updates.incrementAndGet();
+        log.info("Loaded {} routes from Consul key {}", definitions.size(), key);
+
+        ApplicationEventPublisher current = publisher;
+        if (current != null) {
+            current.publishEvent(new RefreshRoutesEvent(this));
+        }
+        return true;
+    }
+
+    List<RouteDefinition> parse(String content) {
+        Object document = new Yaml(new SafeConstructor(new LoaderOptions())).load(content);
+        if (document instanceof Map<?, ?> map) {
+            document = map.get("routes");
+        }
+        if (document == null) {
+            return List.of();
+        }
+        if (!(document instanceof List)) {
+            throw new IllegalArgumentException("expected a list of routes or a 'routes' key");
+        }
+        return objectMapper.convertValue(document, DEFINITIONS_TYPE);
+    }
+
+    private boolean reject(String error) {
+        lastError = error;
+        rejections.incrementAndGet();
+        log.warn("{}, keeping {} current routes", error, routes.size());
+        return false;
+    }
+
+    private void watch(ConsulClient client) {
+        long index = 0;
+        while (running) {
+            try {
+                Response<GetValue> response = client.getKVValue(key, aclToken, new QueryParams(waitTime, index));
+                Long consulIndex = response.getConsulIndex();
+                if (consulIndex != null) {
+                    // index变小说明Consul数据已重建，从头开始查询
+                    index = consulIndex < index ? 0 : consulIndex;
+                    version = index;
+                }
+
+                GetValue value = response.getValue();
+                String content = value != null ? value.getDecodedValue() : null;
+                if (!Objects.equals(content, lastContent)) {
+                    lastContent = content;
+                    update(content);
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Failed to watch Consul key {}, retrying in {}s: {}", key, retryInterval, e.getMessage());
+                try {
+                    TimeUnit.SECONDS.sleep(retryInterval);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+}
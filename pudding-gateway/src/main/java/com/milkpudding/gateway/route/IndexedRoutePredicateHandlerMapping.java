@@ -0,0 +1,136 @@
+package com.milkpudding.gateway.route;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PREDICATE_ROUTE_ATTR;
+
+/**
+ * 通过路由索引查找路由的处理器映射
+ * 默认实现按顺序计算所有路由的断言，这里先按请求路径从RouteIndex取出候选路由，只计算候选路由的断言；
+ * 路由刷新完成后重新编译索引，索引建好之前按默认方式查找
+ */
+@Slf4j
+public class IndexedRoutePredicateHandlerMapping extends RoutePredicateHandlerMapping
+        implements ApplicationListener<RefreshRoutesResultEvent> {
+
+    private static final String PATH_PREDICATE = "Path";
+
+    private final RouteLocator routeLocator;
+    private final RouteDefinitionLocator routeDefinitionLocator;
+
+    private volatile RouteIndex routeIndex;
+    private volatile long lastBuildTime;
+
+    public IndexedRoutePredicateHandlerMapping(FilteringWebHandler webHandler, RouteLocator routeLocator,
+                                               RouteDefinitionLocator routeDefinitionLocator,
+                                               GlobalCorsProperties globalCorsProperties, Environment environment) {
+        super(webHandler, routeLocator, globalCorsProperties, environment);
+        this.routeLocator = routeLocator;
+        this.routeDefinitionLocator = routeDefinitionLocator;
+    }
+
+    @Override
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        if (!event.isSuccess()) {
+            return;
+        }
+        Mono.zip(routeLocator.getRoutes().collectList(), collectPathPatterns())
+            .map(tuple -> RouteIndex.compile(tuple.getT1(), tuple.getT2()))
+            .subscribe(index -> {
+                routeIndex = index;
+                lastBuildTime = System.currentTimeMillis();
+                log.info("Route index rebuilt: {}", index.getStats());
+            }, e -> log.error("Failed to rebuild route index, keeping previous index", e));
+    }
+
+    @Override
+    protected Mono<Route> lookupRoute(ServerWebExchange exchange) {
+        RouteIndex index = routeIndex;
+        if (index == null) {
+            return super.lookupRoute(exchange);
+        }
+
+        Route[] candidates = index.candidates(exchange.getRequest().getPath().pathWithinApplication().value());
+        return Flux.fromArray(candidates)
+            .concatMap(route -> Mono.just(route).filterWhen(r -> {
+                exchange.getAttributes().put(GATEWAY_PREDICATE_ROUTE_ATTR, r.getId());
+                return r.getPredicate().apply(exchange);
+            }).doOnError(e -> log.error("Error applying predicate for route: {}", route.getId(), e))
+                .onErrorResume(e -> Mono.empty()))
+            .next()
+            .map(route -> {
+                validateRoute(route, exchange);
+                return route;
+            });
+    }
+
+    /**
+     * 获取路由索引统计信息
+     */
+    public Map<String, Object> getStats() {
+        RouteIndex index = routeIndex;
+        Map<String, Object> stats = new HashMap<>(index != null ? index.getStats() : Map.of());
+        stats.put("ready", index != null);
+        stats.put("lastBuildTime", lastBuildTime);
+        return stats;
+    }
+
+    /**
+     * 从路由定义中收集Path断言的模式，路由定义中的断言之间是"与"关系，请求路径必须匹配其中之一
+     */
+    private Mono<Map<String, List<String>>> collectPathPatterns() {
+        return routeDefinitionLocator.getRouteDefinitions()
+            .collectList()
+            .map(definitions -> {
+                Map<String, List<String>> patterns = new HashMap<>();
+                for (RouteDefinition definition : definitions) {
+                    List<String> routePatterns = pathPatternsOf(definition);
+                    if (routePatterns != null) {
+                        patterns.put(definition.getId(), routePatterns);
+                    }
+                }
+                return patterns;
+            });
+    }
+
+    /**
+     * 路由定义中的Path模式，没有Path断言或参数无法识别（如SpEL表达式）时返回null
+     */
+    static List<String> pathPatternsOf(RouteDefinition definition) {
+        for (PredicateDefinition predicate : definition.getPredicates()) {
+            if (!PATH_PREDICATE.equalsIgnoreCase(predicate.getName())) {
+                continue;
+            }
+            List<String> patterns = new ArrayList<>();
+            for (Map.Entry<String, String> arg : predicate.getArgs().entrySet()) {
+                String value = arg.getValue() != null ? arg.getValue().trim() : "";
+                if (value.startsWith("/")) {
+                    patterns.add(value);
+                } else if (!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value)) {
+                    return null;
+                }
+            }
+            return patterns.isEmpty() ? null : patterns;
+        }
+        return null;
+    }
+}
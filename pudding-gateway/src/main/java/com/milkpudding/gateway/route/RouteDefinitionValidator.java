@@ -0,0 +1,138 @@
+package com.milkpudding.gateway.route;
+
+import org.springframework.cloud.gateway.filter.FilterDefinition;
+import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.web.util.pattern.PathPatternParser;
+import org.springframework.web.util.pattern.PatternParseException;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 路由定义校验
+ * 检查路由ID唯一且不与代码中定义的路由冲突、URI可转发、断言和过滤器已注册且参数能绑定到其配置、Path模式可解析，
+ * 返回所有错误信息，任一路由有错误时整张路由表都不生效。参数绑定与网关加载路由时相同，但不创建断言和过滤器实例
+ */
+public class RouteDefinitionValidator {
+
+    private static final Set<String> SCHEMES = Set.of("lb", "http", "https", "ws", "wss");
+
+    private final Map<String, RoutePredicateFactory<?>> predicateFactories = new HashMap<>();
+    private final Map<String, GatewayFilterFactory<?>> filterFactories = new HashMap<>();
+    private final ConfigurationService configurationService;
+    private final Set<String> reservedIds;
+
+    public RouteDefinitionValidator(Collection<RoutePredicateFactory<?>> predicateFactories,
+                                    Collection<GatewayFilterFactory<?>> filterFactories,
+                                    ConfigurationService configurationService,
+                                    Collection<String> reservedIds) {
+        predicateFactories.forEach(factory -> this.predicateFactories.put(factory.name(), factory));
+        filterFactories.forEach(factory -> this.filterFactories.put(factory.name(), factory));
+        this.configurationService = configurationService;
+        this.reservedIds = Set.copyOf(reservedIds);
+    }
+
+    public List<String> validate(List<RouteDefinition> definitions) {
+        List<String> errors = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+
+        for (int i = 0; i < definitions.size(); i++) {
+            RouteDefinition definition = definitions.get(i);
+            String id = definition.getId();
+            String name = id != null ? id : "#" + i;
+            if (id == null || id.isBlank()) {
+                errors.add(name + ": id is required");
+            } else if (reservedIds.contains(id)) {
+                errors.add(name + ": id is already used by a built-in route");
+            } else if (!ids.add(id)) {
+                errors.add(name + ": duplicate id");
+            }
+
+            URI uri = definition.getUri();
+            if (uri == null) {
+                errors.add(name + ": uri is required");
+            } else if (uri.getScheme() == null || !SCHEMES.contains(uri.getScheme().toLowerCase())) {
+                errors.add(name + ": unsupported uri scheme: " + uri);
+            } else if (uri.getHost() == null) {
+                errors.add(name + ": uri has no valid host: " + uri);
+            }
+
+            if (definition.getPredicates().isEmpty()) {
+                errors.add(name + ": at least one predicate is required");
+            }
+            for (PredicateDefinition predicate : definition.getPredicates()) {
+                RoutePredicateFactory<?> factory = predicateFactories.get(predicate.getName());
+                if (factory == null) {
+                    errors.add(name + ": unknown predicate: " + predicate.getName());
+                } else {
+                    String error = bindPredicate(factory, predicate);
+                    if (error != null) {
+                        errors.add(name + ": " + error);
+                    }
+                }
+            }
+            List<String> patterns = IndexedRoutePredicateHandlerMapping.pathPatternsOf(definition);
+            if (patterns != null) {
+                for (String pattern : patterns) {
+                    try {
+                        PathPatternParser.defaultInstance.parse(pattern);
+                    } catch (PatternParseException e) {
+                        errors.add(name + ": invalid path pattern " + pattern + ": " + e.getMessage());
+                    }
+                }
+            }
+
+            for (FilterDefinition filter : definition.getFilters()) {
+                GatewayFilterFactory<?> factory = filterFactories.get(filter.getName());
+                if (factory == null) {
+                    errors.add(name + ": unknown filter: " + filter.getName());
+                } else {
+                    String error = bindFilter(factory, filter);
+                    if (error != null) {
+                        errors.add(name + ": " + error);
+                    }
+                }
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * 按网关加载路由的方式绑定参数，类型转换或校验失败时返回错误信息
+     */
+    @SuppressWarnings("unchecked")
+    private String bindPredicate(RoutePredicateFactory<?> factory, PredicateDefinition predicate) {
+        try {
+            configurationService.with((RoutePredicateFactory<Object>) factory)
+                .name(predicate.getName())
+                .properties(predicate.getArgs())
+                .bind();
+            return null;
+        } catch (RuntimeException e) {
+            return "invalid args for predicate " + predicate.getName() + ": " + e.getMessage();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private String bindFilter(GatewayFilterFactory<?> factory, FilterDefinition filter) {
+        try {
+            configurationService.with((GatewayFilterFactory<Object>) factory)
+                .name(filter.getName())
+                .properties(filter.getArgs())
+                .bind();
+            return null;
+        } catch (RuntimeException e) {
+            return "invalid args for filter " + filter.getName() + ": " + e.getMessage();
+        }
+    }
+}
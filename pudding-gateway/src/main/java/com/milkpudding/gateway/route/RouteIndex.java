@@ -0,0 +1,293 @@
+package com.milkpudding.gateway.route;
+
+import org.springframework.cloud.gateway.route.Route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译后的路由索引
+ * 取每个路由Path断言中通配符之前的固定前缀建成字符前缀树，每个前缀节点预先算好候选路由数组：
+ * 该前缀及其上级前缀的路由、匹配所有路径的路由和无法建索引的路由，按原路由顺序排列。
+ * 查找时按字符走树取最深的匹配前缀，耗时只与路径长度有关，与路由总数无关且不分配对象；
+ * 候选路由仍需逐个计算完整断言，索引只负责排除不可能匹配的路由。编译后不可变，可在线程间共享
+ */
+public final class RouteIndex {
+
+    /**
+     * 路由元数据中的Path模式（String或Collection），Java DSL定义的路由通过它参与索引
+     */
+    public static final String PATH_PATTERNS_METADATA = "path-patterns";
+
+    private static final RouteIndex EMPTY = new RouteIndex(new Node(), new Route[0], new Route[0], 0, 0);
+
+    private final Node root;
+    private final Route[] all;
+    private final Route[] unprefixed;
+    private final int indexedRoutes;
+    private final int prefixes;
+
+    private RouteIndex(Node root, Route[] all, Route[] unprefixed, int indexedRoutes, int prefixes) {
+        this.root = root;
+        this.all = all;
+        this.unprefixed = unprefixed;
+        this.indexedRoutes = indexedRoutes;
+        this.prefixes = prefixes;
+    }
+
+    /**
+     * 编译路由索引
+     *
+     * @param routes             按匹配顺序排列的路由
+     * @param definitionPatterns 路由ID -> 路由定义中的Path模式，没有元数据的路由按它建索引
+     */
+    public static RouteIndex compile(List<Route> routes, Map<String, List<String>> definitionPatterns) {
+        if (routes == null || routes.isEmpty()) {
+            return EMPTY;
+        }
+
+        Node root = new Node();
+        Route[] all = routes.toArray(new Route[0]);
+        // 匹配所有路径（根前缀）和无法建索引的路由，出现在每个候选数组中
+        List<Integer> unprefixed = new ArrayList<>();
+        Map<Node, List<Integer>> byPrefix = new HashMap<>();
+        int indexedRoutes = 0;
+
+        for (int position = 0; position < all.length; position++) {
+            Route route = all[position];
+            List<String> routePrefixes = prefixesOf(patternsOf(route, definitionPatterns));
+            if (routePrefixes == null || routePrefixes.contains("")) {
+                unprefixed.add(position);
+                continue;
+            }
+            indexedRoutes++;
+            for (String prefix : routePrefixes) {
+                Node node = root;
+                for (int i = 0; i < prefix.length(); i++) {
+                    node = node.getOrAddChild(prefix.charAt(i));
+                }
+                List<Integer> positions = byPrefix.computeIfAbsent(node, key -> new ArrayList<>());
+                if (positions.isEmpty() || positions.get(positions.size() - 1) != position) {
+                    positions.add(position);
+                }
+            }
+        }
+
+        int[] base = toArray(unprefixed);
+        Route[] baseRoutes = select(all, base);
+        for (Map.Entry<Node, List<Integer>> entry : byPrefix.entrySet()) {
+            entry.getKey().terminal = true;
+        }
+        fill(root, base, all, byPrefix);
+        return new RouteIndex(root, all, baseRoutes, indexedRoutes, byPrefix.size());
+    }
+
+    public static RouteIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 查找可能匹配该路径的路由，按原路由顺序排列；返回的数组为共享数组，调用方不可修改。
+     * 含百分号编码或矩阵参数的路径与断言看到的解码路径可能不同，直接返回全部路由
+     */
+    public Route[] candidates(String path) {
+        if (path == null) {
+            return all;
+        }
+
+        Node node = root;
+        Route[] best = unprefixed;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '%' || c == ';') {
+                return all;
+            }
+            if (c == '/' && node != null && node.terminal) {
+                best = node.candidates;
+            }
+            if (node != null) {
+                node = node.child(c);
+            }
+        }
+        if (node != null && node.terminal) {
+            best = node.candidates;
+        }
+        return best;
+    }
+
+    public int size() {
+        return all.length;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("routes", all.length);
+        stats.put("indexedRoutes", indexedRoutes);
+        stats.put("unindexedRoutes", all.length - indexedRoutes);
+        stats.put("prefixes", prefixes);
+        return stats;
+    }
+
+    /**
+     * 取Path模式中第一个含通配符或变量的段之前的部分，如 /api/v1/users/** -> /api/v1/users；
+     * 匹配所有路径时返回空串，无法确定前缀时返回null
+     */
+    static String prefixOf(String pattern) {
+        if (pattern == null) {
+            return null;
+        }
+        String p = pattern.trim();
+        if (!p.startsWith("/")) {
+            return null;
+        }
+
+        int end = 0;
+        int segmentStart = 1;
+        while (segmentStart <= p.length()) {
+            int segmentEnd = p.indexOf('/', segmentStart);
+            if (segmentEnd < 0) {
+                segmentEnd = p.length();
+            }
+            if (segmentEnd == segmentStart || hasWildcard(p, segmentStart, segmentEnd)) {
+                break;
+            }
+            end = segmentEnd;
+            segmentStart = segmentEnd + 1;
+        }
+        return p.substring(0, end);
+    }
+
+    /**
+     * 路由的Path模式：优先取路由元数据，其次取路由定义；都没有时返回null
+     */
+    private static Collection<String> patternsOf(Route route, Map<String, List<String>> definitionPatterns) {
+        Object metadata = route.getMetadata() != null ? route.getMetadata().get(PATH_PATTERNS_METADATA) : null;
+        if (metadata instanceof String pattern) {
+            return Collections.singletonList(pattern);
+        }
+        if (metadata instanceof Collection<?> patterns) {
+            List<String> result = new ArrayList<>(patterns.size());
+            for (Object pattern : patterns) {
+                result.add(String.valueOf(pattern));
+            }
+            return result;
+        }
+        return definitionPatterns != null ? definitionPatterns.get(route.getId()) : null;
+    }
+
+    private static List<String> prefixesOf(Collection<String> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return null;
+        }
+        List<String> prefixes = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            String prefix = prefixOf(pattern);
+            if (prefix == null) {
+                return null;
+            }
+            prefixes.add(prefix);
+        }
+        return prefixes;
+    }
+
+    private static boolean hasWildcard(String p, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = p.charAt(i);
+            if (c == '*' || c == '?' || c == '{' || c == '}' || c == '#') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 深度优先为每个前缀节点合并上级前缀的候选路由
+     */
+    private static void fill(Node node, int[] inherited, Route[] all, Map<Node, List<Integer>> byPrefix) {
+        int[] current = inherited;
+        if (node.terminal) {
+            current = merge(inherited, byPrefix.get(node));
+            node.candidates = select(all, current);
+        }
+        for (Node child : node.children) {
+            fill(child, current, all, byPrefix);
+        }
+    }
+
+    private static int[] merge(int[] sorted, List<Integer> positions) {
+        int[] result = new int[sorted.length + positions.size()];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < sorted.length || j < positions.size()) {
+            int next;
+            if (j >= positions.size() || (i < sorted.length && sorted[i] < positions.get(j))) {
+                next = sorted[i++];
+            } else {
+                next = positions.get(j++);
+            }
+            if (n == 0 || result[n - 1] != next) {
+                result[n++] = next;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    private static int[] toArray(List<Integer> positions) {
+        int[] result = new int[positions.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = positions.get(i);
+        }
+        return result;
+    }
+
+    private static Route[] select(Route[] all, int[] positions) {
+        Route[] result = new Route[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            result[i] = all[positions[i]];
+        }
+        return result;
+    }
+
+    /**
+     * 前缀树节点，子节点按字符排序后二分查找
+     */
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+        private Route[] candidates;
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrAddChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            int insertAt = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+
+            Node child = new Node();
+            newKeys[insertAt] = c;
+            newChildren[insertAt] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+}
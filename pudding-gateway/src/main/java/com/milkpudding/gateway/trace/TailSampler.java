@@ -0,0 +1,81 @@
+package com.milkpudding.gateway.trace;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 尾部采样
+ * 请求完成后根据结果决定是否保留完整的请求明细：慢请求和失败请求全部保留，
+ * 其余请求按基线比例随机保留，用于排查p99长尾而不必为每个请求记录明细
+ */
+@Component
+public class TailSampler {
+
+    /**
+     * 保留原因
+     */
+    public enum Reason {
+        SLOW,       // 耗时超过阈值
+        ERROR,      // 5xx或处理异常
+        BASELINE    // 正常请求按比例保留
+    }
+
+    private final long slowThresholdNanos;
+    private final double baselineRate;
+
+    private final LongAdder evaluated = new LongAdder();
+    private final Map<Reason, LongAdder> kept = new EnumMap<>(Reason.class);
+
+    public TailSampler(@Value("${app.trace.slow-threshold:1000}") long slowThresholdMillis,
+                       @Value("${app.trace.baseline-rate:0}") double baselineRate) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, slowThresholdMillis));
+        this.baselineRate = Math.max(0, Math.min(1, baselineRate));
+        for (Reason reason : Reason.values()) {
+            kept.put(reason, new LongAdder());
+        }
+    }
+
+    /**
+     * 判断是否保留请求明细，不保留时返回null
+     *
+     * @param status        响应状态码，未知时为0
+     * @param durationNanos 处理耗时
+     * @param failed        处理过程中是否抛出异常
+     */
+    public Reason sample(int status, long durationNanos, boolean failed) {
+        evaluated.increment();
+        Reason reason = null;
+        if (failed || status >= 500) {
+            reason = Reason.ERROR;
+        } else if (durationNanos >= slowThresholdNanos) {
+            reason = Reason.SLOW;
+        } else if (baselineRate > 0 && ThreadLocalRandom.current().nextDouble() < baselineRate) {
+            reason = Reason.BASELINE;
+        }
+        if (reason != null) {
+            kept.get(reason).increment();
+        }
+        return reason;
+    }
+
+    /**
+     * 获取采样统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("slowThresholdMillis", TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos));
+        stats.put("baselineRate", baselineRate);
+        stats.put("evaluated", evaluated.sum());
+        Map<String, Long> keptByReason = new HashMap<>();
+        kept.forEach((reason, count) -> keptByReason.put(reason.name(), count.sum()));
+        stats.put("kept", keptByReason);
+        return stats;
+    }
+}
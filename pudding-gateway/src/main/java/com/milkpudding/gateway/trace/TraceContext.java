@@ -0,0 +1,147 @@
+package com.milkpudding.gateway.trace;
+
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 请求追踪上下文（W3C Trace Context）
+ * traceId同时作为请求ID，在网关日志、访问日志和下游服务中保持一致。
+ * 请求携带合法的traceparent时沿用其traceId，否则生成128位随机traceId；
+ * 网关为转发到下游的请求生成新的spanId
+ */
+public final class TraceContext {
+
+    /**
+     * 保存在ServerWebExchange中的属性名
+     */
+    public static final String ATTRIBUTE = TraceContext.class.getName();
+
+    public static final String TRACEPARENT_HEADER = "traceparent";
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+    private static final int TRACEPARENT_LENGTH = 55;
+    private static final byte FLAG_SAMPLED = 0x01;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final byte flags;
+
+    private TraceContext(String traceId, String spanId, String parentSpanId, byte flags) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.flags = flags;
+    }
+
+    /**
+     * 根据请求头创建追踪上下文，traceparent缺失或格式错误时开始新的trace
+     */
+    public static TraceContext fromTraceparent(String traceparent) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (isValid(traceparent)) {
+            return new TraceContext(traceparent.substring(3, 35), newSpanId(random), traceparent.substring(36, 52),
+                (byte) Integer.parseInt(traceparent, 53, 55, 16));
+        }
+        long high = random.nextLong();
+        long low = random.nextLong();
+        if (high == 0 && low == 0) {
+            low = 1;
+        }
+        char[] traceId = new char[32];
+        putHex(traceId, 0, high);
+        putHex(traceId, 16, low);
+        return new TraceContext(new String(traceId), newSpanId(random), null, FLAG_SAMPLED);
+    }
+
+    /**
+     * 获取请求的追踪上下文，没有时返回null
+     */
+    public static TraceContext from(ServerWebExchange exchange) {
+        return exchange.getAttribute(ATTRIBUTE);
+    }
+
+    /**
+     * 获取请求ID，没有追踪上下文时返回null
+     */
+    public static String requestId(ServerWebExchange exchange) {
+        TraceContext context = from(exchange);
+        return context != null ? context.getTraceId() : null;
+    }
+
+    /**
+     * 转发到下游时使用的traceparent，父span为网关的span
+     */
+    public String toTraceparent() {
+        char[] value = new char[TRACEPARENT_LENGTH];
+        value[0] = '0';
+        value[1] = '0';
+        value[2] = '-';
+        traceId.getChars(0, 32, value, 3);
+        value[35] = '-';
+        spanId.getChars(0, 16, value, 36);
+        value[52] = '-';
+        value[53] = HEX[(flags >> 4) & 0xF];
+        value[54] = HEX[flags & 0xF];
+        return new String(value);
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * 上游调用方的spanId，网关是trace起点时为null
+     */
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public boolean isSampled() {
+        return (flags & FLAG_SAMPLED) != 0;
+    }
+
+    /**
+     * 校验traceparent：版本00，traceId和spanId为小写十六进制且不全为0
+     */
+    static boolean isValid(String traceparent) {
+        if (traceparent == null || traceparent.length() != TRACEPARENT_LENGTH
+            || traceparent.charAt(0) != '0' || traceparent.charAt(1) != '0'
+            || traceparent.charAt(2) != '-' || traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-') {
+            return false;
+        }
+        return isHex(traceparent, 3, 35) && isHex(traceparent, 36, 52) && isHex(traceparent, 53, 55);
+    }
+
+    private static boolean isHex(String value, int from, int to) {
+        boolean nonZero = to - from == 2;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+            nonZero |= c != '0';
+        }
+        return nonZero;
+    }
+
+    private static String newSpanId(ThreadLocalRandom random) {
+        long id = random.nextLong();
+        char[] spanId = new char[16];
+        putHex(spanId, 0, id == 0 ? 1 : id);
+        return new String(spanId);
+    }
+
+    private static void putHex(char[] target, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            target[offset + i] = HEX[(int) value & 0xF];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.milkpudding.gateway.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁布隆过滤器
+ * mightContain返回false时元素一定不存在，返回true时需要再查精确集合。
+ * 哈希基于String缓存的hashCode做二次混合，重复查询同一String时不再遍历字符
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final int mask;
+    private final int numHashes;
+
+    private BloomFilter(int numBits, int numHashes) {
+        this.bits = new AtomicLongArray(Math.max(1, numBits >>> 6));
+        this.mask = numBits - 1;
+        this.numHashes = numHashes;
+    }
+
+    /**
+     * 按预计元素数和期望误判率创建，位数向上取整为2的幂
+     */
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        double p = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+        long optimalBits = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int numBits = (int) Math.min(1L << 30, Math.max(64, Long.highestOneBit(optimalBits - 1) << 1));
+        int numHashes = (int) Math.max(1, Math.min(16, Math.round((double) numBits / n * Math.log(2))));
+        return new BloomFilter(numBits, numHashes);
+    }
+
+    public void put(String value) {
+        long hash = HashUtil.mix64(value.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            int index = (h1 + i * h2) & mask;
+            long bit = 1L << index;
+            bits.getAndAccumulate(index >>> 6, bit, (current, update) -> current | update);
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash = HashUtil.mix64(value.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            int index = (h1 + i * h2) & mask;
+            if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int bitSize() {
+        return mask + 1;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+}
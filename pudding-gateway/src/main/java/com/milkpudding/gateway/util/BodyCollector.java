@@ -0,0 +1,63 @@
+package com.milkpudding.gateway.util;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 有上限的响应体副本
+ * 在响应写出时逐块复制，不改变原缓冲区的读位置；累计超过上限后丢弃已复制的内容，之后的数据忽略。
+ * 非线程安全，同一个响应的数据块按顺序写入
+ */
+public final class BodyCollector {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int maxSize;
+    private byte[] body;
+    private int length;
+    private boolean abandoned;
+
+    public BodyCollector(int maxSize) {
+        this.maxSize = maxSize;
+        this.body = new byte[Math.min(INITIAL_CAPACITY, Math.max(maxSize, 0))];
+    }
+
+    public void append(DataBuffer buffer) {
+        if (abandoned) {
+            return;
+        }
+        int count = buffer.readableByteCount();
+        if (length + count > maxSize) {
+            abandoned = true;
+            body = null;
+            return;
+        }
+        if (length + count > body.length) {
+            body = Arrays.copyOf(body, Math.min(maxSize, Math.max(body.length * 2, length + count)));
+        }
+        try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+            while (iterator.hasNext()) {
+                ByteBuffer chunk = iterator.next();
+                int remaining = chunk.remaining();
+                chunk.get(body, length, remaining);
+                length += remaining;
+            }
+        }
+    }
+
+    /**
+     * 响应体是否超过上限被丢弃
+     */
+    public boolean isAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * 已复制的响应体，长度为实际字节数；超过上限时返回null
+     */
+    public byte[] toByteArray() {
+        return abandoned ? null : Arrays.copyOf(body, length);
+    }
+}
@@ -0,0 +1,68 @@
+package com.milkpudding.gateway.util;
+
+import cn.hutool.json.JSONUtil;
+import com.milkpudding.gateway.common.Result;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 预编码的固定错误响应
+ * 响应体在创建时序列化一次，保存在不可释放的只读直接内存中，响应头也预先构建；
+ * 写出时只共享同一块内存，不再序列化、编码或复制，拒绝请求的开销接近于零
+ */
+public final class CannedResponse {
+
+    private final HttpStatus status;
+    private final String[][] headers;
+    private final byte[] bytes;
+    private final DirectBody body;
+
+    private CannedResponse(HttpStatus status, byte[] bytes) {
+        this.status = status;
+        this.bytes = bytes;
+        this.headers = new String[][] {
+            {HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE},
+            {HttpHeaders.CONTENT_LENGTH, String.valueOf(bytes.length)},
+            {"Access-Control-Allow-Origin", "*"},
+            {"Access-Control-Allow-Methods", "GET,POST,PUT,DELETE,OPTIONS"},
+            {"Access-Control-Allow-Headers", "Content-Type,Authorization"}
+        };
+        this.body = DirectBody.of(bytes);
+    }
+
+    /**
+     * 创建统一格式的错误响应，响应体与ResponseUtil.writeErrorResponse一致
+     */
+    public static CannedResponse of(HttpStatus status, String message) {
+        String json = JSONUtil.toJsonStr(Result.error(status.value(), message));
+        return new CannedResponse(status, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 写出响应
+     */
+    public Mono<Void> write(ServerHttpResponse response) {
+        response.setStatusCode(status);
+        HttpHeaders responseHeaders = response.getHeaders();
+        for (String[] header : headers) {
+            responseHeaders.set(header[0], header[1]);
+        }
+        return response.writeWith(Mono.just(body.wrap(response.bufferFactory())));
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * 响应体副本
+     */
+    public byte[] getBody() {
+        return bytes.clone();
+    }
+}
@@ -0,0 +1,44 @@
+package com.milkpudding.gateway.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 预先写入直接内存的只读响应体
+ * 内容只保存一份，Netty和非Netty环境的视图共享同一块内存；每次写出包装一个新的视图，不复制数据
+ */
+public final class DirectBody {
+
+    private final ByteBuf nettyBody;
+    private final ByteBuffer body;
+
+    private DirectBody(byte[] content) {
+        // 写出后Netty会释放缓冲区，包装为不可释放保证共享内存一直有效
+        this.nettyBody = Unpooled.unreleasableBuffer(
+            Unpooled.directBuffer(content.length, content.length).writeBytes(content).asReadOnly());
+        this.body = nettyBody.nioBuffer().asReadOnlyBuffer();
+    }
+
+    public static DirectBody of(byte[] content) {
+        return new DirectBody(content);
+    }
+
+    /**
+     * 响应体视图；Netty环境下包装同一块内存
+     */
+    public DataBuffer wrap(DataBufferFactory factory) {
+        if (factory instanceof NettyDataBufferFactory netty) {
+            return netty.wrap(nettyBody.duplicate());
+        }
+        return factory.wrap(body.duplicate());
+    }
+
+    public int length() {
+        return body.capacity();
+    }
+}
@@ -0,0 +1,54 @@
+package com.milkpudding.gateway.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * ETag工具类
+ * 响应缓存和静态文件共用的ETag生成与If-None-Match比较
+ */
+public final class EtagUtil {
+
+    private EtagUtil() {
+    }
+
+    /**
+     * If-None-Match是否包含该ETag，按弱比较，"*"匹配任意ETag
+     */
+    public static boolean matches(List<String> ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty() || etag == null) {
+            return false;
+        }
+        String target = stripWeak(etag);
+        for (String header : ifNoneMatch) {
+            for (String candidate : header.split(",")) {
+                String value = candidate.trim();
+                if ("*".equals(value) || stripWeak(value).equals(target)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按内容生成强ETag：SHA-256的前128位
+     */
+    public static String of(byte[] body, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(body, 0, length);
+            byte[] hash = Arrays.copyOf(digest.digest(), 16);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
@@ -0,0 +1,24 @@
+package com.milkpudding.gateway.util;
+
+/**
+ * 哈希工具类
+ * 布隆过滤器和访问频率估计共用的hashCode二次混合
+ */
+public final class HashUtil {
+
+    private HashUtil() {
+    }
+
+    /**
+     * 把32位hashCode扩展并混合为64位哈希（MurmurHash3 fmix64），高低32位可作为两个独立的哈希值
+     */
+    public static long mix64(int hashCode) {
+        long h = hashCode * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,63 @@
+package com.milkpudding.gateway.util;
+
+/**
+ * 网关鉴权所需的JWT声明
+ * 只包含转发给下游服务的用户信息、吊销检查所需的token ID和时间
+ */
+public final class JwtClaims {
+
+    private final String subject;
+    private final String username;
+    private final String tokenId;
+    private final long issuedAt;
+    private final long expiresAt;
+
+    public JwtClaims(String subject, String username, String tokenId, long issuedAt, long expiresAt) {
+        this.subject = subject;
+        this.username = username;
+        this.tokenId = tokenId;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * 用户ID（sub）
+     */
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * 用户名（username）
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * token ID（jti），旧token可能没有
+     */
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    /**
+     * 签发时间，epoch秒（iat），没有时为0
+     */
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    /**
+     * 过期时间，epoch秒（exp）
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return "JwtClaims{subject=" + subject + ", username=" + username + ", tokenId=" + tokenId
+            + ", issuedAt=" + issuedAt + ", expiresAt=" + expiresAt + "}";
+    }
+}
@@ -1,5 +1,6 @@
 package com.milkpudding.gateway.util;
 
+import cn.hutool.core.util.IdUtil;
 import cn.hutool.json.JSONUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -7,6 +8,7 @@ import org.springframework.stereotype.Component;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Base64;
@@ -23,7 +25,12 @@ public class JwtUtil {
     
     private static final String SECRET_KEY = "milk-pudding-gateway-secret-key-2024";
     private static final String ALGORITHM = "HmacSHA256";
-    private static final long EXPIRATION_HOURS = 24; // token过期时间24小时
+    static final long EXPIRATION_HOURS = 24; // token过期时间24小时
+    
+    // 每个线程复用一个已初始化的Mac，避免每次签名都调用Mac.getInstance
+    private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(JwtUtil::createMac);
+    
+    private final JwtVerifier verifier = new JwtVerifier(SECRET_KEY.getBytes(StandardCharsets.UTF_8), ALGORITHM);
     
     /**
      * 生成JWT token
@@ -35,6 +42,7 @@ public class JwtUtil {
             header.put("typ", "JWT");
             
             Map<String, Object> payload = new HashMap<>();
+            payload.put("jti", IdUtil.fastSimpleUUID());
             payload.put("sub", userId);
             payload.put("username", username);
             payload.put("iat", Instant.now().getEpochSecond());
@@ -62,42 +70,21 @@ public class JwtUtil {
     }
     
     /**
-     * 解析JWT token
+     * 解析JWT token，返回完整payload
      */
     public Map<String, Object> parseToken(String token) {
         try {
-            if (token == null || token.trim().isEmpty()) {
-                return null;
-            }
-            
-            String[] parts = token.split("\\.");
-            if (parts.length != 3) {
+            // 签名和过期时间统一由verifier校验
+            if (verifier.verify(token) == null) {
+                log.warn("JWT token verification failed");
                 return null;
             }
             
-            String headerBase64 = parts[0];
-            String payloadBase64 = parts[1];
-            String signature = parts[2];
-            
-            // 验证签名
-            String expectedSignature = generateSignature(headerBase64 + "." + payloadBase64);
-            if (!signature.equals(expectedSignature)) {
-                log.warn("JWT token signature verification failed");
-                return null;
-            }
-            
-            // 解析payload
+            String payloadBase64 = token.substring(token.indexOf('.') + 1, token.lastIndexOf('.'));
             String payloadJson = new String(Base64.getUrlDecoder().decode(payloadBase64), StandardCharsets.UTF_8);
             @SuppressWarnings("unchecked")
             Map<String, Object> payload = JSONUtil.toBean(payloadJson, Map.class);
             
-            // 检查过期时间
-            Long exp = ((Number) payload.get("exp")).longValue();
-            if (Instant.now().getEpochSecond() > exp) {
-                log.warn("JWT token has expired");
-                return null;
-            }
-            
             return payload;
         } catch (Exception e) {
             log.error("Parse JWT token failed", e);
@@ -105,6 +92,13 @@ public class JwtUtil {
         }
     }
     
+    /**
+     * 验证JWT token并提取网关所需的声明，用于请求链路
+     */
+    public JwtClaims verifyToken(String token) {
+        return verifier.verify(token);
+    }
+    
     /**
      * 验证JWT token是否有效
      */
@@ -131,11 +125,18 @@ public class JwtUtil {
     /**
      * 生成签名
      */
-    private String generateSignature(String data) throws Exception {
-        Mac mac = Mac.getInstance(ALGORITHM);
-        SecretKeySpec secretKeySpec = new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), ALGORITHM);
-        mac.init(secretKeySpec);
-        byte[] signature = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+    private String generateSignature(String data) {
+        byte[] signature = MAC.get().doFinal(data.getBytes(StandardCharsets.UTF_8));
         return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
     }
+    
+    private static Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize " + ALGORITHM, e);
+        }
+    }
 }
\ No newline at end of file
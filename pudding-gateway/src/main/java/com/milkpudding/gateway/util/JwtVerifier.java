@@ -0,0 +1,471 @@
+package com.milkpudding.gateway.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * JWT验证器
+ * 直接按字符/字节偏移处理token：复用线程内的Mac和缓冲区计算HMAC，
+ * 以常量时间比较签名，只从payload中提取sub、username、jti、iat和exp，
+ * 不生成中间String和Map
+ */
+public final class JwtVerifier {
+
+    private static final int SIGNATURE_LENGTH = 32;   // HmacSHA256输出字节数
+    private static final int SIGNATURE_CHARS = 43;    // 32字节base64url（无填充）长度
+    private static final int MAX_TOKEN_LENGTH = 8192;
+
+    private static final int FIELD_OTHER = 0;
+    private static final int FIELD_SUB = 1;
+    private static final int FIELD_USERNAME = 2;
+    private static final int FIELD_EXP = 3;
+    private static final int FIELD_JTI = 4;
+    private static final int FIELD_IAT = 5;
+
+    private static final byte[] USERNAME_KEY = "username".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] BASE64URL = new byte[128];
+
+    static {
+        Arrays.fill(BASE64URL, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64URL[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final ThreadLocal<Scratch> scratch;
+
+    public JwtVerifier(byte[] secret, String algorithm) {
+        SecretKeySpec key = new SecretKeySpec(secret, algorithm);
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(key));
+    }
+
+    /**
+     * 验证token，签名错误、格式错误或已过期时返回null
+     */
+    public JwtClaims verify(String token) {
+        return verify(token, Instant.now().getEpochSecond());
+    }
+
+    /**
+     * 以指定时间验证token
+     */
+    public JwtClaims verify(String token, long nowEpochSecond) {
+        if (token == null) {
+            return null;
+        }
+
+        int length = token.length();
+        if (length == 0 || length > MAX_TOKEN_LENGTH) {
+            return null;
+        }
+
+        int firstDot = token.indexOf('.');
+        int secondDot = firstDot > 0 ? token.indexOf('.', firstDot + 1) : -1;
+        if (secondDot <= firstDot + 1 || length - secondDot - 1 != SIGNATURE_CHARS) {
+            return null;
+        }
+
+        Scratch s = scratch.get();
+
+        // 签名段解码失败（包括多余的'.'）直接拒绝
+        if (decodeBase64Url(token, secondDot + 1, length, s.actual) != SIGNATURE_LENGTH) {
+            return null;
+        }
+
+        // 计算 header.payload 的HMAC
+        byte[] input = s.input(secondDot);
+        for (int i = 0; i < secondDot; i++) {
+            char c = token.charAt(i);
+            if (c >= 128) {
+                return null;
+            }
+            input[i] = (byte) c;
+        }
+        try {
+            s.mac.update(input, 0, secondDot);
+            s.mac.doFinal(s.expected, 0);
+        } catch (GeneralSecurityException e) {
+            s.mac.reset();
+            return null;
+        }
+
+        // 常量时间比较签名
+        int diff = 0;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            diff |= s.expected[i] ^ s.actual[i];
+        }
+        if (diff != 0) {
+            return null;
+        }
+
+        byte[] payload = s.payload(secondDot - firstDot);
+        int payloadLength = decodeBase64Url(token, firstDot + 1, secondDot, payload);
+        if (payloadLength < 0) {
+            return null;
+        }
+
+        return readClaims(payload, payloadLength, nowEpochSecond);
+    }
+
+    /**
+     * 从payload JSON中提取声明，只解析顶层的sub、username、jti、iat和exp
+     */
+    private static JwtClaims readClaims(byte[] b, int end, long now) {
+        int i = skipWhitespace(b, 0, end);
+        if (i >= end || b[i] != '{') {
+            return null;
+        }
+        i = skipWhitespace(b, i + 1, end);
+        if (i < end && b[i] == '}') {
+            return null;
+        }
+
+        String subject = null;
+        String username = null;
+        String tokenId = null;
+        long issuedAt = 0;
+        long exp = 0;
+        boolean hasExp = false;
+
+        while (true) {
+            if (i >= end || b[i] != '"') {
+                return null;
+            }
+            int keyEnd = skipString(b, i, end);
+            if (keyEnd < 0) {
+                return null;
+            }
+            int field = field(b, i + 1, keyEnd - 1);
+
+            i = skipWhitespace(b, keyEnd, end);
+            if (i >= end || b[i] != ':') {
+                return null;
+            }
+            i = skipWhitespace(b, i + 1, end);
+            if (i >= end) {
+                return null;
+            }
+
+            int valueEnd;
+            if ((field == FIELD_SUB || field == FIELD_USERNAME || field == FIELD_JTI) && b[i] == '"') {
+                valueEnd = skipString(b, i, end);
+                if (valueEnd < 0) {
+                    return null;
+                }
+                String value = decodeString(b, i + 1, valueEnd - 1);
+                if (value == null) {
+                    return null;
+                }
+                if (field == FIELD_SUB) {
+                    subject = value;
+                } else if (field == FIELD_USERNAME) {
+                    username = value;
+                } else {
+                    tokenId = value;
+                }
+            } else {
+                valueEnd = skipValue(b, i, end);
+                if (valueEnd < 0) {
+                    return null;
+                }
+                if (field == FIELD_EXP) {
+                    exp = parseLong(b, i, valueEnd);
+                    hasExp = true;
+                } else if (field == FIELD_IAT) {
+                    issuedAt = Math.max(0, parseLong(b, i, valueEnd));
+                }
+            }
+
+            i = skipWhitespace(b, valueEnd, end);
+            if (i >= end) {
+                return null;
+            }
+            if (b[i] == '}') {
+                break;
+            }
+            if (b[i] != ',') {
+                return null;
+            }
+            i = skipWhitespace(b, i + 1, end);
+        }
+
+        if (!hasExp || now > exp) {
+            return null;
+        }
+        return new JwtClaims(subject, username, tokenId, issuedAt, exp);
+    }
+
+    private static int field(byte[] b, int from, int to) {
+        int length = to - from;
+        if (length == 3) {
+            if (b[from] == 's' && b[from + 1] == 'u' && b[from + 2] == 'b') {
+                return FIELD_SUB;
+            }
+            if (b[from] == 'e' && b[from + 1] == 'x' && b[from + 2] == 'p') {
+                return FIELD_EXP;
+            }
+            if (b[from] == 'j' && b[from + 1] == 't' && b[from + 2] == 'i') {
+                return FIELD_JTI;
+            }
+            if (b[from] == 'i' && b[from + 1] == 'a' && b[from + 2] == 't') {
+                return FIELD_IAT;
+            }
+        } else if (length == USERNAME_KEY.length
+                && Arrays.equals(b, from, to, USERNAME_KEY, 0, USERNAME_KEY.length)) {
+            return FIELD_USERNAME;
+        }
+        return FIELD_OTHER;
+    }
+
+    /**
+     * 跳过字符串，返回结束引号之后的位置
+     */
+    private static int skipString(byte[] b, int i, int end) {
+        int j = i + 1;
+        while (j < end) {
+            byte c = b[j];
+            if (c == '"') {
+                return j + 1;
+            }
+            j += c == '\\' ? 2 : 1;
+        }
+        return -1;
+    }
+
+    /**
+     * 跳过任意JSON值，返回值之后的位置
+     */
+    private static int skipValue(byte[] b, int i, int end) {
+        byte c = b[i];
+        if (c == '"') {
+            return skipString(b, i, end);
+        }
+
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            int j = i;
+            while (j < end) {
+                byte d = b[j];
+                if (d == '"') {
+                    j = skipString(b, j, end);
+                    if (j < 0) {
+                        return -1;
+                    }
+                    continue;
+                }
+                if (d == '{' || d == '[') {
+                    depth++;
+                } else if (d == '}' || d == ']') {
+                    if (--depth == 0) {
+                        return j + 1;
+                    }
+                }
+                j++;
+            }
+            return -1;
+        }
+
+        int j = i;
+        while (j < end) {
+            byte d = b[j];
+            if (d == ',' || d == '}' || d == ']' || isWhitespace(d)) {
+                break;
+            }
+            j++;
+        }
+        return j == i ? -1 : j;
+    }
+
+    /**
+     * 解析整数；带小数或指数时按double截断，与Number.longValue()一致。
+     * 非数字返回Long.MIN_VALUE，视为已过期
+     */
+    private static long parseLong(byte[] b, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && b[i] == '-') {
+            negative = true;
+            i++;
+        }
+        if (i >= to) {
+            return Long.MIN_VALUE;
+        }
+
+        long value = 0;
+        int digits = 0;
+        for (; i < to; i++) {
+            byte c = b[i];
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+            digits++;
+        }
+
+        if (i == to && digits > 0 && digits <= 18) {
+            return negative ? -value : value;
+        }
+
+        try {
+            return (long) Double.parseDouble(new String(b, from, to - from, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * 解码JSON字符串内容，无转义字符时直接按UTF-8构造
+     */
+    private static String decodeString(byte[] b, int from, int to) {
+        int escape = -1;
+        for (int i = from; i < to; i++) {
+            if (b[i] == '\\') {
+                escape = i;
+                break;
+            }
+        }
+        if (escape < 0) {
+            return new String(b, from, to - from, StandardCharsets.UTF_8);
+        }
+
+        StringBuilder sb = new StringBuilder(to - from);
+        int run = from;
+        int i = escape;
+        while (i < to) {
+            if (b[i] != '\\') {
+                i++;
+                continue;
+            }
+            sb.append(new String(b, run, i - run, StandardCharsets.UTF_8));
+            if (i + 1 >= to) {
+                return null;
+            }
+            switch (b[i + 1]) {
+                case '"':
+                case '\\':
+                case '/':
+                    sb.append((char) b[i + 1]);
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (i + 6 > to) {
+                        return null;
+                    }
+                    int code = 0;
+                    for (int k = i + 2; k < i + 6; k++) {
+                        int digit = Character.digit(b[k], 16);
+                        if (digit < 0) {
+                            return null;
+                        }
+                        code = (code << 4) | digit;
+                    }
+                    sb.append((char) code);
+                    i += 4;
+                    break;
+                default:
+                    return null;
+            }
+            i += 2;
+            run = i;
+        }
+        sb.append(new String(b, run, to - run, StandardCharsets.UTF_8));
+        return sb.toString();
+    }
+
+    private static int skipWhitespace(byte[] b, int i, int end) {
+        while (i < end && isWhitespace(b[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    /**
+     * base64url解码（无填充），返回写入的字节数，非法输入返回-1
+     */
+    private static int decodeBase64Url(String src, int from, int to, byte[] dst) {
+        int out = 0;
+        int buffer = 0;
+        int bits = 0;
+        for (int i = from; i < to; i++) {
+            char c = src.charAt(i);
+            int value = c < 128 ? BASE64URL[c] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            buffer = (buffer << 6) | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                if (out == dst.length) {
+                    return -1;
+                }
+                dst[out++] = (byte) (buffer >> bits);
+                buffer &= (1 << bits) - 1;
+            }
+        }
+        // 剩余6位说明长度非法，剩余位非零说明编码不规范
+        if (bits >= 6 || buffer != 0) {
+            return -1;
+        }
+        return out;
+    }
+
+    /**
+     * 线程内复用的Mac和缓冲区
+     */
+    private static final class Scratch {
+        private final Mac mac;
+        private final byte[] expected = new byte[SIGNATURE_LENGTH];
+        private final byte[] actual = new byte[SIGNATURE_LENGTH];
+        private byte[] input = new byte[512];
+        private byte[] payload = new byte[512];
+
+        Scratch(SecretKeySpec key) {
+            try {
+                mac = Mac.getInstance(key.getAlgorithm());
+                mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to initialize " + key.getAlgorithm(), e);
+            }
+        }
+
+        byte[] input(int length) {
+            if (input.length < length) {
+                input = new byte[Math.max(length, input.length * 2)];
+            }
+            return input;
+        }
+
+        byte[] payload(int encodedLength) {
+            int length = encodedLength * 3 / 4 + 1;
+            if (payload.length < length) {
+                payload = new byte[Math.max(length, payload.length * 2)];
+            }
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.milkpudding.gateway.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 预编译的路径匹配器
+ * 启动时把路径列表编译成字符前缀树，路径P匹配 path.equals(P) 或 path.startsWith(P + "/")。
+ * 兼容Spring路径模式的写法，P/**与P等价，/**匹配所有路径；其他通配符按普通字符处理。
+ * 查找只按字符走树，耗时O(路径长度)且不分配对象；编译后不可变，可安全地在线程间共享
+ */
+public final class PathPrefixMatcher {
+
+    private static final String ANY_SUFFIX = "/**";
+
+    private static final PathPrefixMatcher EMPTY = new PathPrefixMatcher(new Node(), Collections.emptyList());
+
+    private final Node root;
+    private final List<String> paths;
+
+    private PathPrefixMatcher(Node root, List<String> paths) {
+        this.root = root;
+        this.paths = paths;
+    }
+
+    /**
+     * 编译路径列表，忽略空白项，去掉末尾的"/**"和"/"（根路径除外）
+     */
+    public static PathPrefixMatcher compile(Collection<String> paths) {
+        if (paths == null || paths.isEmpty()) {
+            return EMPTY;
+        }
+
+        Node root = new Node();
+        List<String> normalized = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            String p = normalize(path);
+            if (p == null || normalized.contains(p)) {
+                continue;
+            }
+            normalized.add(p);
+
+            // /**的前缀为空串，根节点为终点时所有以"/"开头的路径都匹配
+            String prefix = ANY_SUFFIX.equals(p) ? "" : p;
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.getOrAddChild(prefix.charAt(i));
+            }
+            node.terminal = true;
+        }
+        return new PathPrefixMatcher(root, Collections.unmodifiableList(normalized));
+    }
+
+    public static PathPrefixMatcher empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 判断路径是否等于某个已编译路径，或位于其下级
+     */
+    public boolean matches(String path) {
+        if (path == null) {
+            return false;
+        }
+
+        Node node = root;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/' && node.terminal) {
+                return true;
+            }
+            node = node.child(c);
+            if (node == null) {
+                return false;
+            }
+        }
+        return node.terminal;
+    }
+
+    /**
+     * 已编译的路径
+     */
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    public int size() {
+        return paths.size();
+    }
+
+    private static String normalize(String path) {
+        if (path == null) {
+            return null;
+        }
+        String p = path.trim();
+        if (p.isEmpty()) {
+            return null;
+        }
+        p = stripTrailingSlashes(p);
+        if (ANY_SUFFIX.equals(p)) {
+            return p;
+        }
+        if (p.endsWith(ANY_SUFFIX)) {
+            p = stripTrailingSlashes(p.substring(0, p.length() - ANY_SUFFIX.length()));
+        }
+        return p;
+    }
+
+    private static String stripTrailingSlashes(String path) {
+        String p = path;
+        while (p.length() > 1 && p.endsWith("/")) {
+            p = p.substring(0, p.length() - 1);
+        }
+        return p;
+    }
+
+    /**
+     * 前缀树节点，子节点按字符排序后二分查找
+     */
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrAddChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            int insertAt = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+
+            Node child = new Node();
+            newKeys[insertAt] = c;
+            newChildren[insertAt] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.milkpudding.gateway.util;
+
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+import java.net.InetSocketAddress;
+
+/**
+ * 请求工具类
+ * 限流和访问日志共用的客户端地址解析
+ */
+public final class RequestUtil {
+
+    private RequestUtil() {
+    }
+
+    /**
+     * 获取客户端IP地址：依次取X-Forwarded-For的第一个地址、X-Real-IP、连接的远端地址，都没有时为unknown
+     */
+    public static String getClientIp(ServerHttpRequest request) {
+        String xForwardedFor = request.getHeaders().getFirst("X-Forwarded-For");
+        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
+            // 不用split，避免每个请求分配数组和多余的子串
+            int comma = xForwardedFor.indexOf(',');
+            return (comma < 0 ? xForwardedFor : xForwardedFor.substring(0, comma)).trim();
+        }
+
+        String xRealIp = request.getHeaders().getFirst("X-Real-IP");
+        if (xRealIp != null && !xRealIp.isEmpty()) {
+            return xRealIp;
+        }
+
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        return remoteAddress != null && remoteAddress.getAddress() != null
+            ? remoteAddress.getAddress().getHostAddress() : "unknown";
+    }
+}
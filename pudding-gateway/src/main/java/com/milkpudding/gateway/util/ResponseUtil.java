@@ -16,6 +16,17 @@ import java.nio.charset.StandardCharsets;
  */
 public class ResponseUtil {
     
+    // 拒绝和下游故障时的固定响应，预先编码
+    private static final CannedResponse UNAUTHORIZED = CannedResponse.of(HttpStatus.UNAUTHORIZED, "Unauthorized access");
+    private static final CannedResponse RATE_LIMITED = CannedResponse.of(HttpStatus.TOO_MANY_REQUESTS, "Rate limit exceeded");
+    private static final CannedResponse SERVICE_OVERLOADED = CannedResponse.of(HttpStatus.SERVICE_UNAVAILABLE,
+        "Service overloaded, please retry later");
+    private static final CannedResponse SERVICE_UNAVAILABLE = CannedResponse.of(HttpStatus.SERVICE_UNAVAILABLE,
+        "Service temporarily unavailable");
+    private static final CannedResponse BAD_GATEWAY = CannedResponse.of(HttpStatus.BAD_GATEWAY,
+        "Unable to connect to downstream service");
+    private static final CannedResponse GATEWAY_TIMEOUT = CannedResponse.of(HttpStatus.GATEWAY_TIMEOUT, "Gateway timeout");
+    
     /**
      * 返回JSON响应
      */
@@ -49,7 +60,7 @@ public class ResponseUtil {
      * 返回未授权响应
      */
     public static Mono<Void> writeUnauthorizedResponse(ServerHttpResponse response) {
-        return writeErrorResponse(response, HttpStatus.UNAUTHORIZED, "Unauthorized access");
+        return UNAUTHORIZED.write(response);
     }
     
     /**
@@ -63,6 +74,34 @@ public class ResponseUtil {
      * 返回限流响应
      */
     public static Mono<Void> writeRateLimitResponse(ServerHttpResponse response) {
-        return writeErrorResponse(response, HttpStatus.TOO_MANY_REQUESTS, "Rate limit exceeded");
+        return RATE_LIMITED.write(response);
+    }
+    
+    /**
+     * 返回服务过载响应
+     */
+    public static Mono<Void> writeServiceUnavailableResponse(ServerHttpResponse response) {
+        return SERVICE_OVERLOADED.write(response);
+    }
+    
+    /**
+     * 返回下游服务不可用响应
+     */
+    public static Mono<Void> writeDownstreamUnavailableResponse(ServerHttpResponse response) {
+        return SERVICE_UNAVAILABLE.write(response);
+    }
+    
+    /**
+     * 返回下游连接失败响应
+     */
+    public static Mono<Void> writeBadGatewayResponse(ServerHttpResponse response) {
+        return BAD_GATEWAY.write(response);
+    }
+    
+    /**
+     * 返回网关超时响应
+     */
+    public static Mono<Void> writeGatewayTimeoutResponse(ServerHttpResponse response) {
+        return GATEWAY_TIMEOUT.write(response);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,157 @@
+package com.milkpudding.gateway.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已验证Token缓存
+ * 以token字符串本身为key缓存验签结果，条目在token的exp时刻过期，
+ * 同一token重复请求时只需一次哈希查找，无需再次计算HMAC和解析JSON；
+ * 查找时不计算摘要也不分配对象，代价是每个条目多保存一份token（约几百字节）。
+ * 缓存满时淘汰最早过期的条目，同一时刻只有一个线程执行淘汰
+ */
+@Slf4j
+@Component
+public class TokenCache implements MeterBinder {
+
+    private final Map<String, JwtClaims> cache = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public TokenCache(@Value("${app.jwt.cache.enabled:true}") boolean enabled,
+                      @Value("${app.jwt.cache.max-size:10000}") int maxSize) {
+        this.enabled = enabled;
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * 查找已验证的token，未命中或已过期返回null
+     */
+    public JwtClaims get(String token) {
+        if (!enabled) {
+            return null;
+        }
+
+        JwtClaims cached = cache.get(token);
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (Instant.now().getEpochSecond() > cached.getExpiresAt()) {
+            cache.remove(token, cached);
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return cached;
+    }
+
+    /**
+     * 缓存验签通过的token
+     */
+    public void put(String token, JwtClaims claims) {
+        if (!enabled || claims == null) {
+            return;
+        }
+
+        // 其他线程正在淘汰时不等待，本次不缓存，之后的请求再缓存
+        if (cache.size() >= maxSize && !makeRoom()) {
+            return;
+        }
+
+        cache.put(token, claims);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", cache.size());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("gateway.auth.token.cache.requests", hits, LongAdder::sum)
+            .tag("result", "hit")
+            .description("Verified token cache lookups")
+            .register(registry);
+        FunctionCounter.builder("gateway.auth.token.cache.requests", misses, LongAdder::sum)
+            .tag("result", "miss")
+            .description("Verified token cache lookups")
+            .register(registry);
+        FunctionCounter.builder("gateway.auth.token.cache.evictions", evictions, LongAdder::sum)
+            .description("Entries evicted because the cache was full")
+            .register(registry);
+        Gauge.builder("gateway.auth.token.cache.size", cache, Map::size)
+            .description("Verified tokens currently cached")
+            .register(registry);
+    }
+
+    /**
+     * 缓存已满时先清理过期条目，仍然不足时按过期时间淘汰约十分之一的条目，最早过期的先淘汰；
+     * 已有线程在淘汰时直接返回false
+     */
+    private boolean makeRoom() {
+        if (!evicting.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            long now = Instant.now().getEpochSecond();
+            cache.values().removeIf(claims -> now > claims.getExpiresAt());
+
+            int toEvict = cache.size() - maxSize + Math.max(1, maxSize / 10);
+            if (toEvict > 0) {
+                long[] expiries = cache.values().stream().mapToLong(JwtClaims::getExpiresAt).sorted().toArray();
+                if (expiries.length > 0) {
+                    long threshold = expiries[Math.min(toEvict, expiries.length) - 1];
+                    Iterator<JwtClaims> iterator = cache.values().iterator();
+                    while (toEvict > 0 && iterator.hasNext()) {
+                        if (iterator.next().getExpiresAt() <= threshold) {
+                            iterator.remove();
+                            evictions.increment();
+                            toEvict--;
+                        }
+                    }
+                }
+            }
+            log.debug("Token cache full, size after eviction: {}", cache.size());
+            return true;
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
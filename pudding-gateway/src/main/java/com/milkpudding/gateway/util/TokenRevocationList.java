@@ -0,0 +1,272 @@
+package com.milkpudding.gateway.util;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token吊销列表
+ * 支持按jti吊销单个token，或按用户（sub）吊销其在吊销时刻之前签发的所有token。
+ * 请求链路先查布隆过滤器，只有命中时才查精确集合；吊销记录追加写入本地文件，重启后恢复。
+ * 单个token的记录保留到该token过期，按用户吊销的记录保留token的最长有效期，后台定期清理过期记录并重建布隆过滤器
+ */
+@Slf4j
+@Component
+public class TokenRevocationList {
+
+    private static final String TYPE_TOKEN = "jti";
+    private static final String TYPE_SUBJECT = "sub";
+
+    // 吊销时刻之前签发的token在该时长后全部过期，吊销记录不再有意义
+    static final long RETENTION_SECONDS = JwtUtil.EXPIRATION_HOURS * 3600;
+
+    private final Path file;
+    private final long expectedSize;
+    private final ScheduledExecutorService sweeper;
+
+    // 布隆过滤器不能删除元素，清理时整体替换，替换和写入都在本对象的锁内
+    private volatile BloomFilter tokenFilter;
+    private volatile BloomFilter subjectFilter;
+
+    // jti -> 吊销时间和记录过期时间（即token的过期时间）
+    private final Map<String, RevokedToken> revokedTokens = new ConcurrentHashMap<>();
+    // sub -> 吊销时间，该时间及之前签发的token无效
+    private final Map<String, Long> revokedSubjects = new ConcurrentHashMap<>();
+
+    public TokenRevocationList(@Value("${app.jwt.revocation.file:data/revoked-tokens.log}") String file,
+                               @Value("${app.jwt.revocation.expected-size:100000}") long expectedSize,
+                               @Value("${app.jwt.revocation.sweep-interval:300}") long sweepIntervalSeconds) {
+        this.file = Paths.get(file);
+        this.expectedSize = expectedSize;
+        this.tokenFilter = BloomFilter.create(expectedSize, 0.01);
+        this.subjectFilter = BloomFilter.create(expectedSize, 0.01);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-revocation-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, sweepIntervalSeconds);
+        this.sweeper.scheduleAtFixedRate(() -> sweep(Instant.now().getEpochSecond()),
+            interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 启动时从文件恢复吊销记录，并压缩掉过期记录
+     */
+    @PostConstruct
+    public void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        long now = Instant.now().getEpochSecond();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read revocation file " + file, e);
+        }
+
+        int skipped = 0;
+        for (String line : lines) {
+            String[] parts = line.split("\t");
+            if (parts.length != 3 && parts.length != 4) {
+                skipped++;
+                continue;
+            }
+            long revokedAt;
+            long expiresAt;
+            try {
+                revokedAt = Long.parseLong(parts[2]);
+                // 旧格式没有过期时间，按最长有效期计算
+                expiresAt = parts.length == 4 ? Long.parseLong(parts[3]) : revokedAt + RETENTION_SECONDS;
+            } catch (NumberFormatException e) {
+                skipped++;
+                continue;
+            }
+            if (TYPE_TOKEN.equals(parts[0]) && expiresAt > now) {
+                addToken(parts[1], new RevokedToken(revokedAt, expiresAt));
+            } else if (TYPE_SUBJECT.equals(parts[0]) && revokedAt + RETENTION_SECONDS > now) {
+                addSubject(parts[1], revokedAt);
+            } else {
+                skipped++;
+            }
+        }
+
+        if (skipped > 0) {
+            compact();
+        }
+        log.info("Loaded {} revoked tokens and {} revoked subjects from {}",
+            revokedTokens.size(), revokedSubjects.size(), file);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * 判断token是否已被吊销，未吊销时通常只需查布隆过滤器
+     */
+    public boolean isRevoked(JwtClaims claims) {
+        String tokenId = claims.getTokenId();
+        if (tokenId != null && tokenFilter.mightContain(tokenId) && revokedTokens.containsKey(tokenId)) {
+            return true;
+        }
+
+        String subject = claims.getSubject();
+        if (subject != null && subjectFilter.mightContain(subject)) {
+            Long revokedAt = revokedSubjects.get(subject);
+            return revokedAt != null && claims.getIssuedAt() <= revokedAt;
+        }
+        return false;
+    }
+
+    /**
+     * 吊销单个token，记录保留到token过期；过期时间未知（小于等于0）时按最长有效期保留
+     */
+    public synchronized void revokeToken(String tokenId, long expiresAt) {
+        long now = Instant.now().getEpochSecond();
+        long until = expiresAt > 0 ? Math.min(expiresAt, now + RETENTION_SECONDS) : now + RETENTION_SECONDS;
+        append(TYPE_TOKEN + "\t" + checked(TYPE_TOKEN, tokenId) + "\t" + now + "\t" + until);
+        addToken(tokenId, new RevokedToken(now, until));
+        log.info("Token revoked: {}", tokenId);
+    }
+
+    /**
+     * 吊销用户当前已签发的所有token
+     */
+    public synchronized void revokeSubject(String subject) {
+        long now = Instant.now().getEpochSecond();
+        append(TYPE_SUBJECT + "\t" + checked(TYPE_SUBJECT, subject) + "\t" + now);
+        addSubject(subject, now);
+        log.info("All tokens revoked for subject: {}", subject);
+    }
+
+    /**
+     * 清理过期记录，有记录被清理时重建布隆过滤器并压缩文件
+     */
+    synchronized void sweep(long nowSeconds) {
+        int before = revokedTokens.size() + revokedSubjects.size();
+        revokedTokens.values().removeIf(token -> token.expiresAt() <= nowSeconds);
+        revokedSubjects.values().removeIf(revokedAt -> revokedAt + RETENTION_SECONDS <= nowSeconds);
+        int removed = before - revokedTokens.size() - revokedSubjects.size();
+        if (removed == 0) {
+            return;
+        }
+
+        BloomFilter tokens = BloomFilter.create(expectedSize, 0.01);
+        revokedTokens.keySet().forEach(tokens::put);
+        BloomFilter subjects = BloomFilter.create(expectedSize, 0.01);
+        revokedSubjects.keySet().forEach(subjects::put);
+        tokenFilter = tokens;
+        subjectFilter = subjects;
+        compact();
+        log.debug("Removed {} expired revocations", removed);
+    }
+
+    /**
+     * 获取吊销列表统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("revokedTokens", revokedTokens.size());
+        stats.put("revokedSubjects", revokedSubjects.size());
+        stats.put("bloomFilterBits", tokenFilter.bitSize());
+        stats.put("bloomFilterHashes", tokenFilter.getNumHashes());
+        stats.put("file", file.toString());
+        return stats;
+    }
+
+    private void addToken(String tokenId, RevokedToken token) {
+        revokedTokens.merge(tokenId, token, (current, added) -> current.expiresAt() >= added.expiresAt() ? current : added);
+        tokenFilter.put(tokenId);
+    }
+
+    private void addSubject(String subject, long revokedAt) {
+        revokedSubjects.merge(subject, revokedAt, Math::max);
+        subjectFilter.put(subject);
+    }
+
+    private static String checked(String type, String value) {
+        if (value.indexOf('\t') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Invalid " + type + ": " + value);
+        }
+        return value;
+    }
+
+    /**
+     * 追加写入一条吊销记录并刷盘
+     */
+    private void append(String line) {
+        try {
+            createParentDirectories();
+            Files.write(file, (line + "\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to persist revocation to " + file, e);
+        }
+    }
+
+    /**
+     * 只保留仍然有效的记录重写文件
+     */
+    private synchronized void compact() {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        List<String> lines = new ArrayList<>(revokedTokens.size() + revokedSubjects.size());
+        revokedTokens.forEach((tokenId, token) ->
+            lines.add(TYPE_TOKEN + "\t" + tokenId + "\t" + token.revokedAt() + "\t" + token.expiresAt()));
+        revokedSubjects.forEach((subject, revokedAt) -> lines.add(TYPE_SUBJECT + "\t" + subject + "\t" + revokedAt));
+        try {
+            createParentDirectories();
+        } catch (IOException e) {
+            log.warn("Unable to compact revocation file {}: {}", file, e.getMessage());
+            return;
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            log.warn("Unable to compact revocation file {}: {}", file, e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to replace revocation file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void createParentDirectories() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+
+    private record RevokedToken(long revokedAt, long expiresAt) {
+    }
+}
@@ -0,0 +1,116 @@
+package com.milkpudding.gateway.accesslog;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AccessLogger 测试类
+ */
+class AccessLoggerTest {
+
+    @Test
+    void testRingBufferRejectsWhenFull() {
+        // Given
+        AccessLogRingBuffer ring = new AccessLogRingBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            long sequence = ring.tryClaim();
+            assertEquals(i, sequence);
+            ring.publish(sequence);
+        }
+
+        // When - 缓冲区已满
+        long rejected = ring.tryClaim();
+
+        // Then - 写入线程取走一条后才能继续申请
+        assertEquals(-1, rejected);
+        ring.release(ring.poll());
+        assertEquals(4, ring.tryClaim());
+    }
+
+    @Test
+    void testUnpublishedEntryBlocksConsumer() {
+        // Given - 序号0已申请但尚未发布，序号1已发布
+        AccessLogRingBuffer ring = new AccessLogRingBuffer(8);
+        long first = ring.tryClaim();
+        long second = ring.tryClaim();
+        ring.publish(second);
+
+        // Then - 写入线程按顺序消费，不会跳过未完成的槽位
+        assertNull(ring.poll());
+        ring.publish(first);
+        assertSame(ring.get(first), ring.poll());
+    }
+
+    @Test
+    void testConcurrentRecordsAreWrittenAsJsonLines() throws Exception {
+        // Given
+        Path dir = Files.createTempDirectory("access-log");
+        Path file = dir.resolve("access.log");
+        AccessLogger logger = new AccessLogger(true, file.toString(), 1024, AccessLogger.OverflowPolicy.DROP,
+            100, 100 * 1024 * 1024, 3, false);
+        int threads = 4;
+        int perThread = 20_000;
+
+        // When
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String ip = "10.0.0." + t;
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    logger.record(1_700_000_000_123L, "req-" + i, ip, "GET", "/api/users/" + i, 200, i);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        logger.close();
+
+        // Then - 写入和丢弃的记录数之和等于请求数，文件中每条记录一行
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(threads * perThread, logger.getWritten() + logger.getDropped());
+        assertEquals(logger.getWritten(), lines.size());
+        assertTrue(lines.get(0).startsWith("{\"ts\":\"2023-11-14T22:13:20.123Z\",\"id\":\"req-"));
+        assertTrue(lines.get(0).contains("\"method\":\"GET\",\"path\":\"/api/users/"));
+        assertTrue(lines.get(0).endsWith("}"));
+    }
+
+    @Test
+    void testMemoryMappedFileRollsAndEscapes() throws Exception {
+        // Given - 单个文件最大64KB，使用内存映射写入
+        Path dir = Files.createTempDirectory("access-log");
+        Path file = dir.resolve("access.log");
+        AccessLogger logger = new AccessLogger(true, file.toString(), 16384, AccessLogger.OverflowPolicy.DROP,
+            1000, 64 * 1024, 2, true);
+
+        // When
+        int records = 4000;
+        for (int i = 0; i < records; i++) {
+            logger.record(0, "r" + i, "127.0.0.1", "POST", "/a\"b\\c/中文/" + i, 201, 1500);
+        }
+        logger.close();
+
+        // Then - 生成了滚动文件，文件末尾没有映射段留下的空字节
+        assertTrue(Files.exists(dir.resolve("access.log.1")));
+        assertFalse(Files.exists(dir.resolve("access.log.3")));
+        String content = read(file);
+        assertFalse(content.contains("\0"));
+        assertTrue(content.endsWith("}\n"));
+        assertTrue(content.contains("\"path\":\"/a\\\"b\\\\c/中文/" + (records - 1) + "\""));
+        assertEquals(0, logger.getDropped());
+    }
+
+    private static String read(Path file) throws IOException {
+        return Files.readString(file, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,113 @@
+package com.milkpudding.gateway.asset;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StaticAssetStore 测试类
+ */
+class StaticAssetStoreTest {
+
+    private static final byte[] CSS = "body { margin: 0; padding: 0; }\n".repeat(40).getBytes(StandardCharsets.UTF_8);
+    private static final String CACHE_CONTROL = "public, max-age=3600";
+
+    private StaticAssetStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new StaticAssetStore("classpath*:static/", 3600, 31536000, 256, List.of("README.md"));
+    }
+
+    @Test
+    void testTextAssetGetsGzipVariant() throws IOException {
+        // When
+        StaticAsset asset = store.build("/styles.css", CSS, null, null, CACHE_CONTROL);
+
+        // Then
+        assertEquals("text/css;charset=UTF-8", asset.getContentType());
+        assertTrue(asset.hasVariant(StaticAsset.Encoding.GZIP));
+        assertFalse(asset.hasVariant(StaticAsset.Encoding.BR));
+        assertTrue(asset.getLength(StaticAsset.Encoding.GZIP) < CSS.length);
+        byte[] gzipped = read(asset.body(StaticAsset.Encoding.GZIP, DefaultDataBufferFactory.sharedInstance));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertArrayEquals(CSS, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void testSmallOrBinaryAssetIsNotCompressed() {
+        // When
+        byte[] script = "let a = 1;".getBytes(StandardCharsets.UTF_8);
+        StaticAsset small = store.build("/script.js", script, null, null, CACHE_CONTROL);
+        StaticAsset image = store.build("/logo.png", CSS, null, null, CACHE_CONTROL);
+
+        // Then
+        assertFalse(small.isCompressed());
+        assertFalse(image.isCompressed());
+        assertEquals("image/png", image.getContentType());
+    }
+
+    @Test
+    void testPrebuiltBrotliIsPreferred() {
+        // Given
+        byte[] brotli = new byte[100];
+        StaticAsset asset = store.build("/styles.css", CSS, null, brotli, CACHE_CONTROL);
+
+        // Then
+        assertEquals(StaticAsset.Encoding.BR, asset.negotiate(List.of("gzip, deflate, br")));
+        assertEquals(StaticAsset.Encoding.GZIP, asset.negotiate(List.of("gzip, br;q=0")));
+        assertEquals(StaticAsset.Encoding.BR, asset.negotiate(List.of("*")));
+        assertEquals(StaticAsset.Encoding.IDENTITY, asset.negotiate(List.of("identity")));
+        assertEquals(StaticAsset.Encoding.IDENTITY, asset.negotiate(null));
+    }
+
+    @Test
+    void testEtagDependsOnContentAndEncoding() {
+        // Given
+        StaticAsset asset = store.build("/styles.css", CSS, null, null, CACHE_CONTROL);
+        StaticAsset same = store.build("/copy.css", CSS, null, null, CACHE_CONTROL);
+        byte[] other = "p {}".getBytes(StandardCharsets.UTF_8);
+        StaticAsset changed = store.build("/styles.css", other, null, null, CACHE_CONTROL);
+
+        // Then
+        String etag = asset.getEtag(StaticAsset.Encoding.IDENTITY);
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+        assertEquals(etag, same.getEtag(StaticAsset.Encoding.IDENTITY));
+        assertNotEquals(etag, changed.getEtag(StaticAsset.Encoding.IDENTITY));
+        assertEquals(etag.substring(0, etag.length() - 1) + "-gz\"", asset.getEtag(StaticAsset.Encoding.GZIP));
+    }
+
+    @Test
+    void testBodyViewsShareContent() {
+        // Given
+        StaticAsset asset = store.build("/styles.css", CSS, null, null, CACHE_CONTROL);
+
+        // When 读取两次
+        byte[] first = read(asset.body(StaticAsset.Encoding.IDENTITY, DefaultDataBufferFactory.sharedInstance));
+        byte[] second = read(asset.body(StaticAsset.Encoding.IDENTITY, DefaultDataBufferFactory.sharedInstance));
+
+        // Then 每次都是完整内容
+        assertArrayEquals(CSS, first);
+        assertArrayEquals(CSS, second);
+    }
+
+    private static byte[] read(DataBuffer buffer) {
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+            ByteBuffer view = iterator.next();
+            view.get(bytes);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,154 @@
+package com.milkpudding.gateway.benchmark;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.milkpudding.gateway.codec.BinaryCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * JSON与CBOR、Smile的序列化基准测试
+ * 载荷为pudding-user的User和JsonPlaceholder的Post，单个对象和列表（列表各100个，与/posts返回的数量一致）；
+ * serialize、deserialize为服务端的编解码开销，edgeToJson为网关BinaryCodecFilter把下游响应转回JSON的开销。
+ * 运行：mvn -pl pudding-gateway test-compile 后直接运行main方法，先输出各格式的载荷字节数，加 -prof gc 可查看分配字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryCodecBenchmark {
+
+    private static final String[] PAYLOADS = {"user", "users", "post", "posts"};
+
+    @Param({"user", "users", "post", "posts"})
+    private String payload;
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    private ObjectMapper mapper;
+    private JavaType type;
+    private Object value;
+    private byte[] encoded;
+    private BinaryCodec codec;
+    private BinaryCodec.Format binaryFormat;
+
+    /**
+     * pudding-user的用户模型
+     */
+    public record User(String id, String name, String email) {
+    }
+
+    /**
+     * JsonPlaceholder /posts 的文章模型
+     */
+    public record Post(int userId, int id, String title, String body) {
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = mapper(format);
+        value = payload(payload);
+        type = type(mapper, payload);
+        encoded = mapper.writeValueAsBytes(value);
+        codec = new BinaryCodec();
+        binaryFormat = BinaryCodec.parseFormat(format);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException {
+        return mapper.readValue(encoded, type);
+    }
+
+    /**
+     * JSON格式没有转换，结果为原样返回的开销基线
+     */
+    @Benchmark
+    public byte[] edgeToJson() {
+        return binaryFormat == null ? encoded : codec.toJson(encoded, binaryFormat);
+    }
+
+    private static ObjectMapper mapper(String format) {
+        return switch (format) {
+            case "cbor" -> new ObjectMapper(new CBORFactory());
+            case "smile" -> new ObjectMapper(new SmileFactory());
+            default -> new ObjectMapper();
+        };
+    }
+
+    private static Object payload(String payload) {
+        return switch (payload) {
+            case "user" -> user(1);
+            case "users" -> list(100, BinaryCodecBenchmark::user);
+            case "post" -> post(1);
+            default -> list(100, BinaryCodecBenchmark::post);
+        };
+    }
+
+    private static JavaType type(ObjectMapper mapper, String payload) {
+        return switch (payload) {
+            case "user" -> mapper.constructType(User.class);
+            case "users" -> mapper.getTypeFactory().constructCollectionType(List.class, User.class);
+            case "post" -> mapper.constructType(Post.class);
+            default -> mapper.getTypeFactory().constructCollectionType(List.class, Post.class);
+        };
+    }
+
+    private static User user(int i) {
+        return new User(String.valueOf(1000 + i), "用户" + i, "user" + i + "@pudding.dev");
+    }
+
+    private static Post post(int i) {
+        return new Post((i - 1) / 10 + 1, i, "sunt aut facere repellat provident occaecati excepturi optio reprehenderit",
+            "quia et suscipit\nsuscipit recusandae consequuntur expedita et cum\n"
+                + "reprehenderit molestiae ut ut quas totam\nnostrum rerum est autem sunt rem eveniet architecto");
+    }
+
+    private static <T> List<T> list(int size, IntFunction<T> factory) {
+        List<T> list = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            list.add(factory.apply(i));
+        }
+        return list;
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        for (String payload : PAYLOADS) {
+            Object value = payload(payload);
+            System.out.printf("%-6s json=%d cbor=%d smile=%d bytes%n", payload,
+                mapper("json").writeValueAsBytes(value).length,
+                mapper("cbor").writeValueAsBytes(value).length,
+                mapper("smile").writeValueAsBytes(value).length);
+        }
+        new Runner(new OptionsBuilder()
+            .include(BinaryCodecBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
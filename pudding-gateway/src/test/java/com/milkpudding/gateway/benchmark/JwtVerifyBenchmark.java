@@ -0,0 +1,98 @@
+package com.milkpudding.gateway.benchmark;
+
+import cn.hutool.json.JSONUtil;
+import com.milkpudding.gateway.util.JwtClaims;
+import com.milkpudding.gateway.util.JwtUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT验证基准测试
+ * 对比原parseToken实现（split + 每次新建Mac + JSON转Map）与JwtVerifier。
+ * 运行：mvn -pl pudding-gateway test-compile 后直接运行main方法，加 -prof gc 可查看每次调用的分配字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerifyBenchmark {
+
+    private static final String SECRET_KEY = "milk-pudding-gateway-secret-key-2024";
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        token = jwtUtil.generateToken("admin-001", "Administrator", Map.of("role", "admin", "email", "admin@pudding.dev"));
+    }
+
+    @Benchmark
+    public Map<String, Object> legacyParseToken() throws Exception {
+        return legacyParse(token);
+    }
+
+    @Benchmark
+    public Map<String, Object> parseToken() {
+        return jwtUtil.parseToken(token);
+    }
+
+    @Benchmark
+    public JwtClaims verifyToken() {
+        return jwtUtil.verifyToken(token);
+    }
+
+    /**
+     * 原JwtUtil.parseToken实现
+     */
+    private static Map<String, Object> legacyParse(String token) throws Exception {
+        String[] parts = token.split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+
+        Mac mac = Mac.getInstance(ALGORITHM);
+        mac.init(new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+        byte[] signature = mac.doFinal((parts[0] + "." + parts[1]).getBytes(StandardCharsets.UTF_8));
+        String expectedSignature = Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        if (!parts[2].equals(expectedSignature)) {
+            return null;
+        }
+
+        String payloadJson = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> payload = JSONUtil.toBean(payloadJson, Map.class);
+
+        long exp = ((Number) payload.get("exp")).longValue();
+        return Instant.now().getEpochSecond() > exp ? null : payload;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(JwtVerifyBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
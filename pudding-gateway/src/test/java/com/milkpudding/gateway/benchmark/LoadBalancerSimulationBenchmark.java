@@ -0,0 +1,141 @@
+package com.milkpudding.gateway.benchmark;
+
+import com.milkpudding.gateway.loadbalancer.PeakEwma;
+import com.milkpudding.gateway.loadbalancer.PeakEwmaLoadBalancer;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * 负载均衡仿真基准测试
+ * 离散事件仿真一组性能不一致的下游实例：多数实例正常，一个实例整体偏慢，一个实例偶发长时间停顿（如GC）。
+ * 请求按泊松过程到达，每个实例有固定数量的工作线程，线程忙时请求排队。
+ * 分别用轮询、按进行中请求数二选一、峰值EWMA二选一分配同一组请求，对比网关看到的延迟分布。
+ * 峰值EWMA使用生产代码PeakEwma和PeakEwmaLoadBalancer.pick，时钟为仿真时间
+ *
+ * 运行：main方法，可选参数 [每秒请求数] [请求总数]
+ */
+public class LoadBalancerSimulationBenchmark {
+
+    private static final long MILLI = 1_000_000L;
+    private static final long SECOND = 1_000_000_000L;
+
+    /**
+     * 下游实例：平均服务时间、工作线程数、停顿概率和停顿时长
+     */
+    record Backend(String name, long meanNanos, int workers, double stallProbability, long stallNanos) {
+    }
+
+    private static final Backend[] BACKENDS = {
+        new Backend("fast-1", 10 * MILLI, 4, 0, 0),
+        new Backend("fast-2", 10 * MILLI, 4, 0, 0),
+        new Backend("fast-3", 10 * MILLI, 4, 0, 0),
+        new Backend("fast-4", 10 * MILLI, 4, 0, 0),
+        new Backend("fast-5", 10 * MILLI, 4, 0, 0),
+        new Backend("slow", 20 * MILLI, 4, 0, 0),
+        new Backend("stalling", 10 * MILLI, 4, 0.02, 300 * MILLI),
+    };
+
+    enum Policy {
+        ROUND_ROBIN, LEAST_IN_FLIGHT_P2C, PEAK_EWMA_P2C
+    }
+
+    public static void main(String[] args) {
+        double rps = args.length > 0 ? Double.parseDouble(args[0]) : 1200;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+
+        System.out.printf("backends=%d, rps=%.0f, requests=%d%n", BACKENDS.length, rps, requests);
+        System.out.printf("%-20s %10s %10s %10s %10s%n", "policy", "p50(ms)", "p90(ms)", "p99(ms)", "p999(ms)");
+        for (Policy policy : Policy.values()) {
+            long[] latencies = simulate(policy, rps, requests, 42);
+            Arrays.sort(latencies);
+            System.out.printf("%-20s %10.2f %10.2f %10.2f %10.2f%n", policy,
+                percentile(latencies, 50), percentile(latencies, 90),
+                percentile(latencies, 99), percentile(latencies, 99.9));
+        }
+    }
+
+    /**
+     * 仿真一组请求，返回每个请求从分配到完成的耗时（纳秒）
+     */
+    static long[] simulate(Policy policy, double rps, int requests, long seed) {
+        Random arrivals = new Random(seed);
+        Random service = new Random(seed + 1);
+        Random choice = new Random(seed + 2);
+        long origin = System.nanoTime();
+
+        int count = BACKENDS.length;
+        PeakEwma[] loads = new PeakEwma[count];
+        int[] inFlight = new int[count];
+        int[] busy = new int[count];
+        @SuppressWarnings("unchecked")
+        ArrayDeque<long[]>[] queues = new ArrayDeque[count];
+        for (int i = 0; i < count; i++) {
+            loads[i] = new PeakEwma(10 * SECOND, 50 * MILLI, origin);
+            queues[i] = new ArrayDeque<>();
+        }
+
+        // 完成事件：{完成时间, 实例, 分配时间}
+        PriorityQueue<long[]> completions = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        long[] latencies = new long[requests];
+        int completed = 0;
+        int dispatched = 0;
+        int next = 0;
+        long nextArrival = 0;
+
+        while (completed < requests) {
+            boolean arrival = dispatched < requests
+                && (completions.isEmpty() || nextArrival <= completions.peek()[0]);
+            if (arrival) {
+                long now = nextArrival;
+                int index = switch (policy) {
+                    case ROUND_ROBIN -> next++ % count;
+                    case LEAST_IN_FLIGHT_P2C -> PeakEwmaLoadBalancer.pick(count, i -> inFlight[i], choice);
+                    case PEAK_EWMA_P2C -> PeakEwmaLoadBalancer.pick(count, i -> loads[i].cost(origin + now), choice);
+                };
+                inFlight[index]++;
+                loads[index].start();
+                if (busy[index] < BACKENDS[index].workers()) {
+                    busy[index]++;
+                    completions.add(new long[] {now + serviceTime(BACKENDS[index], service), index, now});
+                } else {
+                    queues[index].add(new long[] {now});
+                }
+                dispatched++;
+                nextArrival = now + (long) (-Math.log(1 - arrivals.nextDouble()) / rps * SECOND);
+                continue;
+            }
+
+            long[] event = completions.poll();
+            long now = event[0];
+            int index = (int) event[1];
+            long latency = now - event[2];
+            latencies[completed++] = latency;
+            inFlight[index]--;
+            loads[index].complete(latency, origin + now);
+
+            long[] waiting = queues[index].poll();
+            if (waiting != null) {
+                completions.add(new long[] {now + serviceTime(BACKENDS[index], service), index, waiting[0]});
+            } else {
+                busy[index]--;
+            }
+        }
+        return latencies;
+    }
+
+    private static long serviceTime(Backend backend, Random random) {
+        long nanos = (long) (-Math.log(1 - random.nextDouble()) * backend.meanNanos());
+        if (backend.stallProbability() > 0 && random.nextDouble() < backend.stallProbability()) {
+            nanos += backend.stallNanos();
+        }
+        return nanos;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / (double) MILLI;
+    }
+}
@@ -0,0 +1,113 @@
+package com.milkpudding.gateway.benchmark;
+
+import com.milkpudding.gateway.route.RouteIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由查找基准测试
+ * 路由数从4增加到5000，对比逐个匹配所有路由的Path模式与先通过RouteIndex取候选路由再匹配的耗时。
+ * 请求路径均匀分布在所有路由上，逐个匹配的耗时随路由数线性增长，索引查找应基本不变
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteLookupBenchmark {
+
+    private static final String PATTERN_METADATA = "benchmark-pattern";
+    private static final int PATHS = 1024;
+
+    @Param({"4", "50", "500", "5000"})
+    private int routeCount;
+
+    private Route[] routes;
+    private RouteIndex index;
+    private PathContainer[] paths;
+    private String[] rawPaths;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        PathPatternParser parser = PathPatternParser.defaultInstance;
+        List<Route> routeList = new ArrayList<>(routeCount);
+        for (int i = 0; i < routeCount; i++) {
+            String pattern = "/api/service-" + i + "/v1/**";
+            routeList.add(Route.async()
+                .id("service-" + i)
+                .uri("lb://service-" + i)
+                .predicate(exchange -> true)
+                .metadata(RouteIndex.PATH_PATTERNS_METADATA, pattern)
+                .metadata(PATTERN_METADATA, parser.parse(pattern))
+                .build());
+        }
+        routes = routeList.toArray(new Route[0]);
+        index = RouteIndex.compile(routeList, Map.of());
+
+        Random random = new Random(42);
+        paths = new PathContainer[PATHS];
+        rawPaths = new String[PATHS];
+        for (int i = 0; i < PATHS; i++) {
+            rawPaths[i] = "/api/service-" + random.nextInt(routeCount) + "/v1/items/" + i;
+            paths[i] = PathContainer.parsePath(rawPaths[i]);
+        }
+    }
+
+    @Benchmark
+    public Route linearLookup() {
+        int i = nextPath();
+        return firstMatch(routes, paths[i]);
+    }
+
+    @Benchmark
+    public Route indexedLookup() {
+        int i = nextPath();
+        return firstMatch(index.candidates(rawPaths[i]), paths[i]);
+    }
+
+    private int nextPath() {
+        int i = next;
+        next = (i + 1) & (PATHS - 1);
+        return i;
+    }
+
+    private static Route firstMatch(Route[] candidates, PathContainer path) {
+        for (Route route : candidates) {
+            PathPattern pattern = (PathPattern) route.getMetadata().get(PATTERN_METADATA);
+            if (pattern.matches(path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(RouteLookupBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -0,0 +1,100 @@
+package com.milkpudding.gateway.benchmark;
+
+import com.milkpudding.gateway.ratelimit.TokenBucket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶竞争基准测试
+ * 模拟多个事件循环线程同时访问同一个热点IP的令牌桶，
+ * 对比原synchronized实现与CAS实现的吞吐量。
+ * refillRate较低时大部分请求被拒绝，较高时大部分请求通过
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class TokenBucketContentionBenchmark {
+
+    @Param({"1000", "100000000"})
+    private long refillRate;
+
+    private SynchronizedTokenBucket synchronizedBucket;
+    private TokenBucket lockFreeBucket;
+
+    @Setup
+    public void setUp() {
+        synchronizedBucket = new SynchronizedTokenBucket(TokenBucket.MAX_CAPACITY, refillRate);
+        lockFreeBucket = new TokenBucket(TokenBucket.MAX_CAPACITY, refillRate);
+    }
+
+    @Benchmark
+    public boolean synchronizedTryConsume() {
+        return synchronizedBucket.tryConsume();
+    }
+
+    @Benchmark
+    public boolean lockFreeTryConsume() {
+        return lockFreeBucket.tryConsume();
+    }
+
+    /**
+     * 原RateLimitFilter.TokenBucket实现
+     */
+    private static class SynchronizedTokenBucket {
+        private final long capacity;
+        private final long refillRate;
+        private long tokens;
+        private long lastRefillTime;
+
+        SynchronizedTokenBucket(long capacity, long refillRate) {
+            this.capacity = capacity;
+            this.refillRate = refillRate;
+            this.tokens = capacity;
+            this.lastRefillTime = Instant.now().getEpochSecond();
+        }
+
+        synchronized boolean tryConsume() {
+            refill();
+            if (tokens > 0) {
+                tokens--;
+                return true;
+            }
+            return false;
+        }
+
+        private void refill() {
+            long now = Instant.now().getEpochSecond();
+            long timeElapsed = now - lastRefillTime;
+            if (timeElapsed > 0) {
+                tokens = Math.min(capacity, tokens + timeElapsed * refillRate);
+                lastRefillTime = now;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(TokenBucketContentionBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -0,0 +1,112 @@
+package com.milkpudding.gateway.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ResponseCacheStore 测试类
+ */
+class ResponseCacheStoreTest {
+
+    private static final long NOW = 1_000_000_000L;
+    private static final long TTL = TimeUnit.SECONDS.toNanos(60);
+    private static final int BODY = 1000;
+    private static final long ENTRY = ResponseCacheStore.ENTRY_OVERHEAD_BYTES + 2 + BODY;
+
+    @Test
+    void testExpiredEntryIsRemoved() {
+        // Given
+        ResponseCacheStore store = new ResponseCacheStore(1 << 20, 0);
+        store.put("k1", response(NOW + TTL), NOW);
+
+        // Then
+        assertNotNull(store.get("k1", NOW + TTL - 1));
+        assertNull(store.get("k1", NOW + TTL));
+        assertEquals(0, store.size());
+        assertEquals(0L, store.getHeapBytes());
+        assertEquals(1L, store.getExpirations());
+    }
+
+    @Test
+    void testEvictsUnreferencedEntriesFirstWhenFull() {
+        // Given 最多容纳3个条目
+        ResponseCacheStore store = new ResponseCacheStore(ENTRY * 3, 0);
+        store.put("k1", response(NOW + TTL), NOW);
+        store.put("k2", response(NOW + TTL), NOW);
+        store.put("k3", response(NOW + TTL), NOW);
+        store.get("k1", NOW);
+
+        // When
+        store.put("k4", response(NOW + TTL), NOW);
+
+        // Then k1被访问过，跳过一轮，淘汰最早写入的k2
+        assertNotNull(store.get("k1", NOW));
+        assertNull(store.get("k2", NOW));
+        assertNotNull(store.get("k3", NOW));
+        assertNotNull(store.get("k4", NOW));
+        assertEquals(ENTRY * 3, store.getHeapBytes());
+        assertEquals(1L, store.getEvictions());
+    }
+
+    @Test
+    void testEvictedEntriesMoveToOffHeapTier() {
+        // Given 堆内容纳2个条目，堆外容纳1个
+        ResponseCacheStore store = new ResponseCacheStore(ENTRY * 2, ENTRY);
+        store.put("k1", response(NOW + TTL), NOW);
+        store.put("k2", response(NOW + TTL), NOW);
+
+        // When
+        store.put("k3", response(NOW + TTL), NOW);
+
+        // Then
+        CachedResponse demoted = store.get("k1", NOW);
+        assertNotNull(demoted);
+        assertTrue(demoted.isDirect());
+        assertEquals(BODY, demoted.size());
+        assertEquals(ENTRY * 2, store.getHeapBytes());
+        assertEquals(ENTRY, store.getOffHeapBytes());
+        assertEquals(1L, store.getDemotions());
+
+        // When 再移入一个，堆外层超出上限时真正丢弃
+        store.put("k4", response(NOW + TTL), NOW);
+
+        // Then
+        assertEquals(3, store.size());
+        assertEquals(ENTRY, store.getOffHeapBytes());
+        assertEquals(1L, store.getEvictions());
+    }
+
+    @Test
+    void testReplacingEntryKeepsAccountingExact() {
+        // Given
+        ResponseCacheStore store = new ResponseCacheStore(ENTRY * 2, 0);
+
+        // When 同一个key反复写入
+        for (int i = 0; i < 1000; i++) {
+            store.put("k1", response(NOW + TTL), NOW);
+        }
+
+        // Then
+        assertEquals(1, store.size());
+        assertEquals(ENTRY, store.getHeapBytes());
+        assertEquals(0L, store.getEvictions());
+    }
+
+    @Test
+    void testOversizedResponseIsNotCached() {
+        // Given
+        ResponseCacheStore store = new ResponseCacheStore(ENTRY - 1, 0);
+
+        // Then
+        assertFalse(store.put("k1", response(NOW + TTL), NOW));
+        assertEquals(0, store.size());
+    }
+
+    private static CachedResponse response(long expiresAtNanos) {
+        return new CachedResponse(200, new String[0][], ByteBuffer.wrap(new byte[BODY]), "\"etag\"", 0, expiresAtNanos);
+    }
+}
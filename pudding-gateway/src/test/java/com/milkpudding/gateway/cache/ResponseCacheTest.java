@@ -0,0 +1,176 @@
+package com.milkpudding.gateway.cache;
+
+import com.milkpudding.gateway.util.EtagUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ResponseCache 测试类
+ */
+class ResponseCacheTest {
+
+    private static final ResponseCache.Capture SHARED = new ResponseCache.Capture("user-service", "k1", 60, false);
+    private static final ResponseCache.Capture PER_USER = new ResponseCache.Capture("user-service", "k1", 60, true);
+
+    @Test
+    void testTtlFollowsUpstreamCacheControl() {
+        assertEquals(60L, ResponseCache.ttlSeconds(HttpStatus.OK, headers(null), SHARED));
+        assertEquals(10L, ResponseCache.ttlSeconds(HttpStatus.OK, headers("public, max-age=10"), SHARED));
+        assertEquals(5L, ResponseCache.ttlSeconds(HttpStatus.OK, headers("max-age=10, s-maxage=5"), SHARED));
+        assertEquals(60L, ResponseCache.ttlSeconds(HttpStatus.OK, headers("max-age=3600"), SHARED));
+        assertEquals(0L, ResponseCache.ttlSeconds(HttpStatus.OK, headers("max-age=0"), SHARED));
+        assertEquals(-1L, ResponseCache.ttlSeconds(HttpStatus.OK, headers("no-store"), SHARED));
+        assertEquals(-1L, ResponseCache.ttlSeconds(HttpStatus.OK, headers("No-Cache"), SHARED));
+        assertEquals(-1L, ResponseCache.ttlSeconds(HttpStatus.NOT_FOUND, headers(null), SHARED));
+    }
+
+    @Test
+    void testPrivateResponsesAreCachedOnlyPerUser() {
+        assertEquals(-1L, ResponseCache.ttlSeconds(HttpStatus.OK, headers("private, max-age=30"), SHARED));
+        assertEquals(30L, ResponseCache.ttlSeconds(HttpStatus.OK, headers("private, max-age=30"), PER_USER));
+    }
+
+    @Test
+    void testResponsesThatDependOnRequestAreNotCached() {
+        // Given
+        HttpHeaders cookie = headers(null);
+        cookie.add(HttpHeaders.SET_COOKIE, "session=1");
+        HttpHeaders gzip = headers(null);
+        gzip.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        HttpHeaders varyAccept = headers(null);
+        varyAccept.set(HttpHeaders.VARY, "Origin, Accept");
+        HttpHeaders varyCors = headers(null);
+        varyCors.set(HttpHeaders.VARY, "Origin, Access-Control-Request-Method, Access-Control-Request-Headers");
+
+        // Then
+        assertEquals(-1L, ResponseCache.ttlSeconds(HttpStatus.OK, cookie, SHARED));
+        assertEquals(-1L, ResponseCache.ttlSeconds(HttpStatus.OK, gzip, SHARED));
+        assertEquals(-1L, ResponseCache.ttlSeconds(HttpStatus.OK, varyAccept, SHARED));
+        assertEquals(60L, ResponseCache.ttlSeconds(HttpStatus.OK, varyCors, SHARED));
+    }
+
+    @Test
+    void testOnlyJsonResponsesAreCached() {
+        // Given
+        HttpHeaders jsonUtf8 = headers(null);
+        jsonUtf8.set(HttpHeaders.CONTENT_TYPE, "application/json;charset=UTF-8");
+        HttpHeaders cbor = headers(null);
+        cbor.set(HttpHeaders.CONTENT_TYPE, "application/cbor");
+        HttpHeaders html = headers(null);
+        html.set(HttpHeaders.CONTENT_TYPE, "text/html");
+        HttpHeaders missing = headers(null);
+        missing.remove(HttpHeaders.CONTENT_TYPE);
+
+        // Then
+        assertEquals(60L, ResponseCache.ttlSeconds(HttpStatus.OK, jsonUtf8, SHARED));
+        assertEquals(-1L, ResponseCache.ttlSeconds(HttpStatus.OK, cbor, SHARED));
+        assertEquals(-1L, ResponseCache.ttlSeconds(HttpStatus.OK, html, SHARED));
+        assertEquals(-1L, ResponseCache.ttlSeconds(HttpStatus.OK, missing, SHARED));
+    }
+
+    @Test
+    void testAcceptIsNormalizedForKey() {
+        // Given
+        HttpHeaders spaced = new HttpHeaders();
+        spaced.add(HttpHeaders.ACCEPT, "Application/JSON, text/plain");
+        HttpHeaders compact = new HttpHeaders();
+        compact.add(HttpHeaders.ACCEPT, "application/json,text/plain");
+        HttpHeaders cbor = new HttpHeaders();
+        cbor.add(HttpHeaders.ACCEPT, "application/cbor");
+
+        // Then 写法不同的相同Accept共用缓存，没有Accept与*/*相同
+        assertEquals(ResponseCache.normalizedAccept(compact), ResponseCache.normalizedAccept(spaced));
+        assertNotEquals(ResponseCache.normalizedAccept(compact), ResponseCache.normalizedAccept(cbor));
+        assertEquals("*/*", ResponseCache.normalizedAccept(new HttpHeaders()));
+    }
+
+    @Test
+    void testCollectedBodyIsStoredWithGeneratedEtag() {
+        // Given
+        ResponseCache cache = new ResponseCache(1 << 20, false, 0, 1024);
+        HttpHeaders upstream = headers("max-age=30");
+        upstream.set(HttpHeaders.CONTENT_TYPE, "application/json");
+        upstream.set("Access-Control-Allow-Origin", "*");
+
+        // When 响应体分两段写出
+        ResponseCache.Collector collector = cache.collector(SHARED, HttpStatus.OK, upstream);
+        collector.append(DefaultDataBufferFactory.sharedInstance.wrap("{\"id\":".getBytes(StandardCharsets.UTF_8)));
+        collector.append(DefaultDataBufferFactory.sharedInstance.wrap("42}".getBytes(StandardCharsets.UTF_8)));
+        collector.complete();
+
+        // Then
+        CachedResponse cached = cache.get("user-service", "k1");
+        assertNotNull(cached);
+        assertEquals("{\"id\":42}", StandardCharsets.UTF_8.decode(cached.body()).toString());
+        assertEquals(EtagUtil.of("{\"id\":42}".getBytes(StandardCharsets.UTF_8), 9), cached.getEtag());
+        assertEquals(2, cached.getHeaders().length);
+        assertEquals(HttpHeaders.CONTENT_TYPE, cached.getHeaders()[0][0]);
+        assertEquals(HttpHeaders.CACHE_CONTROL, cached.getHeaders()[1][0]);
+    }
+
+    @Test
+    void testBodyOverLimitIsNotStored() {
+        // Given
+        ResponseCache cache = new ResponseCache(1 << 20, false, 0, 8);
+
+        // When
+        ResponseCache.Collector collector = cache.collector(SHARED, HttpStatus.OK, headers(null));
+        collector.append(DefaultDataBufferFactory.sharedInstance.wrap(ByteBuffer.wrap(new byte[6])));
+        collector.append(DefaultDataBufferFactory.sharedInstance.wrap(ByteBuffer.wrap(new byte[6])));
+        collector.complete();
+
+        // Then
+        assertNull(cache.get("user-service", "k1"));
+    }
+
+    @Test
+    void testInvalidateRemovesPathSubpathsAndParentForAllUsers() {
+        // Given
+        ResponseCache cache = new ResponseCache(1 << 20, false, 0, 1024);
+        List<String> keys = List.of(
+            "user-service /api/v1/users/1001 user=u1",
+            "user-service /api/v1/users/1001?fields=name user=u2",
+            "user-service /api/v1/users/1001/orders user=u1",
+            "user-service /api/v1/users user=u1",
+            "user-service /api/v1/users/10010 user=u1",
+            "user-service /api/v1/users/1002 user=u1",
+            "api-service /api/v1/users/1001 user=u1");
+        keys.forEach(key -> store(cache, key));
+
+        // When PUT /api/v1/users/1001/
+        int removed = cache.invalidate("user-service", "/api/v1/users/1001/");
+
+        // Then 资源本身、子路径和上一级集合被删除，前缀相同的其他资源和其他路由保留
+        assertEquals(4, removed);
+        for (String key : keys.subList(0, 4)) {
+            assertNull(cache.get("user-service", key), key);
+        }
+        for (String key : keys.subList(4, keys.size())) {
+            assertNotNull(cache.get("user-service", key), key);
+        }
+    }
+
+    private static void store(ResponseCache cache, String key) {
+        ResponseCache.Collector collector = cache.collector(
+            new ResponseCache.Capture("user-service", key, 60, true), HttpStatus.OK, headers(null));
+        collector.append(DefaultDataBufferFactory.sharedInstance.wrap("{}".getBytes(StandardCharsets.UTF_8)));
+        collector.complete();
+    }
+
+    private static HttpHeaders headers(String cacheControl) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_TYPE, "application/json");
+        if (cacheControl != null) {
+            headers.set(HttpHeaders.CACHE_CONTROL, cacheControl);
+        }
+        return headers;
+    }
+}
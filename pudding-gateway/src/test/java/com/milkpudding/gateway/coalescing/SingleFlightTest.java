@@ -0,0 +1,123 @@
+package com.milkpudding.gateway.coalescing;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SingleFlight 测试类
+ */
+class SingleFlightTest {
+
+    @Test
+    void testFirstRequestLeadsAndLaterRequestsFollow() {
+        // Given
+        SingleFlight singleFlight = new SingleFlight(1024, 5000);
+
+        // When
+        SingleFlight.Flight leader = singleFlight.join("user-service", "k1");
+        SingleFlight.Flight follower = singleFlight.join("user-service", "k1");
+        SingleFlight.Flight other = singleFlight.join("user-service", "k2");
+
+        // Then
+        assertTrue(leader.isLeader());
+        assertFalse(follower.isLeader());
+        assertTrue(other.isLeader());
+        assertEquals(2, singleFlight.inFlight());
+    }
+
+    @Test
+    void testCompletedFlightIsRemovedBeforeLaterRequestsArrive() {
+        // Given
+        SingleFlight singleFlight = new SingleFlight(1024, 5000);
+        SingleFlight.Flight leader = singleFlight.join("user-service", "k1");
+        SingleFlight.Recorder recorder = leader.recorder(HttpStatus.OK, new HttpHeaders(), null);
+
+        // When 响应写完
+        recorder.append(DefaultDataBufferFactory.sharedInstance.wrap(new byte[] {1, 2, 3}));
+        recorder.complete();
+
+        // Then 之后到达的请求重新转发，不复用已完成的响应
+        assertEquals(0, singleFlight.inFlight());
+        assertTrue(singleFlight.join("user-service", "k1").isLeader());
+    }
+
+    @Test
+    void testFinishedLeaderReleasesKey() {
+        // Given
+        SingleFlight singleFlight = new SingleFlight(1024, 5000);
+        SingleFlight.Flight leader = singleFlight.join("user-service", "k1");
+        SingleFlight.Flight follower = singleFlight.join("user-service", "k1");
+
+        // When follower结束不影响leader
+        follower.finish();
+
+        // Then
+        assertEquals(1, singleFlight.inFlight());
+        leader.finish();
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void testResponsesThatCannotBeSharedAreNotRecorded() {
+        // Given
+        SingleFlight singleFlight = new SingleFlight(4, 5000);
+        SingleFlight.Flight leader = singleFlight.join("user-service", "k1");
+        HttpHeaders cookie = new HttpHeaders();
+        cookie.add(HttpHeaders.SET_COOKIE, "session=1");
+        HttpHeaders large = new HttpHeaders();
+        large.setContentLength(5);
+
+        // Then
+        assertNull(leader.recorder(HttpStatus.OK, cookie, null));
+        assertNull(leader.recorder(HttpStatus.OK, large, null));
+        assertNull(leader.recorder(null, new HttpHeaders(), null));
+    }
+
+    @Test
+    void testOversizedBodyIsAbandonedAndFlightStaysUntilLeaderFinishes() {
+        // Given
+        SingleFlight singleFlight = new SingleFlight(4, 5000);
+        SingleFlight.Flight leader = singleFlight.join("user-service", "k1");
+        SingleFlight.Recorder recorder = leader.recorder(HttpStatus.OK, new HttpHeaders(), Set.of());
+
+        // When 分块响应超过大小上限
+        recorder.append(DefaultDataBufferFactory.sharedInstance.wrap(new byte[] {1, 2, 3}));
+        recorder.append(DefaultDataBufferFactory.sharedInstance.wrap(new byte[] {4, 5}));
+        recorder.complete();
+
+        // Then 不分发响应，leader结束时follower自行转发
+        assertEquals(1, singleFlight.inFlight());
+        leader.finish();
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStatsCountLeadersAndFollowersPerRoute() {
+        // Given
+        SingleFlight singleFlight = new SingleFlight(1024, 5000);
+        singleFlight.join("user-service", "k1");
+        SingleFlight.Flight follower = singleFlight.join("user-service", "k1");
+        singleFlight.join("user-service", "k1");
+
+        // When
+        follower.recordFallback();
+        Map<String, Object> stats = singleFlight.getStats();
+
+        // Then
+        Map<String, Object> route = (Map<String, Object>) ((Map<String, Object>) stats.get("routes")).get("user-service");
+        assertEquals(1L, route.get("leaders"));
+        assertEquals(2L, route.get("followers"));
+        assertEquals(1L, route.get("fallbacks"));
+        assertEquals(1, stats.get("inFlight"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.milkpudding.gateway.codec;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BinaryCodec 测试类
+ */
+class BinaryCodecTest {
+
+    private static final String JSON = "{\"id\":\"1001\",\"name\":\"用户1\",\"email\":\"user1@pudding.dev\","
+        + "\"tags\":[\"a\",\"b\"],\"age\":18,\"score\":9.5,\"active\":true,\"manager\":null}";
+
+    private BinaryCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        codec = new BinaryCodec();
+    }
+
+    @Test
+    void testRoundTripPreservesJson() {
+        for (BinaryCodec.Format format : BinaryCodec.Format.values()) {
+            // When
+            byte[] binary = codec.toBinary(JSON.getBytes(StandardCharsets.UTF_8), format);
+            byte[] json = codec.toJson(binary, format);
+
+            // Then
+            assertEquals(JSON, new String(json, StandardCharsets.UTF_8), format.name());
+        }
+        assertEquals(2L, codec.getStats().get("requests"));
+        assertEquals(2L, codec.getStats().get("responses"));
+    }
+
+    @Test
+    void testInvalidInputIsLeftUnconverted() {
+        // When
+        byte[] result = codec.toBinary("{\"id\":".getBytes(StandardCharsets.UTF_8), BinaryCodec.Format.CBOR);
+
+        // Then 调用方原样转发
+        assertNull(result);
+        assertEquals(1L, codec.getStats().get("failures"));
+        assertEquals(0L, codec.getStats().get("requests"));
+    }
+
+    @Test
+    void testParseFormat() {
+        assertEquals(BinaryCodec.Format.CBOR, BinaryCodec.parseFormat("cbor"));
+        assertEquals(BinaryCodec.Format.SMILE, BinaryCodec.parseFormat(" Smile "));
+        assertNull(BinaryCodec.parseFormat("none"));
+        assertNull(BinaryCodec.parseFormat(null));
+        assertEquals("application/x-jackson-smile", BinaryCodec.Format.SMILE.getMediaType().toString());
+    }
+}
@@ -0,0 +1,97 @@
+package com.milkpudding.gateway.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AdaptiveConcurrencyLimiter 测试类
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MILLIS = 1_000_000L;
+    private static final long WINDOW = 100 * MILLIS;
+
+    @Test
+    void testLowerPrioritiesAreShedFirst() {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, WINDOW, 0);
+
+        // When
+        int bulk = acquireAll(limiter, Priority.BULK);
+        int normal = acquireAll(limiter, Priority.NORMAL);
+        int critical = acquireAll(limiter, Priority.CRITICAL);
+
+        // Then - BULK最多用7个名额，NORMAL可用到9个，CRITICAL可用到10个
+        assertEquals(7, bulk);
+        assertEquals(2, normal);
+        assertEquals(1, critical);
+        assertEquals(10, limiter.getInFlight());
+        assertEquals(1, limiter.getRejections(Priority.BULK));
+    }
+
+    @Test
+    void testLimitShrinksWhenLatencyRises() {
+        // Given - 满负载下响应时间稳定在10ms
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 10, 1000, WINDOW, 0);
+        long now = runWindows(limiter, 0, 20, 10 * MILLIS);
+        int before = limiter.getLimit();
+
+        // When - 下游变慢，响应时间升到50ms
+        runWindows(limiter, now, 20, 50 * MILLIS);
+
+        // Then
+        assertTrue(limiter.getLimit() < before, "limit " + limiter.getLimit() + " should be below " + before);
+    }
+
+    @Test
+    void testLimitGrowsWhileLatencyIsStable() {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 10, 1000, WINDOW, 0);
+
+        // When
+        runWindows(limiter, 0, 20, 10 * MILLIS);
+
+        // Then
+        assertTrue(limiter.getLimit() > 20, "limit " + limiter.getLimit());
+    }
+
+    @Test
+    void testLimitDoesNotGrowWhenUnderused() {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 10, 1000, WINDOW, 0);
+
+        // When - 每次只有1个并发请求
+        long now = 0;
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(limiter.tryAcquire(Priority.NORMAL));
+            now += 10 * MILLIS;
+            limiter.release(10 * MILLIS, true, now);
+        }
+
+        // Then
+        assertEquals(20, limiter.getLimit());
+    }
+
+    private static int acquireAll(AdaptiveConcurrencyLimiter limiter, Priority priority) {
+        int acquired = 0;
+        while (limiter.tryAcquire(priority)) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    /**
+     * 每个窗口占满当前上限，全部请求以指定耗时完成
+     */
+    private static long runWindows(AdaptiveConcurrencyLimiter limiter, long now, int windows, long rtt) {
+        for (int w = 0; w < windows; w++) {
+            int acquired = acquireAll(limiter, Priority.CRITICAL);
+            now += WINDOW;
+            for (int i = 0; i < acquired; i++) {
+                limiter.release(rtt, true, now);
+            }
+        }
+        return now;
+    }
+}
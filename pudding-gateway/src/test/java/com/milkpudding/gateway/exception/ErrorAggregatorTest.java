@@ -0,0 +1,87 @@
+package com.milkpudding.gateway.exception;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ErrorAggregator 测试类
+ */
+class ErrorAggregatorTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void testStackTraceLoggedOncePerInterval() {
+        // Given
+        ErrorAggregator aggregator = new ErrorAggregator(60, 3600, 100);
+        ConnectException error = new ConnectException("Connection refused");
+
+        // When - 同一签名60秒内出现1000次
+        int traced = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (aggregator.record("user-service", error, i * 10_000_000L)) {
+                traced++;
+            }
+        }
+
+        // Then - 只输出一次堆栈，其余计为省略
+        assertEquals(1, traced);
+        assertEquals(999, aggregator.drainSuppressed("user-service", error));
+        assertEquals(0, aggregator.drainSuppressed("user-service", error));
+
+        // When - 间隔过后再次出现
+        assertTrue(aggregator.record("user-service", error, 61 * SECOND));
+
+        // Then - 其他路由是不同签名
+        assertTrue(aggregator.record("api-service", error, 61 * SECOND));
+        aggregator.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCountsByTypeAndRoute() {
+        // Given
+        ErrorAggregator aggregator = new ErrorAggregator(60, 3600, 100);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            aggregator.record("user-service", new ConnectException(), 0);
+        }
+        aggregator.record("user-service", new TimeoutException(), 0);
+        aggregator.record(null, new ConnectException(), 0);
+        aggregator.shutdown();
+
+        // Then
+        Map<String, Object> stats = aggregator.getStats();
+        assertEquals(7L, stats.get("total"));
+        Map<String, Long> byType = (Map<String, Long>) stats.get("byType");
+        assertEquals(6L, (long) byType.get(ConnectException.class.getName()));
+        assertEquals(1L, (long) byType.get(TimeoutException.class.getName()));
+        Map<String, Long> byRoute = (Map<String, Long>) stats.get("byRoute");
+        assertEquals(6L, (long) byRoute.get("user-service"));
+        assertEquals(1L, (long) byRoute.get("none"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSignaturesAreBounded() {
+        // Given - 最多2个签名
+        ErrorAggregator aggregator = new ErrorAggregator(60, 3600, 2);
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            aggregator.record("route-" + i, new IllegalStateException(), 0);
+        }
+        aggregator.shutdown();
+
+        // Then - 超出的签名合并到other
+        Map<String, Long> byRoute = (Map<String, Long>) aggregator.getStats().get("byRoute");
+        assertEquals(3, byRoute.size());
+        assertEquals(8L, (long) byRoute.get("other"));
+    }
+}
@@ -0,0 +1,163 @@
+package com.milkpudding.gateway.filter;
+
+import com.milkpudding.gateway.codec.BinaryCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BinaryCodecFilter 测试类
+ * 路由过滤器和响应端过滤器按网关中的顺序串联，下游由模拟的GatewayFilterChain代替：
+ * 与NettyWriteResponseFilter一样通过交给它的exchange写出响应
+ */
+class BinaryCodecFilterTest {
+
+    private static final String JSON = "{\"id\":\"1001\",\"name\":\"用户1\",\"email\":\"user1@pudding.dev\"}";
+
+    private BinaryCodec codec;
+    private BinaryCodecFilter routeFilter;
+    private BinaryCodecResponseFilter responseFilter;
+
+    @BeforeEach
+    void setUp() {
+        codec = new BinaryCodec();
+        routeFilter = new BinaryCodecFilter();
+        ReflectionTestUtils.setField(routeFilter, "binaryCodec", codec);
+        responseFilter = new BinaryCodecResponseFilter();
+        ReflectionTestUtils.setField(responseFilter, "binaryCodec", codec);
+    }
+
+    @Test
+    void testJsonClientGetsJsonFromBinaryUpstream() {
+        // Given
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/users/1001")
+            .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE));
+        Upstream upstream = new Upstream(BinaryCodec.Format.CBOR);
+
+        // When
+        handle(exchange, BinaryCodec.Format.CBOR, upstream);
+
+        // Then 下游优先返回CBOR，客户端收到的是JSON
+        assertTrue(upstream.accept.startsWith("application/cbor"));
+        assertEquals(MediaType.APPLICATION_JSON, exchange.getResponse().getHeaders().getContentType());
+        assertEquals(JSON.getBytes(StandardCharsets.UTF_8).length, exchange.getResponse().getHeaders().getContentLength());
+        assertEquals(JSON, exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void testJsonRequestBodyIsForwardedAsBinary() {
+        // Given
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/api/v1/users")
+            .contentType(MediaType.APPLICATION_JSON)
+            .contentLength(JSON.getBytes(StandardCharsets.UTF_8).length)
+            .body(JSON));
+        Upstream upstream = new Upstream(BinaryCodec.Format.SMILE);
+
+        // When
+        handle(exchange, BinaryCodec.Format.SMILE, upstream);
+
+        // Then
+        assertEquals(BinaryCodec.Format.SMILE.getMediaType(), upstream.contentType);
+        assertEquals(JSON, new String(codec.toJson(upstream.body, BinaryCodec.Format.SMILE), StandardCharsets.UTF_8));
+        assertEquals(JSON, exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void testClientAskingForBinaryIsPassedThrough() {
+        // Given
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/users/1001")
+            .header(HttpHeaders.ACCEPT, "application/cbor"));
+        Upstream upstream = new Upstream(BinaryCodec.Format.CBOR);
+
+        // When
+        handle(exchange, BinaryCodec.Format.CBOR, upstream);
+
+        // Then
+        assertEquals("application/cbor", upstream.accept);
+        assertEquals(BinaryCodec.Format.CBOR.getMediaType(), exchange.getResponse().getHeaders().getContentType());
+        assertEquals(0L, codec.getStats().get("responses"));
+    }
+
+    @Test
+    void testRouteWithoutFormatLeavesResponseUntouched() {
+        // Given
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/users/1001")
+            .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE));
+        Upstream upstream = new Upstream(BinaryCodec.Format.CBOR, true);
+
+        // When
+        handle(exchange, null, upstream);
+
+        // Then 下游即使返回CBOR也不转换
+        assertEquals(MediaType.APPLICATION_JSON_VALUE, upstream.accept);
+        assertEquals(BinaryCodec.Format.CBOR.getMediaType(), exchange.getResponse().getHeaders().getContentType());
+    }
+
+    @Test
+    void testResponseIsConvertedInsideCaptureAndBeforeWrite() {
+        // Then 写出时先经过本过滤器的包装再经过缓存和合并的写入端
+        assertTrue(new ResponseCaptureFilter().getOrder() < responseFilter.getOrder());
+        assertTrue(responseFilter.getOrder() < NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER);
+    }
+
+    private void handle(ServerWebExchange exchange, BinaryCodec.Format format, Upstream upstream) {
+        BinaryCodecFilter.Config config = new BinaryCodecFilter.Config();
+        config.setRouteId("user-service");
+        config.setFormat(format);
+        GatewayFilter route = routeFilter.apply(config);
+        GatewayFilterChain chain = routed -> route.filter(routed, upstream);
+        responseFilter.filter(exchange, chain).block();
+    }
+
+    /**
+     * 模拟下游：记录收到的请求，按Accept返回二进制格式或JSON，或者总是返回二进制格式
+     */
+    private final class Upstream implements GatewayFilterChain {
+        private final BinaryCodec.Format format;
+        private final boolean alwaysBinary;
+        private String accept;
+        private MediaType contentType;
+        private byte[] body;
+
+        Upstream(BinaryCodec.Format format) {
+            this(format, false);
+        }
+
+        Upstream(BinaryCodec.Format format, boolean alwaysBinary) {
+            this.format = format;
+            this.alwaysBinary = alwaysBinary;
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange) {
+            accept = exchange.getRequest().getHeaders().getFirst(HttpHeaders.ACCEPT);
+            contentType = exchange.getRequest().getHeaders().getContentType();
+            return DataBufferUtils.join(exchange.getRequest().getBody())
+                .doOnNext(buffer -> body = BinaryCodecFilter.read(buffer))
+                .then(Mono.defer(() -> {
+                    byte[] json = JSON.getBytes(StandardCharsets.UTF_8);
+                    boolean binary = alwaysBinary || (accept != null && accept.startsWith(format.getMediaType().toString()));
+                    byte[] response = binary ? codec.toBinary(json, format) : json;
+                    HttpHeaders headers = exchange.getResponse().getHeaders();
+                    headers.setContentType(binary ? format.getMediaType() : MediaType.APPLICATION_JSON);
+                    headers.setContentLength(response.length);
+                    return exchange.getResponse().writeWith(
+                        Mono.just(exchange.getResponse().bufferFactory().wrap(response)));
+                }));
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.milkpudding.gateway.filter;
+
+import com.milkpudding.gateway.cache.ResponseCache;
+import com.milkpudding.gateway.coalescing.SingleFlight;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CoalescingFilter 测试类
+ * 合并过滤器和写入端ResponseCaptureFilter按网关中的顺序串联，下游由模拟的GatewayFilterChain代替，
+ * 在测试放行前不返回响应，使后到的请求加入进行中的请求
+ */
+class CoalescingFilterTest {
+
+    private static final String ROUTE_ID = "user-service";
+    private static final String PATH = "/api/v1/users/1001";
+    private static final String JSON = "{\"id\":\"1001\",\"name\":\"用户1\"}";
+
+    private SingleFlight singleFlight;
+    private CoalescingFilter coalescingFilter;
+    private ResponseCaptureFilter captureFilter;
+    private Upstream upstream;
+
+    @BeforeEach
+    void setUp() {
+        singleFlight = new SingleFlight(1 << 20, 5000);
+        coalescingFilter = new CoalescingFilter();
+        ReflectionTestUtils.setField(coalescingFilter, "singleFlight", singleFlight);
+        captureFilter = new ResponseCaptureFilter();
+        ReflectionTestUtils.setField(captureFilter, "responseCache", new ResponseCache(1 << 20, false, 0, 1 << 16));
+        upstream = new Upstream();
+    }
+
+    @Test
+    void testConcurrentGetIsServedFromLeaderResponse() {
+        // Given
+        MockServerWebExchange leader = exchange(MockServerHttpRequest.get(PATH));
+        MockServerWebExchange follower = exchange(MockServerHttpRequest.get(PATH));
+
+        // When leader转发中时follower到达
+        CompletableFuture<Void> leaderDone = handle(leader);
+        CompletableFuture<Void> followerDone = handle(follower);
+        upstream.release();
+        leaderDone.join();
+        followerDone.join();
+
+        // Then 只转发一次，follower得到相同的响应
+        assertEquals(1, upstream.calls.get());
+        assertEquals(HttpStatus.OK, follower.getResponse().getStatusCode());
+        assertEquals("true", follower.getResponse().getHeaders().getFirst(CoalescingFilter.COALESCED_HEADER));
+        assertEquals("1", follower.getResponse().getHeaders().getFirst("X-Upstream-Call"));
+        assertEquals(JSON, follower.getResponse().getBodyAsString().block());
+        assertNull(leader.getResponse().getHeaders().getFirst(CoalescingFilter.COALESCED_HEADER));
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void testFollowerForwardsWhenLeaderResponseCannotBeShared() {
+        // Given leader的响应带Set-Cookie
+        upstream.setCookie = true;
+        MockServerWebExchange leader = exchange(MockServerHttpRequest.get(PATH));
+        MockServerWebExchange follower = exchange(MockServerHttpRequest.get(PATH));
+
+        // When
+        CompletableFuture<Void> leaderDone = handle(leader);
+        CompletableFuture<Void> followerDone = handle(follower);
+        upstream.release();
+        leaderDone.join();
+        followerDone.join();
+
+        // Then follower自行转发
+        assertEquals(2, upstream.calls.get());
+        assertEquals("2", follower.getResponse().getHeaders().getFirst("X-Upstream-Call"));
+        assertNull(follower.getResponse().getHeaders().getFirst(CoalescingFilter.COALESCED_HEADER));
+        assertEquals(1L, routeStats().get("fallbacks"));
+    }
+
+    @Test
+    void testNonGetRequestsAreNotCoalesced() {
+        // Given
+        MockServerWebExchange first = exchange(MockServerHttpRequest.post("/api/v1/users"));
+        MockServerWebExchange second = exchange(MockServerHttpRequest.post("/api/v1/users"));
+
+        // When
+        CompletableFuture<Void> firstDone = handle(first);
+        CompletableFuture<Void> secondDone = handle(second);
+        upstream.release();
+        firstDone.join();
+        secondDone.join();
+
+        // Then 不加入合并统计
+        assertEquals(2, upstream.calls.get());
+        assertNull(routeStats());
+    }
+
+    @Test
+    void testCompletedResponseIsNotReused() {
+        // Given
+        upstream.release();
+        handle(exchange(MockServerHttpRequest.get(PATH))).join();
+
+        // When
+        MockServerWebExchange later = exchange(MockServerHttpRequest.get(PATH));
+        handle(later).join();
+
+        // Then 之后到达的请求重新转发
+        assertEquals(2, upstream.calls.get());
+        assertEquals("2", later.getResponse().getHeaders().getFirst("X-Upstream-Call"));
+    }
+
+    private static MockServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> request) {
+        return MockServerWebExchange.from(request.header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE));
+    }
+
+    private CompletableFuture<Void> handle(MockServerWebExchange exchange) {
+        CoalescingFilter.Config config = new CoalescingFilter.Config();
+        config.setRouteId(ROUTE_ID);
+        GatewayFilter route = coalescingFilter.apply(config);
+        GatewayFilterChain chain = routed -> route.filter(routed, upstream);
+        return captureFilter.filter(exchange, chain).timeout(Duration.ofSeconds(5)).toFuture();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> routeStats() {
+        Map<String, Object> routes = (Map<String, Object>) singleFlight.getStats().get("routes");
+        return (Map<String, Object>) routes.get(ROUTE_ID);
+    }
+
+    /**
+     * 模拟下游：放行前不返回响应，响应头带上这是第几次转发
+     */
+    private static final class Upstream implements GatewayFilterChain {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final Sinks.Empty<Void> gate = Sinks.empty();
+        private volatile boolean setCookie;
+
+        void release() {
+            gate.tryEmitEmpty();
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange) {
+            int call = calls.incrementAndGet();
+            return gate.asMono().then(Mono.defer(() -> {
+                byte[] body = JSON.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponse().setStatusCode(HttpStatus.OK);
+                HttpHeaders headers = exchange.getResponse().getHeaders();
+                headers.setContentType(MediaType.APPLICATION_JSON);
+                headers.setContentLength(body.length);
+                headers.set("X-Upstream-Call", String.valueOf(call));
+                if (setCookie) {
+                    headers.add(HttpHeaders.SET_COOKIE, "session=" + call);
+                }
+                return exchange.getResponse().writeWith(Mono.just(exchange.getResponse().bufferFactory().wrap(body)));
+            }));
+        }
+    }
+}
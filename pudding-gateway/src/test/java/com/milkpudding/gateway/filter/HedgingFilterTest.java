@@ -0,0 +1,244 @@
+package com.milkpudding.gateway.filter;
+
+import com.milkpudding.gateway.loadbalancer.InstanceLoadTracker;
+import com.milkpudding.gateway.loadbalancer.OutlierDetector;
+import com.milkpudding.gateway.metrics.LatencyMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClientsProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HedgingFilter 测试类
+ * 负载均衡选出10.0.0.1作为首次转发的实例，对冲和重试只能选择10.0.0.2；
+ * 下游由模拟的GatewayFilterChain代替，按实例设置响应状态或返回连接失败
+ */
+class HedgingFilterTest {
+
+    private static final String SERVICE = "pudding-user";
+    private static final String ROUTE_ID = "user-service";
+    private static final String PRIMARY = "10.0.0.1";
+    private static final String OTHER = "10.0.0.2";
+    private static final long MILLI = 1_000_000L;
+    private static final long HEDGE_DELAY = 20;
+
+    private HedgingFilter filter;
+    private RecordingMetrics metrics;
+    private OutlierDetector outlierDetector;
+    private Upstream upstream;
+
+    @BeforeEach
+    void setUp() {
+        // 预算足够，不限制对冲和重试
+        filter = new HedgingFilter(1.0, 100, 10);
+        metrics = new RecordingMetrics();
+        InstanceLoadTracker loadTracker = new InstanceLoadTracker(10, 50);
+        outlierDetector = new OutlierDetector(loadTracker, true, 5, 3, 3.0, 100, 20, 10, 40, 50, 5, 100);
+        ReflectionTestUtils.setField(filter, "latencyMetrics", metrics);
+        ReflectionTestUtils.setField(filter, "loadBalancerClientFactory", new FixedInstances());
+        ReflectionTestUtils.setField(filter, "loadTracker", loadTracker);
+        ReflectionTestUtils.setField(filter, "outlierDetector", outlierDetector);
+        upstream = new Upstream();
+    }
+
+    @AfterEach
+    void tearDown() {
+        metrics.shutdown();
+        outlierDetector.shutdown();
+    }
+
+    @Test
+    void testSlowPrimaryIsHedgedAndCancelledAttemptIsRecorded() {
+        // Given 首次转发的实例很慢
+        upstream.delays.put(PRIMARY, Duration.ofSeconds(5));
+        upstream.delays.put(OTHER, Duration.ofMillis(5));
+
+        // When
+        MockServerWebExchange exchange = handle(MockServerHttpRequest.get("http://localhost/api/v1/users/1001"));
+
+        // Then 对冲请求胜出，首次转发被取消并按取消时已过的时间计入上游耗时
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertEquals(OTHER, exchange.getResponse().getHeaders().getFirst("X-Upstream"));
+        assertEquals(Set.of(PRIMARY), upstream.cancelled);
+        assertEquals(2, metrics.upstream.size());
+        assertTrue(metrics.upstream.stream().allMatch(nanos -> nanos > 0));
+        assertTrue(metrics.upstream.stream().anyMatch(nanos -> nanos >= HEDGE_DELAY * MILLI), metrics.upstream.toString());
+        assertEquals(1L, routeStats().get("hedges"));
+        assertEquals(1L, routeStats().get("hedgeWins"));
+    }
+
+    @Test
+    void testFastPrimaryIsNotHedged() {
+        // Given
+        upstream.delays.put(PRIMARY, Duration.ofMillis(1));
+
+        // When
+        MockServerWebExchange exchange = handle(MockServerHttpRequest.get("http://localhost/api/v1/users/1001"));
+
+        // Then
+        assertEquals(PRIMARY, exchange.getResponse().getHeaders().getFirst("X-Upstream"));
+        assertEquals(List.of(PRIMARY), upstream.called);
+        assertEquals(1, metrics.upstream.size());
+        assertEquals(0L, routeStats().get("hedges"));
+    }
+
+    @Test
+    void testFailedAttemptIsRetriedOnAnotherInstance() {
+        // Given
+        upstream.failing.add(PRIMARY);
+        upstream.delays.put(OTHER, Duration.ofMillis(1));
+
+        // When
+        MockServerWebExchange exchange = handle(MockServerHttpRequest.get("http://localhost/api/v1/users/1001"));
+
+        // Then 失败的尝试不计入上游耗时
+        assertEquals(OTHER, exchange.getResponse().getHeaders().getFirst("X-Upstream"));
+        assertEquals(List.of(PRIMARY, OTHER), upstream.called);
+        assertEquals(1, metrics.upstream.size());
+        assertEquals(1L, routeStats().get("retries"));
+    }
+
+    @Test
+    void testNonIdempotentRequestIsForwardedOnce() {
+        // Given
+        upstream.failing.add(PRIMARY);
+
+        // When
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("http://localhost/api/v1/users"));
+        Mono<Void> result = apply(exchange);
+
+        // Then
+        assertThrows(RuntimeException.class, () -> result.block(Duration.ofSeconds(5)));
+        assertEquals(List.of(PRIMARY), upstream.called);
+    }
+
+    private MockServerWebExchange handle(MockServerHttpRequest.BaseBuilder<?> request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        apply(exchange).block(Duration.ofSeconds(5));
+        return exchange;
+    }
+
+    private Mono<Void> apply(MockServerWebExchange exchange) {
+        Route route = Route.async().id(ROUTE_ID).uri(URI.create("lb://" + SERVICE)).predicate(e -> true).build();
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR,
+            URI.create("http://" + PRIMARY + ":8081" + exchange.getRequest().getPath()));
+        HedgingFilter.Config config = new HedgingFilter.Config();
+        config.setRouteId(ROUTE_ID);
+        config.setMinHedgeDelay(HEDGE_DELAY);
+        GatewayFilter gatewayFilter = filter.apply(config);
+        return gatewayFilter.filter(exchange, upstream);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> routeStats() {
+        Map<String, Object> routes = (Map<String, Object>) filter.getStats().get("routes");
+        return (Map<String, Object>) routes.get(ROUTE_ID);
+    }
+
+    /**
+     * 记录上游耗时；p95固定为对冲等待下限，首次转发超过下限后即发送对冲请求
+     */
+    private static final class RecordingMetrics extends LatencyMetrics {
+        private final List<Long> upstream = new CopyOnWriteArrayList<>();
+
+        RecordingMetrics() {
+            super(10, 1000, 600);
+        }
+
+        @Override
+        public void recordUpstream(String routeId, long nanos) {
+            upstream.add(nanos);
+        }
+
+        @Override
+        public long getUpstreamP95Nanos(String routeId) {
+            return HEDGE_DELAY * MILLI;
+        }
+    }
+
+    /**
+     * 服务的实例列表固定为两个实例
+     */
+    private static final class FixedInstances extends LoadBalancerClientFactory {
+
+        FixedInstances() {
+            super(new LoadBalancerClientsProperties());
+        }
+
+        @Override
+        public <T> ObjectProvider<T> getLazyProvider(String name, Class<T> type) {
+            List<ServiceInstance> instances = List.of(
+                new DefaultServiceInstance("user-1", SERVICE, PRIMARY, 8081, false),
+                new DefaultServiceInstance("user-2", SERVICE, OTHER, 8081, false));
+            StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+            beanFactory.addBean("supplier", new ServiceInstanceListSupplier() {
+                @Override
+                public String getServiceId() {
+                    return SERVICE;
+                }
+
+                @Override
+                public Flux<List<ServiceInstance>> get() {
+                    return Flux.just(instances);
+                }
+            });
+            return beanFactory.getBeanProvider(type);
+        }
+    }
+
+    /**
+     * 模拟下游：按实例延迟后设置响应状态（相当于收到响应头），或立即返回连接失败
+     */
+    private static final class Upstream implements GatewayFilterChain {
+        private final Map<String, Duration> delays = new ConcurrentHashMap<>();
+        private final Set<String> failing = ConcurrentHashMap.newKeySet();
+        private final Set<String> cancelled = ConcurrentHashMap.newKeySet();
+        private final List<String> called = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange) {
+            URI url = exchange.getRequiredAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+            String host = url.getHost();
+            called.add(host);
+            if (failing.contains(host)) {
+                return Mono.error(new ConnectException("Connection refused: " + host));
+            }
+            return Mono.delay(delays.getOrDefault(host, Duration.ZERO))
+                .doOnNext(tick -> {
+                    exchange.getResponse().setStatusCode(HttpStatus.OK);
+                    exchange.getResponse().getHeaders().set("X-Upstream", host);
+                })
+                .doOnCancel(() -> cancelled.add(host))
+                .then();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.milkpudding.gateway.filter;
+
+import com.milkpudding.gateway.cache.ResponseCache;
+import com.milkpudding.gateway.codec.BinaryCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ResponseCacheFilter 测试类
+ * 路由过滤器和写入端ResponseCaptureFilter按网关中的顺序串联，下游由模拟的GatewayFilterChain代替：
+ * 与Spring MVC的内容协商一样按Accept返回CBOR或JSON，且不返回Vary: Accept
+ */
+class ResponseCacheFilterTest {
+
+    private static final String PATH = "/api/v1/users/1001";
+    private static final String JSON = "{\"id\":\"1001\",\"name\":\"用户1\"}";
+
+    private BinaryCodec codec;
+    private ResponseCache responseCache;
+    private ResponseCacheFilter cacheFilter;
+    private ResponseCaptureFilter captureFilter;
+    private Upstream upstream;
+
+    @BeforeEach
+    void setUp() {
+        codec = new BinaryCodec();
+        responseCache = new ResponseCache(1 << 20, false, 0, 1 << 16);
+        cacheFilter = new ResponseCacheFilter();
+        ReflectionTestUtils.setField(cacheFilter, "responseCache", responseCache);
+        captureFilter = new ResponseCaptureFilter();
+        ReflectionTestUtils.setField(captureFilter, "responseCache", responseCache);
+        upstream = new Upstream();
+    }
+
+    @Test
+    void testJsonResponseIsServedFromCache() {
+        // When
+        MockServerWebExchange first = handle(MediaType.APPLICATION_JSON_VALUE);
+        MockServerWebExchange second = handle(MediaType.APPLICATION_JSON_VALUE);
+
+        // Then
+        assertEquals("MISS", first.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals("HIT", second.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals(JSON, second.getResponse().getBodyAsString().block());
+        assertEquals(1, upstream.calls.get());
+    }
+
+    @Test
+    void testBinaryResponseIsNotCachedOrServedToJsonClients() {
+        // When 客户端自己请求CBOR，网关不做转换
+        MockServerWebExchange cbor = handle("application/cbor");
+        MockServerWebExchange json = handle(MediaType.APPLICATION_JSON_VALUE);
+
+        // Then CBOR响应不缓存，之后的JSON客户端拿到的是JSON
+        assertEquals("BYPASS", cbor.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals("MISS", json.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals(MediaType.APPLICATION_JSON, json.getResponse().getHeaders().getContentType());
+        assertEquals(JSON, json.getResponse().getBodyAsString().block());
+        assertEquals(2, upstream.calls.get());
+    }
+
+    @Test
+    void testCachedJsonIsNotServedToBinaryClients() {
+        // Given
+        handle(MediaType.APPLICATION_JSON_VALUE);
+
+        // When
+        MockServerWebExchange cbor = handle("application/cbor");
+
+        // Then 不同Accept的请求不命中JSON缓存
+        assertNotEquals("HIT", cbor.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals(BinaryCodec.Format.CBOR.getMediaType(), cbor.getResponse().getHeaders().getContentType());
+        assertEquals(2, upstream.calls.get());
+    }
+
+    private MockServerWebExchange handle(String accept) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(PATH)
+            .header(HttpHeaders.ACCEPT, accept));
+        ResponseCacheFilter.Config config = new ResponseCacheFilter.Config();
+        config.setRouteId("user-service");
+        config.setPerUser(false);
+        GatewayFilter route = cacheFilter.apply(config);
+        GatewayFilterChain chain = routed -> route.filter(routed, upstream);
+        captureFilter.filter(exchange, chain).block();
+        return exchange;
+    }
+
+    /**
+     * 模拟下游：Accept为CBOR时返回CBOR，否则返回JSON
+     */
+    private final class Upstream implements GatewayFilterChain {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange) {
+            calls.incrementAndGet();
+            String accept = exchange.getRequest().getHeaders().getFirst(HttpHeaders.ACCEPT);
+            boolean binary = accept != null && accept.startsWith("application/cbor");
+            byte[] json = JSON.getBytes(StandardCharsets.UTF_8);
+            byte[] body = binary ? codec.toBinary(json, BinaryCodec.Format.CBOR) : json;
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            HttpHeaders headers = exchange.getResponse().getHeaders();
+            headers.setContentType(binary ? BinaryCodec.Format.CBOR.getMediaType() : MediaType.APPLICATION_JSON);
+            headers.setContentLength(body.length);
+            return exchange.getResponse().writeWith(Mono.just(exchange.getResponse().bufferFactory().wrap(body)));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.milkpudding.gateway.hedging;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RetryBudget 测试类
+ */
+class RetryBudgetTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void testExtraRequestsLimitedToRatioOfRequests() {
+        // Given
+        long now = System.nanoTime() + 100 * SECOND;
+        RetryBudget budget = new RetryBudget(0.1, 0, 10);
+        for (int i = 0; i < 1000; i++) {
+            budget.recordRequest(now);
+        }
+
+        // When
+        int allowed = 0;
+        for (int i = 0; i < 200; i++) {
+            if (budget.tryAcquire(now)) {
+                allowed++;
+            }
+        }
+
+        // Then
+        assertEquals(100, allowed);
+        assertEquals(100L, budget.getAcquired());
+        assertEquals(100L, budget.getRejected());
+    }
+
+    @Test
+    void testMinimumAllowanceWhenTrafficIsLow() {
+        // Given 窗口10秒，每秒至少2个
+        long now = System.nanoTime() + 100 * SECOND;
+        RetryBudget budget = new RetryBudget(0.1, 2, 10);
+        budget.recordRequest(now);
+
+        // When
+        int allowed = 0;
+        for (int i = 0; i < 50; i++) {
+            if (budget.tryAcquire(now)) {
+                allowed++;
+            }
+        }
+
+        // Then
+        assertEquals(20, allowed);
+    }
+
+    @Test
+    void testBudgetRecoversAfterWindow() {
+        // Given 预算用完
+        long now = System.nanoTime() + 100 * SECOND;
+        RetryBudget budget = new RetryBudget(0.5, 0, 10);
+        for (int i = 0; i < 10; i++) {
+            budget.recordRequest(now);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertTrue(budget.tryAcquire(now));
+        }
+        assertFalse(budget.tryAcquire(now));
+
+        // When 窗口内仍计入之前的额外请求
+        long later = now + 5 * SECOND;
+        for (int i = 0; i < 2; i++) {
+            budget.recordRequest(later);
+        }
+
+        // Then
+        assertTrue(budget.tryAcquire(later));
+        assertFalse(budget.tryAcquire(later));
+
+        // When 旧的请求和额外请求移出窗口
+        long afterWindow = now + 11 * SECOND;
+        for (int i = 0; i < 4; i++) {
+            budget.recordRequest(afterWindow);
+        }
+
+        // Then 剩余窗口内6个请求，额外请求1个
+        assertTrue(budget.tryAcquire(afterWindow));
+        assertTrue(budget.tryAcquire(afterWindow));
+        assertFalse(budget.tryAcquire(afterWindow));
+    }
+
+    @Test
+    void testNoRequestsMeansNoExtraWithoutMinimum() {
+        RetryBudget budget = new RetryBudget(0.1, 0, 10);
+        assertFalse(budget.tryAcquire(System.nanoTime()));
+    }
+}
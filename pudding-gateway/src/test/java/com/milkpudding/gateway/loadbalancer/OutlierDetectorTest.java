@@ -0,0 +1,202 @@
+package com.milkpudding.gateway.loadbalancer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * OutlierDetector 测试类
+ */
+class OutlierDetectorTest {
+
+    private static final String SERVICE = "pudding-user";
+    private static final long MILLI = 1_000_000L;
+    private static final long SECOND = 1_000_000_000L;
+
+    private OutlierDetector detector;
+    private List<ServiceInstance> pool;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        // 连续5次5xx或3次失败摘除，首次摘除10秒、上限40秒，最多摘除50%
+        detector = new OutlierDetector(new InstanceLoadTracker(10, 50), true, 5, 3, 3.0, 100, 20,
+            10, 40, 50, 5, 100);
+        pool = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            pool.add(new DefaultServiceInstance("user-" + i, SERVICE, "10.0.0." + i, 8081, false));
+        }
+        now = System.nanoTime();
+        detector.available(SERVICE, pool, now);
+    }
+
+    @AfterEach
+    void tearDown() {
+        detector.shutdown();
+    }
+
+    @Test
+    void testConsecutive5xxEjectsInstance() {
+        // When
+        for (int i = 0; i < 5; i++) {
+            detector.record(SERVICE, "10.0.0.1:8081", 503, 10 * MILLI, now);
+        }
+
+        // Then
+        List<ServiceInstance> available = detector.available(SERVICE, pool, now);
+        assertEquals(3, available.size());
+        assertFalse(available.contains(pool.get(0)));
+        OutlierDetector.Event event = detector.getEvents(SERVICE).get(0);
+        assertEquals(OutlierDetector.Action.EJECTED, event.action());
+        assertEquals(OutlierDetector.Reason.CONSECUTIVE_5XX, event.reason());
+        assertEquals(10_000, event.durationMillis());
+    }
+
+    @Test
+    void testSuccessResetsConsecutiveCount() {
+        // When 中间夹一个成功响应
+        for (int i = 0; i < 4; i++) {
+            detector.record(SERVICE, "10.0.0.1:8081", 500, 10 * MILLI, now);
+        }
+        detector.record(SERVICE, "10.0.0.1:8081", 200, 10 * MILLI, now);
+        detector.record(SERVICE, "10.0.0.1:8081", 500, 10 * MILLI, now);
+
+        // Then
+        assertEquals(4, detector.available(SERVICE, pool, now).size());
+        assertTrue(detector.getEvents(SERVICE).isEmpty());
+    }
+
+    @Test
+    void testConnectionFailuresEjectInstance() {
+        // When
+        for (int i = 0; i < 3; i++) {
+            detector.record(SERVICE, "10.0.0.2:8081", 0, 10 * MILLI, now);
+        }
+
+        // Then
+        assertFalse(detector.available(SERVICE, pool, now).contains(pool.get(1)));
+        assertEquals(OutlierDetector.Reason.CONSECUTIVE_FAILURES, detector.getEvents(SERVICE).get(0).reason());
+    }
+
+    @Test
+    void testMaxEjectionPercentIsRespected() {
+        // When 四个实例中三个连续失败
+        for (int instance = 1; instance <= 3; instance++) {
+            for (int i = 0; i < 3; i++) {
+                detector.record(SERVICE, "10.0.0." + instance + ":8081", 0, 10 * MILLI, now);
+            }
+        }
+
+        // Then 最多摘除两个，第三个记录为未摘除
+        assertEquals(2, detector.available(SERVICE, pool, now).size());
+        assertEquals(OutlierDetector.Action.SKIPPED, detector.getEvents(SERVICE).get(0).action());
+    }
+
+    @Test
+    void testEjectedInstanceReturnsAfterBackoff() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            detector.record(SERVICE, "10.0.0.1:8081", 0, 10 * MILLI, now);
+        }
+
+        // When 摘除到期后检查
+        detector.sweep(now + 11 * SECOND);
+
+        // Then
+        assertEquals(4, detector.available(SERVICE, pool, now + 11 * SECOND).size());
+        assertEquals(OutlierDetector.Action.RETURNED, detector.getEvents(SERVICE).get(0).action());
+    }
+
+    @Test
+    void testEjectionTimeGrowsExponentiallyUpToMaximum() {
+        // When 同一实例反复被摘除
+        long time = now;
+        List<Long> durations = new ArrayList<>();
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < 3; i++) {
+                detector.record(SERVICE, "10.0.0.1:8081", 0, 10 * MILLI, time);
+            }
+            long duration = detector.getEvents(SERVICE).get(0).durationMillis();
+            durations.add(duration);
+            time += duration * MILLI + SECOND;
+            detector.sweep(time);
+        }
+
+        // Then 10s、20s、40s，之后不超过上限
+        assertEquals(List.of(10_000L, 20_000L, 40_000L, 40_000L), durations);
+    }
+
+    @Test
+    void testLatencyOutlierIsEjected() {
+        // Given 三个实例20ms，一个实例500ms
+        for (int i = 0; i < 20; i++) {
+            detector.record(SERVICE, "10.0.0.1:8081", 200, 20 * MILLI, now);
+            detector.record(SERVICE, "10.0.0.2:8081", 200, 20 * MILLI, now);
+            detector.record(SERVICE, "10.0.0.3:8081", 200, 20 * MILLI, now);
+            detector.record(SERVICE, "10.0.0.4:8081", 200, 500 * MILLI, now);
+        }
+
+        // When
+        detector.sweep(now);
+
+        // Then
+        assertFalse(detector.available(SERVICE, pool, now).contains(pool.get(3)));
+        assertEquals(OutlierDetector.Reason.LATENCY, detector.getEvents(SERVICE).get(0).reason());
+    }
+
+    @Test
+    void testUniformlySlowPoolIsNotEjected() {
+        // Given 所有实例都慢，没有离群实例
+        for (int i = 0; i < 20; i++) {
+            for (int instance = 1; instance <= 4; instance++) {
+                detector.record(SERVICE, "10.0.0." + instance + ":8081", 200, 400 * MILLI, now);
+            }
+        }
+
+        // When
+        detector.sweep(now);
+
+        // Then
+        assertEquals(4, detector.available(SERVICE, pool, now).size());
+    }
+
+    @Test
+    void testReejectionBeforeSweepIsCountedOnce() {
+        // Given 摘除到期，但定期检查还没有恢复该实例
+        for (int i = 0; i < 3; i++) {
+            detector.record(SERVICE, "10.0.0.1:8081", 0, 10 * MILLI, now);
+        }
+        long expired = now + 11 * SECOND;
+
+        // When 再次被摘除，之后到期并恢复
+        for (int i = 0; i < 3; i++) {
+            detector.record(SERVICE, "10.0.0.1:8081", 0, 10 * MILLI, expired);
+        }
+        assertEquals(1, detector.getStats().get("ejected"));
+        detector.sweep(expired + 21 * SECOND);
+
+        // Then
+        assertEquals(0, detector.getStats().get("ejected"));
+        assertEquals(4, detector.available(SERVICE, pool, expired + 21 * SECOND).size());
+    }
+
+    @Test
+    void testPoolShowsEjectedMembers() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            detector.record(SERVICE, "10.0.0.1:8081", 0, 10 * MILLI, System.nanoTime());
+        }
+
+        // Then
+        List<?> members = detector.getPool(SERVICE);
+        assertEquals(4, members.size());
+        assertEquals(1, detector.getPool(SERVICE).stream().filter(member -> (Boolean) member.get("ejected")).count());
+    }
+}
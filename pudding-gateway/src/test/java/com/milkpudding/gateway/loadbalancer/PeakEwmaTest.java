@@ -0,0 +1,113 @@
+package com.milkpudding.gateway.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PeakEwma 测试类
+ */
+class PeakEwmaTest {
+
+    private static final long MILLI = 1_000_000L;
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void testPeakIsTakenImmediately() {
+        // Given
+        long now = System.nanoTime();
+        PeakEwma load = new PeakEwma(10 * SECOND, 10 * MILLI, now);
+
+        // When
+        load.start();
+        load.complete(200 * MILLI, now);
+
+        // Then
+        assertEquals(200.0, load.getEwmaNanos(now) / MILLI, 0.01);
+    }
+
+    @Test
+    void testLowerLatencyDecaysTowardsObservation() {
+        // Given
+        long now = System.nanoTime();
+        PeakEwma load = new PeakEwma(10 * SECOND, 100 * MILLI, now);
+
+        // When 经过一个时间常数后观测到10ms
+        load.start();
+        load.complete(10 * MILLI, now + 10 * SECOND);
+
+        // Then 新值约为 100/e + 10*(1-1/e)
+        double expected = 100 / Math.E + 10 * (1 - 1 / Math.E);
+        assertEquals(expected, load.getEwmaNanos(now + 10 * SECOND) / MILLI, 1.0);
+    }
+
+    @Test
+    void testIdleInstanceDecaysOnRead() {
+        // Given
+        long now = System.nanoTime();
+        PeakEwma load = new PeakEwma(10 * SECOND, 100 * MILLI, now);
+
+        // Then 空闲时间越长，读到的延迟越低
+        double later = load.getEwmaNanos(now + 10 * SECOND);
+        assertEquals(100 / Math.E, later / MILLI, 1.0);
+        assertTrue(load.getEwmaNanos(now + 30 * SECOND) < later);
+    }
+
+    @Test
+    void testCostGrowsWithInFlightRequests() {
+        // Given
+        long now = System.nanoTime();
+        PeakEwma load = new PeakEwma(10 * SECOND, 10 * MILLI, now);
+        double idle = load.cost(now);
+
+        // When
+        load.start();
+        load.start();
+
+        // Then
+        assertEquals(2, load.getInFlight());
+        assertEquals(idle * 3, load.cost(now), idle * 0.01);
+    }
+
+    @Test
+    void testCancelOnlyRaisesLatency() {
+        // Given
+        long now = System.nanoTime();
+        PeakEwma load = new PeakEwma(10 * SECOND, 50 * MILLI, now);
+
+        // When 取消时等待时间较短，不降低延迟
+        load.start();
+        load.cancel(5 * MILLI, now);
+
+        // Then
+        assertEquals(50.0, load.getEwmaNanos(now) / MILLI, 0.01);
+        assertEquals(0, load.getInFlight());
+
+        // When 等待时间超过当前延迟
+        load.start();
+        load.cancel(300 * MILLI, now);
+
+        // Then
+        assertEquals(300.0, load.getEwmaNanos(now) / MILLI, 0.01);
+    }
+
+    @Test
+    void testPickChoosesCheaperOfTwoDistinctCandidates() {
+        // Given 下标0代价最高
+        double[] costs = {100, 1, 2};
+        Random random = new Random(42);
+
+        // When
+        int[] picked = new int[costs.length];
+        for (int i = 0; i < 3000; i++) {
+            picked[PeakEwmaLoadBalancer.pick(costs.length, index -> costs[index], random)]++;
+        }
+
+        // Then 代价最高的实例只有两个候选都是它时才会被选中，而两个候选总是不同的
+        assertEquals(0, picked[0]);
+        assertTrue(picked[1] > picked[2]);
+        assertEquals(0, PeakEwmaLoadBalancer.pick(1, index -> costs[index], random));
+    }
+}
@@ -0,0 +1,87 @@
+package com.milkpudding.gateway.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LatencyHistogram 测试类
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void testBucketsCoverValuesWithBoundedError() {
+        // Given
+        long[] values = {0, 1, 127, 128, 129, 1_000, 65_535, 1_000_000, 123_456_789, 60_000_000_000L};
+
+        for (long value : values) {
+            // When
+            int index = LatencyHistogram.bucketIndex(value);
+            long highest = LatencyHistogram.highestValue(index);
+
+            // Then - 值落在桶内，桶宽不超过值的1/64
+            assertTrue(highest >= value, "value " + value);
+            assertTrue(highest - value <= value / 64, "value " + value);
+            assertTrue(index == 0 || LatencyHistogram.highestValue(index - 1) < value, "value " + value);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    void testPercentilesOverInterval() {
+        // Given - 1..10000微秒均匀分布
+        LatencyRecorder recorder = new LatencyRecorder();
+        long[] scratch = new long[LatencyHistogram.BUCKETS];
+        for (int i = 1; i <= 10_000; i++) {
+            recorder.record(i * 1_000L);
+        }
+
+        // When
+        recorder.roll(scratch, 1_000_000_000L);
+
+        // Then
+        assertEquals(5.0, recorder.getPercentileMillis(0), 5.0 / 64);
+        assertEquals(9.0, recorder.getPercentileMillis(1), 9.0 / 64);
+        assertEquals(9.9, recorder.getPercentileMillis(2), 9.9 / 64);
+        assertEquals(9.99, recorder.getPercentileMillis(3), 9.99 / 64);
+        assertEquals(10_000, recorder.getRps(), 0.001);
+
+        // When - 下一个区间只有慢请求，之前的数据不再计入
+        for (int i = 0; i < 10; i++) {
+            recorder.record(500_000_000L);
+        }
+        recorder.roll(scratch, 1_000_000_000L);
+
+        // Then
+        assertEquals(500.0, recorder.getPercentileMillis(0), 500.0 / 64);
+        assertEquals(10, recorder.getRps(), 0.001);
+        assertEquals(10_010, recorder.getTotal());
+    }
+
+    @Test
+    void testRecordingDoesNotAllocate() {
+        // Given
+        LatencyMetrics metrics = new LatencyMetrics(3600, 100, 3600);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < 100_000; i++) {
+            metrics.record("user-service", "10.0.0.1:8081", i);
+        }
+
+        // When
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 1_000_000; i++) {
+            metrics.record("user-service", "10.0.0.1:8081", i * 37L);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        metrics.shutdown();
+
+        // Then - 只允许测量本身的少量分配
+        assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+        Map<String, Object> result = metrics.getMetrics();
+        assertTrue(((Map<?, ?>) result.get("routes")).containsKey("user-service"));
+        assertTrue(((Map<?, ?>) result.get("instances")).containsKey("10.0.0.1:8081"));
+    }
+}
@@ -0,0 +1,163 @@
+package com.milkpudding.gateway.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BucketStore 测试类
+ */
+class BucketStoreTest {
+
+    private static final long MILLI = 1_000_000L;
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void testReturnsSameBucketForSameKey() {
+        // Given
+        long now = System.nanoTime();
+        BucketStore<TokenBucket> store = createStore(10, 60 * SECOND);
+
+        // When
+        TokenBucket first = store.get("10.0.0.1", now);
+        TokenBucket second = store.get("10.0.0.1", now + SECOND);
+
+        // Then
+        assertSame(first, second);
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void testNeverExceedsMaxSize() {
+        // Given
+        long now = System.nanoTime();
+        BucketStore<TokenBucket> store = createStore(100, 60 * SECOND);
+
+        // When
+        for (int i = 0; i < 10_000; i++) {
+            store.get("10.0." + (i >> 8) + "." + (i & 255), now + i);
+        }
+
+        // Then
+        assertEquals(100, store.size());
+        assertTrue(store.getRejections() > 0);
+    }
+
+    @Test
+    void testRemovesIdleBuckets() {
+        // Given
+        long now = System.nanoTime();
+        BucketStore<TokenBucket> store = createStore(10, 60 * SECOND);
+        store.get("10.0.0.1", now);
+        store.get("10.0.0.2", now + 30 * SECOND);
+
+        // When
+        int removed = store.removeIdle(now + 61 * SECOND);
+
+        // Then
+        assertEquals(1, removed);
+        assertEquals(1, store.size());
+        assertEquals(1, store.getIdleEvictions());
+    }
+
+    @Test
+    void testFrequentKeyIsNotDisplacedByOneOffKeys() {
+        // Given
+        long now = System.nanoTime();
+        BucketStore<TokenBucket> store = createStore(16, 60 * SECOND);
+        TokenBucket hot = store.get("10.0.0.1", now);
+        // 命中时的访问频率按毫秒采样
+        for (int i = 1; i <= 10; i++) {
+            store.get("10.0.0.1", now + i * MILLI);
+        }
+
+        // When - 大量只访问一次的新key
+        for (int i = 0; i < 1000; i++) {
+            store.get("192.168." + (i >> 8) + "." + (i & 255), now + SECOND + i * 1_000_000L);
+        }
+
+        // Then
+        assertSame(hot, store.get("10.0.0.1", now + 2 * SECOND));
+    }
+
+    @Test
+    void testRecreatedIdleBucketBehavesLikeOriginal() {
+        // Given - 令牌桶补满需要10秒，空闲时间配置为1秒
+        long now = System.nanoTime();
+        TokenBucket overflow = new TokenBucket(10, 1, now);
+        long idleNanos = Math.max(SECOND, overflow.getNanosToFill());
+        BucketStore<TokenBucket> store = new BucketStore<>(ip -> new TokenBucket(10, 1, now), () -> overflow, 10, idleNanos,
+            48, Runnable::run);
+        TokenBucket bucket = store.get("10.0.0.1", now);
+        for (int i = 0; i < 10; i++) {
+            bucket.tryConsume(now);
+        }
+
+        // When & Then - 未补满前不会被清理
+        assertEquals(0, store.removeIdle(now + 5 * SECOND));
+        assertEquals(10, bucket.getTokens(now + idleNanos));
+        assertEquals(1, store.removeIdle(now + idleNanos + SECOND));
+    }
+
+    @Test
+    void testRejectedKeysAreSpreadOverOverflowBuckets() {
+        // Given 存储已满且已有条目都比新key频繁
+        long now = System.nanoTime();
+        BucketStore<TokenBucket> store = createStore(4, 60 * SECOND);
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 5; j++) {
+                store.get("10.0.0." + i, now + j * MILLI);
+            }
+        }
+
+        // When
+        Set<TokenBucket> overflow = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < 256; i++) {
+            overflow.add(store.get("192.168.0." + i, now + SECOND));
+        }
+
+        // Then 未准入的客户端不共用同一个状态
+        // 频率草图按容量设置，大量新key可能因哈希冲突被准入
+        assertEquals(4, store.size());
+        assertEquals(256, store.getRejections() + store.getCapacityEvictions());
+        assertTrue(overflow.size() > 8, "overflow buckets used: " + overflow.size());
+    }
+
+    @Test
+    void testEvictionUsesVictimsSelectedByMaintenance() {
+        // Given 维护任务先排队，不在请求线程上执行
+        long now = System.nanoTime();
+        List<Runnable> tasks = new ArrayList<>();
+        BucketStore<TokenBucket> store = new BucketStore<>(ip -> new TokenBucket(100, 10), () -> new TokenBucket(100, 10),
+            4, 60 * SECOND, 48, tasks::add);
+        for (int i = 0; i < 4; i++) {
+            store.get("10.0.0." + i, now + i * MILLI);
+        }
+
+        // When 存储已满：第一个新key只提交一次维护任务
+        TokenBucket first = store.get("192.168.0.1", now + SECOND);
+        store.get("192.168.0.1", now + SECOND + MILLI);
+        store.get("192.168.0.1", now + SECOND + 2 * MILLI);
+        int queued = tasks.size();
+        tasks.forEach(Runnable::run);
+        TokenBucket admitted = store.get("192.168.0.1", now + SECOND + 3 * MILLI);
+
+        // Then 维护任务选出候选后，访问更频繁的新key替换最旧的条目
+        assertEquals(1, queued);
+        assertNotSame(first, admitted);
+        assertSame(admitted, store.get("192.168.0.1", now + SECOND + 4 * MILLI));
+        assertEquals(4, store.size());
+        assertEquals(1, store.getCapacityEvictions());
+    }
+
+    private static BucketStore<TokenBucket> createStore(int maxSize, long idleNanos) {
+        return new BucketStore<>(ip -> new TokenBucket(100, 10), () -> new TokenBucket(100, 10), maxSize, idleNanos, 48,
+            Runnable::run);
+    }
+}
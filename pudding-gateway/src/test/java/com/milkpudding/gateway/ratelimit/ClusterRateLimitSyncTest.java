@@ -0,0 +1,125 @@
+package com.milkpudding.gateway.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ClusterRateLimitSync 测试类
+ * 多个同步器共用一个进程内共享存储，模拟多个网关副本
+ */
+class ClusterRateLimitSyncTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final long SYNC_INTERVAL = SECOND / 10;
+
+    @Test
+    void testClusterTotalStaysNearLimit() {
+        for (RateLimitAlgorithm algorithm : RateLimitAlgorithm.values()) {
+            // Given - 3个副本，限额每秒1000次，突发1000次
+            ClusterCounterStore shared = new InMemoryClusterCounterStore();
+            RateLimitPolicy policy = algorithm.createPolicy(1000, 1000);
+            Replica[] replicas = new Replica[3];
+            for (int i = 0; i < replicas.length; i++) {
+                replicas[i] = new Replica(new ClusterRateLimitSync(true, shared, "test:", 100), policy);
+            }
+
+            // When - 同一客户端每秒50000次请求轮流打到各副本，持续22秒，只统计后20秒
+            long start = System.nanoTime();
+            long allowed = 0;
+            long nextSync = start + SYNC_INTERVAL;
+            for (int i = 0; i < 1_100_000; i++) {
+                long now = start + i * (SECOND / 50_000);
+                if (now >= nextSync) {
+                    for (Replica replica : replicas) {
+                        replica.sync(now);
+                    }
+                    nextSync += SYNC_INTERVAL;
+                }
+                long result = replicas[i % replicas.length].tryAcquire("10.0.0.1", now);
+                if (i >= 100_000 && RateLimiter.isAllowed(result)) {
+                    allowed++;
+                }
+            }
+
+            // Then - 稳定后集群总放行量约为每秒1000次，单副本限流时会接近3倍。
+            // 滑动窗口不能像令牌桶和GCRA那样记欠额，同步间隔内多放行的部分只按上一窗口的权重部分抵扣，
+            // 偏差取决于同步时刻与窗口边界的相对位置（窗口原点是类加载时间），实测最多高出约11%
+            long expected = 20_000;
+            double tolerance = algorithm == RateLimitAlgorithm.SLIDING_WINDOW ? 0.15 : 0.05;
+            assertTrue(Math.abs(allowed - expected) <= expected * tolerance,
+                algorithm + " allowed " + allowed + ", expected about " + expected);
+        }
+    }
+
+    @Test
+    void testStoreFailureFallsBackToLocalLimit() {
+        // Given
+        ClusterCounterStore failing = new ClusterCounterStore() {
+            @Override
+            public Map<String, Long> incrementAll(Map<String, Long> deltas, long ttlMillis) throws IOException {
+                throw new IOException("connection refused");
+            }
+
+            @Override
+            public String getType() {
+                return "failing";
+            }
+        };
+        ClusterRateLimitSync sync = new ClusterRateLimitSync(true, failing, "test:", 100);
+        Replica replica = new Replica(sync, RateLimitAlgorithm.GCRA.createPolicy(10, 1));
+        long now = System.nanoTime();
+
+        // When
+        int allowed = 0;
+        for (int i = 0; i < 20; i++) {
+            if (RateLimiter.isAllowed(replica.tryAcquire("10.0.0.1", now))) {
+                allowed++;
+            }
+        }
+        replica.sync(now);
+
+        // Then
+        assertEquals(10, allowed);
+        assertEquals(1L, sync.getStats().get("failures"));
+        assertEquals(false, sync.getStats().get("healthy"));
+    }
+
+    @Test
+    void testDisabledSyncReturnsLocalLimiter() {
+        // Given
+        ClusterRateLimitSync sync = new ClusterRateLimitSync(false, new InMemoryClusterCounterStore(), "test:", 100);
+        RateLimiter local = RateLimitAlgorithm.GCRA.createPolicy(10, 1).newLimiter();
+
+        // When & Then
+        assertSame(local, sync.wrap(local));
+        assertEquals(0, sync.getEstimatedOverheadBytes());
+    }
+
+    /**
+     * 一个网关副本的单个路由
+     */
+    private static final class Replica {
+        private final ClusterRateLimitSync sync;
+        private final RateLimitPolicy policy;
+        private final BucketStore<RateLimiter> store;
+
+        Replica(ClusterRateLimitSync sync, RateLimitPolicy policy) {
+            this.sync = sync;
+            this.policy = policy;
+            this.store = new BucketStore<>(ip -> sync.wrap(policy.newLimiter()), policy::newLimiter, 100,
+                policy.getNanosToFill(), policy.getEstimatedBytes(), Runnable::run);
+        }
+
+        long tryAcquire(String ip, long now) {
+            return store.get(ip, now).tryAcquire(now);
+        }
+
+        void sync(long now) {
+            sync.sync("route", store, policy, now);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.milkpudding.gateway.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * GcraRateLimiter 测试类
+ */
+class GcraRateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void testBurstUpToCapacity() {
+        // Given
+        long now = System.nanoTime();
+        RateLimiter limiter = new GcraRateLimiter.Policy(10, 1).newLimiter();
+
+        // When & Then
+        for (int i = 9; i >= 0; i--) {
+            assertEquals(i, limiter.tryAcquire(now));
+        }
+        long result = limiter.tryAcquire(now);
+        assertFalse(RateLimiter.isAllowed(result));
+        assertEquals(SECOND, RateLimiter.retryAfterNanos(result));
+    }
+
+    @Test
+    void testAllowsOneRequestPerEmissionInterval() {
+        // Given
+        long now = System.nanoTime();
+        RateLimiter limiter = new GcraRateLimiter.Policy(5, 10).newLimiter();
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire(now);
+        }
+
+        // When & Then - 每100ms放行一次
+        assertFalse(RateLimiter.isAllowed(limiter.tryAcquire(now + SECOND / 20)));
+        assertEquals(0, limiter.tryAcquire(now + SECOND / 10));
+        assertFalse(RateLimiter.isAllowed(limiter.tryAcquire(now + SECOND / 10)));
+    }
+
+    @Test
+    void testMatchesTokenBucket() {
+        // Given
+        long now = System.nanoTime();
+        RateLimiter gcra = new GcraRateLimiter.Policy(20, 5).newLimiter();
+        TokenBucket bucket = new TokenBucket(20, 5, now);
+
+        // When & Then - 同样的请求序列放行结果一致
+        for (int i = 0; i < 2000; i++) {
+            long time = now + i * (SECOND / 13);
+            assertEquals(bucket.tryConsume(time), RateLimiter.isAllowed(gcra.tryAcquire(time)), "request " + i);
+        }
+    }
+
+    @Test
+    void testRejectsZeroRefillRate() {
+        assertThrows(IllegalArgumentException.class, () -> new GcraRateLimiter.Policy(10, 0));
+    }
+}
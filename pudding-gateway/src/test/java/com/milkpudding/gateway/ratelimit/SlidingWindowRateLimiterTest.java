@@ -0,0 +1,86 @@
+package com.milkpudding.gateway.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SlidingWindowRateLimiter 测试类
+ */
+class SlidingWindowRateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void testLimitWithinWindow() {
+        // Given - 窗口10秒，最多10次
+        long now = System.nanoTime();
+        RateLimiter limiter = new SlidingWindowRateLimiter.Policy(10, 1).newLimiter();
+
+        // When
+        int allowed = 0;
+        for (int i = 0; i < 20; i++) {
+            if (RateLimiter.isAllowed(limiter.tryAcquire(now + i * 1_000_000L))) {
+                allowed++;
+            }
+        }
+
+        // Then
+        assertEquals(10, allowed);
+    }
+
+    @Test
+    void testRetryAfterIsAccurate() {
+        // Given
+        long now = System.nanoTime();
+        RateLimiter limiter = new SlidingWindowRateLimiter.Policy(10, 1).newLimiter();
+        long result = 0;
+        while (RateLimiter.isAllowed(result)) {
+            result = limiter.tryAcquire(now);
+        }
+
+        // When
+        long wait = RateLimiter.retryAfterNanos(result);
+
+        // Then - 等待时间之前仍被拒绝，之后放行
+        assertTrue(wait > 0);
+        assertFalse(RateLimiter.isAllowed(limiter.tryAcquire(now + wait - 1_000_000L)));
+        assertTrue(RateLimiter.isAllowed(limiter.tryAcquire(now + wait)));
+    }
+
+    @Test
+    void testLongRunRateMatchesRefillRate() {
+        // Given - 窗口5秒，最多50次，即每秒10次
+        long now = System.nanoTime();
+        RateLimiter limiter = new SlidingWindowRateLimiter.Policy(50, 10).newLimiter();
+
+        // When - 每毫秒请求一次，持续100秒
+        int allowed = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (RateLimiter.isAllowed(limiter.tryAcquire(now + i * 1_000_000L))) {
+                allowed++;
+            }
+        }
+
+        // Then
+        assertTrue(allowed <= 1000 + 50 && allowed >= 900, "allowed " + allowed);
+    }
+
+    @Test
+    void testWindowsRollWhenCreatedLongAfterStart() {
+        // Given - 窗口1秒，创建时窗口编号已超过编号周期的一半
+        long now = System.nanoTime() + 9_000_000L * SECOND;
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(new SlidingWindowRateLimiter.Policy(10, 10), now);
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire(now);
+        }
+
+        // When
+        long rejected = limiter.tryAcquire(now);
+        long later = limiter.tryAcquire(now + 3 * SECOND);
+
+        // Then - 两个窗口之后计数全部失效
+        assertFalse(RateLimiter.isAllowed(rejected));
+        assertEquals(9, later);
+    }
+}
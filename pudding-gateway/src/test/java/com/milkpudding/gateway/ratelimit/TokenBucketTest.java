@@ -0,0 +1,105 @@
+package com.milkpudding.gateway.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TokenBucket 测试类
+ */
+class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void testBurstUpToCapacity() {
+        // Given
+        long now = System.nanoTime();
+        TokenBucket bucket = new TokenBucket(100, 10, now);
+
+        // When
+        int allowed = 0;
+        for (int i = 0; i < 150; i++) {
+            if (bucket.tryConsume(now)) {
+                allowed++;
+            }
+        }
+
+        // Then
+        assertEquals(100, allowed);
+        assertEquals(0, bucket.getTokens(now));
+    }
+
+    @Test
+    void testSubSecondRefill() {
+        // Given
+        long now = System.nanoTime();
+        TokenBucket bucket = new TokenBucket(10, 10, now);
+        for (int i = 0; i < 10; i++) {
+            bucket.tryConsume(now);
+        }
+
+        // When & Then - 每100ms补充一个令牌，而不是每秒一次补充10个
+        assertFalse(bucket.tryConsume(now + SECOND / 20));
+        assertTrue(bucket.tryConsume(now + SECOND / 10));
+        assertFalse(bucket.tryConsume(now + SECOND / 10));
+        assertTrue(bucket.tryConsume(now + SECOND / 5));
+    }
+
+    @Test
+    void testTryAcquireReportsRemainingAndWait() {
+        // Given
+        long now = System.nanoTime();
+        TokenBucket bucket = new TokenBucket(2, 10, now);
+
+        // When & Then
+        assertEquals(1, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        long result = bucket.tryAcquire(now);
+        assertFalse(RateLimiter.isAllowed(result));
+        assertEquals(SECOND / 10, RateLimiter.retryAfterNanos(result), 16.0);
+    }
+
+    @Test
+    void testRefillIsCappedAtCapacity() {
+        // Given
+        long now = System.nanoTime();
+        TokenBucket bucket = new TokenBucket(5, 100, now);
+        bucket.tryConsume(now);
+
+        // When & Then
+        assertEquals(5, bucket.getTokens(now + 60 * SECOND));
+    }
+
+    @Test
+    void testNeverExceedsRateUnderContention() throws InterruptedException {
+        // Given
+        TokenBucket bucket = new TokenBucket(100, 10_000);
+        AtomicLong allowed = new AtomicLong();
+        Thread[] threads = new Thread[8];
+        long start = System.nanoTime();
+
+        // When
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                long end = System.nanoTime() + SECOND / 5;
+                while (System.nanoTime() < end) {
+                    if (bucket.tryConsume()) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / (double) SECOND;
+
+        // Then
+        assertTrue(allowed.get() <= 100 + 10_000 * elapsedSeconds,
+            "allowed " + allowed.get() + " in " + elapsedSeconds + "s");
+    }
+}
@@ -0,0 +1,79 @@
+package com.milkpudding.gateway.route;
+
+import com.ecwid.consul.v1.ConsulClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ConsulRouteDefinitionLocator 测试类
+ */
+class ConsulRouteDefinitionLocatorTest {
+
+    private static final String ROUTES = """
+        routes:
+          - id: orders
+            uri: lb://pudding-api
+            predicates:
+              - Path=/api/orders/**
+        """;
+
+    private ConsulRouteDefinitionLocator locator;
+
+    @BeforeEach
+    void setUp() {
+        locator = new ConsulRouteDefinitionLocator(new DefaultListableBeanFactory().getBeanProvider(ConsulClient.class),
+            List.of(new PathRoutePredicateFactory()), List.of(), RouteDefinitionValidatorTest.configurationService(),
+            false, "config/pudding-gateway/routes", 55, 5, "");
+    }
+
+    @Test
+    void testDeletedKeyKeepsLastGoodRoutes() {
+        // Given
+        assertTrue(locator.update(ROUTES));
+
+        // When 路由键被删除
+        boolean updated = locator.update(null);
+
+        // Then
+        assertFalse(updated);
+        assertEquals(List.of("orders"), ids());
+        assertEquals(1L, locator.getStats().get("rejections"));
+    }
+
+    @Test
+    void testEmptyRouteListClearsRoutes() {
+        // Given
+        assertTrue(locator.update(ROUTES));
+
+        // When 显式写入空路由列表
+        boolean updated = locator.update("routes: []");
+
+        // Then
+        assertTrue(updated);
+        assertTrue(ids().isEmpty());
+    }
+
+    @Test
+    void testInvalidRouteTableKeepsLastGoodRoutes() {
+        // Given
+        assertTrue(locator.update(ROUTES));
+
+        // When
+        boolean updated = locator.update(ROUTES.replace("lb://pudding-api", "file:///tmp"));
+
+        // Then
+        assertFalse(updated);
+        assertEquals(List.of("orders"), ids());
+    }
+
+    private List<String> ids() {
+        return locator.getRouteDefinitions().map(RouteDefinition::getId).collectList().block();
+    }
+}
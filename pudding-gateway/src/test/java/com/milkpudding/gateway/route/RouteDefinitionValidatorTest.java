@@ -0,0 +1,117 @@
+package com.milkpudding.gateway.route;
+
+import com.milkpudding.gateway.config.GatewayConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.gateway.filter.FilterDefinition;
+import org.springframework.cloud.gateway.filter.factory.StripPrefixGatewayFilterFactory;
+import org.springframework.cloud.gateway.handler.predicate.MethodRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.validation.Validator;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RouteDefinitionValidator 测试类
+ */
+class RouteDefinitionValidatorTest {
+
+    private final RouteDefinitionValidator validator = validator();
+
+    private static RouteDefinitionValidator validator() {
+        return new RouteDefinitionValidator(
+            List.of(new PathRoutePredicateFactory(), new MethodRoutePredicateFactory()),
+            List.of(new StripPrefixGatewayFilterFactory()),
+            configurationService(), GatewayConfig.ROUTE_IDS);
+    }
+
+    static ConfigurationService configurationService() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("conversionService", DefaultConversionService.getSharedInstance());
+        return new ConfigurationService(beanFactory,
+            beanFactory.getBeanProvider(ConversionService.class), beanFactory.getBeanProvider(Validator.class));
+    }
+
+    @Test
+    void testValidRouteTable() {
+        // Given
+        RouteDefinition definition = definition("orders", "lb://pudding-api", "Path=/api/orders/**");
+        definition.getFilters().add(new FilterDefinition("StripPrefix=1"));
+
+        // Then
+        assertTrue(validator.validate(List.of(definition)).isEmpty());
+    }
+
+    @Test
+    void testReportsEveryInvalidRoute() {
+        // Given
+        RouteDefinition duplicate = definition("orders", "lb://pudding-api", "Path=/api/orders/**");
+        RouteDefinition badScheme = definition("files", "file:///tmp", "Path=/files/**");
+        RouteDefinition badPredicate = definition("carts", "lb://pudding-api", "Cookie=session,.*");
+        RouteDefinition badFilter = definition("users", "lb://pudding-user", "Path=/api/users/**");
+        badFilter.getFilters().add(new FilterDefinition("Retry=3"));
+
+        // When
+        List<String> errors = validator.validate(List.of(
+            definition("orders", "lb://pudding-api", "Path=/api/orders/**"),
+            duplicate, badScheme, badPredicate, badFilter));
+
+        // Then
+        assertEquals(4, errors.size());
+        assertTrue(errors.get(0).contains("duplicate id"));
+        assertTrue(errors.get(1).contains("unsupported uri scheme"));
+        assertTrue(errors.get(2).contains("unknown predicate: Cookie"));
+        assertTrue(errors.get(3).contains("unknown filter: Retry"));
+    }
+
+    @Test
+    void testRouteWithoutPredicateIsRejected() {
+        // Given
+        RouteDefinition definition = new RouteDefinition();
+        definition.setId("orders");
+        definition.setUri(URI.create("lb://pudding-api"));
+
+        // Then
+        assertEquals(List.of("orders: at least one predicate is required"), validator.validate(List.of(definition)));
+    }
+
+    @Test
+    void testArgsThatDoNotBindAreRejected() {
+        // Given
+        RouteDefinition definition = definition("orders", "lb://pudding-api", "Path=/api/orders/**");
+        definition.getFilters().add(new FilterDefinition("StripPrefix=two"));
+
+        // When
+        List<String> errors = validator.validate(List.of(definition));
+
+        // Then
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).startsWith("orders: invalid args for filter StripPrefix"));
+    }
+
+    @Test
+    void testBuiltInRouteIdIsRejected() {
+        // Given 与代码中定义的路由同名
+        RouteDefinition definition = definition(GatewayConfig.API_ROUTE_ID, "lb://pudding-api", "Path=/api/orders/**");
+
+        // Then
+        assertEquals(List.of("api-service: id is already used by a built-in route"),
+            validator.validate(List.of(definition)));
+    }
+
+    private static RouteDefinition definition(String id, String uri, String predicate) {
+        RouteDefinition definition = new RouteDefinition();
+        definition.setId(id);
+        definition.setUri(URI.create(uri));
+        definition.getPredicates().add(new PredicateDefinition(predicate));
+        return definition;
+    }
+}
@@ -0,0 +1,98 @@
+package com.milkpudding.gateway.route;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.route.Route;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RouteIndex 测试类
+ */
+class RouteIndexTest {
+
+    @Test
+    void testCandidatesFollowPathPrefixAndRouteOrder() {
+        // Given
+        RouteIndex index = RouteIndex.compile(List.of(
+            route("user-service", "/api/v1/users/**"),
+            route("auth-service", "/api/v1/auth/**"),
+            route("health-check", "/actuator/**"),
+            route("api-service", "/api/**")), Map.of());
+
+        // Then
+        assertEquals(List.of("user-service", "api-service"), ids(index.candidates("/api/v1/users/42")));
+        assertEquals(List.of("user-service", "api-service"), ids(index.candidates("/api/v1/users")));
+        assertEquals(List.of("auth-service", "api-service"), ids(index.candidates("/api/v1/auth/login")));
+        assertEquals(List.of("api-service"), ids(index.candidates("/api/v1/usersx")));
+        assertEquals(List.of("health-check"), ids(index.candidates("/actuator/health")));
+        assertEquals(List.of(), ids(index.candidates("/login.html")));
+    }
+
+    @Test
+    void testUnindexedAndCatchAllRoutesAreAlwaysCandidates() {
+        // Given
+        Route unindexed = Route.async().id("host-route").uri("lb://pudding-user").predicate(exchange -> true).build();
+        RouteIndex index = RouteIndex.compile(List.of(
+            route("user-service", "/api/v1/users/**"),
+            unindexed,
+            route("fallback", "/**")), Map.of());
+
+        // Then
+        assertEquals(List.of("user-service", "host-route", "fallback"), ids(index.candidates("/api/v1/users/1")));
+        assertEquals(List.of("host-route", "fallback"), ids(index.candidates("/static/app.js")));
+        assertEquals(1, index.getStats().get("indexedRoutes"));
+    }
+
+    @Test
+    void testDefinitionPatternsIndexRoutesWithoutMetadata() {
+        // Given
+        Route orders = Route.async().id("orders").uri("lb://pudding-api").predicate(exchange -> true).build();
+        RouteIndex index = RouteIndex.compile(List.of(orders, route("api-service", "/api/**")),
+            Map.of("orders", List.of("/api/orders/{id}", "/api/carts/**")));
+
+        // Then
+        assertEquals(List.of("orders", "api-service"), ids(index.candidates("/api/orders/7")));
+        assertEquals(List.of("orders", "api-service"), ids(index.candidates("/api/carts")));
+        assertEquals(List.of("api-service"), ids(index.candidates("/api/users")));
+    }
+
+    @Test
+    void testEncodedPathFallsBackToAllRoutes() {
+        // Given
+        RouteIndex index = RouteIndex.compile(List.of(
+            route("user-service", "/api/v1/users/**"),
+            route("health-check", "/actuator/**")), Map.of());
+
+        // Then
+        assertEquals(2, index.candidates("/api/v1/%75sers/1").length);
+        assertEquals(2, index.candidates("/actuator;jsessionid=1/health").length);
+    }
+
+    @Test
+    void testPrefixOfPattern() {
+        assertEquals("/api/v1/users", RouteIndex.prefixOf("/api/v1/users/**"));
+        assertEquals("/api", RouteIndex.prefixOf("/api/"));
+        assertEquals("/foo", RouteIndex.prefixOf("/foo/{id}/bar"));
+        assertEquals("/static", RouteIndex.prefixOf("/static/*.css"));
+        assertEquals("", RouteIndex.prefixOf("/**"));
+        assertEquals("", RouteIndex.prefixOf("/*.html"));
+        assertNull(RouteIndex.prefixOf("#{'/'+serviceId+'/**'}"));
+    }
+
+    private static Route route(String id, String pattern) {
+        return Route.async()
+            .id(id)
+            .uri("lb://pudding-user")
+            .predicate(exchange -> true)
+            .metadata(RouteIndex.PATH_PATTERNS_METADATA, pattern)
+            .build();
+    }
+
+    private static List<String> ids(Route[] routes) {
+        return Arrays.stream(routes).map(Route::getId).toList();
+    }
+}
@@ -0,0 +1,47 @@
+package com.milkpudding.gateway.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TailSampler 测试类
+ */
+class TailSamplerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(1500);
+
+    @Test
+    void testKeepsOnlySlowAndFailedRequests() {
+        // Given
+        TailSampler sampler = new TailSampler(1000, 0);
+
+        // Then
+        assertNull(sampler.sample(200, FAST, false));
+        assertNull(sampler.sample(404, FAST, false));
+        assertEquals(TailSampler.Reason.SLOW, sampler.sample(200, SLOW, false));
+        assertEquals(TailSampler.Reason.ERROR, sampler.sample(502, FAST, false));
+        assertEquals(TailSampler.Reason.ERROR, sampler.sample(0, SLOW, true));
+    }
+
+    @Test
+    void testBaselineRateKeepsFractionOfNormalRequests() {
+        // Given
+        TailSampler sampler = new TailSampler(1000, 0.1);
+        int requests = 100_000;
+
+        // When
+        int kept = 0;
+        for (int i = 0; i < requests; i++) {
+            if (sampler.sample(200, FAST, false) != null) {
+                kept++;
+            }
+        }
+
+        // Then
+        assertEquals(0.1, (double) kept / requests, 0.01);
+    }
+}
@@ -0,0 +1,70 @@
+package com.milkpudding.gateway.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TraceContext 测试类
+ */
+class TraceContextTest {
+
+    private static final String TRACEPARENT = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+    @Test
+    void testIncomingTraceparentIsContinued() {
+        // When
+        TraceContext context = TraceContext.fromTraceparent(TRACEPARENT);
+
+        // Then - 沿用traceId，上游span成为父span，网关生成新的span
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", context.getTraceId());
+        assertEquals("00f067aa0ba902b7", context.getParentSpanId());
+        assertNotEquals("00f067aa0ba902b7", context.getSpanId());
+        assertTrue(context.isSampled());
+
+        String forwarded = context.toTraceparent();
+        assertTrue(TraceContext.isValid(forwarded));
+        assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-" + context.getSpanId() + "-01", forwarded);
+    }
+
+    @Test
+    void testInvalidTraceparentStartsNewTrace() {
+        // Given - 大写、全0的traceId、长度错误
+        String[] invalid = {
+            TRACEPARENT.toUpperCase(),
+            "00-00000000000000000000000000000000-00f067aa0ba902b7-01",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000000-01",
+            TRACEPARENT + "-extra",
+            "garbage",
+            null
+        };
+
+        for (String traceparent : invalid) {
+            // When
+            TraceContext context = TraceContext.fromTraceparent(traceparent);
+
+            // Then
+            assertNull(context.getParentSpanId());
+            assertNotEquals("4bf92f3577b34da6a3ce929d0e0e4736", context.getTraceId());
+            assertTrue(TraceContext.isValid(context.toTraceparent()));
+        }
+    }
+
+    @Test
+    void testGeneratedIdsAreUnique() {
+        // Given
+        int count = 200_000;
+        Set<String> ids = new HashSet<>();
+
+        // When
+        for (int i = 0; i < count; i++) {
+            ids.add(TraceContext.fromTraceparent(null).getTraceId());
+        }
+
+        // Then
+        assertEquals(count, ids.size());
+    }
+}
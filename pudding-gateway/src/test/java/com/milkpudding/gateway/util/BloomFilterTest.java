@@ -0,0 +1,93 @@
+package com.milkpudding.gateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BloomFilter 测试类
+ */
+class BloomFilterTest {
+
+    @Test
+    void testNoFalseNegatives() {
+        // Given
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+
+        // When
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("jti-" + i);
+        }
+
+        // Then
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("jti-" + i));
+        }
+    }
+
+    @Test
+    void testFalsePositiveRateAtExpectedSize() {
+        // Given
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("jti-" + i);
+        }
+
+        // When
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // Then 位数向上取整为2的幂，实际误判率不高于期望值
+        assertTrue(falsePositives < 1_000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void testSizing() {
+        // When
+        BloomFilter filter = BloomFilter.create(100_000, 0.01);
+        BloomFilter tiny = BloomFilter.create(0, 0.01);
+
+        // Then
+        assertEquals(1, Integer.bitCount(filter.bitSize()));
+        assertTrue(filter.bitSize() >= 958_506);
+        assertTrue(filter.getNumHashes() >= 1 && filter.getNumHashes() <= 16);
+        assertEquals(64, tiny.bitSize());
+        assertFalse(tiny.mightContain("jti-1"));
+    }
+
+    @Test
+    void testConcurrentPutsAreNotLost() throws Exception {
+        // Given
+        BloomFilter filter = BloomFilter.create(40_000, 0.01);
+        List<Thread> threads = new ArrayList<>();
+
+        // When 多个线程同时写入同一个long
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    filter.put("jti-" + offset + "-" + i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Then
+        for (int t = 0; t < 4; t++) {
+            for (int i = 0; i < 10_000; i++) {
+                assertTrue(filter.mightContain("jti-" + t + "-" + i));
+            }
+        }
+    }
+}
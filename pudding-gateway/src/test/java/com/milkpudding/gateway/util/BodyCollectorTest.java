@@ -0,0 +1,48 @@
+package com.milkpudding.gateway.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BodyCollector 测试类
+ */
+class BodyCollectorTest {
+
+    @Test
+    void testChunksAreCopiedWithoutConsumingBuffers() {
+        // Given
+        BodyCollector collector = new BodyCollector(4096);
+        DataBuffer first = DefaultDataBufferFactory.sharedInstance.wrap(new byte[1000]);
+        DataBuffer second = DefaultDataBufferFactory.sharedInstance.wrap(new byte[] {1, 2, 3});
+
+        // When 超过初始容量后扩容
+        collector.append(first);
+        collector.append(second);
+
+        // Then 原缓冲区仍可写出
+        byte[] body = collector.toByteArray();
+        assertEquals(1003, body.length);
+        assertEquals(3, body[1002]);
+        assertEquals(1000, first.readableByteCount());
+        assertEquals(3, second.readableByteCount());
+        assertFalse(collector.isAbandoned());
+    }
+
+    @Test
+    void testBodyOverLimitIsAbandoned() {
+        // Given
+        BodyCollector collector = new BodyCollector(4);
+        collector.append(DefaultDataBufferFactory.sharedInstance.wrap(new byte[] {1, 2, 3}));
+
+        // When
+        collector.append(DefaultDataBufferFactory.sharedInstance.wrap(new byte[] {4, 5}));
+        collector.append(DefaultDataBufferFactory.sharedInstance.wrap(new byte[] {6}));
+
+        // Then
+        assertTrue(collector.isAbandoned());
+        assertNull(collector.toByteArray());
+    }
+}
@@ -0,0 +1,65 @@
+package com.milkpudding.gateway.util;
+
+import cn.hutool.json.JSONUtil;
+import com.milkpudding.gateway.common.Result;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CannedResponse 测试类
+ */
+class CannedResponseTest {
+
+    @Test
+    void testBodyMatchesSerializedResult() {
+        // When
+        CannedResponse canned = CannedResponse.of(HttpStatus.TOO_MANY_REQUESTS, "Rate limit exceeded");
+
+        // Then - 与逐次序列化的响应体完全一致
+        String expected = JSONUtil.toJsonStr(Result.error(429, "Rate limit exceeded"));
+        assertEquals(expected, new String(canned.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testWriteSetsStatusHeadersAndBody() {
+        // Given
+        CannedResponse canned = CannedResponse.of(HttpStatus.UNAUTHORIZED, "Unauthorized access");
+        String expected = JSONUtil.toJsonStr(Result.error(401, "Unauthorized access"));
+
+        // When
+        MockServerHttpResponse response = new MockServerHttpResponse();
+        canned.write(response).block();
+
+        // Then
+        assertEquals(401, response.getStatusCode().value());
+        assertEquals("application/json", response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        assertEquals(String.valueOf(expected.length()), response.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH));
+        assertEquals("*", response.getHeaders().getFirst("Access-Control-Allow-Origin"));
+        assertEquals(expected, response.getBodyAsString().block());
+    }
+
+    @Test
+    void testNettyBodyIsSharedAndSurvivesRelease() {
+        // Given
+        CannedResponse canned = CannedResponse.of(HttpStatus.SERVICE_UNAVAILABLE, "Service overloaded, please retry later");
+        NettyDataBufferFactory factory = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+        String expected = new String(canned.getBody(), StandardCharsets.UTF_8);
+
+        // When - 每次写出后缓冲区都会被释放
+        for (int i = 0; i < 3; i++) {
+            MockServerHttpResponse response = new MockServerHttpResponse(factory);
+            canned.write(response).block();
+
+            // Then - 共享内存不会被释放，后续请求仍然得到完整响应体
+            assertEquals(expected, response.getBodyAsString().block());
+        }
+    }
+}
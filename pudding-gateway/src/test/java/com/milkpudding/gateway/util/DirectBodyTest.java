@@ -0,0 +1,55 @@
+package com.milkpudding.gateway.util;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DirectBody 测试类
+ */
+class DirectBodyTest {
+
+    private static final byte[] CONTENT = "body{margin:0}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testEveryViewReadsTheWholeContent() {
+        // Given
+        DirectBody body = DirectBody.of(CONTENT);
+
+        // When 读取一个视图不影响下一个
+        DataBuffer first = body.wrap(DefaultDataBufferFactory.sharedInstance);
+        byte[] read = new byte[first.readableByteCount()];
+        first.read(read);
+        DataBuffer second = body.wrap(DefaultDataBufferFactory.sharedInstance);
+
+        // Then
+        assertArrayEquals(CONTENT, read);
+        assertEquals(CONTENT.length, second.readableByteCount());
+        assertEquals(CONTENT.length, body.length());
+    }
+
+    @Test
+    void testNettyViewSurvivesRelease() {
+        // Given
+        DirectBody body = DirectBody.of(CONTENT);
+        NettyDataBufferFactory factory = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+
+        // When 写出后缓冲区被释放
+        for (int i = 0; i < 3; i++) {
+            DataBuffer view = body.wrap(factory);
+            byte[] read = new byte[view.readableByteCount()];
+            view.read(read);
+            DataBufferUtils.release(view);
+
+            // Then 共享内存不会被释放
+            assertArrayEquals(CONTENT, read);
+        }
+    }
+}
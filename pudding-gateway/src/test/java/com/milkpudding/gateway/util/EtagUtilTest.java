@@ -0,0 +1,38 @@
+package com.milkpudding.gateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EtagUtil 测试类
+ */
+class EtagUtilTest {
+
+    @Test
+    void testIfNoneMatchUsesWeakComparison() {
+        assertTrue(EtagUtil.matches(List.of("\"a\", \"b\""), "\"b\""));
+        assertTrue(EtagUtil.matches(List.of("W/\"b\""), "\"b\""));
+        assertTrue(EtagUtil.matches(List.of("*"), "\"b\""));
+        assertFalse(EtagUtil.matches(List.of("\"a\""), "\"b\""));
+        assertFalse(EtagUtil.matches(null, "\"b\""));
+    }
+
+    @Test
+    void testEtagDependsOnlyOnContent() {
+        // Given
+        byte[] body = "{\"id\":42}".getBytes(StandardCharsets.UTF_8);
+        byte[] padded = "{\"id\":42}   ".getBytes(StandardCharsets.UTF_8);
+
+        // When
+        String etag = EtagUtil.of(body, body.length);
+
+        // Then 强ETag，只按指定长度的内容计算
+        assertTrue(etag.matches("\"[A-Za-z0-9_-]{22}\""));
+        assertEquals(etag, EtagUtil.of(padded, body.length));
+        assertNotEquals(etag, EtagUtil.of(padded, padded.length));
+    }
+}
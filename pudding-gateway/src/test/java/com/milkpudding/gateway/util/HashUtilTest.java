@@ -0,0 +1,38 @@
+package com.milkpudding.gateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HashUtil 测试类
+ */
+class HashUtilTest {
+
+    @Test
+    void testMixIsDeterministic() {
+        assertEquals(HashUtil.mix64("10.0.0.1".hashCode()), HashUtil.mix64("10.0.0.1".hashCode()));
+        assertNotEquals(HashUtil.mix64(1), HashUtil.mix64(2));
+    }
+
+    @Test
+    void testConsecutiveHashCodesSpreadOverHighAndLowBits() {
+        // Given 连续的hashCode只有低位不同
+        Set<Integer> low = new HashSet<>();
+        Set<Integer> high = new HashSet<>();
+
+        // When 取低10位和高10位作为下标
+        for (int i = 0; i < 1000; i++) {
+            long hash = HashUtil.mix64(i);
+            low.add((int) hash & 1023);
+            high.add((int) (hash >>> 54));
+        }
+
+        // Then 两组下标都分散（随机分布时期望约632个不同值）
+        assertTrue(low.size() > 550, "low bits: " + low.size());
+        assertTrue(high.size() > 550, "high bits: " + high.size());
+    }
+}
@@ -0,0 +1,81 @@
+package com.milkpudding.gateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JwtVerifier 测试类
+ */
+class JwtVerifierTest {
+
+    private final JwtUtil jwtUtil = new JwtUtil();
+
+    @Test
+    void testVerifyGeneratedToken() {
+        // Given
+        String token = jwtUtil.generateToken("user-001", "milk", Map.of("role", "admin"));
+
+        // When
+        JwtClaims claims = jwtUtil.verifyToken(token);
+
+        // Then
+        assertNotNull(claims);
+        assertEquals("user-001", claims.getSubject());
+        assertEquals("milk", claims.getUsername());
+        assertTrue(claims.getExpiresAt() > Instant.now().getEpochSecond());
+    }
+
+    @Test
+    void testVerifyMatchesParseToken() {
+        // Given
+        String token = jwtUtil.generateToken("user-002", "布丁 \"pudding\"", Map.of("tags", Map.of("a", 1)));
+
+        // When
+        JwtClaims claims = jwtUtil.verifyToken(token);
+        Map<String, Object> payload = jwtUtil.parseToken(token);
+
+        // Then
+        assertNotNull(claims);
+        assertNotNull(payload);
+        assertEquals(payload.get("sub"), claims.getSubject());
+        assertEquals(payload.get("username"), claims.getUsername());
+        assertEquals(((Number) payload.get("exp")).longValue(), claims.getExpiresAt());
+    }
+
+    @Test
+    void testRejectTamperedSignature() {
+        // Given
+        String token = jwtUtil.generateToken("user-001", "milk", null);
+        char last = token.charAt(token.length() - 1);
+        String tampered = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+
+        // When & Then
+        assertNull(jwtUtil.verifyToken(tampered));
+        assertNull(jwtUtil.parseToken(tampered));
+    }
+
+    @Test
+    void testRejectExpiredToken() {
+        // Given
+        String token = jwtUtil.generateToken("user-001", "milk", null);
+        JwtVerifier verifier = new JwtVerifier("milk-pudding-gateway-secret-key-2024".getBytes(), "HmacSHA256");
+        long exp = jwtUtil.verifyToken(token).getExpiresAt();
+
+        // When & Then
+        assertNotNull(verifier.verify(token, exp));
+        assertNull(verifier.verify(token, exp + 1));
+    }
+
+    @Test
+    void testRejectMalformedToken() {
+        assertNull(jwtUtil.verifyToken(null));
+        assertNull(jwtUtil.verifyToken(""));
+        assertNull(jwtUtil.verifyToken("abc"));
+        assertNull(jwtUtil.verifyToken("a.b"));
+        assertNull(jwtUtil.verifyToken(jwtUtil.generateToken("user-001", "milk", null) + ".x"));
+    }
+}
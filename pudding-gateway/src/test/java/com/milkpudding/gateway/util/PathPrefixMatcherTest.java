@@ -0,0 +1,88 @@
+package com.milkpudding.gateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PathPrefixMatcher 测试类
+ */
+class PathPrefixMatcherTest {
+
+    @Test
+    void testMatchesExactPathAndSubPaths() {
+        // Given
+        PathPrefixMatcher matcher = PathPrefixMatcher.compile(List.of("/api/v1/auth/login", "/actuator/health"));
+
+        // When & Then 只在路径分隔处匹配前缀
+        assertTrue(matcher.matches("/api/v1/auth/login"));
+        assertTrue(matcher.matches("/api/v1/auth/login/"));
+        assertTrue(matcher.matches("/actuator/health/liveness"));
+        assertFalse(matcher.matches("/api/v1/auth/loginx"));
+        assertFalse(matcher.matches("/api/v1/auth"));
+        assertFalse(matcher.matches("/actuator"));
+        assertFalse(matcher.matches(null));
+    }
+
+    @Test
+    void testTrailingSlashIsIgnored() {
+        // Given
+        PathPrefixMatcher matcher = PathPrefixMatcher.compile(List.of("/public/", "/docs//"));
+
+        // When & Then
+        assertEquals(List.of("/public", "/docs"), matcher.getPaths());
+        assertTrue(matcher.matches("/public"));
+        assertTrue(matcher.matches("/public/index.html"));
+        assertFalse(matcher.matches("/publicity"));
+        assertTrue(matcher.matches("/docs"));
+    }
+
+    @Test
+    void testRootPathMatchesOnlyRoot() {
+        // Given
+        PathPrefixMatcher matcher = PathPrefixMatcher.compile(List.of("/"));
+
+        // When & Then
+        assertTrue(matcher.matches("/"));
+        assertFalse(matcher.matches("/api/user/profile"));
+    }
+
+    @Test
+    void testDoubleWildcardSuffixMatchesPrefix() {
+        // Given
+        PathPrefixMatcher matcher = PathPrefixMatcher.compile(List.of("/static/**", "/assets/**/", "/api/public"));
+
+        // When & Then P/**与P等价
+        assertEquals(List.of("/static", "/assets", "/api/public"), matcher.getPaths());
+        assertTrue(matcher.matches("/static"));
+        assertTrue(matcher.matches("/static/css/app.css"));
+        assertFalse(matcher.matches("/staticx"));
+        assertTrue(matcher.matches("/assets/logo.svg"));
+        assertFalse(matcher.matches("/api"));
+    }
+
+    @Test
+    void testDoubleWildcardAloneMatchesEverything() {
+        // Given
+        PathPrefixMatcher matcher = PathPrefixMatcher.compile(List.of("/**"));
+
+        // When & Then
+        assertEquals(List.of("/**"), matcher.getPaths());
+        assertTrue(matcher.matches("/"));
+        assertTrue(matcher.matches("/api/user/profile"));
+    }
+
+    @Test
+    void testBlankAndDuplicatePathsAreSkipped() {
+        // When
+        PathPrefixMatcher matcher = PathPrefixMatcher.compile(Arrays.asList(" ", null, "/login", "/login/", "/login/**"));
+
+        // Then
+        assertEquals(1, matcher.size());
+        assertSame(PathPrefixMatcher.empty(), PathPrefixMatcher.compile(List.of()));
+        assertFalse(PathPrefixMatcher.empty().matches("/login"));
+    }
+}
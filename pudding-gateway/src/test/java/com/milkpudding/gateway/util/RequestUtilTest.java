@@ -0,0 +1,42 @@
+package com.milkpudding.gateway.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RequestUtil 测试类
+ */
+class RequestUtilTest {
+
+    @Test
+    void testFirstForwardedAddressIsUsed() {
+        // Given
+        MockServerHttpRequest request = MockServerHttpRequest.get("/api/v1/users/1001")
+            .header("X-Forwarded-For", " 203.0.113.7 , 10.0.0.1")
+            .header("X-Real-IP", "10.0.0.2")
+            .build();
+
+        // When & Then
+        assertEquals("203.0.113.7", RequestUtil.getClientIp(request));
+    }
+
+    @Test
+    void testFallsBackToRealIpThenRemoteAddress() {
+        // Given
+        MockServerHttpRequest realIp = MockServerHttpRequest.get("/").header("X-Forwarded-For", "")
+            .header("X-Real-IP", "10.0.0.2").build();
+        MockServerHttpRequest single = MockServerHttpRequest.get("/").header("X-Forwarded-For", "203.0.113.7").build();
+        MockServerHttpRequest remote = MockServerHttpRequest.get("/")
+            .remoteAddress(new InetSocketAddress("192.168.1.5", 52000)).build();
+
+        // When & Then
+        assertEquals("10.0.0.2", RequestUtil.getClientIp(realIp));
+        assertEquals("203.0.113.7", RequestUtil.getClientIp(single));
+        assertEquals("192.168.1.5", RequestUtil.getClientIp(remote));
+        assertEquals("unknown", RequestUtil.getClientIp(MockServerHttpRequest.get("/").build()));
+    }
+}
@@ -0,0 +1,124 @@
+package com.milkpudding.gateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TokenCache 测试类
+ */
+class TokenCacheTest {
+
+    @Test
+    void testCachedTokenIsReturnedUntilExpiry() {
+        // Given
+        TokenCache cache = new TokenCache(true, 100);
+        long now = Instant.now().getEpochSecond();
+        JwtClaims claims = claims("jti-1", now + 3600);
+
+        // When
+        cache.put("token-1", claims);
+
+        // Then 按token内容查找，不同token不命中
+        assertSame(claims, cache.get("token-1"));
+        assertNull(cache.get("token-2"));
+        assertEquals(1L, cache.getStats().get("hits"));
+        assertEquals(1L, cache.getStats().get("misses"));
+    }
+
+    @Test
+    void testExpiredTokenIsRemovedOnLookup() {
+        // Given
+        TokenCache cache = new TokenCache(true, 100);
+        long now = Instant.now().getEpochSecond();
+        cache.put("token-1", claims("jti-1", now - 1));
+
+        // When
+        JwtClaims cached = cache.get("token-1");
+
+        // Then
+        assertNull(cached);
+        assertEquals(0, cache.getStats().get("size"));
+        assertEquals(1L, cache.getStats().get("misses"));
+    }
+
+    @Test
+    void testFullCacheDropsExpiredEntriesBeforeEvicting() {
+        // Given
+        TokenCache cache = new TokenCache(true, 10);
+        long now = Instant.now().getEpochSecond();
+        for (int i = 0; i < 5; i++) {
+            cache.put("expired-" + i, claims("expired-" + i, now - 1));
+            cache.put("valid-" + i, claims("valid-" + i, now + 3600));
+        }
+
+        // When
+        cache.put("token-new", claims("jti-new", now + 3600));
+
+        // Then 清理过期条目后已有空位，有效条目都保留
+        assertEquals(6, cache.getStats().get("size"));
+        assertEquals(0L, cache.getStats().get("evictions"));
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(cache.get("valid-" + i));
+        }
+        assertNotNull(cache.get("token-new"));
+    }
+
+    @Test
+    void testFullCacheEvictsToStayWithinMaxSize() {
+        // Given
+        TokenCache cache = new TokenCache(true, 20);
+        long now = Instant.now().getEpochSecond();
+        for (int i = 0; i < 20; i++) {
+            cache.put("token-" + i, claims("jti-" + i, now + 3600));
+        }
+
+        // When
+        cache.put("token-new", claims("jti-new", now + 3600));
+
+        // Then 过期时间相同时淘汰约十分之一的条目后插入
+        assertEquals(2L, cache.getStats().get("evictions"));
+        assertEquals(19, cache.getStats().get("size"));
+        assertNotNull(cache.get("token-new"));
+    }
+
+    @Test
+    void testEntriesExpiringFirstAreEvictedFirst() {
+        // Given 插入顺序与过期时间相反
+        TokenCache cache = new TokenCache(true, 10);
+        long now = Instant.now().getEpochSecond();
+        for (int i = 0; i < 10; i++) {
+            cache.put("token-" + i, claims("jti-" + i, now + 3600 - i * 60L));
+        }
+
+        // When
+        cache.put("token-new", claims("jti-new", now + 7200));
+
+        // Then 最早过期的token-9被淘汰
+        assertEquals(1L, cache.getStats().get("evictions"));
+        assertNull(cache.get("token-9"));
+        for (int i = 0; i < 9; i++) {
+            assertNotNull(cache.get("token-" + i));
+        }
+        assertNotNull(cache.get("token-new"));
+    }
+
+    @Test
+    void testDisabledCacheStoresNothing() {
+        // Given
+        TokenCache cache = new TokenCache(false, 100);
+
+        // When
+        cache.put("token-1", claims("jti-1", Instant.now().getEpochSecond() + 3600));
+
+        // Then
+        assertNull(cache.get("token-1"));
+        assertEquals(0, cache.getStats().get("size"));
+    }
+
+    private static JwtClaims claims(String tokenId, long expiresAt) {
+        return new JwtClaims("user-001", "user", tokenId, expiresAt - 3600, expiresAt);
+    }
+}
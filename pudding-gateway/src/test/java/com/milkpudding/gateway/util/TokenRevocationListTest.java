@@ -0,0 +1,142 @@
+package com.milkpudding.gateway.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TokenRevocationList 测试类
+ */
+class TokenRevocationListTest {
+
+    private Path file;
+    private TokenRevocationList revocationList;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = Files.createTempDirectory("revocation").resolve("revoked-tokens.log");
+        revocationList = new TokenRevocationList(file.toString(), 1000, 3600);
+    }
+
+    @AfterEach
+    void tearDown() {
+        revocationList.shutdown();
+    }
+
+    @Test
+    void testRevokedTokenIsRejected() {
+        // Given
+        long now = Instant.now().getEpochSecond();
+        JwtClaims revoked = claims("user-001", "jti-1", now);
+        JwtClaims other = claims("user-001", "jti-2", now);
+
+        // When
+        revocationList.revokeToken("jti-1", now + 3600);
+
+        // Then
+        assertTrue(revocationList.isRevoked(revoked));
+        assertFalse(revocationList.isRevoked(other));
+    }
+
+    @Test
+    void testRevokedSubjectRejectsOnlyTokensIssuedBefore() {
+        // Given
+        long now = Instant.now().getEpochSecond();
+
+        // When
+        revocationList.revokeSubject("user-001");
+
+        // Then 吊销之后重新登录签发的token仍然有效
+        assertTrue(revocationList.isRevoked(claims("user-001", "jti-1", now - 60)));
+        assertFalse(revocationList.isRevoked(claims("user-001", "jti-2", now + 60)));
+        assertFalse(revocationList.isRevoked(claims("user-002", "jti-3", now - 60)));
+    }
+
+    @Test
+    void testSweepDropsEntriesAfterTokenExpires() {
+        // Given
+        long now = Instant.now().getEpochSecond();
+        revocationList.revokeToken("short", now + 60);
+        revocationList.revokeToken("long", now + 7200);
+        revocationList.revokeSubject("user-001");
+
+        // When
+        revocationList.sweep(now + 120);
+
+        // Then token过期后记录被清理，仍未过期的保留
+        assertEquals(1, revocationList.getStats().get("revokedTokens"));
+        assertFalse(revocationList.isRevoked(claims("user-002", "short", now)));
+        assertTrue(revocationList.isRevoked(claims("user-002", "long", now)));
+        assertTrue(revocationList.isRevoked(claims("user-001", "jti-1", now - 60)));
+
+        // When 超过token最长有效期后按用户吊销的记录也被清理
+        revocationList.sweep(now + TokenRevocationList.RETENTION_SECONDS + 1);
+
+        // Then
+        assertEquals(0, revocationList.getStats().get("revokedTokens"));
+        assertEquals(0, revocationList.getStats().get("revokedSubjects"));
+        assertFalse(revocationList.isRevoked(claims("user-001", "jti-1", now - 60)));
+    }
+
+    @Test
+    void testUnknownExpiryIsKeptForMaximumLifetime() {
+        // Given
+        long now = Instant.now().getEpochSecond();
+        revocationList.revokeToken("jti-1", 0);
+
+        // When
+        revocationList.sweep(now + TokenRevocationList.RETENTION_SECONDS - 60);
+
+        // Then
+        assertTrue(revocationList.isRevoked(claims("user-001", "jti-1", now)));
+    }
+
+    @Test
+    void testRevocationsSurviveRestartAndExpiredLinesAreCompacted() throws Exception {
+        // Given
+        long now = Instant.now().getEpochSecond();
+        revocationList.revokeToken("jti-1", now + 3600);
+        revocationList.revokeSubject("user-001");
+        // 已过期的记录和旧格式（没有过期时间）的记录
+        Files.writeString(file, "jti\texpired\t" + (now - 7200) + "\t" + (now - 3600) + "\n"
+            + "jti\tlegacy\t" + now + "\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        // When
+        TokenRevocationList restarted = new TokenRevocationList(file.toString(), 1000, 3600);
+        try {
+            restarted.load();
+
+            // Then
+            assertTrue(restarted.isRevoked(claims("user-002", "jti-1", now)));
+            assertTrue(restarted.isRevoked(claims("user-002", "legacy", now)));
+            assertTrue(restarted.isRevoked(claims("user-001", "jti-2", now - 60)));
+            assertFalse(restarted.isRevoked(claims("user-002", "expired", now)));
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            assertEquals(3, lines.size());
+            assertTrue(lines.stream().noneMatch(line -> line.contains("expired")));
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void testRejectsValuesThatWouldCorruptTheFile() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> revocationList.revokeToken("jti\n1", 0));
+        assertThrows(IllegalArgumentException.class, () -> revocationList.revokeSubject("user\t1"));
+        assertEquals(0, revocationList.getStats().get("revokedTokens"));
+    }
+
+    private static JwtClaims claims(String subject, String tokenId, long issuedAt) {
+        return new JwtClaims(subject, subject, tokenId, issuedAt, issuedAt + 3600);
+    }
+}
@@ -27,6 +27,18 @@ else
     echo "❌ pudding-gateway 配置推送失败"
 fi
 
+# 推送pudding-gateway动态路由表
+echo "推送 pudding-gateway 路由表..."
+curl -X PUT \
+    --data-binary @consul-configs/pudding-gateway-routes.yml \
+    "${CONSUL_URL}/v1/kv/config/pudding-gateway/routes"
+
+if [ $? -eq 0 ]; then
+    echo "✅ pudding-gateway 路由表推送成功"
+else
+    echo "❌ pudding-gateway 路由表推送失败"
+fi
+
 # 推送pudding-user配置
 echo "推送 pudding-user 配置..."
 curl -X PUT \
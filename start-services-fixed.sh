@@ -34,7 +34,8 @@ check_and_set_java() {
 build_project() {
     echo ""
     echo "🔨 构建项目..."
-    mvn clean compile -DskipTests
+    # 各服务在自己的目录下运行spring-boot:run，共用模块pudding-common和网关构建时使用的pudding-assets需先安装到本地仓库
+    mvn clean install -DskipTests -pl pudding-common,pudding-assets -am && mvn compile -DskipTests
     if [ $? -ne 0 ]; then
         echo "❌ 项目构建失败"
         exit 1
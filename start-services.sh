@@ -93,7 +93,7 @@ case $choice in
         
         echo ""
         echo -e "${YELLOW}3. 启动用户服务...${NC}"
-        echo "命令: CONSUL_HOST=127.0.0.1 mvn -pl pudding-user spring-boot:run"
+        echo "命令: CONSUL_HOST=127.0.0.1 mvn -pl pudding-user -am spring-boot:run"
         echo ""
         echo -e "${YELLOW}4. 启动网关服务...${NC}"
         echo "命令: CONSUL_HOST=127.0.0.1 mvn -pl pudding-gateway spring-boot:run"
@@ -0,0 +1,116 @@
+#!/bin/bash
+
+# Milk-Pudding 启动耗时基准
+# 对比普通构建与 aot-cds profile 构建的启动耗时：从启动JVM到第一次成功请求（/actuator/health返回200）的毫秒数。
+# 每个服务每种方式启动RUNS次取中位数，服务逐个单独启动，互不影响。
+# 需要本地Consul（localhost:8500），服务启动时注册到Consul：./start-services.sh 选择3只启动Consul
+#
+# 用法: ./startup-benchmark.sh [RUNS]
+#   SKIP_BUILD=1 ./startup-benchmark.sh  # 复用上次构建的结果
+
+set -u
+cd "$(dirname "$0")" || exit 1
+
+RUNS=${1:-5}
+TIMEOUT=${TIMEOUT:-120}   # 秒，超时视为启动失败
+WORK_DIR=${WORK_DIR:-target/startup-benchmark}
+SERVICES="pudding-user:8081 pudding-gateway:8080 pudding-api:8082"
+
+# 颜色定义
+RED='\033[0;31m'
+GREEN='\033[0;32m'
+YELLOW='\033[1;33m'
+BLUE='\033[0;34m'
+NC='\033[0m'
+
+now_ms() {
+    date +%s%3N
+}
+
+# 启动一次，输出到第一次成功请求的毫秒数，失败时输出空
+measure() {
+    local dir=$1 port=$2 log=$3
+    shift 3
+    local start pid elapsed=""
+    start=$(now_ms)
+    (cd "$dir" && exec java "$@") > "$log" 2>&1 &
+    pid=$!
+    while kill -0 "$pid" 2> /dev/null; do
+        if curl -sf -o /dev/null "http://localhost:${port}/actuator/health"; then
+            elapsed=$(( $(now_ms) - start ))
+            break
+        fi
+        if [ $(( $(now_ms) - start )) -gt $(( TIMEOUT * 1000 )) ]; then
+            break
+        fi
+        sleep 0.05
+    done
+    kill "$pid" 2> /dev/null
+    wait "$pid" 2> /dev/null
+    echo "$elapsed"
+}
+
+median() {
+    tr ' ' '\n' | grep -v '^$' | sort -n | awk '{ v[NR] = $1 } END { if (NR == 0) print "-"; else print v[int((NR + 1) / 2)] }'
+}
+
+echo "=================================="
+echo "  Milk-Pudding 启动耗时基准"
+echo "=================================="
+echo ""
+
+if ! curl -sf -o /dev/null http://localhost:8500/v1/status/leader; then
+    echo -e "${RED}错误: Consul未运行（localhost:8500）${NC}"
+    exit 1
+fi
+
+mkdir -p "$WORK_DIR"
+
+if [ "${SKIP_BUILD:-0}" != "1" ]; then
+    echo -e "${BLUE}1. 普通构建...${NC}"
+    mvn -q -DskipTests package || exit 1
+    for entry in $SERVICES; do
+        service=${entry%%:*}
+        rm -rf "$WORK_DIR/$service/baseline" && mkdir -p "$WORK_DIR/$service/baseline"
+        cp "$service"/target/"$service"-*.jar "$WORK_DIR/$service/baseline/app.jar"
+    done
+
+    echo -e "${BLUE}2. aot-cds 构建（含训练运行）...${NC}"
+    mvn -q -DskipTests -Paot-cds package || exit 1
+    for entry in $SERVICES; do
+        service=${entry%%:*}
+        rm -rf "$WORK_DIR/$service/aot-cds" && mkdir -p "$WORK_DIR/$service"
+        cp -r "$service/target/cds" "$WORK_DIR/$service/aot-cds"
+    done
+    echo ""
+fi
+
+echo -e "${BLUE}3. 测量启动耗时（每种方式 ${RUNS} 次，取中位数）...${NC}"
+results=""
+for entry in $SERVICES; do
+    service=${entry%%:*}
+    port=${entry##*:}
+    baseline=""
+    optimized=""
+    jar=$(cd "$WORK_DIR/$service/aot-cds" && ls "$service"-*.jar)
+    for i in $(seq 1 "$RUNS"); do
+        b=$(measure "$WORK_DIR/$service/baseline" "$port" "$WORK_DIR/$service/baseline-$i.log" -jar app.jar)
+        o=$(measure "$WORK_DIR/$service/aot-cds" "$port" "$WORK_DIR/$service/aot-cds-$i.log" \
+            -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -Dspring.cloud.refresh.enabled=false \
+            -jar "$jar")
+        echo "  $service #$i: baseline=${b:-失败}ms aot-cds=${o:-失败}ms"
+        baseline="$baseline $b"
+        optimized="$optimized $o"
+    done
+    results="$results$service $(echo "$baseline" | median) $(echo "$optimized" | median)\n"
+done
+
+echo ""
+echo "=================================="
+echo -e "${GREEN}到第一次成功请求的耗时（毫秒，中位数）${NC}"
+printf "%-18s %10s %10s\n" "服务" "baseline" "aot-cds"
+printf "$results" | while read -r service b o; do
+    printf "%-18s %10s %10s\n" "$service" "$b" "$o"
+done
+echo "=================================="
+echo -e "${YELLOW}启动日志: $WORK_DIR/<服务>/*.log${NC}"